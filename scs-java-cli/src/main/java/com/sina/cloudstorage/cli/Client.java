@@ -19,6 +19,7 @@ import com.sina.cloudstorage.event.ProgressListener;
 import com.sina.cloudstorage.services.scs.S3ClientOptions;
 import com.sina.cloudstorage.services.scs.SCS;
 import com.sina.cloudstorage.services.scs.SCSClient;
+import com.sina.cloudstorage.services.scs.iterable.ParallelObjectLister;
 import com.sina.cloudstorage.services.scs.model.AccessControlList;
 import com.sina.cloudstorage.services.scs.model.Bucket;
 import com.sina.cloudstorage.services.scs.model.CannedAccessControlList;
@@ -44,6 +45,9 @@ import com.sina.cloudstorage.services.scs.transfer.internal.UploadPartRequestFac
 
 
 public class Client {
+	/** 并行列目录时的线程数 */
+	private static final int LIST_THREAD_COUNT = 10;
+	
 	public SCS conn;
 	
 	public Client(AWSCredentials credentials, ClientConfiguration clientConfiguration, S3ClientOptions clientOptions){
@@ -125,6 +129,26 @@ public class Client {
 		return objectListing;
 	}
 	
+	/**
+	 * 并行列出prefix下所有文件,每个虚拟目录一个任务
+	 * <bucket>           : Bucket to list
+	     [prefix]           : Prefix for results set
+	     [marker]           : Where to start listing, also inside virtual directories
+	     [delimiter]        : Delimiter for virtual directories, "/" by default
+	     [maxkeys]          : Maximum number of keys per request
+	 */
+	public void listObjectsRecursively(String bucketName, String prefix, String marker, String delimiter,
+			Integer maxkeys, ParallelObjectLister.ListingHandler handler){
+		ListObjectsRequest listObjectsRequest = new ListObjectsRequest(bucketName, prefix, marker,
+				delimiter == null ? "/" : delimiter, maxkeys);
+		ParallelObjectLister lister = new ParallelObjectLister(conn, LIST_THREAD_COUNT);
+		try {
+			lister.listObjects(listObjectsRequest, handler);
+		} finally {
+			lister.shutdown();
+		}
+	}
+	
 	/* Object操作 */
 	/**
 	 * 获取object metadata
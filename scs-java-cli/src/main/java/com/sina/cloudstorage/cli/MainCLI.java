@@ -33,6 +33,7 @@ import com.sina.cloudstorage.auth.BasicAWSCredentials;
 import com.sina.cloudstorage.retry.PredefinedRetryPolicies;
 import com.sina.cloudstorage.services.scs.S3ClientOptions;
 import com.sina.cloudstorage.services.scs.SCSClient;
+import com.sina.cloudstorage.services.scs.iterable.ParallelObjectLister;
 import com.sina.cloudstorage.services.scs.model.AccessControlList;
 import com.sina.cloudstorage.services.scs.model.Bucket;
 import com.sina.cloudstorage.services.scs.model.CannedAccessControlList;
@@ -400,6 +401,7 @@ public class MainCLI {
 		     [delimiter]        : Delimiter for rolling up results set
 		     [maxkeys]          : Maximum number of keys to return in results set
 		     [allDetails]       : Show full details for each key
+		     [recursive]        : List every virtual directory under prefix, in parallel
 		 */
 		
 		listOpt = new Option("list", null, false, "Lists owned buckets or bucket contents.\n"
@@ -413,10 +415,11 @@ public class MainCLI {
 				+ "[marker]    : Where in bucket contents to start listing \n"
 				+ "[delimiter] : Delimiter for rolling up bucket contents  \n"
 				+ "[maxkeys]   : Maximum number of keys to return in bucket contents \n"
-				+ "[allDetails]: Show full details for each key ");
-		listOpt.setArgs(6);
+				+ "[allDetails]: Show full details for each key \n"
+				+ "[recursive] : List all keys under prefix, walking virtual directories in parallel ");
+		listOpt.setArgs(7);
 		listOpt.setOptionalArg(true);
-		listOpt.setArgName("bucket,prefix,marker,delimiter,maxkeys,allDetails");
+		listOpt.setArgName("bucket,prefix,marker,delimiter,maxkeys,allDetails,recursive");
 		
 		/*
 	 		delete               : Delete a bucket or key
@@ -753,14 +756,34 @@ public class MainCLI {
 								}
 							}
 
+							boolean recursive = "true".equalsIgnoreCase(values.get("recursive"));
 							try{
-								ObjectListing objectList = client.listObjects(bucketName,
-										values.get("prefix"),
-										values.get("marker"),
-										values.get("delimiter"),
-										maxkeys);
-								
-								printObjectList(objectList, showAllDetails);
+								if (recursive){
+									final boolean allDetails = showAllDetails;
+									System.out.print(generateObjectListHeader(showAllDetails));
+									client.listObjectsRecursively(bucketName,
+											values.get("prefix"),
+											values.get("marker"),
+											values.get("delimiter"),
+											maxkeys,
+											new ParallelObjectLister.ListingHandler() {
+												public void objectListingReceived(ObjectListing listing) {
+													String rows = generateObjectListRows(listing, allDetails).toString();
+													synchronized (System.out) {
+														System.out.print(rows);
+													}
+												}
+											});
+									System.out.println();
+								}else{
+									ObjectListing objectList = client.listObjects(bucketName,
+											values.get("prefix"),
+											values.get("marker"),
+											values.get("delimiter"),
+											maxkeys);
+									
+									printObjectList(objectList, showAllDetails);
+								}
 							} catch (SCSServiceException e) {
 								printErrorMsg(Utils.parseSCSException(e));
 							} catch (Exception e){
@@ -1529,9 +1552,16 @@ public class MainCLI {
 	 * @param showAllDetails
 	 */
 	private void printObjectList(ObjectListing objectList, boolean showAllDetails){
-		/*
-		 * 表头
-		 */
+		StringBuffer sb = generateObjectListHeader(showAllDetails);
+		sb.append(generateObjectListRows(objectList, showAllDetails));
+		
+		System.out.println(sb.toString());
+	}
+	
+	/**
+	 * 列表表头
+	 */
+	private StringBuffer generateObjectListHeader(boolean showAllDetails){
 		StringBuffer sb = new StringBuffer();
 		sb.append(" Modified \t   Size   ");
 		if (showAllDetails)
@@ -1542,9 +1572,14 @@ public class MainCLI {
 		if (showAllDetails)
 			sb.append("\t--------------------------------\t--------------------");
 		sb.append("\t----------------------\n");
-		/*
-		 * 内容
-		 */
+		return sb;
+	}
+	
+	/**
+	 * 列表内容
+	 */
+	private StringBuffer generateObjectListRows(ObjectListing objectList, boolean showAllDetails){
+		StringBuffer sb = new StringBuffer();
 		for (S3ObjectSummary objSummary : objectList.getObjectSummaries()){
 			sb.append(String.format("%tF", objSummary.getLastModified())+"\t");
 			sb.append(String.format("%10d", objSummary.getSize())+"\t");
@@ -1554,8 +1589,7 @@ public class MainCLI {
 			}
 			sb.append(String.format("%s", objSummary.getKey()+"\n"));
 		}
-		
-		System.out.println(sb.toString());
+		return sb;
 	}
 	
 	/**
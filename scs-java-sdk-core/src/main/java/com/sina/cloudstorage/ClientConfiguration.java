@@ -16,6 +16,7 @@ package com.sina.cloudstorage;
 
 
 import com.sina.cloudstorage.http.IdleConnectionReaper;
+import com.sina.cloudstorage.metrics.RequestMetricCollector;
 import org.apache.http.annotation.NotThreadSafe;
 //import org.apache.http.client.HttpRequestRetryHandler;
 import com.sina.cloudstorage.retry.PredefinedRetryPolicies;
@@ -43,6 +44,28 @@ public class ClientConfiguration {
      * @see IdleConnectionReaper
      */
     public static final boolean DEFAULT_USE_REAPER = true;
+
+    /**
+     * The default time (in milliseconds) a pooled connection may sit idle
+     * before the {@link IdleConnectionReaper} closes it.
+     */
+    public static final long DEFAULT_CONNECTION_MAX_IDLE_MILLIS = 60 * 1000;
+
+    /** The default time to live of a pooled connection: no limit. */
+    public static final long DEFAULT_CONNECTION_TTL = -1;
+
+    /**
+     * The default time (in milliseconds) a pooled connection may sit idle
+     * before it is checked for staleness on its next lease.
+     */
+    public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS = 5 * 1000;
+
+    /**
+     * The default size of the buffer object content is copied through when
+     * downloading to a file, used when neither a download buffer size nor a
+     * socket receive buffer size hint is set.
+     */
+    public static final int DEFAULT_DOWNLOAD_BUFFER_SIZE = 128 * 1024;
     
 
     /**
@@ -85,6 +108,32 @@ public class ClientConfiguration {
     /** The maximum number of open HTTP connections. */
     private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 
+    /**
+     * The maximum number of open HTTP connections to the upload endpoint. Zero
+     * means no limit of its own, only the one of the whole pool.
+     */
+    private int maxUploadConnections = 0;
+
+    /**
+     * The time (in milliseconds) a connection may be kept open for, from the
+     * time it was opened, after which it is closed rather than reused. A
+     * value of zero or less means no limit.
+     */
+    private long connectionTTL = DEFAULT_CONNECTION_TTL;
+
+    /**
+     * The time (in milliseconds) a pooled connection may sit idle before the
+     * {@link IdleConnectionReaper} closes it.
+     */
+    private long connectionMaxIdleMillis = DEFAULT_CONNECTION_MAX_IDLE_MILLIS;
+
+    /**
+     * The time (in milliseconds) a pooled connection may sit idle before it is
+     * checked for staleness on its next lease. Zero checks every leased
+     * connection; a negative value never checks.
+     */
+    private int validateAfterInactivityMillis = DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS;
+
     /**
      * The amount of time to wait (in milliseconds) for data to be transfered
      * over an established, open connection before the connection is timed out.
@@ -120,12 +169,28 @@ public class ClientConfiguration {
      */
     private boolean useReaper = DEFAULT_USE_REAPER;
 
+    /**
+     * Optional size (in bytes) of the buffer object content is copied through
+     * when downloading to a file. Zero means the socket receive buffer size
+     * hint, or {@link #DEFAULT_DOWNLOAD_BUFFER_SIZE} without one.
+     */
+    private int downloadBufferSize = 0;
+
+    /**
+     * Optional collector of per request metrics. Without one, no metrics are
+     * recorded.
+     */
+    private RequestMetricCollector requestMetricCollector;
 
     public ClientConfiguration() {}
 
     public ClientConfiguration(ClientConfiguration other) {
         this.connectionTimeout = other.connectionTimeout;
         this.maxConnections    = other.maxConnections;
+        this.maxUploadConnections = other.maxUploadConnections;
+        this.connectionTTL     = other.connectionTTL;
+        this.connectionMaxIdleMillis = other.connectionMaxIdleMillis;
+        this.validateAfterInactivityMillis = other.validateAfterInactivityMillis;
         this.setMaxErrorRetry(other.getMaxErrorRetry());
         this.retryPolicy       = other.retryPolicy;
         this.protocol          = other.protocol;
@@ -141,6 +206,8 @@ public class ClientConfiguration {
 
         this.socketReceiveBufferSizeHint = other.socketReceiveBufferSizeHint;
         this.socketSendBufferSizeHint    = other.socketSendBufferSizeHint;
+        this.downloadBufferSize          = other.downloadBufferSize;
+        this.requestMetricCollector      = other.requestMetricCollector;
     }
 
     /**
@@ -234,6 +301,47 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the maximum number of open HTTP connections to the upload
+     * endpoint, or zero if only the maximum of the whole pool applies.
+     *
+     * @return The maximum number of open HTTP connections to the upload
+     *         endpoint.
+     */
+    public int getMaxUploadConnections() {
+        return maxUploadConnections;
+    }
+
+    /**
+     * Sets the maximum number of open HTTP connections to the upload
+     * endpoint, so that the parts of large uploads can't take up every
+     * connection of the pool and hold back other requests. The limit applies
+     * to each bucket on the endpoint, and only while the upload endpoint is a
+     * different host than the endpoint of other requests. Zero, the default,
+     * leaves uploads limited only by {@link #getMaxConnections()}.
+     *
+     * @param maxUploadConnections
+     *            The maximum number of open HTTP connections to the upload
+     *            endpoint.
+     */
+    public void setMaxUploadConnections(int maxUploadConnections) {
+        this.maxUploadConnections = maxUploadConnections;
+    }
+
+    /**
+     * Sets the maximum number of open HTTP connections to the upload endpoint
+     * and returns the updated ClientConfiguration object.
+     *
+     * @param maxUploadConnections
+     *            The maximum number of open HTTP connections to the upload
+     *            endpoint.
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withMaxUploadConnections(int maxUploadConnections) {
+        setMaxUploadConnections(maxUploadConnections);
+        return this;
+    }
+
     /**
      * Returns the HTTP user agent header to send with all requests.
      *
@@ -685,6 +793,122 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the time (in milliseconds) a connection may be kept open for,
+     * from the time it was opened, after which it is closed rather than
+     * reused. A value of zero or less means no limit.
+     *
+     * @return The time to live of a pooled connection.
+     */
+    public long getConnectionTTL() {
+        return connectionTTL;
+    }
+
+    /**
+     * Sets the time (in milliseconds) a connection may be kept open for, from
+     * the time it was opened, after which it is closed rather than reused.
+     * Limiting it makes a long lived client pick up DNS changes of the
+     * endpoints. A value of zero or less, the default, means no limit.
+     *
+     * @param connectionTTL
+     *            The time to live of a pooled connection.
+     */
+    public void setConnectionTTL(long connectionTTL) {
+        this.connectionTTL = connectionTTL;
+    }
+
+    /**
+     * Sets the time (in milliseconds) a connection may be kept open for, and
+     * returns the updated ClientConfiguration object.
+     *
+     * @param connectionTTL
+     *            The time to live of a pooled connection.
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withConnectionTTL(long connectionTTL) {
+        setConnectionTTL(connectionTTL);
+        return this;
+    }
+
+    /**
+     * Returns the time (in milliseconds) a pooled connection may sit idle
+     * before the {@link IdleConnectionReaper} closes it.
+     *
+     * @return The maximum idle time of a pooled connection.
+     */
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the time (in milliseconds) a pooled connection may sit idle before
+     * the {@link IdleConnectionReaper} closes it. It should be shorter than
+     * the time the service keeps an idle connection open for, so that the
+     * client closes it first. Only applies when the reaper is used.
+     *
+     * @param connectionMaxIdleMillis
+     *            The maximum idle time of a pooled connection.
+     */
+    public void setConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the time (in milliseconds) a pooled connection may sit idle before
+     * the {@link IdleConnectionReaper} closes it, and returns the updated
+     * ClientConfiguration object.
+     *
+     * @param connectionMaxIdleMillis
+     *            The maximum idle time of a pooled connection.
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        setConnectionMaxIdleMillis(connectionMaxIdleMillis);
+        return this;
+    }
+
+    /**
+     * Returns the time (in milliseconds) a pooled connection may sit idle
+     * before it is checked for staleness on its next lease. Zero checks every
+     * leased connection; a negative value never checks.
+     *
+     * @return The idle time after which a pooled connection is validated.
+     */
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    /**
+     * Sets the time (in milliseconds) a pooled connection may sit idle before
+     * it is checked for staleness on its next lease. A stale check blocks on
+     * a read from the socket for up to a millisecond, so checking only the
+     * connections that sat idle long enough for the service to have closed
+     * them saves that time on most requests. Zero checks every leased
+     * connection, the way earlier versions of the SDK did; a negative value
+     * never checks, leaving stale connections to fail their requests, which
+     * are then retried.
+     *
+     * @param validateAfterInactivityMillis
+     *            The idle time after which a pooled connection is validated.
+     */
+    public void setValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+        this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    }
+
+    /**
+     * Sets the time (in milliseconds) a pooled connection may sit idle before
+     * it is checked for staleness on its next lease, and returns the updated
+     * ClientConfiguration object.
+     *
+     * @param validateAfterInactivityMillis
+     *            The idle time after which a pooled connection is validated.
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+        setValidateAfterInactivityMillis(validateAfterInactivityMillis);
+        return this;
+    }
+
     /**
      * Returns the optional size hints (in bytes) for the low level TCP send and
      * receive buffers. This is an advanced option for advanced users who want
@@ -809,4 +1033,92 @@ public class ClientConfiguration {
         return this;
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns the size (in bytes) of the buffer used to copy object content
+     * into a file, as by <code>getObject(GetObjectRequest, File)</code>.
+     * Unless set explicitly, this is the socket receive buffer size hint, so
+     * that each write to the file can take up a full socket buffer of data,
+     * or {@link #DEFAULT_DOWNLOAD_BUFFER_SIZE} when no hint is set.
+     *
+     * @return The size of the buffer used when downloading to a file.
+     */
+    public int getDownloadBufferSize() {
+        if (downloadBufferSize > 0) return downloadBufferSize;
+        if (socketReceiveBufferSizeHint > 0) return socketReceiveBufferSizeHint;
+        return DEFAULT_DOWNLOAD_BUFFER_SIZE;
+    }
+
+    /**
+     * Sets the size (in bytes) of the buffer used to copy object content into
+     * a file. Larger buffers mean fewer, larger writes to the file system.
+     * Zero restores the default of sizing the buffer to the socket receive
+     * buffer size hint.
+     *
+     * @param downloadBufferSize
+     *            The size of the buffer used when downloading to a file.
+     */
+    public void setDownloadBufferSize(int downloadBufferSize) {
+        this.downloadBufferSize = downloadBufferSize;
+    }
+
+    /**
+     * Sets the size (in bytes) of the buffer used to copy object content into
+     * a file, and returns the updated ClientConfiguration object so that
+     * additional method calls may be chained together.
+     *
+     * @param downloadBufferSize
+     *            The size of the buffer used when downloading to a file.
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withDownloadBufferSize(int downloadBufferSize) {
+        setDownloadBufferSize(downloadBufferSize);
+        return this;
+    }
+
+    /**
+     * Returns the collector that receives the metrics of every request made
+     * with this configuration, or <code>null</code> if request metrics are
+     * disabled.
+     *
+     * @return The request metric collector, if any.
+     */
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
+    }
+
+    /**
+     * Sets the collector that receives the metrics of every request made with
+     * this configuration: timings of signing, waiting for a connection, the
+     * HTTP round trip and unmarshalling, retry counts and bytes transferred.
+     * <code>null</code>, the default, disables request metrics, leaving only
+     * a few empty calls on the request path.
+     * <p>
+     * Time spent waiting for a pooled connection is only measured by clients
+     * created after a collector was set.
+     *
+     * @param requestMetricCollector
+     *            The request metric collector, or <code>null</code>.
+     *
+     * @see com.sina.cloudstorage.metrics.InMemoryRequestMetricCollector
+     */
+    public void setRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
+        this.requestMetricCollector = requestMetricCollector;
+    }
+
+    /**
+     * Sets the collector that receives the metrics of every request made with
+     * this configuration, and returns the updated ClientConfiguration object
+     * so that additional method calls may be chained together.
+     *
+     * @param requestMetricCollector
+     *            The request metric collector, or <code>null</code>.
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
+        setRequestMetricCollector(requestMetricCollector);
+        return this;
+    }
+
+}
@@ -17,6 +17,7 @@ package com.sina.cloudstorage;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.sina.cloudstorage.http.HttpMethodName;
@@ -36,8 +37,11 @@ public class DefaultRequest<T> implements Request<T> {
     /** The resource path being requested */
     private String resourcePath;
 
-    /** Map of the parameters being sent as part of this request */
-    private Map<String, String> parameters = new HashMap<String, String>();
+    /**
+     * Map of the parameters being sent as part of this request, in the order
+     * they were added, which is the order of the query string
+     */
+    private Map<String, String> parameters = new LinkedHashMap<String, String>();
 
     /** Map of the headers included in this request */
     private Map<String, String> headers = new HashMap<String, String>();
@@ -22,10 +22,17 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map.Entry;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.cloudstorage.http.ConnectionPoolStats;
 import com.sina.cloudstorage.http.ExecutionContext;
 import com.sina.cloudstorage.http.HttpConnect;
 import com.sina.cloudstorage.http.HttpMethodName;
 import com.sina.cloudstorage.http.HttpRequest;
+import com.sina.cloudstorage.metrics.RequestMetricCollector;
+import com.sina.cloudstorage.metrics.RequestMetrics;
+import com.sina.cloudstorage.metrics.RequestMetrics.Field;
 
 
 /**
@@ -36,6 +43,8 @@ import com.sina.cloudstorage.http.HttpRequest;
  */
 public abstract class SCSWebServiceClient {
 
+    private static final Log log = LogFactory.getLog(SCSWebServiceClient.class);
+
     /** The service endpoint to which this client will send requests. */
     protected URI endpoint;
     
@@ -104,10 +113,31 @@ public abstract class SCSWebServiceClient {
      */
     public void setEndpoint(String endpoint) throws IllegalArgumentException {
     	this.endpoint = configEndpoint(endpoint);
+    	limitUploadConnections();
     }
     
+	/**
+	 * Overrides the endpoint uploads and multipart uploads are sent to, with
+	 * the connections to it limited by
+	 * {@link ClientConfiguration#getMaxUploadConnections()}.
+	 */
 	public void setEndpoint4Upload(String endpoint) throws IllegalArgumentException {
 		this.endpoint4Upload = configEndpoint(endpoint);
+		limitUploadConnections();
+	}
+
+	/**
+	 * Applies the configured limit of connections to the upload endpoint to
+	 * the pool, unless uploads share the host of the endpoint of all other
+	 * requests, which the limit would then hold back as well.
+	 */
+	private void limitUploadConnections() {
+		if (endpoint4Upload == null || clientConfiguration.getMaxUploadConnections() <= 0) return;
+
+		boolean separateHost = endpoint == null
+				|| !endpoint4Upload.getHost().equalsIgnoreCase(endpoint.getHost());
+		client.setMaxConnections(endpoint4Upload,
+				separateHost ? clientConfiguration.getMaxUploadConnections() : 0);
 	}
     
 //	public void setEndpoint4Download(String endpoint) throws IllegalArgumentException {
@@ -135,6 +165,16 @@ public abstract class SCSWebServiceClient {
     public void setConfiguration(ClientConfiguration clientConfiguration) {
         this.clientConfiguration = clientConfiguration;
         client = new HttpConnect(clientConfiguration);
+        limitUploadConnections();
+    }
+
+    /**
+     * Returns a snapshot of the HTTP connection pool of this client:
+     * connections leased and available, requests waiting for a connection,
+     * and the time requests have waited for one since the client was created.
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return client.getConnectionPoolStats();
     }
 
     /**
@@ -246,7 +286,33 @@ public abstract class SCSWebServiceClient {
 //        boolean isMetricsEnabled = isRMCEnabledAtClientOrSdkLevel() || isProfilingEnabled();
 //        return new ExecutionContext(requestHandler2s, isMetricsEnabled);
     	
-    	return new ExecutionContext();
+    	return new ExecutionContext(isRequestMetricsEnabled());
+    }
+
+    /**
+     * Returns true if a request metric collector is configured for this
+     * client.
+     */
+    protected final boolean isRequestMetricsEnabled() {
+        return clientConfiguration.getRequestMetricCollector() != null;
+    }
+
+    /**
+     * Common routine to end a client request/response execution and hand the
+     * request metrics to the configured collector. Callers start the
+     * {@link Field#ClientExecuteTime} event before executing the request and
+     * call this method in a finally block.
+     */
+    protected final void endClientExecution(RequestMetrics requestMetrics) {
+        if (!requestMetrics.isEnabled()) return;
+        requestMetrics.endEvent(Field.ClientExecuteTime);
+        RequestMetricCollector collector = clientConfiguration.getRequestMetricCollector();
+        if (collector == null) return;
+        try {
+            collector.collectMetrics(requestMetrics);
+        } catch (RuntimeException e) {
+            log.warn("Request metric collector failed: " + e.getMessage(), e);
+        }
     }
 
     /* Check the profiling system property and return true if set */
@@ -21,8 +21,10 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -51,6 +53,30 @@ public abstract class AbstractAWSSigner implements Signer {
     /** The default encoding to use when URL encoding */
     protected static final String DEFAULT_ENCODING = "UTF-8";
 
+    /** The number of keys each thread keeps an initialized Mac for */
+    private static final int MAX_CACHED_MACS = 8;
+
+    /**
+     * The initialized Macs of each thread, by algorithm and key. Looking up
+     * the provider of an algorithm and initializing a Mac with a key cost
+     * more than signing a request, so each thread keeps a Mac for each of the
+     * last few credentials it signed with; a Mac is reset by each signature,
+     * and only ever used by its thread.
+     */
+    private static final ThreadLocal<Map<MacKey, Mac>> macs = new ThreadLocal<Map<MacKey, Mac>>() {
+        @Override
+        protected Map<MacKey, Mac> initialValue() {
+            return new LinkedHashMap<MacKey, Mac>(MAX_CACHED_MACS * 2, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<MacKey, Mac> eldest) {
+                    return size() > MAX_CACHED_MACS;
+                }
+            };
+        }
+    };
+
     /**
      * Computes an RFC 2104-compliant HMAC signature and returns the result as a
      * Base64 encoded string.
@@ -89,14 +115,64 @@ public abstract class AbstractAWSSigner implements Signer {
 
     protected byte[] sign(byte[] data, byte[] key, SigningAlgorithm algorithm) throws SCSClientException {
         try {
-            Mac mac = Mac.getInstance(algorithm.toString());
-            mac.init(new SecretKeySpec(key, algorithm.toString()));
-            return mac.doFinal(data);
+            return getMac(key, algorithm).doFinal(data);
         } catch (Exception e) {
             throw new SCSClientException("Unable to calculate a request signature: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Returns a Mac of the current thread initialized with the given key,
+     * creating it the first time the thread signs with the key. The Mac is
+     * shared with the signers running on the thread, so it must be used by
+     * that thread only and finished with <code>doFinal</code> before anything
+     * else is signed.
+     *
+     * @param key
+     *            The signing key.
+     * @param algorithm
+     *            The signing algorithm.
+     *
+     * @return The initialized Mac.
+     */
+    public static Mac getMac(byte[] key, SigningAlgorithm algorithm) throws Exception {
+        Map<MacKey, Mac> threadMacs = macs.get();
+        MacKey macKey = new MacKey(algorithm, key);
+        Mac mac = threadMacs.get(macKey);
+        if (mac == null) {
+            mac = Mac.getInstance(algorithm.toString());
+            mac.init(new SecretKeySpec(key, algorithm.toString()));
+            // Copied, as the caller may reuse its array
+            threadMacs.put(new MacKey(algorithm, key.clone()), mac);
+        }
+        return mac;
+    }
+
+    /** The algorithm and key a cached Mac was initialized with. */
+    private static final class MacKey {
+        private final SigningAlgorithm algorithm;
+        private final byte[] key;
+        private final int hashCode;
+
+        MacKey(SigningAlgorithm algorithm, byte[] key) {
+            this.algorithm = algorithm;
+            this.key = key;
+            this.hashCode = 31 * algorithm.hashCode() + Arrays.hashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MacKey)) return false;
+            MacKey other = (MacKey)o;
+            return algorithm == other.algorithm && Arrays.equals(key, other.key);
+        }
+    }
+
     /**
      * Hashes the string contents (assumed to be UTF-8) using the SHA-256
      * algorithm.
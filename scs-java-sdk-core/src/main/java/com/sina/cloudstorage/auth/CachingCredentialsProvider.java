@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.auth;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link AWSCredentialsProvider} implementation that caches the credentials
+ * of another provider, such as a {@link AWSCredentialsProviderChain}, so
+ * that they aren't looked up again, or a properties file parsed again, for
+ * every request.
+ * <p>
+ * The credentials are loaded from the wrapped provider once, the first time
+ * they are needed, and then reloaded in the background: every refresh
+ * interval, and, if a credentials file is watched, soon after that file
+ * changes. Callers always get the last credentials loaded, without locking
+ * and without waiting for a reload in progress. If a reload fails, the
+ * previous credentials are kept and the failure is logged.
+ * <p>
+ * Reloads of all caching providers run on a single daemon thread. A provider
+ * that is no longer used stops being reloaded once it is garbage collected,
+ * or as soon as {@link #shutdown()} is called.
+ */
+public class CachingCredentialsProvider implements AWSCredentialsProvider {
+
+    private static final Log log = LogFactory.getLog(CachingCredentialsProvider.class);
+
+    /** The default interval, in milliseconds, between reloads of the credentials */
+    public static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+    /** How often, in milliseconds, a watched credentials file is checked for changes */
+    private static final long FILE_CHECK_INTERVAL_MILLIS = 5 * 1000;
+
+    /** Runs the reloads of all caching providers */
+    private static ScheduledExecutorService scheduler;
+
+    private final AWSCredentialsProvider provider;
+    private final long refreshIntervalMillis;
+    private final File watchedFile;
+    private final ScheduledFuture<?> reloadTask;
+
+    /** The last credentials loaded, or null if none have been loaded yet */
+    private volatile Snapshot snapshot;
+
+    /** The time and the size of the watched file when it was last loaded */
+    private long watchedFileLastModified;
+    private long watchedFileLength;
+
+    /**
+     * Creates a provider caching the credentials of the given provider and
+     * reloading them every {@link #DEFAULT_REFRESH_INTERVAL_MILLIS}.
+     *
+     * @param provider
+     *            The provider of the credentials to cache.
+     */
+    public CachingCredentialsProvider(AWSCredentialsProvider provider) {
+        this(provider, DEFAULT_REFRESH_INTERVAL_MILLIS, null);
+    }
+
+    /**
+     * Creates a provider caching the credentials of the given provider.
+     *
+     * @param provider
+     *            The provider of the credentials to cache.
+     * @param refreshIntervalMillis
+     *            The interval, in milliseconds, between reloads of the
+     *            credentials.
+     * @param watchedFile
+     *            A file the credentials are read from, reloaded soon after it
+     *            changes, or null to reload the credentials on the refresh
+     *            interval only.
+     */
+    public CachingCredentialsProvider(AWSCredentialsProvider provider,
+            long refreshIntervalMillis, File watchedFile) {
+        if (provider == null)
+            throw new IllegalArgumentException("Credentials provider cannot be null");
+        if (refreshIntervalMillis <= 0)
+            throw new IllegalArgumentException("Refresh interval must be positive");
+
+        this.provider = provider;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.watchedFile = watchedFile;
+
+        long checkIntervalMillis = (watchedFile == null)
+                ? refreshIntervalMillis
+                : Math.min(refreshIntervalMillis, FILE_CHECK_INTERVAL_MILLIS);
+        ReloadTask task = new ReloadTask(this, false);
+        this.reloadTask = getScheduler().scheduleWithFixedDelay(
+                task, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        task.future = reloadTask;
+    }
+
+    /**
+     * Returns the last credentials loaded. Only the first call, before any
+     * credentials are loaded, waits for the wrapped provider.
+     */
+    public AWSCredentials getCredentials() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) current = load();
+            }
+        }
+        return current.credentials;
+    }
+
+    /**
+     * Reloads the credentials in the background. Callers keep getting the
+     * previous credentials until the reload completes.
+     */
+    public void refresh() {
+        getScheduler().execute(new ReloadTask(this, true));
+    }
+
+    /**
+     * Stops reloading the credentials. The credentials already loaded are
+     * still returned.
+     */
+    public void shutdown() {
+        reloadTask.cancel(false);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + provider + ")";
+    }
+
+    /**
+     * Loads the credentials from the wrapped provider, and publishes an
+     * immutable copy of them.
+     */
+    private synchronized Snapshot load() {
+        long lastModified = 0, length = 0;
+        if (watchedFile != null) {
+            lastModified = watchedFile.lastModified();
+            length = watchedFile.length();
+        }
+
+        provider.refresh();
+        Snapshot loaded = new Snapshot(copy(provider.getCredentials()), System.currentTimeMillis());
+
+        watchedFileLastModified = lastModified;
+        watchedFileLength = length;
+        snapshot = loaded;
+        return loaded;
+    }
+
+    /**
+     * Reloads the credentials if they are due, or if forced to, keeping the
+     * previous ones if they can't be loaded.
+     */
+    private void reload(boolean force) {
+        Snapshot current = snapshot;
+        if (!force && current != null
+                && System.currentTimeMillis() - current.loadTime < refreshIntervalMillis
+                && !watchedFileChanged()) {
+            return;
+        }
+
+        try {
+            load();
+        } catch (RuntimeException e) {
+            log.warn("Unable to reload credentials from " + provider
+                    + "; keeping the previous credentials: " + e.getMessage());
+        }
+    }
+
+    private synchronized boolean watchedFileChanged() {
+        return watchedFile != null
+                && (watchedFile.lastModified() != watchedFileLastModified
+                    || watchedFile.length() != watchedFileLength);
+    }
+
+    private static AWSCredentials copy(AWSCredentials credentials) {
+        if (credentials == null) return null;
+        if (credentials instanceof AWSSessionCredentials) {
+            return new BasicSessionCredentials(credentials.getAWSAccessKeyId(),
+                    credentials.getAWSSecretKey(),
+                    ((AWSSessionCredentials)credentials).getSessionToken());
+        }
+        return new BasicAWSCredentials(credentials.getAWSAccessKeyId(), credentials.getAWSSecretKey());
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "scs-java-sdk-credentials-refresher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Credentials together with the time they were loaded. The credentials
+     * may be null, for a provider that falls back to anonymous access.
+     */
+    private static final class Snapshot {
+        private final AWSCredentials credentials;
+        private final long loadTime;
+
+        private Snapshot(AWSCredentials credentials, long loadTime) {
+            this.credentials = credentials;
+            this.loadTime = loadTime;
+        }
+    }
+
+    /**
+     * Reloads the credentials of a provider. Only holds a weak reference to
+     * the provider, so that scheduling its reloads doesn't keep it from being
+     * garbage collected; the task cancels itself once it is.
+     */
+    private static final class ReloadTask implements Runnable {
+        private final WeakReference<CachingCredentialsProvider> providerReference;
+        private final boolean force;
+        private volatile ScheduledFuture<?> future;
+
+        private ReloadTask(CachingCredentialsProvider provider, boolean force) {
+            this.providerReference = new WeakReference<CachingCredentialsProvider>(provider);
+            this.force = force;
+        }
+
+        public void run() {
+            CachingCredentialsProvider provider = providerReference.get();
+            if (provider == null) {
+                if (future != null) future.cancel(false);
+                return;
+            }
+            provider.reload(force);
+        }
+    }
+}
@@ -14,8 +14,11 @@
  */
 package com.sina.cloudstorage.auth;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 
 import com.sina.cloudstorage.SCSClientException;
 
@@ -90,6 +93,24 @@ public class ClasspathPropertiesFileCredentialsProvider implements AWSCredential
 
     public void refresh() {}
 
+    /**
+     * Returns the credentials file, if it is a file of the file system rather
+     * than, for example, an entry of a jar file; null otherwise. A
+     * {@link CachingCredentialsProvider} can watch it for changes.
+     */
+    public File getCredentialsFile() {
+        URL url = getClass().getResource(credentialsFilePath);
+        if (url == null || !"file".equals(url.getProtocol())) return null;
+
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(" + credentialsFilePath + ")";
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.event;
+
+/**
+ * Marks a progress listener that is called directly on the thread
+ * transferring the data, for every event, rather than on the shared progress
+ * callback thread.
+ * <p>
+ * This skips the hand-off to the callback thread and the batching of byte
+ * counts, so implementations must be cheap, must never block, and must be
+ * thread safe, since concurrent transfers call them concurrently. Adding to
+ * an atomic counter is a typical use.
+ *
+ * @see ProgressListenerCallbackExecutor
+ */
+public interface DirectProgressListener extends ProgressListener {
+}
@@ -31,7 +31,9 @@ public interface ProgressListener {
      * Called when progress has changed, such as additional bytes transferred,
      * transfer failed, etc. The execution of the callback of this listener is managed
      * by {@link ProgressListenerCallbackExecutor} class, which maintains a single thread
-     * to sequentially execute all progressChanged callbacks.
+     * to sequentially execute all progressChanged callbacks, batching up byte
+     * counts reported in quick succession. Listeners implementing
+     * {@link DirectProgressListener} are called on the transferring thread instead.
      *
      * @param progressEvent
      *            The event describing the progress change.
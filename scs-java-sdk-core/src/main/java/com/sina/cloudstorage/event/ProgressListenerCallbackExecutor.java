@@ -14,49 +14,112 @@
  */
 package com.sina.cloudstorage.event;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 /**
  * This class wraps a ProgressListener object, and manages all its callback
  * execution. Callbacks are executed sequentially in a separate single thread.
+ * <p>
+ * Reporting progress never blocks the transferring thread: plain byte count
+ * events are added up in an atomic counter, and events with an event code
+ * are queued in order behind the bytes reported before them. A single
+ * dispatcher thread delivers what has accumulated for each listener in
+ * rounds, at most one round every {@link #getDispatchIntervalMillis()
+ * dispatch interval}, so however fast data moves, a listener sees at most
+ * one byte count event per interval from each stream. Events with an event
+ * code, such as completion or failure, end the wait for the next round early.
+ * <p>
+ * Listeners implementing {@link DirectProgressListener} are instead called
+ * directly on the thread reporting the progress. This includes
+ * {@link ProgressListenerChain}s, which wrap each of their listeners in an
+ * executor of its own.
  */
 public class ProgressListenerCallbackExecutor {
 
+    private static final Log log = LogFactory.getLog(ProgressListenerCallbackExecutor.class);
+
+    /** The default minimum time between two rounds of deliveries */
+    public static final long DEFAULT_DISPATCH_INTERVAL_MILLIS = 50;
+
+    private static volatile long dispatchIntervalNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_DISPATCH_INTERVAL_MILLIS);
+
     /** The wrapped ProgressListener **/
     private final ProgressListener listener;
-    
-    /** A single thread pool for executing all ProgressListener callbacks. **/
-    private static ExecutorService executor;
-    
+
+    /** Whether callbacks run on the reporting thread */
+    private final boolean direct;
+
+    /** Bytes reported by plain events and not delivered yet */
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    /** Events with an event code, in the order they were reported */
+    private final Queue<ProgressEvent> pendingEvents = new ConcurrentLinkedQueue<ProgressEvent>();
+
+    /** Whether this executor is waiting in the dispatcher's ready queue */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
     public ProgressListenerCallbackExecutor(ProgressListener listener) {
         this.listener = listener;
+        this.direct = listener instanceof DirectProgressListener;
     }
-    
+
     public void progressChanged(final ProgressEvent progressEvent) {
         if (listener == null) return;
-        
-        synchronized (ProgressListenerCallbackExecutor.class) {
-            if (executor == null) {
-                executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-                    public Thread newThread(Runnable r) {
-                        Thread t = new Thread(r);
-                        t.setName("java-sdk-progress-listener-callback-thread");
-                        t.setDaemon(true);
-                        return t;
-                    }
-                });
-            }
-            executor.submit(new Runnable() {
-                
-                @Override
-                public void run() {
-                    listener.progressChanged(progressEvent);
-                }
-            });
+
+        if (direct) {
+            listener.progressChanged(progressEvent);
+            return;
+        }
+
+        boolean urgent = false;
+        if (progressEvent.getEventCode() == 0) {
+            if (progressEvent.getBytesTransferred() == 0) return;
+            pendingBytes.addAndGet(progressEvent.getBytesTransferred());
+        } else {
+            // Bytes reported before this event are delivered before it
+            long bytes = pendingBytes.getAndSet(0);
+            if (bytes != 0) pendingEvents.add(new ProgressEvent(bytes));
+            pendingEvents.add(progressEvent);
+            urgent = true;
+        }
+        Dispatcher.schedule(this, urgent);
+    }
+
+    /**
+     * Returns the wrapped listener.
+     */
+    ProgressListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Delivers everything that has accumulated for the listener. Only called
+     * from the dispatcher thread.
+     */
+    private void deliver() {
+        ProgressEvent event;
+        while ((event = pendingEvents.poll()) != null) {
+            callListener(event);
+        }
+        long bytes = pendingBytes.getAndSet(0);
+        if (bytes != 0) callListener(new ProgressEvent(bytes));
+    }
+
+    private void callListener(ProgressEvent event) {
+        try {
+            listener.progressChanged(event);
+        } catch (RuntimeException e) {
+            log.warn("Couldn't update progress listener", e);
         }
-        
     }
 
     /**
@@ -68,4 +131,105 @@ public class ProgressListenerCallbackExecutor {
         return listener == null ?
                 null : new ProgressListenerCallbackExecutor(listener);
     }
+
+    /**
+     * Returns the minimum time, in milliseconds, between two rounds of
+     * progress deliveries.
+     */
+    public static long getDispatchIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(dispatchIntervalNanos);
+    }
+
+    /**
+     * Sets the minimum time, in milliseconds, between two rounds of progress
+     * deliveries, for all listeners. Longer intervals mean fewer, larger byte
+     * count events; zero delivers events as fast as the dispatcher thread can
+     * call the listeners. Defaults to
+     * {@link #DEFAULT_DISPATCH_INTERVAL_MILLIS}.
+     *
+     * @param dispatchIntervalMillis
+     *            The minimum time between two rounds of deliveries.
+     */
+    public static void setDispatchIntervalMillis(long dispatchIntervalMillis) {
+        if (dispatchIntervalMillis < 0)
+            throw new IllegalArgumentException("The dispatch interval must not be negative");
+        dispatchIntervalNanos = TimeUnit.MILLISECONDS.toNanos(dispatchIntervalMillis);
+    }
+
+    /**
+     * The single thread delivering progress events to all listeners. Idle
+     * threads park; reporting threads only touch lock free queues and unpark
+     * the dispatcher when it is idle or an event shouldn't wait.
+     */
+    private static final class Dispatcher implements Runnable {
+
+        private static final Queue<ProgressListenerCallbackExecutor> ready =
+                new ConcurrentLinkedQueue<ProgressListenerCallbackExecutor>();
+
+        private static volatile Thread thread;
+
+        /** Set while the dispatcher is parked with nothing to deliver */
+        private static volatile boolean idle;
+
+        /** Set when an event with an event code is waiting for delivery */
+        private static volatile boolean urgent;
+
+        static void schedule(ProgressListenerCallbackExecutor executor, boolean urgent) {
+            if (executor.scheduled.compareAndSet(false, true)) {
+                ready.add(executor);
+            } else if (!urgent) {
+                return;
+            }
+            Thread t = thread;
+            if (t == null) {
+                t = start();
+            }
+            if (urgent) {
+                Dispatcher.urgent = true;
+                LockSupport.unpark(t);
+            } else if (idle) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        private static synchronized Thread start() {
+            if (thread == null) {
+                Thread t = new Thread(new Dispatcher());
+                t.setName("java-sdk-progress-listener-callback-thread");
+                t.setDaemon(true);
+                t.start();
+                thread = t;
+            }
+            return thread;
+        }
+
+        public void run() {
+            while (true) {
+                urgent = false;
+                ProgressListenerCallbackExecutor executor;
+                while ((executor = ready.poll()) != null) {
+                    // Cleared first, so that anything reported from now on schedules it again
+                    executor.scheduled.set(false);
+                    executor.deliver();
+                }
+
+                // Bound the rate of rounds, unless an event shouldn't wait
+                long deadline = System.nanoTime() + dispatchIntervalNanos;
+                long remaining;
+                while (!urgent && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+
+                if (ready.isEmpty()) {
+                    idle = true;
+                    // Recheck, an executor may have been scheduled before idle was set
+                    if (ready.isEmpty() && !urgent) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                }
+                Thread.interrupted();
+            }
+        }
+    }
 }
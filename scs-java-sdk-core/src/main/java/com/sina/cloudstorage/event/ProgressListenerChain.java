@@ -31,9 +31,17 @@ import org.apache.commons.logging.LogFactory;
  * com.amazonaws.services.s3.transfer.internal.ProgressListenerChain has been
  * deprecated in favor of this new class.
  * </p>
+ * <p>
+ * The chain itself is called directly on the transferring thread, and hands
+ * each event to every listener through a
+ * {@link ProgressListenerCallbackExecutor} of its own: listeners implementing
+ * {@link DirectProgressListener} are called right away, the others on the
+ * progress callback thread, as if each had been set on the request alone.
+ * </p>
  */
-public class ProgressListenerChain implements ProgressListener {
-    private final List<ProgressListener> listeners = new CopyOnWriteArrayList<ProgressListener>();
+public class ProgressListenerChain implements DirectProgressListener {
+    private final List<ProgressListenerCallbackExecutor> listeners =
+            new CopyOnWriteArrayList<ProgressListenerCallbackExecutor>();
     private final ProgressEventFilter progressEventFilter;
     
     private static final Log log = LogFactory.getLog(ProgressListenerChain.class);
@@ -56,12 +64,17 @@ public class ProgressListenerChain implements ProgressListener {
 
     public synchronized void addProgressListener(ProgressListener listener) {
         if (listener == null) return;
-        this.listeners.add(listener);
+        this.listeners.add(new ProgressListenerCallbackExecutor(listener));
     }
 
     public synchronized void removeProgressListener(ProgressListener listener) {
         if (listener == null) return;
-        this.listeners.remove(listener);
+        for (ProgressListenerCallbackExecutor executor : listeners) {
+            if (executor.getListener() == listener) {
+                this.listeners.remove(executor);
+                return;
+            }
+        }
     }
 
     public void progressChanged(final ProgressEvent progressEvent) {
@@ -71,7 +84,7 @@ public class ProgressListenerChain implements ProgressListener {
             if (filteredEvent == null) return;
         }
         
-        for ( ProgressListener listener : listeners ) {
+        for ( ProgressListenerCallbackExecutor listener : listeners ) {
             try {
                 listener.progressChanged(filteredEvent);
             } catch ( RuntimeException e ) {
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.handlers;
+
+import com.sina.cloudstorage.SCSWebServiceRequest;
+
+/**
+ * Callback interface for notification on web service requests executed with
+ * the asynchronous clients. Callers implement this interface to be notified
+ * when a request completes, whether it succeeded or failed, without having
+ * to wait on the returned future.
+ * <p>
+ * Callbacks run on the thread that executed the request, before the future
+ * of the request completes, so they should be quick and should not block.
+ *
+ * @param <REQUEST>
+ *            The type of the request.
+ * @param <RESULT>
+ *            The type of the result of the request.
+ */
+public interface AsyncHandler<REQUEST extends SCSWebServiceRequest, RESULT> {
+
+    /**
+     * Invoked after an asynchronous request fails; the exception is also
+     * thrown by the future of the request.
+     *
+     * @param exception
+     *            The exception the request failed with.
+     */
+    public void onError(Exception exception);
+
+    /**
+     * Invoked after an asynchronous request completes successfully.
+     *
+     * @param request
+     *            The request that completed.
+     * @param result
+     *            The result of the request, or null for requests without a
+     *            result.
+     */
+    public void onSuccess(REQUEST request, RESULT result);
+}
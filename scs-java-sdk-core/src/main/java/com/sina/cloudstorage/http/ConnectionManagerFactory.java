@@ -14,22 +14,22 @@
  */
 package com.sina.cloudstorage.http;
 
-
 import com.sina.cloudstorage.ClientConfiguration;
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
-import org.apache.http.params.HttpParams;
+import com.sina.cloudstorage.http.conn.SdkPoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 
 /** Responsible for creating and configuring instances of Apache HttpClient4's Connection Manager. */
-@SuppressWarnings("deprecation")
 class ConnectionManagerFactory {
 
-	public static PoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config, HttpParams httpClientParams ) {
-        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+	public static SdkPoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config ) {
+        SdkPoolingClientConnectionManager connectionManager = new SdkPoolingClientConnectionManager(
+                SchemeRegistryFactory.createDefault(), config.getConnectionTTL(),
+                config.getValidateAfterInactivityMillis());
         connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
         connectionManager.setMaxTotal(config.getMaxConnections());
         if (config.useReaper()) {
-            IdleConnectionReaper.registerConnectionManager(connectionManager);
+            IdleConnectionReaper.registerConnectionManager(connectionManager, config.getConnectionMaxIdleMillis());
         }
         return connectionManager;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.http;
+
+/**
+ * A snapshot of the HTTP connection pool of a client: the connections in use
+ * and idle in the pool, the requests waiting for one, and how long requests
+ * have waited for a connection since the client was created.
+ */
+public class ConnectionPoolStats {
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int max;
+    private final long leaseCount;
+    private final long totalLeaseWaitMillis;
+    private final long staleConnectionCount;
+
+    public ConnectionPoolStats(int leased, int available, int pending, int max,
+            long leaseCount, long totalLeaseWaitMillis, long staleConnectionCount) {
+        this.leased = leased;
+        this.available = available;
+        this.pending = pending;
+        this.max = max;
+        this.leaseCount = leaseCount;
+        this.totalLeaseWaitMillis = totalLeaseWaitMillis;
+        this.staleConnectionCount = staleConnectionCount;
+    }
+
+    /** Returns the number of connections in use by requests. */
+    public int getLeased() {
+        return leased;
+    }
+
+    /** Returns the number of idle connections kept open in the pool. */
+    public int getAvailable() {
+        return available;
+    }
+
+    /** Returns the number of requests waiting for a connection. */
+    public int getPending() {
+        return pending;
+    }
+
+    /** Returns the maximum number of open connections of the pool. */
+    public int getMax() {
+        return max;
+    }
+
+    /** Returns the number of connections leased since the pool was created. */
+    public long getLeaseCount() {
+        return leaseCount;
+    }
+
+    /**
+     * Returns the time (in milliseconds) requests have waited for a connection
+     * altogether, since the pool was created.
+     */
+    public long getTotalLeaseWaitMillis() {
+        return totalLeaseWaitMillis;
+    }
+
+    /**
+     * Returns the average time (in milliseconds) a request waited for a
+     * connection, since the pool was created.
+     */
+    public double getAverageLeaseWaitMillis() {
+        return leaseCount == 0 ? 0 : (double)totalLeaseWaitMillis / leaseCount;
+    }
+
+    /**
+     * Returns the number of pooled connections found stale, and closed, when
+     * they were leased after sitting idle.
+     */
+    public long getStaleConnectionCount() {
+        return staleConnectionCount;
+    }
+
+    @Override
+    public String toString() {
+        return "[leased: " + leased + "; available: " + available + "; pending: " + pending
+                + "; max: " + max + "; leases: " + leaseCount + "; lease wait: "
+                + totalLeaseWaitMillis + " ms; stale: " + staleConnectionCount + "]";
+    }
+}
@@ -16,12 +16,15 @@ package com.sina.cloudstorage.http;
 
 import com.sina.cloudstorage.auth.AWSCredentials;
 import com.sina.cloudstorage.auth.Signer;
+import com.sina.cloudstorage.metrics.RequestMetrics;
+import com.sina.cloudstorage.metrics.RequestMetricsFullSupport;
 import org.apache.http.annotation.NotThreadSafe;
 
 @NotThreadSafe
 public class ExecutionContext {
 //    private final AWSRequestMetrics awsRequestMetrics;
 //    private List<RequestHandler2> requestHandler2s;
+    private final RequestMetrics requestMetrics;
     private String contextUserAgent;
 
     /** Optional signer to enable the runtime layer to handle signing requests (and resigning on retries). */
@@ -42,6 +45,21 @@ public class ExecutionContext {
 //                          : new AWSRequestMetrics();
 //    }
 
+    public ExecutionContext() {
+        this(false);
+    }
+
+    /**
+     * @param isMetricEnabled
+     *            True to record the metrics of the request executed in this
+     *            context.
+     */
+    public ExecutionContext(boolean isMetricEnabled) {
+        requestMetrics = isMetricEnabled
+                       ? new RequestMetricsFullSupport()
+                       : RequestMetrics.DISABLED;
+    }
+
     public String getContextUserAgent() {
         return contextUserAgent;
     }
@@ -58,6 +76,16 @@ public class ExecutionContext {
 //        return awsRequestMetrics;
 //    }
 
+    /**
+     * Returns the metrics of the request executed in this context, which
+     * ignore everything they're given unless metrics are enabled.
+     *
+     * @return The request metrics, never <code>null</code>.
+     */
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
     /**
      * Returns the optional signer used to sign the associated request.
      *
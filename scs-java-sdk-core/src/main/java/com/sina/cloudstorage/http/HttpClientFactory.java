@@ -66,16 +66,25 @@ class HttpClientFactory {
      * @param config
      *            Client configuration options (ex: proxy settings, connection
      *            limits, etc).
+     * @param connectionManager
+     *            The connection manager of the new client, as created by
+     *            {@link ConnectionManagerFactory}.
      *
      * @return The new, configured HttpClient.
      */
 	@SuppressWarnings("deprecation")
-    public HttpClient createHttpClient(ClientConfiguration config) {
+    public HttpClient createHttpClient(ClientConfiguration config,
+            PoolingClientConnectionManager connectionManager) {
         /* Set HTTP client parameters */
 		HttpParams httpClientParams = new BasicHttpParams();
         HttpConnectionParams.setConnectionTimeout(httpClientParams, config.getConnectionTimeout());
         HttpConnectionParams.setSoTimeout(httpClientParams, config.getSocketTimeout());
-        HttpConnectionParams.setStaleCheckingEnabled(httpClientParams, true);
+        /*
+         * A positive threshold has the connection manager check only the
+         * connections that sat idle for longer, instead of every one.
+         */
+        HttpConnectionParams.setStaleCheckingEnabled(httpClientParams,
+                config.getValidateAfterInactivityMillis() == 0);
         HttpConnectionParams.setTcpNoDelay(httpClientParams, true);
 
         int socketSendBufferSizeHint = config.getSocketBufferSizeHints()[0];
@@ -85,9 +94,8 @@ class HttpClientFactory {
                     Math.max(socketSendBufferSizeHint, socketReceiveBufferSizeHint));
         }
 
-        PoolingClientConnectionManager connectionManager = ConnectionManagerFactory
-                .createPoolingClientConnManager(config, httpClientParams);
-        SdkHttpClient httpClient = new SdkHttpClient(connectionManager, httpClientParams);
+        SdkHttpClient httpClient = new SdkHttpClient(connectionManager, httpClientParams,
+                config.getRequestMetricCollector() != null);
         if(config.getMaxErrorRetry() > 0)
         	httpClient.setHttpRequestRetryHandler(SdkHttpRequestRetryHandler.Singleton);
 //        httpClient.setRedirectStrategy(new LocationHeaderNotRequiredRedirectStrategy());
@@ -23,6 +23,9 @@ import com.sina.cloudstorage.SCSWebServiceRequest;
 //import com.reader.epubreader.cm.utils.cookiestore.PersistentCookieStore;
 import com.sina.cloudstorage.SCSWebServiceResponse;
 import com.sina.cloudstorage.SDKGlobalConfiguration;
+import com.sina.cloudstorage.http.conn.SdkPoolingClientConnectionManager;
+import com.sina.cloudstorage.metrics.RequestMetrics;
+import com.sina.cloudstorage.metrics.RequestMetrics.Field;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
@@ -34,6 +37,7 @@ import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import com.sina.cloudstorage.retry.RetryUtils;
 import com.sina.cloudstorage.retry.RetryPolicy;
+import com.sina.cloudstorage.util.CountingInputStream;
 import com.sina.cloudstorage.util.DateUtils;
 
 /**
@@ -47,6 +51,9 @@ public class HttpConnect {
 
 	private HttpClient httpClient;
 	
+	/** The pool of the client, unwrapped from any metrics collecting proxy */
+	private final SdkPoolingClientConnectionManager connectionManager;
+	
 	ClientConfiguration config;
 	
 	/**
@@ -59,10 +66,36 @@ public class HttpConnect {
 	
 	private static final HttpRequestFactory httpRequestFactory = new HttpRequestFactory();
     private static final HttpClientFactory httpClientFactory = new HttpClientFactory();
+    private static final DateUtils dateUtils = new DateUtils();
 	
 	public HttpConnect(ClientConfiguration config) {
 		this.config = config;
-		this.httpClient = httpClientFactory.createHttpClient(config);
+		this.connectionManager = ConnectionManagerFactory.createPoolingClientConnManager(config);
+		this.httpClient = httpClientFactory.createHttpClient(config, connectionManager);
+	}
+	
+	/**
+	 * Limits the number of open connections to the host of the given endpoint,
+	 * and to each virtual host of a bucket on it, below the maximum of the
+	 * whole pool, such as to keep uploads from taking up every connection.
+	 *
+	 * @param endpoint
+	 *            The endpoint.
+	 * @param maxConnections
+	 *            The maximum number of open connections to the endpoint, or
+	 *            zero to lift the limit.
+	 */
+	public void setMaxConnections(URI endpoint, int maxConnections) {
+		connectionManager.setMaxPerHost(endpoint.getHost(), maxConnections);
+	}
+	
+	/**
+	 * Returns a snapshot of the connection pool of this client: connections
+	 * leased and available, requests waiting for one, and the time they have
+	 * waited altogether.
+	 */
+	public ConnectionPoolStats getConnectionPoolStats() {
+		return connectionManager.getConnectionPoolStats();
 	}
 
 	 /**
@@ -120,10 +153,10 @@ public class HttpConnect {
          * any of the content until after a response is returned to the caller.
          */
         boolean leaveHttpConnectionOpen = false;
-//        AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        RequestMetrics requestMetrics = executionContext.getRequestMetrics();
         /* add the service endpoint to the logs. You can infer service name from service endpoint */
-//        awsRequestMetrics.addProperty(Field.ServiceName, request.getServiceName());
-//        awsRequestMetrics.addProperty(Field.ServiceEndpoint, request.getEndpoint());
+        requestMetrics.addProperty(Field.ServiceName, request.getServiceName());
+        requestMetrics.addProperty(Field.ServiceEndpoint, request.getEndpoint());
         // Apply whatever request options we know how to handle, such as user-agent.
         setUserAgent(request);
         int requestCount = 0;
@@ -140,7 +173,7 @@ public class HttpConnect {
 
         while (true) {
             ++requestCount;
-//            awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
+            requestMetrics.setCounter(Field.RequestCount, requestCount);
             if (requestCount > 1) { // retry
                 request.setParameters(originalParameters);
                 request.setHeaders(originalHeaders);
@@ -152,12 +185,12 @@ public class HttpConnect {
             try {
                 // Sign the request if a signer was provided
                 if (executionContext.getSigner() != null && executionContext.getCredentials() != null) {
-//                    awsRequestMetrics.startEvent(Field.RequestSigningTime);
+                    requestMetrics.startEvent(Field.RequestSigningTime);
                     try {
 						executionContext.getSigner().sign(request,
 								executionContext.getCredentials());
                     } finally {
-//                        awsRequestMetrics.endEvent(Field.RequestSigningTime);
+                        requestMetrics.endEvent(Field.RequestSigningTime);
                     }
                 }
 
@@ -176,14 +209,14 @@ public class HttpConnect {
                 }
 
                 if (requestCount > 1) {   // retry
-//                    awsRequestMetrics.startEvent(Field.RetryPauseTime);
+                    requestMetrics.startEvent(Field.RetryPauseTime);
                     try {
                         pauseBeforeNextRetry(request.getOriginalRequest(),
                                              retriedException,
                                              requestCount,
                                              config.getRetryPolicy());
                     } finally {
-//                        awsRequestMetrics.endEvent(Field.RetryPauseTime);
+                        requestMetrics.endEvent(Field.RetryPauseTime);
                     }
                 }
 
@@ -206,15 +239,25 @@ public class HttpConnect {
 //                        AWSRequestMetrics.class.getSimpleName(),
 //                        awsRequestMetrics);
                 retriedException = null;
-//                awsRequestMetrics.startEvent(Field.HttpRequestTime);
+                if (requestMetrics.isEnabled()) {
+                    // Lets the connection manager report the time spent waiting for a connection
+                    RequestMetrics.setCurrent(requestMetrics);
+                }
+                requestMetrics.startEvent(Field.HttpRequestTime);
                 try {
                     apacheResponse = httpClient.execute(httpRequest, httpContext);
                 } finally {
-//                    awsRequestMetrics.endEvent(Field.HttpRequestTime);
+                    requestMetrics.endEvent(Field.HttpRequestTime);
+                    if (requestMetrics.isEnabled()) {
+                        RequestMetrics.setCurrent(null);
+                    }
+                }
+                if (entity != null && entity.getContentLength() > 0) {
+                    requestMetrics.addCounter(Field.BytesSent, entity.getContentLength());
                 }
 
                 if (isRequestSuccessful(apacheResponse)) {
-//                    awsRequestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
+                    requestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
                     /*
                      * If we get back any 2xx status code, then we know we should
                      * treat the service call as successful.
@@ -239,16 +282,16 @@ public class HttpConnect {
                     log.debug("Redirecting to: " + redirectedLocation);
                     redirectedURI = URI.create(redirectedLocation);
                     httpRequest.setURI(redirectedURI);
-//                    awsRequestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
-//                    awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
-//                    awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+                    requestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
+                    requestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
+                    requestMetrics.addProperty(Field.RequestId, null);
 
                 } else {
                     leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
                     SCSServiceException ase = handleErrorResponse(request, errorResponseHandler, httpRequest, apacheResponse);
-//                    awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
-//                    awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
-//                    awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+                    requestMetrics.addProperty(Field.RequestId, ase.getRequestId());
+                    requestMetrics.addProperty(Field.ErrorCode, ase.getErrorCode());
+                    requestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
                     
                 	if (!shouldRetry(request.getOriginalRequest(),
 				            httpRequest,
@@ -274,9 +317,8 @@ public class HttpConnect {
                 if (log.isInfoEnabled()) {
                     log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 }
-//                awsRequestMetrics.incrementCounter(Field.Exception);
-//                awsRequestMetrics.addProperty(Field.Exception, ioe);
-//                awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+                requestMetrics.incrementCounter(Field.Exception);
+                requestMetrics.addProperty(Field.RequestId, null);
 
                 SCSClientException ace = new SCSClientException("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 if (!shouldRetry(request.getOriginalRequest(),
@@ -467,23 +509,29 @@ public class HttpConnect {
         }
 
         try {
-//            com.sina.cloudstorage.util.CountingInputStream countingInputStream = null;
-//            if (System.getProperty(PROFILING_SYSTEM_PROPERTY) != null) {
-//                countingInputStream = new CountingInputStream(httpResponse.getContent());
-//                httpResponse.setContent(countingInputStream);
-//            }
-//
-//            AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+            RequestMetrics requestMetrics = executionContext.getRequestMetrics();
+            CountingInputStream countingInputStream = null;
+            if (requestMetrics.isEnabled() && httpResponse.getContent() != null) {
+                if (responseHandler.needsConnectionLeftOpen()) {
+                    // The caller reads the content later; count what the service says it sent
+                    long contentLength = apacheHttpResponse.getEntity().getContentLength();
+                    if (contentLength > 0) requestMetrics.addCounter(Field.BytesReceived, contentLength);
+                } else {
+                    countingInputStream = new CountingInputStream(httpResponse.getContent());
+                    httpResponse.setContent(countingInputStream);
+                }
+            }
+
             SCSWebServiceResponse<? extends T> awsResponse;
-//            awsRequestMetrics.startEvent(Field.ResponseProcessingTime);
+            requestMetrics.startEvent(Field.ResponseProcessingTime);
             try {
                 awsResponse = responseHandler.handle(httpResponse);
             } finally {
-//                awsRequestMetrics.endEvent(Field.ResponseProcessingTime);
+                requestMetrics.endEvent(Field.ResponseProcessingTime);
+            }
+            if (countingInputStream != null) {
+                requestMetrics.addCounter(Field.BytesReceived, countingInputStream.getByteCount());
             }
-//            if (countingInputStream != null) {
-//                awsRequestMetrics.setCounter(Field.BytesProcessed, countingInputStream.getByteCount());
-//            }
 
             if (awsResponse == null)
                 throw new RuntimeException("Unable to unmarshall response metadata");
@@ -494,7 +542,7 @@ public class HttpConnect {
 //                requestLog.debug("Received successful response: " + apacheHttpResponse.getStatusLine().getStatusCode()
 //                        + ", AWS Request ID: " + awsResponse.getRequestId());
 //            }
-//            awsRequestMetrics.addProperty(Field.AWSRequestID, awsResponse.getRequestId());
+            requestMetrics.addProperty(Field.RequestId, awsResponse.getRequestId());
 
             return awsResponse.getResult();
 //        } catch (CRC32MismatchException e) {
@@ -649,7 +697,6 @@ public class HttpConnect {
     }
     
     private int parseClockSkewOffset(org.apache.http.HttpResponse response, SCSServiceException exception) {
-        DateUtils dateUtils = new DateUtils(); 
         Date deviceDate = new Date();
         Date serverDate = null;
         String serverDateStr = null;
@@ -695,8 +742,8 @@ public class HttpConnect {
      * Once a client has been shutdown, it cannot be used to make more requests.
      */
     public void shutdown() {
-        IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
-        httpClient.getConnectionManager().shutdown();
+        IdleConnectionReaper.removeConnectionManager(connectionManager);
+        connectionManager.shutdown();
     }
     
     /**
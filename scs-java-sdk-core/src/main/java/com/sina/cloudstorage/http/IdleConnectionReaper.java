@@ -14,8 +14,8 @@
  */
 package com.sina.cloudstorage.http;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -33,7 +33,9 @@ import org.apache.http.conn.ClientConnectionManager;
  * in CLOSE_WAIT can prevent the OS from creating new connections.
  * <p>
  * This class closes idle connections before they can move into the CLOSE_WAIT
- * state.
+ * state, and connections past their time to live. Each connection manager is
+ * registered with the time its connections may sit idle for, and the pools
+ * are swept at half the shortest of these times, but at least every minute.
  * <p>
  * This thread is important because by default, we disable Apache HttpClient's
  * stale connection checking, so without this thread running in the background,
@@ -43,14 +45,21 @@ import org.apache.http.conn.ClientConnectionManager;
  */
 public final class IdleConnectionReaper extends Thread {
 
-    /** The period between invocations of the idle connection reaper. */
-    private static final int PERIOD_MILLISECONDS = 1000 * 60 * 1;
+    /** The longest period between invocations of the idle connection reaper. */
+    private static final long PERIOD_MILLISECONDS = 1000 * 60 * 1;
+
+    /** The shortest period between invocations of the idle connection reaper. */
+    private static final long MIN_PERIOD_MILLISECONDS = 1000;
+
+    /** The idle time of connection managers registered without one. */
+    private static final long DEFAULT_MAX_IDLE_MILLISECONDS = 1000 * 60 * 1;
 
     /**
-     * The list of registered connection managers, whose connections
-     * will be periodically checked and idle connections closed.
+     * The registered connection managers, whose connections will be
+     * periodically checked and idle connections closed, with the time (in
+     * milliseconds) their connections may sit idle for.
      */
-    private static ArrayList<ClientConnectionManager> connectionManagers = new ArrayList<ClientConnectionManager>();
+    private static Map<ClientConnectionManager, Long> connectionManagers = new HashMap<ClientConnectionManager, Long>();
 
     /** Singleton instance of the connection reaper. */
     private static IdleConnectionReaper instance;
@@ -65,43 +74,60 @@ public final class IdleConnectionReaper extends Thread {
         start();
     }
 
-    public static synchronized void registerConnectionManager(ClientConnectionManager connectionManager) {
+    public static void registerConnectionManager(ClientConnectionManager connectionManager) {
+        registerConnectionManager(connectionManager, DEFAULT_MAX_IDLE_MILLISECONDS);
+    }
+
+    /**
+     * Registers a connection manager whose connections are closed once they
+     * have sat idle for the given time (in milliseconds).
+     */
+    public static synchronized void registerConnectionManager(ClientConnectionManager connectionManager,
+            long maxIdleMillis) {
         if (instance == null) instance = new IdleConnectionReaper();
-        connectionManagers.add(connectionManager);
+        connectionManagers.put(connectionManager, maxIdleMillis);
+        // Wake the reaper up to sweep at the period this manager needs
+        instance.interrupt();
     }
 
     public static synchronized void removeConnectionManager(ClientConnectionManager connectionManager) {
         connectionManagers.remove(connectionManager);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void run() {
         while (true) {
+            // Copy the managed ConnectionManagers to avoid possible
+            // ConcurrentModificationExceptions if registerConnectionManager or
+            // removeConnectionManager are called while we're iterating (rather
+            // than block/lock while this loop executes).
+            Map<ClientConnectionManager, Long> connectionManagers = null;
+            synchronized (IdleConnectionReaper.class) {
+                if (instance != this) return;
+                connectionManagers = new HashMap<ClientConnectionManager, Long>(IdleConnectionReaper.connectionManagers);
+            }
+
+            long period = PERIOD_MILLISECONDS;
+            for (Long maxIdleMillis : connectionManagers.values()) {
+                period = Math.min(period, Math.max(MIN_PERIOD_MILLISECONDS, maxIdleMillis / 2));
+            }
             try {
-                Thread.sleep(PERIOD_MILLISECONDS);
-
-                // Copy the list of managed ConnectionManagers to avoid possible
-                // ConcurrentModificationExceptions if registerConnectionManager or
-                // removeConnectionManager are called while we're iterating (rather
-                // than block/lock while this loop executes).
-                List<ClientConnectionManager> connectionManagers = null;
-                synchronized (IdleConnectionReaper.class) {
-                    connectionManagers = (List<ClientConnectionManager>)IdleConnectionReaper.connectionManagers.clone();
-                }
-                for (ClientConnectionManager connectionManager : connectionManagers) {
-                    // When we release connections, the connection manager leaves them
-                    // open so they can be reused.  We want to close out any idle
-                    // connections so that they don't sit around in CLOSE_WAIT.
-                    try {
-                        connectionManager.closeIdleConnections(60, TimeUnit.SECONDS);
-                    } catch (Throwable t) {
-                        log.warn("Unable to close idle connections", t);
-                    }
-                }
+                Thread.sleep(period);
             } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return;
+                // Registered a new connection manager, or shut down
+                continue;
+            }
+
+            for (Map.Entry<ClientConnectionManager, Long> entry : connectionManagers.entrySet()) {
+                // When we release connections, the connection manager leaves them
+                // open so they can be reused.  We want to close out any idle
+                // connections so that they don't sit around in CLOSE_WAIT.
+                try {
+                    entry.getKey().closeExpiredConnections();
+                    entry.getKey().closeIdleConnections(entry.getValue(), TimeUnit.MILLISECONDS);
+                } catch (Throwable t) {
+                    log.warn("Unable to close idle connections", t);
+                }
             }
         }
     }
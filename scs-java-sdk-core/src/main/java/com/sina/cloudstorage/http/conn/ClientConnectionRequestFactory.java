@@ -24,6 +24,9 @@ import org.apache.commons.logging.LogFactory;
 
 import org.apache.http.conn.ClientConnectionRequest;
 
+import com.sina.cloudstorage.metrics.RequestMetrics;
+import com.sina.cloudstorage.metrics.RequestMetrics.Field;
+
 class ClientConnectionRequestFactory {
     private static final Log log = LogFactory.getLog(ClientConnectionRequestFactory.class);
     private static final Class<?>[] interfaces = {
@@ -60,17 +63,17 @@ class ClientConnectionRequestFactory {
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
             try {
-            	//TODO:
-//                if ("getConnection".equals(method.getName())) {
-//                    ServiceLatencyProvider latencyProvider = new ServiceLatencyProvider(
-//                            AWSServiceMetrics.HttpClientGetConnectionTime);
-//                    try {
-//                        return method.invoke(orig, args);
-//                    } finally {
-//                        AwsSdkMetrics.getServiceMetricCollector()
-//                                .collectLatency(latencyProvider.endTiming());
-//                    }
-//                }
+                if ("getConnection".equals(method.getName())) {
+                    RequestMetrics metrics = RequestMetrics.getCurrent();
+                    if (metrics != null) {
+                        metrics.startEvent(Field.HttpClientGetConnectionTime);
+                        try {
+                            return method.invoke(orig, args);
+                        } finally {
+                            metrics.endEvent(Field.HttpClientGetConnectionTime);
+                        }
+                    }
+                }
                 return method.invoke(orig, args);
             } catch (InvocationTargetException e) {
                 log.debug("", e);
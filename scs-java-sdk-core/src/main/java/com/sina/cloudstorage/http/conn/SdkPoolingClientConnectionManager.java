@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.http.conn;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import com.sina.cloudstorage.http.ConnectionPoolStats;
+
+/**
+ * A pooling connection manager that checks a pooled connection for staleness
+ * only when it has sat idle for a while, rather than on every lease as
+ * HttpClient's stale connection check does, and that keeps count of leases
+ * and of the time spent waiting for them.
+ * <p>
+ * Connections can also be limited by host, rather than by route, for the
+ * routes to a host and to its subdomains, which are the virtual hosts of the
+ * buckets of an endpoint.
+ */
+public class SdkPoolingClientConnectionManager extends PoolingClientConnectionManager {
+    private static final Log log = LogFactory.getLog(SdkPoolingClientConnectionManager.class);
+
+    private final long validateAfterInactivityMillis;
+
+    /**
+     * When each idle connection was released to the pool, by the metrics of
+     * its socket, which last as long as the socket does.
+     */
+    private final Map<HttpConnectionMetrics, Long> releaseTimes =
+            Collections.synchronizedMap(new WeakHashMap<HttpConnectionMetrics, Long>());
+
+    /** The connection limits by host */
+    private final Map<String, Integer> maxPerHost = new ConcurrentHashMap<String, Integer>();
+
+    /** The routes whose limit was looked up since the host limits last changed */
+    private final Set<HttpRoute> limitedRoutes =
+            Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong leaseWaitNanos = new AtomicLong();
+    private final AtomicLong staleConnectionCount = new AtomicLong();
+
+    /**
+     * @param timeToLiveMillis
+     *            The time a connection may be kept open for, from the time it
+     *            was opened; zero or less means no limit.
+     * @param validateAfterInactivityMillis
+     *            The time a pooled connection may sit idle before it is
+     *            checked for staleness on its next lease; zero or less means
+     *            this manager never checks.
+     */
+    public SdkPoolingClientConnectionManager(SchemeRegistry schemeRegistry,
+            long timeToLiveMillis, long validateAfterInactivityMillis) {
+        super(schemeRegistry, timeToLiveMillis, TimeUnit.MILLISECONDS);
+        this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    }
+
+    /**
+     * Limits the connections of each route to the given host, or to any of
+     * its subdomains, below the default limit per route.
+     *
+     * @param host
+     *            The host name.
+     * @param max
+     *            The maximum number of connections per route, or zero to lift
+     *            the limit of the host.
+     */
+    public synchronized void setMaxPerHost(String host, int max) {
+        host = host.toLowerCase(Locale.ENGLISH);
+        if (max > 0) maxPerHost.put(host, max);
+        else maxPerHost.remove(host);
+
+        // Routes limited so far get their limits again on their next lease
+        for (HttpRoute route : limitedRoutes) {
+            setMaxPerRoute(route, getDefaultMaxPerRoute());
+        }
+        limitedRoutes.clear();
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+        if (!maxPerHost.isEmpty() && limitedRoutes.add(route)) {
+            String host = route.getTargetHost().getHostName().toLowerCase(Locale.ENGLISH);
+            for (Map.Entry<String, Integer> entry : maxPerHost.entrySet()) {
+                if (host.equals(entry.getKey()) || host.endsWith("." + entry.getKey())) {
+                    setMaxPerRoute(route, entry.getValue());
+                    break;
+                }
+            }
+        }
+
+        final ClientConnectionRequest request = super.requestConnection(route, state);
+        return new ClientConnectionRequest() {
+            public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                long startNanos = System.nanoTime();
+                ManagedClientConnection connection = request.getConnection(timeout, tunit);
+                leaseWaitNanos.addAndGet(System.nanoTime() - startNanos);
+                leaseCount.incrementAndGet();
+
+                validate(connection);
+                return connection;
+            }
+
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(ManagedClientConnection connection, long keepalive, TimeUnit tunit) {
+        if (validateAfterInactivityMillis > 0 && connection.isOpen() && connection.isMarkedReusable()) {
+            releaseTimes.put(connection.getMetrics(), System.currentTimeMillis());
+        }
+        super.releaseConnection(connection, keepalive, tunit);
+    }
+
+    /**
+     * Closes a leased connection if it sat idle for longer than the
+     * validation threshold and the other end closed it meanwhile, so that the
+     * request opens a new one instead of failing on it.
+     */
+    private void validate(ManagedClientConnection connection) {
+        if (validateAfterInactivityMillis <= 0 || !connection.isOpen()) return;
+
+        Long releaseTime = releaseTimes.remove(connection.getMetrics());
+        if (releaseTime == null
+                || System.currentTimeMillis() - releaseTime.longValue() <= validateAfterInactivityMillis) {
+            return;
+        }
+        if (connection.isStale()) {
+            staleConnectionCount.incrementAndGet();
+            try {
+                connection.close();
+            } catch (IOException e) {
+                log.debug("Unable to close stale connection", e);
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the connections of the pool, and of the leases
+     * made since it was created.
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        PoolStats totals = getTotalStats();
+        return new ConnectionPoolStats(totals.getLeased(), totals.getAvailable(),
+                totals.getPending(), totals.getMax(), leaseCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(leaseWaitNanos.get()), staleConnectionCount.get());
+    }
+}
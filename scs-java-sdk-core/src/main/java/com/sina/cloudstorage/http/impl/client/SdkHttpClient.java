@@ -18,14 +18,28 @@ import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.params.HttpParams;
 
+import com.sina.cloudstorage.http.conn.ClientConnectionManagerFactory;
+
 
 @SuppressWarnings("deprecation")
 public class SdkHttpClient extends DefaultHttpClient {
     public SdkHttpClient(
             final ClientConnectionManager conman,
             final HttpParams params) {
-//TODO:        super(ClientConnectionManagerFactory.wrap(conman), params);
-    	super(conman, params);
+    	this(conman, params, false);
+    }
+
+    /**
+     * @param measureConnectionLease
+     *            True to wrap the connection manager so that the time each
+     *            request waits for a pooled connection is added to its
+     *            request metrics.
+     */
+    public SdkHttpClient(
+            final ClientConnectionManager conman,
+            final HttpParams params,
+            final boolean measureConnectionLease) {
+        super(measureConnectionLease ? ClientConnectionManagerFactory.wrap(conman) : conman, params);
     }
 
     //TODO:SdkHttpRequestExecutor
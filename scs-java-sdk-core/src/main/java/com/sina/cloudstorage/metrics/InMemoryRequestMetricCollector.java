@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.sina.cloudstorage.metrics.RequestMetrics.Field;
+
+/**
+ * Aggregates request metrics in memory, per operation, to be read
+ * periodically by a monitoring system or printed for diagnosis.
+ * <pre>
+ * InMemoryRequestMetricCollector metrics = new InMemoryRequestMetricCollector();
+ * ClientConfiguration config = new ClientConfiguration().withRequestMetricCollector(metrics);
+ * SCS scs = new SCSClient(credentials, config);
+ * ...
+ * OperationMetrics puts = metrics.getOperationMetrics("PutObject");
+ * double p99 = puts.getClientExecuteLatency().getPercentileMillis(99);
+ * </pre>
+ */
+public class InMemoryRequestMetricCollector implements RequestMetricCollector {
+
+    /** Operation name used for requests that don't carry one */
+    static final String UNKNOWN_OPERATION = "Unknown";
+
+    private final ConcurrentMap<String, OperationMetrics> operations =
+            new ConcurrentHashMap<String, OperationMetrics>();
+
+    public void collectMetrics(RequestMetrics metrics) {
+        Object name = metrics.getProperty(Field.OperationName);
+        String operationName = (name == null) ? UNKNOWN_OPERATION : name.toString();
+
+        OperationMetrics operation = operations.get(operationName);
+        if (operation == null) {
+            OperationMetrics created = new OperationMetrics(operationName);
+            operation = operations.putIfAbsent(operationName, created);
+            if (operation == null) operation = created;
+        }
+        operation.record(metrics);
+    }
+
+    /**
+     * Returns the metrics of the given operation, such as
+     * <code>GetObject</code> or <code>UploadPart</code>, or <code>null</code>
+     * if no request of that operation has completed.
+     */
+    public OperationMetrics getOperationMetrics(String operationName) {
+        return operations.get(operationName);
+    }
+
+    /**
+     * Returns the metrics of every operation seen so far, by operation name.
+     * The map is a snapshot; the metrics in it are live.
+     */
+    public SortedMap<String, OperationMetrics> getAllOperationMetrics() {
+        return Collections.unmodifiableSortedMap(new TreeMap<String, OperationMetrics>(operations));
+    }
+
+    /**
+     * Clears the metrics of all operations.
+     */
+    public void reset() {
+        for (OperationMetrics operation : operations.values()) {
+            operation.reset();
+        }
+    }
+
+    /**
+     * Returns a multi-line report of the metrics of every operation.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, OperationMetrics> entry : getAllOperationMetrics().entrySet()) {
+            sb.append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of latencies over fixed buckets, from one
+ * millisecond to a minute. Recording a value takes a few atomic increments
+ * and no locks.
+ */
+public class LatencyHistogram {
+
+    /** Upper bounds (inclusive, in milliseconds) of all but the last bucket */
+    private static final long[] BUCKET_BOUNDS_MILLIS = {
+        1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 60000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos
+     *            The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long millis = nanos / 1000000;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long max;
+        while (nanos > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, nanos)) break;
+        }
+    }
+
+    /** Returns the number of latencies recorded */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** Returns the sum of the latencies recorded, in nanoseconds */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /** Returns the largest latency recorded, in nanoseconds */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /** Returns the mean latency in milliseconds, or 0 if none were recorded */
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / 1000000.0 / n;
+    }
+
+    /**
+     * Returns the upper bounds of the buckets in milliseconds. The last
+     * bucket, which has no upper bound, holds everything above the last of
+     * these.
+     */
+    public static long[] getBucketBoundsMillis() {
+        return BUCKET_BOUNDS_MILLIS.clone();
+    }
+
+    /**
+     * Returns the number of latencies in each bucket, one more than the
+     * number of bucket bounds.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns an estimate of the given percentile in milliseconds: the upper
+     * bound of the bucket it falls in, or the largest latency recorded when
+     * that is lower or the percentile falls in the last bucket.
+     *
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) total += c;
+        if (total == 0) return 0;
+
+        double maxMillis = maxNanos.get() / 1000000.0;
+        long rank = (long)Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) return Math.min(BUCKET_BOUNDS_MILLIS[i], maxMillis);
+        }
+        return maxMillis;
+    }
+
+    /** Clears all recorded latencies */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1fms, p50=%.0fms, p90=%.0fms, p99=%.0fms, max=%.1fms",
+                getCount(), getMeanMillis(), getPercentileMillis(50), getPercentileMillis(90),
+                getPercentileMillis(99), getMaxNanos() / 1000000.0);
+    }
+}
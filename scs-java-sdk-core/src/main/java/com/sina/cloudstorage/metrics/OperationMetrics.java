@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sina.cloudstorage.metrics.RequestMetrics.Field;
+
+/**
+ * The aggregated metrics of all the requests of one operation: counters for
+ * requests, failures, retries and bytes, and a latency histogram for each
+ * timing.
+ * <p>
+ * Thread safe; updates are lock free.
+ */
+public class OperationMetrics {
+
+    private final String operationName;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    private final Map<Field, LatencyHistogram> latencies =
+            new EnumMap<Field, LatencyHistogram>(Field.class);
+
+    public OperationMetrics(String operationName) {
+        this.operationName = operationName;
+        for (Field field : Field.values()) {
+            if (field.isTiming()) latencies.put(field, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Adds the metrics of one completed request.
+     */
+    public void record(RequestMetrics metrics) {
+        requestCount.incrementAndGet();
+        if (metrics.getProperty(Field.Exception) != null) failureCount.incrementAndGet();
+
+        long attempts = metrics.getCounter(Field.RequestCount);
+        if (attempts > 1) retryCount.addAndGet(attempts - 1);
+
+        long sent = metrics.getCounter(Field.BytesSent);
+        if (sent > 0) bytesSent.addAndGet(sent);
+        long received = metrics.getCounter(Field.BytesReceived);
+        if (received > 0) bytesReceived.addAndGet(received);
+
+        for (Map.Entry<Field, LatencyHistogram> entry : latencies.entrySet()) {
+            long nanos = metrics.getTimeNanos(entry.getKey());
+            // Client execute time is always recorded; the rest only when they happened
+            if (nanos > 0 || entry.getKey() == Field.ClientExecuteTime) entry.getValue().record(nanos);
+        }
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /** Returns the number of requests completed, successfully or not */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** Returns the number of requests that failed */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /** Returns the number of retries over all requests */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /** Returns the number of request body bytes sent */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /** Returns the number of response body bytes received */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Returns the latency histogram of the given timing. Timings other than
+     * {@link Field#ClientExecuteTime} only count requests they occurred in,
+     * so, for instance, the histogram of {@link Field#RetryPauseTime} only
+     * holds requests that were retried.
+     *
+     * @param field
+     *            A timing field.
+     * @return The histogram, or <code>null</code> if the field isn't a
+     *         timing.
+     */
+    public LatencyHistogram getLatencyHistogram(Field field) {
+        return latencies.get(field);
+    }
+
+    /** Returns the histogram of end to end request latencies */
+    public LatencyHistogram getClientExecuteLatency() {
+        return latencies.get(Field.ClientExecuteTime);
+    }
+
+    /** Clears all counters and histograms */
+    public void reset() {
+        requestCount.set(0);
+        failureCount.set(0);
+        retryCount.set(0);
+        bytesSent.set(0);
+        bytesReceived.set(0);
+        for (LatencyHistogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(operationName)
+          .append(": requests=").append(getRequestCount())
+          .append(", failures=").append(getFailureCount())
+          .append(", retries=").append(getRetryCount())
+          .append(", bytesSent=").append(getBytesSent())
+          .append(", bytesReceived=").append(getBytesReceived());
+        for (Map.Entry<Field, LatencyHistogram> entry : latencies.entrySet()) {
+            if (entry.getValue().getCount() == 0) continue;
+            sb.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.metrics;
+
+import com.sina.cloudstorage.ClientConfiguration;
+
+/**
+ * Receives the metrics of every request a client executes.
+ * <p>
+ * A collector is installed with
+ * {@link ClientConfiguration#setRequestMetricCollector(RequestMetricCollector)}.
+ * Without one, no metrics are recorded at all. The collector is called once
+ * per request, on the thread that executed it, after the request has
+ * completed or failed; implementations are called concurrently and must be
+ * thread safe, and should return quickly since the caller is waiting.
+ *
+ * @see InMemoryRequestMetricCollector
+ */
+public interface RequestMetricCollector {
+
+    /**
+     * Collects the metrics of a completed request.
+     *
+     * @param metrics
+     *            The timings, counters and properties recorded for the
+     *            request. Not to be modified or retained past the call.
+     */
+    public void collectMetrics(RequestMetrics metrics);
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.metrics;
+
+import org.apache.http.annotation.NotThreadSafe;
+
+/**
+ * The timings, counters and properties of a single request, including all of
+ * its retries.
+ * <p>
+ * This base class ignores everything it is given and is what requests carry
+ * when no {@link RequestMetricCollector} is configured, so the instrumentation
+ * in the request path costs no more than a few empty calls. Requests that
+ * are measured carry a {@link RequestMetricsFullSupport} instead.
+ */
+@NotThreadSafe
+public class RequestMetrics {
+
+    /**
+     * The metrics recorded for a request. Timings are in nanoseconds and add
+     * up over all the attempts of a request; counters are plain numbers.
+     */
+    public enum Field {
+        /** Property: the name of the service */
+        ServiceName(Kind.PROPERTY),
+        /** Property: the endpoint the request was sent to */
+        ServiceEndpoint(Kind.PROPERTY),
+        /** Property: the name of the operation, such as PutObject */
+        OperationName(Kind.PROPERTY),
+        /** Property: the HTTP status code of the last response */
+        StatusCode(Kind.PROPERTY),
+        /** Property: the request ID returned by the service */
+        RequestId(Kind.PROPERTY),
+        /** Property: the error code of the last error response */
+        ErrorCode(Kind.PROPERTY),
+        /** Property: the location of the last temporary redirect */
+        RedirectLocation(Kind.PROPERTY),
+        /**
+         * Property: the exception the request failed with, not set if it
+         * succeeded. Counter: the number of attempts that failed to get a
+         * response.
+         */
+        Exception(Kind.COUNTER),
+
+        /** Counter: the number of attempts, 1 for a request never retried */
+        RequestCount(Kind.COUNTER),
+        /** Counter: the number of request body bytes sent */
+        BytesSent(Kind.COUNTER),
+        /** Counter: the number of response body bytes received */
+        BytesReceived(Kind.COUNTER),
+
+        /** Timing: from the start of the client call to its end */
+        ClientExecuteTime(Kind.TIMING),
+        /** Timing: spent signing the request */
+        RequestSigningTime(Kind.TIMING),
+        /** Timing: spent waiting for a connection from the pool */
+        HttpClientGetConnectionTime(Kind.TIMING),
+        /** Timing: from sending the request to receiving the response headers */
+        HttpRequestTime(Kind.TIMING),
+        /** Timing: spent backing off between attempts */
+        RetryPauseTime(Kind.TIMING),
+        /** Timing: spent unmarshalling the response */
+        ResponseProcessingTime(Kind.TIMING);
+
+        private final Kind kind;
+
+        private Field(Kind kind) {
+            this.kind = kind;
+        }
+
+        /** Returns true for the fields holding a time in nanoseconds */
+        public boolean isTiming() {
+            return kind == Kind.TIMING;
+        }
+
+        /** Returns true for the fields holding a counter */
+        public boolean isCounter() {
+            return kind == Kind.COUNTER;
+        }
+    }
+
+    private enum Kind { PROPERTY, COUNTER, TIMING }
+
+    /** The shared instance carried by requests that aren't measured */
+    public static final RequestMetrics DISABLED = new RequestMetrics();
+
+    /**
+     * The metrics of the request the current thread is executing, for the
+     * layers below the HTTP client that can't be handed them directly.
+     */
+    private static final ThreadLocal<RequestMetrics> current = new ThreadLocal<RequestMetrics>();
+
+    protected RequestMetrics() {}
+
+    /**
+     * Returns the metrics of the request being executed on the current
+     * thread, or <code>null</code> if none is being measured.
+     */
+    public static RequestMetrics getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Binds the given metrics to the current thread, or clears the binding
+     * when given <code>null</code>.
+     */
+    public static void setCurrent(RequestMetrics metrics) {
+        if (metrics == null) {
+            current.remove();
+        } else {
+            current.set(metrics);
+        }
+    }
+
+    /**
+     * Returns true if this object records what it is given.
+     */
+    public boolean isEnabled() {
+        return false;
+    }
+
+    /** Starts timing the given event */
+    public void startEvent(Field field) {}
+
+    /** Stops timing the given event, adding the time since it was started */
+    public void endEvent(Field field) {}
+
+    /** Adds the given number of nanoseconds to a timing */
+    public void addTime(Field field, long nanos) {}
+
+    /** Sets a counter to the given value */
+    public void setCounter(Field field, long value) {}
+
+    /** Adds one to a counter */
+    public void incrementCounter(Field field) {}
+
+    /** Adds the given amount to a counter */
+    public void addCounter(Field field, long amount) {}
+
+    /** Sets a property, replacing any earlier value */
+    public void addProperty(Field field, Object value) {}
+
+    /** Returns a timing in nanoseconds, or 0 if nothing was recorded */
+    public long getTimeNanos(Field field) {
+        return 0;
+    }
+
+    /** Returns a counter, or 0 if nothing was recorded */
+    public long getCounter(Field field) {
+        return 0;
+    }
+
+    /** Returns a property, or <code>null</code> if it wasn't set */
+    public Object getProperty(Field field) {
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.apache.http.annotation.NotThreadSafe;
+
+/**
+ * Request metrics that record everything they are given.
+ */
+@NotThreadSafe
+public class RequestMetricsFullSupport extends RequestMetrics {
+
+    private static final int FIELD_COUNT = Field.values().length;
+
+    /** Timings and counters, indexed by field ordinal */
+    private final long[] values = new long[FIELD_COUNT];
+
+    /** Start times of the events in progress, 0 when not started */
+    private final long[] eventStarts = new long[FIELD_COUNT];
+
+    private final Map<Field, Object> properties = new EnumMap<Field, Object>(Field.class);
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void startEvent(Field field) {
+        eventStarts[field.ordinal()] = System.nanoTime();
+    }
+
+    @Override
+    public void endEvent(Field field) {
+        int i = field.ordinal();
+        if (eventStarts[i] != 0) {
+            values[i] += System.nanoTime() - eventStarts[i];
+            eventStarts[i] = 0;
+        }
+    }
+
+    @Override
+    public void addTime(Field field, long nanos) {
+        values[field.ordinal()] += nanos;
+    }
+
+    @Override
+    public void setCounter(Field field, long value) {
+        values[field.ordinal()] = value;
+    }
+
+    @Override
+    public void incrementCounter(Field field) {
+        values[field.ordinal()]++;
+    }
+
+    @Override
+    public void addCounter(Field field, long amount) {
+        values[field.ordinal()] += amount;
+    }
+
+    @Override
+    public void addProperty(Field field, Object value) {
+        properties.put(field, value);
+    }
+
+    @Override
+    public long getTimeNanos(Field field) {
+        return values[field.ordinal()];
+    }
+
+    @Override
+    public long getCounter(Field field) {
+        return values[field.ordinal()];
+    }
+
+    @Override
+    public Object getProperty(Field field) {
+        return properties.get(field);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<Field, Object> entry : properties.entrySet()) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        for (Field field : Field.values()) {
+            long value = values[field.ordinal()];
+            if (value == 0) continue;
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(field).append('=');
+            if (field.isTiming()) {
+                sb.append(value / 1000000.0).append("ms");
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
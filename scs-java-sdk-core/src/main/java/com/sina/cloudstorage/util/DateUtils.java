@@ -27,42 +27,144 @@ import java.util.TimeZone;
 /**
  * Utilities for parsing and formatting dates.
  * <p>
- * Note that this class doesn't use static methods because of the
- * synchronization issues with SimpleDateFormat. This lets synchronization be
- * done on a per-object level, instead of on a per-class level.
+ * The RFC 822 and ISO 8601 layouts used by the service are parsed and
+ * formatted by hand, without {@link SimpleDateFormat}, so the methods of an
+ * instance need no synchronization. A single instance can be shared freely
+ * between threads. Strings
+ * that don't match the exact layouts fall back to a per-call
+ * {@link SimpleDateFormat}, which keeps the lenient parsing behavior of
+ * earlier versions.
+ * <p>
+ * {@link #formatRfc822Date(Date)} caches the last formatted second, since
+ * the <code>Date</code> header of consecutive signed requests rarely
+ * changes more than once per second.
  */
 public class DateUtils {
 
     /** ISO 8601 format */
-    protected final SimpleDateFormat iso8601DateFormat =
-        new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    private static final String ISO8601_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
 
     /** Alternate ISO 8601 format without fractional seconds */
-    protected final SimpleDateFormat alternateIso8601DateFormat =
-        new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    private static final String ALTERNATE_ISO8601_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
 
     /** RFC 822 format */
-    protected final SimpleDateFormat rfc822DateFormat =
-        new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
-    
-    protected final SimpleDateFormat rfc822DateFormatUTC =
-            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'UTC'", Locale.US);
+    private static final String RFC822_PATTERN = "EEE, dd MMM yyyy HH:mm:ss 'GMT'";
+
+    private static final String RFC822_UTC_PATTERN = "EEE, dd MMM yyyy HH:mm:ss 'UTC'";
 
     /**
      * This is another ISO 8601 format that's used in clock skew error response
      */
-    protected final SimpleDateFormat compressedIso8601DateFormat =
-        new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
+    private static final String COMPRESSED_ISO8601_PATTERN = "yyyyMMdd'T'HHmmss'Z'";
+
+    private static final String[] DAY_NAMES =
+        { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+
+    private static final String[] MONTH_NAMES =
+        { "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+          "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /**
+     * Years handled by the hand-rolled code. Outside this range
+     * {@link SimpleDateFormat} switches to the Julian calendar or to more than
+     * four year digits, so those dates go through the fallback path.
+     */
+    private static final int MIN_FAST_YEAR = 1583;
+    private static final int MAX_FAST_YEAR = 9999;
+
+    /**
+     * ISO 8601 format
+     *
+     * @deprecated No longer used by this class; kept for subclasses that
+     *             use it. Shared by all instances; access must be
+     *             synchronized on the format.
+     */
+    @Deprecated
+    protected final SimpleDateFormat iso8601DateFormat = LegacyFormats.ISO8601;
+
+    /**
+     * Alternate ISO 8601 format without fractional seconds
+     *
+     * @deprecated No longer used by this class; kept for subclasses that
+     *             use it. Shared by all instances; access must be
+     *             synchronized on the format.
+     */
+    @Deprecated
+    protected final SimpleDateFormat alternateIso8601DateFormat = LegacyFormats.ALTERNATE_ISO8601;
+
+    /**
+     * RFC 822 format
+     *
+     * @deprecated No longer used by this class; kept for subclasses that
+     *             use it. Shared by all instances; access must be
+     *             synchronized on the format.
+     */
+    @Deprecated
+    protected final SimpleDateFormat rfc822DateFormat = LegacyFormats.RFC822;
+
+    /**
+     * RFC 822 format, in UTC
+     *
+     * @deprecated No longer used by this class; kept for subclasses that
+     *             use it. Shared by all instances; access must be
+     *             synchronized on the format.
+     */
+    @Deprecated
+    protected final SimpleDateFormat rfc822DateFormatUTC = LegacyFormats.RFC822_UTC;
+
+    /**
+     * This is another ISO 8601 format that's used in clock skew error response
+     *
+     * @deprecated No longer used by this class; kept for subclasses that
+     *             use it. Shared by all instances; access must be
+     *             synchronized on the format.
+     */
+    @Deprecated
+    protected final SimpleDateFormat compressedIso8601DateFormat = LegacyFormats.COMPRESSED_ISO8601;
+
+    /**
+     * Holds the formats of the deprecated fields, created once on first use
+     * rather than by every instance.
+     */
+    private static final class LegacyFormats {
+        static final SimpleDateFormat ISO8601 = inGmt(new SimpleDateFormat(ISO8601_PATTERN));
+        static final SimpleDateFormat ALTERNATE_ISO8601 =
+            inGmt(new SimpleDateFormat(ALTERNATE_ISO8601_PATTERN));
+        static final SimpleDateFormat RFC822 = newDateFormat(RFC822_PATTERN, null);
+        static final SimpleDateFormat RFC822_UTC =
+            newDateFormat(RFC822_UTC_PATTERN, TimeZone.getTimeZone("UTC"));
+        static final SimpleDateFormat COMPRESSED_ISO8601 =
+            inGmt(new SimpleDateFormat(COMPRESSED_ISO8601_PATTERN));
+
+        private static SimpleDateFormat inGmt(SimpleDateFormat format) {
+            format.setTimeZone(new SimpleTimeZone(0, "GMT"));
+            return format;
+        }
+    }
+
+    /** The most recently formatted RFC 822 second */
+    private static volatile FormattedSecond lastRfc822Second;
+
+    /**
+     * Immutable pairing of an epoch second with its RFC 822 representation.
+     */
+    private static final class FormattedSecond {
+        final long epochSecond;
+        final String text;
+
+        FormattedSecond(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
 
     /**
      * Constructs a new DateUtils object, ready to parse/format dates.
      */
     public DateUtils() {
-        iso8601DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
-        rfc822DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
-        rfc822DateFormatUTC.setTimeZone(TimeZone.getTimeZone("UTC"));
-        alternateIso8601DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
-        compressedIso8601DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
     }
 
     /**
@@ -78,16 +180,32 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseIso8601Date(String dateString) throws ParseException {
-        try {
-            synchronized (iso8601DateFormat) {
-                return iso8601DateFormat.parse(dateString);
+        if (dateString != null) {
+            int length = dateString.length();
+            if ((length == 24 || length == 20)
+                    && dateString.charAt(4) == '-' && dateString.charAt(7) == '-'
+                    && dateString.charAt(10) == 'T' && dateString.charAt(13) == ':'
+                    && dateString.charAt(16) == ':' && dateString.charAt(length - 1) == 'Z'
+                    && (length == 20 || dateString.charAt(19) == '.')) {
+                int year = parseDigits(dateString, 0, 4);
+                int month = parseDigits(dateString, 5, 2);
+                int day = parseDigits(dateString, 8, 2);
+                int hour = parseDigits(dateString, 11, 2);
+                int minute = parseDigits(dateString, 14, 2);
+                int second = parseDigits(dateString, 17, 2);
+                int millis = length == 24 ? parseDigits(dateString, 20, 3) : 0;
+                long time = toEpochMillis(year, month, day, hour, minute, second, millis);
+                if (time != Long.MIN_VALUE)
+                    return new Date(time);
             }
+        }
+
+        try {
+            return newDateFormat(ISO8601_PATTERN, null).parse(dateString);
         } catch (ParseException e) {
             // If the first ISO 8601 parser didn't work, try the alternate
             // version which doesn't include fractional seconds
-            synchronized (alternateIso8601DateFormat) {
-                return alternateIso8601DateFormat.parse(dateString);
-            }
+            return newDateFormat(ALTERNATE_ISO8601_PATTERN, null).parse(dateString);
         }
     }
 
@@ -100,9 +218,25 @@ public class DateUtils {
      * @return The ISO 8601 string representing the specified date.
      */
     public String formatIso8601Date(Date date) {
-        synchronized (iso8601DateFormat) {
-            return iso8601DateFormat.format(date);
-        }
+        long time = date.getTime();
+        long days = floorDiv(time, MILLIS_PER_DAY);
+        int millisOfDay = (int) (time - days * MILLIS_PER_DAY);
+        int[] ymd = toCivil(days);
+        if (ymd[0] < MIN_FAST_YEAR || ymd[0] > MAX_FAST_YEAR)
+            return newDateFormat(ISO8601_PATTERN, null).format(date);
+
+        char[] buf = new char[24];
+        appendDigits(buf, 0, ymd[0], 4);
+        buf[4] = '-';
+        appendDigits(buf, 5, ymd[1], 2);
+        buf[7] = '-';
+        appendDigits(buf, 8, ymd[2], 2);
+        buf[10] = 'T';
+        appendTimeOfDay(buf, 11, millisOfDay);
+        buf[19] = '.';
+        appendDigits(buf, 20, millisOfDay % 1000, 3);
+        buf[23] = 'Z';
+        return new String(buf);
     }
 
     /**
@@ -118,16 +252,27 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseRfc822Date(String dateString) throws ParseException {
-        synchronized (rfc822DateFormatUTC) {
-        	if(dateString!=null){
-        		if(dateString.endsWith("UTC")){
-        			return rfc822DateFormatUTC.parse(dateString);
-        		}else{
-        			return rfc822DateFormat.parse(dateString);
-        		}
-        	}
-            return rfc822DateFormat.parse(dateString);
+        // "EEE, dd MMM yyyy HH:mm:ss GMT" or the same layout ending in "UTC"
+        if (dateString != null && dateString.length() == 29
+                && dateString.charAt(3) == ',' && dateString.charAt(4) == ' '
+                && dateString.charAt(7) == ' ' && dateString.charAt(11) == ' '
+                && dateString.charAt(16) == ' ' && dateString.charAt(19) == ':'
+                && dateString.charAt(22) == ':' && dateString.charAt(25) == ' '
+                && (dateString.endsWith("GMT") || dateString.endsWith("UTC"))) {
+            int day = parseDigits(dateString, 5, 2);
+            int month = parseMonth(dateString, 8);
+            int year = parseDigits(dateString, 12, 4);
+            int hour = parseDigits(dateString, 17, 2);
+            int minute = parseDigits(dateString, 20, 2);
+            int second = parseDigits(dateString, 23, 2);
+            long time = toEpochMillis(year, month, day, hour, minute, second, 0);
+            if (time != Long.MIN_VALUE)
+                return new Date(time);
         }
+
+        if (dateString != null && dateString.endsWith("UTC"))
+            return newDateFormat(RFC822_UTC_PATTERN, TimeZone.getTimeZone("UTC")).parse(dateString);
+        return newDateFormat(RFC822_PATTERN, null).parse(dateString);
     }
 
     /**
@@ -139,9 +284,16 @@ public class DateUtils {
      * @return The RFC 822 string representing the specified date.
      */
     public String formatRfc822Date(Date date) {
-        synchronized (rfc822DateFormat) {
-            return rfc822DateFormat.format(date);
-        }
+        long epochSecond = floorDiv(date.getTime(), MILLIS_PER_SECOND);
+        FormattedSecond cached = lastRfc822Second;
+        if (cached != null && cached.epochSecond == epochSecond)
+            return cached.text;
+
+        String text = formatRfc822Second(epochSecond);
+        if (text == null)
+            return newDateFormat(RFC822_PATTERN, null).format(date);
+        lastRfc822Second = new FormattedSecond(epochSecond, text);
+        return text;
     }
 
     /**
@@ -157,8 +309,177 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseCompressedIso8601Date(String dateString) throws ParseException {
-        synchronized (compressedIso8601DateFormat) {
-            return compressedIso8601DateFormat.parse(dateString);
+        if (dateString != null && dateString.length() == 16
+                && dateString.charAt(8) == 'T' && dateString.charAt(15) == 'Z') {
+            int year = parseDigits(dateString, 0, 4);
+            int month = parseDigits(dateString, 4, 2);
+            int day = parseDigits(dateString, 6, 2);
+            int hour = parseDigits(dateString, 9, 2);
+            int minute = parseDigits(dateString, 11, 2);
+            int second = parseDigits(dateString, 13, 2);
+            long time = toEpochMillis(year, month, day, hour, minute, second, 0);
+            if (time != Long.MIN_VALUE)
+                return new Date(time);
+        }
+
+        return newDateFormat(COMPRESSED_ISO8601_PATTERN, null).parse(dateString);
+    }
+
+    /**
+     * Formats the given epoch second as "EEE, dd MMM yyyy HH:mm:ss GMT", or
+     * returns null if the year is outside the range handled here.
+     */
+    private static String formatRfc822Second(long epochSecond) {
+        long days = floorDiv(epochSecond, 86400L);
+        int secondOfDay = (int) (epochSecond - days * 86400L);
+        int[] ymd = toCivil(days);
+        if (ymd[0] < MIN_FAST_YEAR || ymd[0] > MAX_FAST_YEAR)
+            return null;
+
+        char[] buf = new char[29];
+        DAY_NAMES[(int) floorMod(days + 4, 7)].getChars(0, 3, buf, 0);
+        buf[3] = ',';
+        buf[4] = ' ';
+        appendDigits(buf, 5, ymd[2], 2);
+        buf[7] = ' ';
+        MONTH_NAMES[ymd[1] - 1].getChars(0, 3, buf, 8);
+        buf[11] = ' ';
+        appendDigits(buf, 12, ymd[0], 4);
+        buf[16] = ' ';
+        appendTimeOfDay(buf, 17, secondOfDay * 1000);
+        buf[25] = ' ';
+        buf[26] = 'G';
+        buf[27] = 'M';
+        buf[28] = 'T';
+        return new String(buf);
+    }
+
+    /**
+     * Returns the epoch millis for the given UTC fields, or
+     * {@link Long#MIN_VALUE} if any field is missing or out of range.
+     */
+    private static long toEpochMillis(int year, int month, int day,
+            int hour, int minute, int second, int millis) {
+        if (year < MIN_FAST_YEAR || year > MAX_FAST_YEAR
+                || month < 1 || month > 12
+                || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23
+                || minute < 0 || minute > 59
+                || second < 0 || second > 59
+                || millis < 0)
+            return Long.MIN_VALUE;
+
+        long days = daysFromCivil(year, month, day);
+        return days * MILLIS_PER_DAY
+                + hour * 3600000L + minute * 60000L + second * 1000L + millis;
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    /**
+     * Inverse of {@link #daysFromCivil(int, int, int)}; returns
+     * {year, month, day}.
+     */
+    private static int[] toCivil(long epochDays) {
+        long z = epochDays + 719468L;
+        long era = (z >= 0 ? z : z - 146096L) / 146097L;
+        int dayOfEra = (int) (z - era * 146097L);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return new int[] { (int) year, month, day };
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * Parses <code>count</code> ASCII digits starting at <code>offset</code>,
+     * or returns -1 if any of them isn't a digit.
+     */
+    private static int parseDigits(String s, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Returns the 1-based month for the three letter English abbreviation at
+     * <code>offset</code>, or -1 if it isn't one.
+     */
+    private static int parseMonth(String s, int offset) {
+        for (int i = 0; i < MONTH_NAMES.length; i++) {
+            if (s.regionMatches(true, offset, MONTH_NAMES[i], 0, 3))
+                return i + 1;
+        }
+        return -1;
+    }
+
+    private static void appendDigits(char[] buf, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
         }
     }
+
+    /** Writes "HH:mm:ss" for the given millisecond of the day. */
+    private static void appendTimeOfDay(char[] buf, int offset, int millisOfDay) {
+        int secondOfDay = millisOfDay / 1000;
+        appendDigits(buf, offset, secondOfDay / 3600, 2);
+        buf[offset + 2] = ':';
+        appendDigits(buf, offset + 3, (secondOfDay / 60) % 60, 2);
+        buf[offset + 5] = ':';
+        appendDigits(buf, offset + 6, secondOfDay % 60, 2);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0)))
+            q--;
+        return q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * Creates a formatter for the slow path. Only used for input that doesn't
+     * match the expected layout exactly, so it isn't worth caching.
+     */
+    private static SimpleDateFormat newDateFormat(String pattern, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(timeZone != null ? timeZone : new SimpleTimeZone(0, "GMT"));
+        return format;
+    }
 }
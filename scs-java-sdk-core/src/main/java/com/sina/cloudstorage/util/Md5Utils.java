@@ -19,8 +19,12 @@ package com.sina.cloudstorage.util;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -29,6 +33,9 @@ import java.security.NoSuchAlgorithmException;
  */
 public class Md5Utils {
 
+    /** Size of the regions of a file mapped at a time by computeMD5HashMapped */
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
     /**
      * Computes the MD5 hash of the data in the given input stream and returns
      * it as an array of bytes.
@@ -59,4 +66,30 @@ public class Md5Utils {
     public static byte[] computeMD5Hash(byte[] data) throws NoSuchAlgorithmException, IOException {
         return computeMD5Hash(new ByteArrayInputStream(data));
     }
+
+    /**
+     * Computes the MD5 hash of the given file by mapping it into memory, a
+     * region at a time, and returns it as an array of bytes. The digest reads
+     * the file's pages directly, without copying them through a buffer.
+     */
+    public static byte[] computeMD5HashMapped(File file) throws NoSuchAlgorithmException, IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(MAPPED_REGION_SIZE, size - position));
+                messageDigest.update(region);
+            }
+            return messageDigest.digest();
+        } finally {
+            try {
+                randomAccessFile.close();
+            } catch ( Exception e ) {
+                System.err.println("Unable to close hash candidate file: " + e);
+            }
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A sum that many threads can add to without contending on a single memory
+ * location.
+ * <p>
+ * Uncontended, adding is a single compare-and-set on a base value. The first
+ * time two threads collide on it, the counter switches to an array of cells,
+ * each on its own cache line, and every thread from then on adds to the cell
+ * picked by its thread id. Reading the sum adds up the base and the cells,
+ * so it is a little more expensive than reading an <code>AtomicLong</code>
+ * and, while adds are in progress, isn't an atomic snapshot.
+ */
+public class StripedLongCounter {
+
+    /** Longs from one cell to the next, so that cells don't share a cache line */
+    private static final int CELL_SPACING = 8;
+
+    /** The number of cells, a power of two */
+    private static final int CELLS;
+    static {
+        int cells = 1;
+        int wanted = Math.min(64, Runtime.getRuntime().availableProcessors() * 2);
+        while (cells < wanted) cells <<= 1;
+        CELLS = cells;
+    }
+
+    private final AtomicLong base = new AtomicLong();
+
+    /** Created on the first collision on the base value */
+    private volatile AtomicLongArray cells;
+
+    public StripedLongCounter() {
+    }
+
+    public StripedLongCounter(long initialValue) {
+        base.set(initialValue);
+    }
+
+    /**
+     * Adds the given value to the sum.
+     */
+    public void add(long x) {
+        AtomicLongArray cs = cells;
+        if (cs == null) {
+            long b = base.get();
+            if (base.compareAndSet(b, b + x)) return;
+            cs = createCells();
+        }
+        cs.addAndGet(cellIndex(), x);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Returns the current sum. Adds made while the sum is being computed may
+     * or may not be included.
+     */
+    public long sum() {
+        long sum = base.get();
+        AtomicLongArray cs = cells;
+        if (cs != null) {
+            for (int i = 0; i < cs.length(); i += CELL_SPACING) {
+                sum += cs.get(i);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Sets the sum to the given value. Adds made at the same time may be
+     * lost, so this is only meant for counters that aren't being updated.
+     */
+    public void set(long value) {
+        AtomicLongArray cs = cells;
+        if (cs != null) {
+            for (int i = 0; i < cs.length(); i += CELL_SPACING) {
+                cs.set(i, 0);
+            }
+        }
+        base.set(value);
+    }
+
+    private synchronized AtomicLongArray createCells() {
+        if (cells == null) {
+            cells = new AtomicLongArray(CELLS * CELL_SPACING);
+        }
+        return cells;
+    }
+
+    private static int cellIndex() {
+        long id = Thread.currentThread().getId();
+        int h = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((h >>> 16) & (CELLS - 1)) * CELL_SPACING;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
@@ -0,0 +1,150 @@
+package com.sina.cloudstorage.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the hand-rolled parsing and formatting of {@link DateUtils} against
+ * the {@link SimpleDateFormat} formats it replaced, on random dates and around
+ * the years where it falls back to them.
+ */
+public class DateUtilsTest extends TestCase {
+
+    private final DateUtils dateUtils = new DateUtils();
+
+    private final SimpleDateFormat iso8601 = newFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", null);
+    private final SimpleDateFormat alternateIso8601 = newFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", null);
+    private final SimpleDateFormat rfc822 = newFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", null);
+    private final SimpleDateFormat rfc822UTC =
+            newFormat("EEE, dd MMM yyyy HH:mm:ss 'UTC'", TimeZone.getTimeZone("UTC"));
+    private final SimpleDateFormat compressedIso8601 = newFormat("yyyyMMdd'T'HHmmss'Z'", null);
+
+    /** Dates at and around the years handled without SimpleDateFormat */
+    private static final String[] BOUNDARY_DATES = {
+        "1582-10-04T23:59:59.999Z", // last Julian day
+        "1582-10-15T00:00:00.000Z", // first Gregorian day
+        "1582-12-31T23:59:59.999Z",
+        "1583-01-01T00:00:00.000Z",
+        "1583-01-01T00:00:00.001Z",
+        "1600-02-29T12:00:00.000Z",
+        "1900-02-28T23:59:59.999Z",
+        "1969-12-31T23:59:59.999Z",
+        "1970-01-01T00:00:00.000Z",
+        "2000-02-29T00:00:00.000Z",
+        "2014-05-21T08:53:41.123Z",
+        "9999-12-31T23:59:59.000Z",
+        "9999-12-31T23:59:59.999Z",
+    };
+
+    public void testFormatMatchesSimpleDateFormat() throws ParseException {
+        for (long time : testTimes()) {
+            Date date = new Date(time);
+            assertEquals(iso8601.format(date), dateUtils.formatIso8601Date(date));
+            assertEquals(rfc822.format(date), dateUtils.formatRfc822Date(date));
+        }
+    }
+
+    public void testFormatAfterLastFastYear() throws ParseException {
+        Date date = new Date(iso8601.parse("9999-12-31T23:59:59.999Z").getTime() + 1);
+        assertEquals(iso8601.format(date), dateUtils.formatIso8601Date(date));
+        assertEquals(rfc822.format(date), dateUtils.formatRfc822Date(date));
+    }
+
+    public void testParseMatchesSimpleDateFormat() throws ParseException {
+        for (long time : testTimes()) {
+            Date date = new Date(time);
+
+            String iso = iso8601.format(date);
+            assertEquals(iso, iso8601.parse(iso), dateUtils.parseIso8601Date(iso));
+
+            String alternateIso = alternateIso8601.format(date);
+            assertEquals(alternateIso, alternateIso8601.parse(alternateIso),
+                    dateUtils.parseIso8601Date(alternateIso));
+
+            String gmt = rfc822.format(date);
+            assertEquals(gmt, rfc822.parse(gmt), dateUtils.parseRfc822Date(gmt));
+
+            String utc = rfc822UTC.format(date);
+            assertEquals(utc, rfc822UTC.parse(utc), dateUtils.parseRfc822Date(utc));
+
+            String compressed = compressedIso8601.format(date);
+            assertEquals(compressed, compressedIso8601.parse(compressed),
+                    dateUtils.parseCompressedIso8601Date(compressed));
+        }
+    }
+
+    public void testParseFallsBackForOtherLayouts() throws ParseException {
+        // Lenient SimpleDateFormat parsing rolls invalid fields over
+        String invalidDay = "2014-02-30T00:00:00.000Z";
+        assertEquals(iso8601.parse(invalidDay), dateUtils.parseIso8601Date(invalidDay));
+
+        String lowerCaseMonth = "Wed, 21 may 2014 08:53:41 GMT";
+        assertEquals(rfc822.parse(lowerCaseMonth), dateUtils.parseRfc822Date(lowerCaseMonth));
+
+        String fiveDigitYear = "10000-01-01T00:00:00.000Z";
+        assertEquals(iso8601.parse(fiveDigitYear), dateUtils.parseIso8601Date(fiveDigitYear));
+    }
+
+    public void testParseRejectsGarbage() {
+        try {
+            dateUtils.parseIso8601Date("not a date");
+            fail("Expected a ParseException");
+        } catch (ParseException expected) {
+        }
+        try {
+            dateUtils.parseRfc822Date("Wed, 21 Foo 2014 08:53:41 GMT");
+            fail("Expected a ParseException");
+        } catch (ParseException expected) {
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedFormatsAreSharedAndInGmt() throws ParseException {
+        DateUtils other = new DateUtils();
+        assertSame(dateUtils.iso8601DateFormat, other.iso8601DateFormat);
+        assertSame(dateUtils.rfc822DateFormat, other.rfc822DateFormat);
+
+        Date date = iso8601.parse("2014-05-21T08:53:41.123Z");
+        assertEquals(iso8601.format(date), dateUtils.iso8601DateFormat.format(date));
+        assertEquals(alternateIso8601.format(date), dateUtils.alternateIso8601DateFormat.format(date));
+        assertEquals(rfc822.format(date), dateUtils.rfc822DateFormat.format(date));
+        assertEquals(rfc822UTC.format(date), dateUtils.rfc822DateFormatUTC.format(date));
+        assertEquals(compressedIso8601.format(date), dateUtils.compressedIso8601DateFormat.format(date));
+    }
+
+    /**
+     * The boundary dates, a second either side of them, and random dates
+     * between the years 1500 and 9999.
+     */
+    private long[] testTimes() throws ParseException {
+        Random random = new Random(42);
+        long min = iso8601.parse("1500-01-01T00:00:00.000Z").getTime();
+        long max = iso8601.parse("9999-12-31T23:59:59.999Z").getTime();
+
+        long[] times = new long[BOUNDARY_DATES.length * 3 + 10000];
+        int i = 0;
+        for (String boundary : BOUNDARY_DATES) {
+            long time = iso8601.parse(boundary).getTime();
+            times[i++] = time - 1000;
+            times[i++] = time;
+            times[i++] = time + 1000;
+        }
+        while (i < times.length) {
+            times[i++] = min + (long)(random.nextDouble() * (max - min));
+        }
+        return times;
+    }
+
+    private static SimpleDateFormat newFormat(String pattern, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(timeZone != null ? timeZone : new SimpleTimeZone(0, "GMT"));
+        return format;
+    }
+}
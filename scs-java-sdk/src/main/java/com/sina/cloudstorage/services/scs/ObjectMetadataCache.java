@@ -0,0 +1,330 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sina.cloudstorage.SCSServiceException;
+import com.sina.cloudstorage.services.scs.model.ObjectInfo;
+import com.sina.cloudstorage.services.scs.model.ObjectMetadata;
+
+/**
+ * Client side cache of the metadata and the info of objects, for callers that
+ * look up the same objects over and over. Set it on a client with
+ * {@link SCSClient#setObjectMetadataCache(ObjectMetadataCache)}; it can be
+ * shared by several clients.
+ * <p>
+ * The cache holds up to a maximum number of entries, evicting the least
+ * recently used ones. An entry is returned without contacting the service
+ * until its time to live expires. An expired metadata entry is then
+ * revalidated with a conditional request on its ETag, which costs a round trip
+ * but no new metadata when the object hasn't changed; it is fully reloaded
+ * anyway once it is ten times older than the time to live, so that changes
+ * which keep the ETag, such as metadata updated by other clients, are picked
+ * up. An expired info entry is reloaded.
+ * <p>
+ * The entries of an object are invalidated when it is written through a
+ * client using the cache, by putting, copying over, or deleting it, or by
+ * setting its metadata. Writes by other clients are seen once the entries
+ * expire.
+ * <p>
+ * Callers get copies of the cached metadata and info, which they are free to
+ * change.
+ */
+public class ObjectMetadataCache {
+
+    /** The default maximum number of entries of a cache */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** The default time to live, in milliseconds, of the entries of a cache */
+    public static final long DEFAULT_TTL_MILLIS = 30 * 1000;
+
+    /** How many times the time to live an entry can be revalidated for */
+    private static final int MAX_REVALIDATED_AGE_TTLS = 10;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    /** The entries, from the least to the most recently used */
+    private final LinkedHashMap<EntryKey, CacheEntry> entries;
+
+    /*
+     * The number of loads in progress by entry, and the last invalidation of
+     * those entries: a load is only cached if its entry wasn't invalidated,
+     * and the cache wasn't cleared, since it started.
+     */
+    private final Map<EntryKey, Integer> loadsInProgress = new HashMap<EntryKey, Integer>();
+    private final Map<EntryKey, Long> invalidationsInProgress = new HashMap<EntryKey, Long>();
+    private long invalidationSequence;
+    private long clearSequence;
+
+    private long hitCount;
+    private long revalidationCount;
+    private long missCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    /**
+     * Creates a cache of {@link #DEFAULT_MAX_ENTRIES} entries, each living
+     * {@link #DEFAULT_TTL_MILLIS}.
+     */
+    public ObjectMetadataCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries
+     *            The maximum number of entries to keep; an object takes one
+     *            entry for its metadata, and one for its info.
+     * @param ttlMillis
+     *            The time, in milliseconds, an entry is returned for without
+     *            checking it with the service.
+     */
+    public ObjectMetadataCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Maximum number of entries must be positive");
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("Time to live cannot be negative");
+
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<EntryKey, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EntryKey, CacheEntry> eldest) {
+                if (size() <= ObjectMetadataCache.this.maxEntries) return false;
+                evictionCount++;
+                return true;
+            }
+        };
+    }
+
+    /** Returns the maximum number of entries of this cache. */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /** Returns the time to live, in milliseconds, of the entries of this cache. */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Removes the metadata and the info of an object from this cache.
+     *
+     * @param bucketName
+     *            The name of the bucket of the object.
+     * @param key
+     *            The key of the object.
+     */
+    public synchronized void invalidate(String bucketName, String key) {
+        invalidate(new EntryKey(bucketName, key, false));
+        invalidate(new EntryKey(bucketName, key, true));
+    }
+
+    /** Removes all the entries of this cache. */
+    public synchronized void invalidateAll() {
+        invalidationCount += entries.size();
+        entries.clear();
+        clearSequence = ++invalidationSequence;
+    }
+
+    /** Returns the number of entries of this cache. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups of this cache, by outcome, since it was
+     * created.
+     */
+    public synchronized ObjectMetadataCacheStats getStatistics() {
+        return new ObjectMetadataCacheStats(hitCount, revalidationCount, missCount,
+                evictionCount, invalidationCount, entries.size(), maxEntries);
+    }
+
+    /**
+     * Returns a copy of the metadata of an object, from this cache, or loaded
+     * and cached if it isn't cached or is expired.
+     */
+    ObjectMetadata getObjectMetadata(String bucketName, String key, Loader<ObjectMetadata> loader) {
+        return get(new EntryKey(bucketName, key, false), loader).clone();
+    }
+
+    /**
+     * Returns a copy of the info of an object, from this cache, or loaded and
+     * cached if it isn't cached or is expired.
+     */
+    ObjectInfo getObjectInfo(String bucketName, String key, Loader<ObjectInfo> loader) {
+        return copyOf(get(new EntryKey(bucketName, key, true), loader));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(EntryKey entryKey, Loader<T> loader) {
+        CacheEntry cached;
+        long startSequence;
+        synchronized (this) {
+            cached = entries.get(entryKey);
+            if (cached != null && System.currentTimeMillis() - cached.validationTime < ttlMillis) {
+                hitCount++;
+                return (T)cached.value;
+            }
+            startSequence = invalidationSequence;
+            Integer loads = loadsInProgress.get(entryKey);
+            loadsInProgress.put(entryKey, loads == null ? 1 : loads + 1);
+        }
+
+        long now = System.currentTimeMillis();
+        boolean revalidate = cached != null
+                && now - cached.loadTime < ttlMillis * MAX_REVALIDATED_AGE_TTLS;
+        T loaded;
+        try {
+            loaded = loader.load(revalidate ? (T)cached.value : null);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                boolean invalidated = loadDone(entryKey, startSequence);
+                if (!invalidated && e instanceof SCSServiceException
+                        && ((SCSServiceException)e).getStatusCode() == 404) {
+                    entries.remove(entryKey);
+                }
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            boolean invalidated = loadDone(entryKey, startSequence);
+            CacheEntry entry;
+            if (loaded == null && revalidate) {
+                revalidationCount++;
+                loaded = (T)cached.value;
+                entry = new CacheEntry(loaded, cached.loadTime, now);
+            } else {
+                missCount++;
+                entry = new CacheEntry(loaded, now, now);
+            }
+            if (loaded != null && !invalidated) entries.put(entryKey, entry);
+        }
+        return loaded;
+    }
+
+    /**
+     * Records the end of a load of an entry, and returns whether the entry was
+     * invalidated since the load started.
+     */
+    private boolean loadDone(EntryKey entryKey, long startSequence) {
+        Long lastInvalidation = invalidationsInProgress.get(entryKey);
+        boolean invalidated = startSequence < clearSequence
+                || (lastInvalidation != null && startSequence < lastInvalidation);
+
+        int loads = loadsInProgress.get(entryKey) - 1;
+        if (loads > 0) {
+            loadsInProgress.put(entryKey, loads);
+        } else {
+            loadsInProgress.remove(entryKey);
+            invalidationsInProgress.remove(entryKey);
+        }
+        return invalidated;
+    }
+
+    private void invalidate(EntryKey entryKey) {
+        if (entries.remove(entryKey) != null) invalidationCount++;
+        if (loadsInProgress.containsKey(entryKey)) {
+            invalidationsInProgress.put(entryKey, ++invalidationSequence);
+        }
+    }
+
+    private static ObjectInfo copyOf(ObjectInfo info) {
+        if (info == null) return null;
+        ObjectInfo copy = new ObjectInfo(null);
+        copy.setInfo(info.getInfo());
+        copy.setFileName(info.getFileName());
+        copy.setInfoInt(info.getInfoInt());
+        copy.setContentMD5(info.getContentMD5());
+        copy.setLastModified(info.getLastModified() == null ? null : new Date(info.getLastModified().getTime()));
+        copy.setContentSHA1(info.getContentSHA1());
+        copy.setOwner(info.getOwner());
+        copy.setType(info.getType());
+        copy.setFileMeta(info.getFileMeta() == null ? null : new HashMap<String, String>(info.getFileMeta()));
+        copy.setSize(info.getSize());
+        return copy;
+    }
+
+    /**
+     * Loads the metadata or the info of an object from the service.
+     */
+    interface Loader<T> {
+        /**
+         * Loads the value, conditionally if a cached value is given.
+         *
+         * @param cached
+         *            The expired value to revalidate, or null to load the
+         *            value unconditionally.
+         *
+         * @return The value loaded, or null if the cached value is still
+         *         current.
+         */
+        T load(T cached);
+    }
+
+    /**
+     * The key of an entry: the object, and whether the entry holds its
+     * metadata or its info.
+     */
+    private static final class EntryKey {
+        private final String bucketName;
+        private final String key;
+        private final boolean info;
+
+        private EntryKey(String bucketName, String key, boolean info) {
+            this.bucketName = bucketName;
+            this.key = key;
+            this.info = info;
+        }
+
+        @Override
+        public int hashCode() {
+            return (bucketName.hashCode() * 31 + key.hashCode()) * 31 + (info ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof EntryKey)) return false;
+            EntryKey other = (EntryKey)obj;
+            return info == other.info && bucketName.equals(other.bucketName) && key.equals(other.key);
+        }
+    }
+
+    /**
+     * A cached value, with the time it was loaded and the time it was last
+     * known to be current.
+     */
+    private static final class CacheEntry {
+        private final Object value;
+        private final long loadTime;
+        private final long validationTime;
+
+        private CacheEntry(Object value, long loadTime, long validationTime) {
+            this.value = value;
+            this.loadTime = loadTime;
+            this.validationTime = validationTime;
+        }
+    }
+}
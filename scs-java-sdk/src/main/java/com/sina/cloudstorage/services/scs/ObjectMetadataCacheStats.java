@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs;
+
+/**
+ * A snapshot of the statistics of an {@link ObjectMetadataCache}: how its
+ * lookups were served since it was created, and how full it is.
+ */
+public class ObjectMetadataCacheStats {
+    private final long hitCount;
+    private final long revalidationCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final int size;
+    private final int maxEntries;
+
+    public ObjectMetadataCacheStats(long hitCount, long revalidationCount, long missCount,
+            long evictionCount, long invalidationCount, int size, int maxEntries) {
+        this.hitCount = hitCount;
+        this.revalidationCount = revalidationCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+        this.size = size;
+        this.maxEntries = maxEntries;
+    }
+
+    /** Returns the number of lookups served from the cache, without a request. */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups of expired entries which the service
+     * confirmed, with a conditional request, to be still current.
+     */
+    public long getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    /** Returns the number of lookups which loaded the entry from the service. */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /** Returns the total number of lookups. */
+    public long getRequestCount() {
+        return hitCount + revalidationCount + missCount;
+    }
+
+    /**
+     * Returns the ratio of lookups served from the cache without a request, or
+     * 0 if there were no lookups.
+     */
+    public double getHitRatio() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 0 : (double)hitCount / requestCount;
+    }
+
+    /** Returns the number of entries evicted to make room for new ones. */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of entries removed because their object was written,
+     * or the cache was cleared.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    /** Returns the number of entries of the cache. */
+    public int getSize() {
+        return size;
+    }
+
+    /** Returns the maximum number of entries of the cache. */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public String toString() {
+        return "[hits: " + hitCount + "; revalidations: " + revalidationCount + "; misses: "
+                + missCount + "; evictions: " + evictionCount + "; invalidations: "
+                + invalidationCount + "; size: " + size + "; max: " + maxEntries + "]";
+    }
+}
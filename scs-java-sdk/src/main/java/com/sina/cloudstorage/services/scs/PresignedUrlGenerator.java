@@ -0,0 +1,246 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.crypto.Mac;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.sina.cloudstorage.HttpMethod;
+import com.sina.cloudstorage.SCSClientException;
+import com.sina.cloudstorage.auth.AWSCredentials;
+import com.sina.cloudstorage.auth.AWSCredentialsProvider;
+import com.sina.cloudstorage.auth.AWSSessionCredentials;
+import com.sina.cloudstorage.auth.AbstractAWSSigner;
+import com.sina.cloudstorage.auth.SigningAlgorithm;
+import com.sina.cloudstorage.util.HttpUtils;
+
+/**
+ * Generates pre-signed URLs for many objects of one bucket, as
+ * {@link SCS#generatePresignedUrl(String, String, Date, HttpMethod, boolean)}
+ * does for a single object.
+ * <p>
+ * The endpoint and bucket part of the URLs is worked out once, when the
+ * generator is created, and the credentials are read once per batch of
+ * keys, which are signed with the Mac the signers of the thread keep for the
+ * secret key; each key then only costs its encoding, its signature and its
+ * URL. The URLs are the same, character for character,
+ * as the string form of those generated one at a time by the client.
+ * <p>
+ * Generators are created by {@link SCSClient#createPresignedUrlGenerator},
+ * take the credentials of the client at the time of each batch, and are
+ * thread safe.
+ */
+public class PresignedUrlGenerator {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final String httpVerb;
+    private final AWSCredentialsProvider credentialsProvider;
+
+    /** The start of the resource path of each signature: "/bucket/" */
+    private final String resourcePathPrefix;
+
+    /** The start of each URL: the endpoint, and the bucket with path style addressing */
+    private final String urlPrefix;
+
+    /**
+     * True if a leading slash of a key is left out of its URL, as it is when
+     * the bucket name is the domain of the URL.
+     */
+    private final boolean dropLeadingSlash;
+
+    /**
+     * @param endpoint
+     *            The endpoint of the URLs, the virtual host of the bucket
+     *            unless the bucket is addressed by path.
+     * @param pathStyle
+     *            True if the bucket is addressed by the path of the URLs.
+     * @param bucketNameAsDomain
+     *            True if the bucket name is the domain of the URLs.
+     */
+    PresignedUrlGenerator(String bucketName, HttpMethod method, String endpoint, boolean pathStyle,
+            boolean bucketNameAsDomain, AWSCredentialsProvider credentialsProvider) {
+        this.httpVerb = method.toString();
+        this.credentialsProvider = credentialsProvider;
+        this.resourcePathPrefix = escapeSlashes("/" + bucketName + "/");
+        this.urlPrefix = endpoint
+                + (pathStyle ? escapeSlashes("/" + HttpUtils.urlEncode(bucketName, true) + "/") : "/");
+        this.dropLeadingSlash = bucketNameAsDomain;
+    }
+
+    /**
+     * Returns a pre-signed URL for the object under the given key.
+     * Generating the URLs of many objects in one batch with
+     * {@link #generatePresignedUrls(Collection, Date)} is cheaper.
+     *
+     * @param key
+     *            The key of the object.
+     * @param expiration
+     *            The time at which the pre-signed URL will expire.
+     *
+     * @return The pre-signed URL.
+     */
+    public String generatePresignedUrl(String key, Date expiration) throws SCSClientException {
+        return generatePresignedUrls(Collections.singletonList(key), expiration).get(0);
+    }
+
+    /**
+     * Returns pre-signed URLs for the objects under the given keys, in the
+     * order of the keys, all expiring at the same time.
+     *
+     * @param keys
+     *            The keys of the objects.
+     * @param expiration
+     *            The time at which the pre-signed URLs will expire.
+     *
+     * @return The pre-signed URLs.
+     */
+    public List<String> generatePresignedUrls(Collection<String> keys, Date expiration)
+            throws SCSClientException {
+        if (expiration == null) throw new IllegalArgumentException("The expiration must be specified");
+
+        AWSCredentials credentials = credentialsProvider.getCredentials();
+        String accessKeyId;
+        String secretKey;
+        String token = null;
+        synchronized (credentials) {
+            accessKeyId = credentials.getAWSAccessKeyId();
+            secretKey = credentials.getAWSSecretKey();
+            if (credentials instanceof AWSSessionCredentials) {
+                token = ((AWSSessionCredentials) credentials).getSessionToken();
+            }
+        }
+        if (secretKey != null) secretKey = secretKey.trim();
+        if (accessKeyId != null) accessKeyId = accessKeyId.trim();
+        if (token != null) token = token.trim();
+        boolean sessionCredentials = credentials instanceof AWSSessionCredentials;
+
+        String expires = Long.toString(expiration.getTime() / 1000L);
+
+        /*
+         * The string to sign of a pre-signed request has no headers, so all
+         * of it but the resource path of the key is the same for every key.
+         */
+        StringBuilder stringToSign = new StringBuilder();
+        stringToSign.append(httpVerb).append("\n\n\n").append(expires).append('\n');
+        if (sessionCredentials) {
+            stringToSign.append(Headers.SECURITY_TOKEN).append(':').append(token).append('\n');
+        }
+        stringToSign.append(resourcePathPrefix);
+        byte[] stringToSignPrefix = stringToSign.toString().getBytes(UTF8);
+
+        Mac mac;
+        try {
+            mac = AbstractAWSSigner.getMac(secretKey.getBytes(UTF8), SigningAlgorithm.HmacSHA1);
+        } catch (Exception e) {
+            throw new SCSClientException("Unable to calculate a request signature: " + e.getMessage(), e);
+        }
+
+        /*
+         * The query string parameters come in the order S3QueryStringSigner
+         * adds them to a request, the signature last.
+         */
+        StringBuilder query = new StringBuilder("?");
+        if (sessionCredentials) {
+            query.append(Headers.SECURITY_TOKEN).append('=')
+                    .append(HttpUtils.urlEncode(token, false)).append('&');
+        }
+        query.append("KID=").append(HttpUtils.urlEncode("sina," + accessKeyId, false))
+                .append("&Expires=").append(expires)
+                .append("&ssig=");
+
+        List<String> urls = new ArrayList<String>(keys.size());
+        StringBuilder encodedKey = new StringBuilder();
+        StringBuilder resourcePath = new StringBuilder();
+        byte[] resourcePathBytes = new byte[0];
+        for (String key : keys) {
+            if (key == null) throw new IllegalArgumentException("Keys must not be null");
+
+            encodedKey.setLength(0);
+            appendEncodedPath(encodedKey, key);
+            resourcePath.setLength(0);
+            appendEscapingSlashes(resourcePath, encodedKey, 0);
+
+            // The resource path is all ASCII after encoding
+            int length = resourcePath.length();
+            if (resourcePathBytes.length < length) resourcePathBytes = new byte[length * 2];
+            for (int i = 0; i < length; i++) {
+                resourcePathBytes[i] = (byte) resourcePath.charAt(i);
+            }
+            mac.update(stringToSignPrefix);
+            mac.update(resourcePathBytes, 0, length);
+            String signature = new String(Base64.encodeBase64(mac.doFinal())).substring(5, 15);
+
+            StringBuilder url = new StringBuilder(urlPrefix.length() + resourcePath.length()
+                    + query.length() + signature.length());
+            url.append(urlPrefix);
+            if (dropLeadingSlash && encodedKey.length() > 0 && encodedKey.charAt(0) == '/') {
+                appendEscapingSlashes(url, encodedKey, 1);
+            } else {
+                url.append(resourcePath);
+            }
+            url.append(query).append(signature);
+            urls.add(url.toString());
+        }
+        return urls;
+    }
+
+    /**
+     * Appends the given path URL encoded, the way
+     * <code>HttpUtils.urlEncode(path, true)</code> encodes it: all but
+     * unreserved characters and slashes are percent encoded as UTF-8.
+     */
+    private static void appendEncodedPath(StringBuilder buffer, String path) {
+        for (byte b : path.getBytes(UTF8)) {
+            int c = b & 0xff;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '.' || c == '_' || c == '~' || c == '/') {
+                buffer.append((char) c);
+            } else {
+                buffer.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+            }
+        }
+    }
+
+    /**
+     * Appends the given path from the given index, with each slash that
+     * follows a slash escaped, as the client escapes consecutive slashes of
+     * resource paths; the character before the index is taken to be a slash.
+     */
+    private static void appendEscapingSlashes(StringBuilder buffer, CharSequence path, int start) {
+        char previous = '/';
+        for (int i = start; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && previous == '/') buffer.append("%2F");
+            else buffer.append(c);
+            previous = c;
+        }
+    }
+
+    private static String escapeSlashes(String path) {
+        StringBuilder buffer = new StringBuilder(path.length());
+        buffer.append(path.charAt(0));
+        appendEscapingSlashes(buffer, path, 1);
+        return buffer.toString();
+    }
+}
@@ -22,13 +22,45 @@ public class S3ClientOptions {
     /** The default setting for use of path-style access */
     public static final boolean DEFAULT_PATH_STYLE_ACCESS = true;//false;
 
+    /**
+     * How the MD5 hash of a file is obtained when the file is uploaded with
+     * {@link SCS#putObject(com.sina.cloudstorage.services.scs.model.PutObjectRequest)}.
+     */
+    public enum FileMd5Mode {
+        /**
+         * The file is read once to compute the hash, which is sent as the
+         * Content-MD5 header, and again to send its content.
+         */
+        PRECOMPUTE,
+
+        /**
+         * The hash is computed like {@link #PRECOMPUTE}, but by mapping the
+         * file into memory instead of reading it through a stream.
+         */
+        MEMORY_MAPPED,
+
+        /**
+         * The file is read only once. The hash is computed as the content is
+         * sent, no Content-MD5 header is sent, and the hash is checked
+         * against the ETag returned for the new object.
+         */
+        SINGLE_PASS
+    }
+
+    /** The default way the MD5 hash of an uploaded file is obtained */
+    public static final FileMd5Mode DEFAULT_FILE_MD5_MODE = FileMd5Mode.PRECOMPUTE;
+
     /** Flag for use of path-style access */
     private boolean pathStyleAccess = DEFAULT_PATH_STYLE_ACCESS;
 
+    /** How the MD5 hash of an uploaded file is obtained */
+    private FileMd5Mode fileMd5Mode = DEFAULT_FILE_MD5_MODE;
+
     public S3ClientOptions() {}
 
     public S3ClientOptions( S3ClientOptions other ) {
         this.pathStyleAccess = other.pathStyleAccess;
+        this.fileMd5Mode = other.fileMd5Mode;
     }
 
     /**
@@ -103,4 +135,44 @@ public class S3ClientOptions {
       return this;
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns how the MD5 hash of a file is obtained when the file is
+     * uploaded. Defaults to {@link FileMd5Mode#PRECOMPUTE}.
+     *
+     * @return The way the MD5 hash of an uploaded file is obtained.
+     */
+    public FileMd5Mode getFileMd5Mode() {
+        return fileMd5Mode;
+    }
+
+    /**
+     * Sets how the MD5 hash of a file is obtained when the file is uploaded.
+     * {@link FileMd5Mode#SINGLE_PASS} halves the disk reads of an upload and
+     * starts sending at once, at the cost of the service not checking the
+     * content against a Content-MD5 header; the client still checks the
+     * ETag of the new object. {@link FileMd5Mode#MEMORY_MAPPED} keeps the
+     * Content-MD5 header but hashes the file through a memory mapping.
+     *
+     * @param fileMd5Mode
+     *            The way the MD5 hash of an uploaded file is obtained.
+     */
+    public void setFileMd5Mode(FileMd5Mode fileMd5Mode) {
+        this.fileMd5Mode = fileMd5Mode;
+    }
+
+    /**
+     * Sets how the MD5 hash of a file is obtained when the file is uploaded.
+     *
+     * @param fileMd5Mode
+     *            The way the MD5 hash of an uploaded file is obtained.
+     *
+     * @return The updated S3ClientOptions object with the new setting.
+     *
+     * @see #setFileMd5Mode(FileMd5Mode)
+     */
+    public S3ClientOptions withFileMd5Mode(FileMd5Mode fileMd5Mode) {
+        setFileMd5Mode(fileMd5Mode);
+        return this;
+    }
+
+}
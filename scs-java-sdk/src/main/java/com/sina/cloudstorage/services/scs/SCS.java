@@ -33,6 +33,8 @@ import com.sina.cloudstorage.services.scs.model.CopyObjectRequest;
 import com.sina.cloudstorage.services.scs.model.CreateBucketRequest;
 import com.sina.cloudstorage.services.scs.model.DeleteBucketRequest;
 import com.sina.cloudstorage.services.scs.model.DeleteObjectRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsResult;
 import com.sina.cloudstorage.services.scs.model.GeneratePresignedUrlRequest;
 import com.sina.cloudstorage.services.scs.model.GetBucketAclRequest;
 import com.sina.cloudstorage.services.scs.model.GetObjectMetadataRequest;
@@ -50,6 +52,7 @@ import com.sina.cloudstorage.services.scs.model.Permission;
 import com.sina.cloudstorage.services.scs.model.PutObjectRequest;
 import com.sina.cloudstorage.services.scs.model.PutObjectResult;
 import com.sina.cloudstorage.services.scs.model.S3Object;
+import com.sina.cloudstorage.services.scs.model.S3ObjectSummary;
 import com.sina.cloudstorage.services.scs.model.SetBucketAclRequest;
 import com.sina.cloudstorage.services.scs.model.UploadPartRequest;
 import com.sina.cloudstorage.services.scs.model.UploadPartResult;
@@ -305,6 +308,55 @@ public interface SCS {
     public ObjectListing listNextBatchOfObjects(ObjectListing previousObjectListing)
             throws SCSClientException, SCSServiceException;
 
+    /**
+     * <p>
+     * Returns an iterable over the summaries of all the objects selected by
+     * the given request, across as many pages as needed. Pages are requested
+     * lazily as the iteration advances, so callers don't need to loop over
+     * {@link #listNextBatchOfObjects(ObjectListing)} themselves and memory use
+     * doesn't grow with the size of the bucket.
+     * </p>
+     * <p>
+     * When <code>prefetchNextBatch</code> is true, the next page is requested
+     * on a background thread while the caller consumes the current one.
+     * </p>
+     * <p>
+     * Errors are thrown from the iterator's <code>hasNext</code> and
+     * <code>next</code> methods as they occur.
+     * </p>
+     *
+     * @param listObjectsRequest
+     *            The request object containing all options for listing the
+     *            objects in a specified bucket. Its marker, if any, is where
+     *            the iteration starts.
+     * @param prefetchNextBatch
+     *            Whether to request the next page in the background.
+     *
+     * @return An iterable over the object summaries.
+     *
+     * @see SCS#listObjects(ListObjectsRequest)
+     * @see com.sina.cloudstorage.services.scs.iterable.S3Objects
+     */
+    public Iterable<S3ObjectSummary> iterateObjects(ListObjectsRequest listObjectsRequest,
+            boolean prefetchNextBatch);
+
+    /**
+     * Returns an iterable over the summaries of all the objects in the bucket
+     * whose keys start with the given prefix. Pages are requested lazily and
+     * the next page is prefetched in the background.
+     *
+     * @param bucketName
+     *            The name of the bucket to list.
+     * @param prefix
+     *            An optional parameter restricting the response to keys
+     *            beginning with the specified prefix.
+     *
+     * @return An iterable over the object summaries.
+     *
+     * @see SCS#iterateObjects(ListObjectsRequest, boolean)
+     */
+    public Iterable<S3ObjectSummary> iterateObjects(String bucketName, String prefix);
+
     /**
      * Checks if the specified bucket exists. SCS buckets are named in a
      * global namespace; use this method to determine if a specified
@@ -1599,6 +1651,97 @@ public interface SCS {
     public void deleteObject(DeleteObjectRequest deleteObjectRequest)
         throws SCSClientException, SCSServiceException;
 
+    /**
+     * <p>
+     * Deletes the objects with the specified keys in the specified bucket,
+     * with several delete requests in flight at once.
+     * </p>
+     * <p>
+     * Objects that can't be deleted don't stop the others from being
+     * deleted; they are reported in the returned result.
+     * </p>
+     *
+     * @param bucketName
+     *            The name of the SCS bucket containing the objects to
+     *            delete.
+     * @param keys
+     *            The keys of the objects to delete.
+     *
+     * @return The number of objects deleted, and the objects that couldn't
+     *         be.
+     *
+     * @throws SCSClientException
+     *             If any errors are encountered in the client while making the
+     *             requests.
+     *
+     * @see SCS#deleteObjects(DeleteObjectsRequest)
+     */
+    public DeleteObjectsResult deleteObjects(String bucketName, Iterable<String> keys)
+        throws SCSClientException;
+
+    /**
+     * <p>
+     * Deletes all the objects whose keys start with the specified prefix in
+     * the specified bucket. The objects are listed while the ones already
+     * listed are being deleted, with several delete requests in flight at
+     * once.
+     * </p>
+     * <p>
+     * Objects that can't be deleted don't stop the others from being
+     * deleted; they are reported in the returned result.
+     * </p>
+     *
+     * @param bucketName
+     *            The name of the SCS bucket containing the objects to
+     *            delete.
+     * @param prefix
+     *            The prefix of the keys of the objects to delete. An empty
+     *            prefix deletes all the objects of the bucket.
+     *
+     * @return The number of objects deleted, and the objects that couldn't
+     *         be.
+     *
+     * @throws SCSClientException
+     *             If any errors are encountered in the client while making the
+     *             requests.
+     * @throws SCSServiceException
+     *             If the objects couldn't be listed.
+     *
+     * @see SCS#deleteObjects(DeleteObjectsRequest)
+     */
+    public DeleteObjectsResult deleteObjectsByPrefix(String bucketName, String prefix)
+        throws SCSClientException, SCSServiceException;
+
+    /**
+     * <p>
+     * Deletes the objects selected by the specified request, either by key
+     * or by prefix, with up to the maximum concurrency of the request in
+     * flight at once.
+     * </p>
+     * <p>
+     * While the service throttles the deletes, fewer are kept in flight and
+     * the throttled ones are retried after a pause. The outcome of each
+     * object is passed to the listener of the request, if any, as soon as it
+     * is known. Objects that can't be deleted don't stop the others from
+     * being deleted; they are reported in the returned result.
+     * </p>
+     *
+     * @param deleteObjectsRequest
+     *            The request object containing all options for deleting
+     *            SCS objects.
+     *
+     * @return The number of objects deleted, and the objects that couldn't
+     *         be.
+     *
+     * @throws SCSClientException
+     *             If any errors are encountered in the client while making the
+     *             requests.
+     * @throws SCSServiceException
+     *             If the objects couldn't be listed.
+     */
+    public DeleteObjectsResult deleteObjects(DeleteObjectsRequest deleteObjectsRequest)
+        throws SCSClientException, SCSServiceException;
+
     /**
      * <p>
      * Returns a pre-signed URL for accessing an SCS resource.
@@ -1742,6 +1885,35 @@ public interface SCS {
     public URL generatePresignedUrl(GeneratePresignedUrlRequest generatePresignedUrlRequest)
             throws SCSClientException;
 
+    /**
+     * <p>
+     * Returns a generator of pre-signed URLs for the objects of a bucket, for
+     * applications that sign many URLs, such as the front end of a CDN.
+     * </p>
+     * <p>
+     * The generator works out the endpoint and bucket part of the URLs once,
+     * and signs whole batches of keys with the signing key initialized once,
+     * and returns the same URLs as
+     * {@link #generatePresignedUrl(String, String, Date, HttpMethod, boolean)},
+     * in their string form. It takes the credentials of this client at the
+     * time of each batch. The generator doesn't follow later changes to the
+     * endpoint or options of this client.
+     * </p>
+     *
+     * @param bucketName
+     *            The name of the bucket containing the objects.
+     * @param method
+     *            The HTTP method verb to use for the URLs.
+     * @param bucketNameAsDomain
+     *            True if the bucket name is the domain of the URLs.
+     *
+     * @return A generator of pre-signed URLs for the objects of the bucket.
+     *
+     * @see SCS#generatePresignedUrl(String, String, Date, HttpMethod, boolean)
+     */
+    public PresignedUrlGenerator createPresignedUrlGenerator(String bucketName, HttpMethod method,
+            boolean bucketNameAsDomain);
+
     /**
      * Initiates a multipart upload and returns an InitiateMultipartUploadResult
      * 
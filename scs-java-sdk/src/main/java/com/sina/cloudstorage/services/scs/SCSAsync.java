@@ -0,0 +1,551 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import com.sina.cloudstorage.handlers.AsyncHandler;
+import com.sina.cloudstorage.services.scs.model.AccessControlList;
+import com.sina.cloudstorage.services.scs.model.Bucket;
+import com.sina.cloudstorage.services.scs.model.CompleteMultipartUploadRequest;
+import com.sina.cloudstorage.services.scs.model.CopyObjectRequest;
+import com.sina.cloudstorage.services.scs.model.CreateBucketRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteBucketRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsResult;
+import com.sina.cloudstorage.services.scs.model.GetBucketAclRequest;
+import com.sina.cloudstorage.services.scs.model.GetObjectMetadataRequest;
+import com.sina.cloudstorage.services.scs.model.GetObjectRequest;
+import com.sina.cloudstorage.services.scs.model.InitiateMultipartUploadRequest;
+import com.sina.cloudstorage.services.scs.model.InitiateMultipartUploadResult;
+import com.sina.cloudstorage.services.scs.model.ListBucketsRequest;
+import com.sina.cloudstorage.services.scs.model.ListObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.ListPartsRequest;
+import com.sina.cloudstorage.services.scs.model.ObjectInfo;
+import com.sina.cloudstorage.services.scs.model.ObjectListing;
+import com.sina.cloudstorage.services.scs.model.ObjectMetadata;
+import com.sina.cloudstorage.services.scs.model.PartListing;
+import com.sina.cloudstorage.services.scs.model.PutObjectRequest;
+import com.sina.cloudstorage.services.scs.model.PutObjectResult;
+import com.sina.cloudstorage.services.scs.model.S3Object;
+import com.sina.cloudstorage.services.scs.model.SetBucketAclRequest;
+import com.sina.cloudstorage.services.scs.model.SetObjectMetadataRequest;
+import com.sina.cloudstorage.services.scs.model.UploadPartRequest;
+import com.sina.cloudstorage.services.scs.model.UploadPartResult;
+
+/**
+ * Interface for running SCS requests in the background. Each asynchronous
+ * method returns a Java Future object, and users are also allowed to provide
+ * a callback handler, notified when the request completes. Implementations
+ * such as {@link SCSAsyncClient} run the blocking requests of {@link SCS} on
+ * an executor, one thread per request in flight.
+ * <p>
+ * The asynchronous methods execute the same requests as the synchronous
+ * methods of {@link SCS} of the same name, and fail with the same
+ * exceptions, thrown by the returned future wrapped in an
+ * {@link java.util.concurrent.ExecutionException}.
+ */
+public interface SCSAsync extends SCS {
+
+    /**
+     * Asynchronously lists the buckets of the account.
+     *
+     * @param listBucketsRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<List<Bucket>> listBucketsAsync(ListBucketsRequest listBucketsRequest);
+
+    /**
+     * Asynchronously lists the buckets of the account. The handler is notified
+     * when the request completes.
+     *
+     * @param listBucketsRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<List<Bucket>> listBucketsAsync(ListBucketsRequest listBucketsRequest,
+            AsyncHandler<ListBucketsRequest, List<Bucket>> asyncHandler);
+
+    /**
+     * Asynchronously creates a bucket.
+     *
+     * @param createBucketRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<Bucket> createBucketAsync(CreateBucketRequest createBucketRequest);
+
+    /**
+     * Asynchronously creates a bucket. The handler is notified
+     * when the request completes.
+     *
+     * @param createBucketRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<Bucket> createBucketAsync(CreateBucketRequest createBucketRequest,
+            AsyncHandler<CreateBucketRequest, Bucket> asyncHandler);
+
+    /**
+     * Asynchronously deletes a bucket, which must be empty.
+     *
+     * @param deleteBucketRequest
+     *            The request to execute.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> deleteBucketAsync(DeleteBucketRequest deleteBucketRequest);
+
+    /**
+     * Asynchronously deletes a bucket, which must be empty. The handler is notified
+     * when the request completes.
+     *
+     * @param deleteBucketRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> deleteBucketAsync(DeleteBucketRequest deleteBucketRequest,
+            AsyncHandler<DeleteBucketRequest, Void> asyncHandler);
+
+    /**
+     * Asynchronously gets the access control list of a bucket.
+     *
+     * @param getBucketAclRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<AccessControlList> getBucketAclAsync(GetBucketAclRequest getBucketAclRequest);
+
+    /**
+     * Asynchronously gets the access control list of a bucket. The handler is notified
+     * when the request completes.
+     *
+     * @param getBucketAclRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<AccessControlList> getBucketAclAsync(GetBucketAclRequest getBucketAclRequest,
+            AsyncHandler<GetBucketAclRequest, AccessControlList> asyncHandler);
+
+    /**
+     * Asynchronously sets the access control list of a bucket.
+     *
+     * @param setBucketAclRequest
+     *            The request to execute.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> setBucketAclAsync(SetBucketAclRequest setBucketAclRequest);
+
+    /**
+     * Asynchronously sets the access control list of a bucket. The handler is notified
+     * when the request completes.
+     *
+     * @param setBucketAclRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> setBucketAclAsync(SetBucketAclRequest setBucketAclRequest,
+            AsyncHandler<SetBucketAclRequest, Void> asyncHandler);
+
+    /**
+     * Asynchronously lists the objects of a bucket.
+     *
+     * @param listObjectsRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest listObjectsRequest);
+
+    /**
+     * Asynchronously lists the objects of a bucket. The handler is notified
+     * when the request completes.
+     *
+     * @param listObjectsRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest listObjectsRequest,
+            AsyncHandler<ListObjectsRequest, ObjectListing> asyncHandler);
+
+    /**
+     * Asynchronously gets the metadata of an object.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectMetadata> getObjectMetadataAsync(GetObjectMetadataRequest request);
+
+    /**
+     * Asynchronously gets the metadata of an object. The handler is notified
+     * when the request completes.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectMetadata> getObjectMetadataAsync(GetObjectMetadataRequest request,
+            AsyncHandler<GetObjectMetadataRequest, ObjectMetadata> asyncHandler);
+
+    /**
+     * Asynchronously gets the information of an object, as returned by
+     * {@link SCS#getObjectInfo(String, String)}.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectInfo> getObjectInfoAsync(GetObjectMetadataRequest request);
+
+    /**
+     * Asynchronously gets the information of an object, as returned by
+     * {@link SCS#getObjectInfo(String, String)}. The handler is notified
+     * when the request completes.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectInfo> getObjectInfoAsync(GetObjectMetadataRequest request,
+            AsyncHandler<GetObjectMetadataRequest, ObjectInfo> asyncHandler);
+
+    /**
+     * Asynchronously replaces the metadata of an object.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> setObjectMetadataAsync(SetObjectMetadataRequest request);
+
+    /**
+     * Asynchronously replaces the metadata of an object. The handler is notified
+     * when the request completes.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> setObjectMetadataAsync(SetObjectMetadataRequest request,
+            AsyncHandler<SetObjectMetadataRequest, Void> asyncHandler);
+
+    /**
+     * Asynchronously gets an object. The content of the returned object must be
+     * read and closed by the caller, as with
+     * {@link SCS#getObject(GetObjectRequest)}.
+     *
+     * @param getObjectRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<S3Object> getObjectAsync(GetObjectRequest getObjectRequest);
+
+    /**
+     * Asynchronously gets an object. The content of the returned object must be
+     * read and closed by the caller, as with
+     * {@link SCS#getObject(GetObjectRequest)}. The handler is notified
+     * when the request completes.
+     *
+     * @param getObjectRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<S3Object> getObjectAsync(GetObjectRequest getObjectRequest,
+            AsyncHandler<GetObjectRequest, S3Object> asyncHandler);
+
+    /**
+     * Asynchronously downloads an object to a file.
+     *
+     * @param getObjectRequest
+     *            The request to execute.
+     * @param destinationFile
+     *            The file to write the content of the object to.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectMetadata> getObjectAsync(GetObjectRequest getObjectRequest, File destinationFile);
+
+    /**
+     * Asynchronously downloads an object to a file. The handler is notified
+     * when the request completes.
+     *
+     * @param getObjectRequest
+     *            The request to execute.
+     * @param destinationFile
+     *            The file to write the content of the object to.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectMetadata> getObjectAsync(GetObjectRequest getObjectRequest, File destinationFile,
+            AsyncHandler<GetObjectRequest, ObjectMetadata> asyncHandler);
+
+    /**
+     * Asynchronously uploads an object.
+     *
+     * @param putObjectRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest putObjectRequest);
+
+    /**
+     * Asynchronously uploads an object. The handler is notified
+     * when the request completes.
+     *
+     * @param putObjectRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest putObjectRequest,
+            AsyncHandler<PutObjectRequest, PutObjectResult> asyncHandler);
+
+    /**
+     * Asynchronously copies an object.
+     *
+     * @param copyObjectRequest
+     *            The request to execute.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> copyObjectAsync(CopyObjectRequest copyObjectRequest);
+
+    /**
+     * Asynchronously copies an object. The handler is notified
+     * when the request completes.
+     *
+     * @param copyObjectRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> copyObjectAsync(CopyObjectRequest copyObjectRequest,
+            AsyncHandler<CopyObjectRequest, Void> asyncHandler);
+
+    /**
+     * Asynchronously deletes an object.
+     *
+     * @param deleteObjectRequest
+     *            The request to execute.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> deleteObjectAsync(DeleteObjectRequest deleteObjectRequest);
+
+    /**
+     * Asynchronously deletes an object. The handler is notified
+     * when the request completes.
+     *
+     * @param deleteObjectRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the completion of the request.
+     */
+    public Future<Void> deleteObjectAsync(DeleteObjectRequest deleteObjectRequest,
+            AsyncHandler<DeleteObjectRequest, Void> asyncHandler);
+
+    /**
+     * Asynchronously deletes many objects, as
+     * {@link SCS#deleteObjects(DeleteObjectsRequest)} does.
+     *
+     * @param deleteObjectsRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<DeleteObjectsResult> deleteObjectsAsync(DeleteObjectsRequest deleteObjectsRequest);
+
+    /**
+     * Asynchronously deletes many objects, as
+     * {@link SCS#deleteObjects(DeleteObjectsRequest)} does. The handler is notified
+     * when the request completes.
+     *
+     * @param deleteObjectsRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<DeleteObjectsResult> deleteObjectsAsync(DeleteObjectsRequest deleteObjectsRequest,
+            AsyncHandler<DeleteObjectsRequest, DeleteObjectsResult> asyncHandler);
+
+    /**
+     * Asynchronously initiates a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<InitiateMultipartUploadResult> initiateMultipartUploadAsync(InitiateMultipartUploadRequest request);
+
+    /**
+     * Asynchronously initiates a multipart upload. The handler is notified
+     * when the request completes.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<InitiateMultipartUploadResult> initiateMultipartUploadAsync(InitiateMultipartUploadRequest request,
+            AsyncHandler<InitiateMultipartUploadRequest, InitiateMultipartUploadResult> asyncHandler);
+
+    /**
+     * Asynchronously uploads a part of a multipart upload.
+     *
+     * @param uploadPartRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<UploadPartResult> uploadPartAsync(UploadPartRequest uploadPartRequest);
+
+    /**
+     * Asynchronously uploads a part of a multipart upload. The handler is notified
+     * when the request completes.
+     *
+     * @param uploadPartRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<UploadPartResult> uploadPartAsync(UploadPartRequest uploadPartRequest,
+            AsyncHandler<UploadPartRequest, UploadPartResult> asyncHandler);
+
+    /**
+     * Asynchronously lists the parts uploaded for a multipart upload.
+     *
+     * @param listPartsRequest
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<PartListing> listPartsAsync(ListPartsRequest listPartsRequest);
+
+    /**
+     * Asynchronously lists the parts uploaded for a multipart upload. The handler is notified
+     * when the request completes.
+     *
+     * @param listPartsRequest
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<PartListing> listPartsAsync(ListPartsRequest listPartsRequest,
+            AsyncHandler<ListPartsRequest, PartListing> asyncHandler);
+
+    /**
+     * Asynchronously completes a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectMetadata> completeMultipartUploadAsync(CompleteMultipartUploadRequest request);
+
+    /**
+     * Asynchronously completes a multipart upload. The handler is notified
+     * when the request completes.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified of the success or failure of the
+     *            request.
+     *
+     * @return A future for the result of the request.
+     */
+    public Future<ObjectMetadata> completeMultipartUploadAsync(CompleteMultipartUploadRequest request,
+            AsyncHandler<CompleteMultipartUploadRequest, ObjectMetadata> asyncHandler);
+}
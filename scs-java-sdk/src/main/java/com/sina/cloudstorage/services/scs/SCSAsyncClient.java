@@ -0,0 +1,709 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sina.cloudstorage.ClientConfiguration;
+import com.sina.cloudstorage.auth.AWSCredentials;
+import com.sina.cloudstorage.auth.AWSCredentialsProvider;
+import com.sina.cloudstorage.handlers.AsyncHandler;
+import com.sina.cloudstorage.services.scs.model.AccessControlList;
+import com.sina.cloudstorage.services.scs.model.Bucket;
+import com.sina.cloudstorage.services.scs.model.CompleteMultipartUploadRequest;
+import com.sina.cloudstorage.services.scs.model.CopyObjectRequest;
+import com.sina.cloudstorage.services.scs.model.CreateBucketRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteBucketRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsResult;
+import com.sina.cloudstorage.services.scs.model.GetBucketAclRequest;
+import com.sina.cloudstorage.services.scs.model.GetObjectMetadataRequest;
+import com.sina.cloudstorage.services.scs.model.GetObjectRequest;
+import com.sina.cloudstorage.services.scs.model.InitiateMultipartUploadRequest;
+import com.sina.cloudstorage.services.scs.model.InitiateMultipartUploadResult;
+import com.sina.cloudstorage.services.scs.model.ListBucketsRequest;
+import com.sina.cloudstorage.services.scs.model.ListObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.ListPartsRequest;
+import com.sina.cloudstorage.services.scs.model.ObjectInfo;
+import com.sina.cloudstorage.services.scs.model.ObjectListing;
+import com.sina.cloudstorage.services.scs.model.ObjectMetadata;
+import com.sina.cloudstorage.services.scs.model.PartListing;
+import com.sina.cloudstorage.services.scs.model.PutObjectRequest;
+import com.sina.cloudstorage.services.scs.model.PutObjectResult;
+import com.sina.cloudstorage.services.scs.model.S3Object;
+import com.sina.cloudstorage.services.scs.model.SetBucketAclRequest;
+import com.sina.cloudstorage.services.scs.model.SetObjectMetadataRequest;
+import com.sina.cloudstorage.services.scs.model.UploadPartRequest;
+import com.sina.cloudstorage.services.scs.model.UploadPartResult;
+
+/**
+ * Convenience client that runs the requests of {@link SCSClient} on an
+ * executor service, with the same signing, retries and response handling;
+ * each method returns a future and optionally notifies a callback handler.
+ * <p>
+ * This is not non-blocking I/O. Every request occupies one thread of the
+ * executor, blocked on its connection, from the time it starts until its
+ * response has been read, so the number of requests in flight is bounded by
+ * the threads of the executor. The client saves callers from managing those
+ * threads, not the threads themselves.
+ * <p>
+ * The default executor has as many threads as the client configuration
+ * allows connections, since requests beyond that would only wait for a
+ * connection. A custom executor can be passed to the constructors, for
+ * example to share threads between clients. The executor is shut down with
+ * the client.
+ */
+public class SCSAsyncClient extends SCSClient implements SCSAsync {
+
+    private ExecutorService executorService;
+
+    /**
+     * Constructs a new asynchronous client using the credentials provider
+     * chain of {@link SCSClient#SCSClient()}.
+     */
+    public SCSAsyncClient() {
+        super();
+        this.executorService = createExecutorService(new ClientConfiguration());
+    }
+
+    /**
+     * Constructs a new asynchronous client using the credentials provider
+     * chain of {@link SCSClient#SCSClient(ClientConfiguration)}.
+     *
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     */
+    public SCSAsyncClient(ClientConfiguration clientConfiguration) {
+        super(clientConfiguration);
+        this.executorService = createExecutorService(clientConfiguration);
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials.
+     *
+     * @param awsCredentials
+     *            The credentials to use when making requests to SCS with this
+     *            client.
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials) {
+        this(awsCredentials, new ClientConfiguration());
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials
+     * and client configuration.
+     *
+     * @param awsCredentials
+     *            The credentials to use when making requests to SCS with this
+     *            client.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials, ClientConfiguration clientConfiguration) {
+        this(awsCredentials, clientConfiguration, createExecutorService(clientConfiguration));
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials,
+     * client configuration and executor service.
+     *
+     * @param awsCredentials
+     *            The credentials to use when making requests to SCS with this
+     *            client.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     * @param executorService
+     *            The executor service by which all asynchronous requests will
+     *            be executed.
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials,
+            ClientConfiguration clientConfiguration, ExecutorService executorService) {
+        super(awsCredentials, clientConfiguration);
+        this.executorService = executorService;
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials
+     * provider.
+     *
+     * @param credentialsProvider
+     *            The credentials provider which will provide credentials to
+     *            authenticate requests.
+     */
+    public SCSAsyncClient(AWSCredentialsProvider credentialsProvider) {
+        this(credentialsProvider, new ClientConfiguration());
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials
+     * provider and client configuration.
+     *
+     * @param credentialsProvider
+     *            The credentials provider which will provide credentials to
+     *            authenticate requests.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     */
+    public SCSAsyncClient(AWSCredentialsProvider credentialsProvider,
+            ClientConfiguration clientConfiguration) {
+        this(credentialsProvider, clientConfiguration, createExecutorService(clientConfiguration));
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials
+     * provider, client configuration and executor service.
+     *
+     * @param credentialsProvider
+     *            The credentials provider which will provide credentials to
+     *            authenticate requests.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     * @param executorService
+     *            The executor service by which all asynchronous requests will
+     *            be executed.
+     */
+    public SCSAsyncClient(AWSCredentialsProvider credentialsProvider,
+            ClientConfiguration clientConfiguration, ExecutorService executorService) {
+        super(credentialsProvider, clientConfiguration);
+        this.executorService = executorService;
+    }
+
+    /**
+     * Returns the executor service used by this client to execute async
+     * requests.
+     *
+     * @return The executor service used by this client to execute async
+     *         requests.
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Shuts down the client, releasing all managed resources. This includes
+     * forcibly terminating all pending asynchronous service calls. Clients who
+     * wish to give pending asynchronous service calls time to complete should
+     * call getExecutorService().shutdown() prior to calling this method.
+     */
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Creates the default executor: one daemon thread per connection, each
+     * blocked for the duration of the request it runs.
+     */
+    private static ExecutorService createExecutorService(ClientConfiguration clientConfiguration) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, clientConfiguration.getMaxConnections()),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "scs-java-sdk-async-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    public Future<List<Bucket>> listBucketsAsync(final ListBucketsRequest listBucketsRequest) {
+        return executorService.submit(new Callable<List<Bucket>>() {
+            public List<Bucket> call() throws Exception {
+                return listBuckets(listBucketsRequest);
+            }
+        });
+    }
+
+    public Future<List<Bucket>> listBucketsAsync(final ListBucketsRequest listBucketsRequest,
+            final AsyncHandler<ListBucketsRequest, List<Bucket>> asyncHandler) {
+        return executorService.submit(new Callable<List<Bucket>>() {
+            public List<Bucket> call() throws Exception {
+                List<Bucket> result;
+                try {
+                    result = listBuckets(listBucketsRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(listBucketsRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<Bucket> createBucketAsync(final CreateBucketRequest createBucketRequest) {
+        return executorService.submit(new Callable<Bucket>() {
+            public Bucket call() throws Exception {
+                return createBucket(createBucketRequest);
+            }
+        });
+    }
+
+    public Future<Bucket> createBucketAsync(final CreateBucketRequest createBucketRequest,
+            final AsyncHandler<CreateBucketRequest, Bucket> asyncHandler) {
+        return executorService.submit(new Callable<Bucket>() {
+            public Bucket call() throws Exception {
+                Bucket result;
+                try {
+                    result = createBucket(createBucketRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(createBucketRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<Void> deleteBucketAsync(final DeleteBucketRequest deleteBucketRequest) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                deleteBucket(deleteBucketRequest);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> deleteBucketAsync(final DeleteBucketRequest deleteBucketRequest,
+            final AsyncHandler<DeleteBucketRequest, Void> asyncHandler) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                try {
+                    deleteBucket(deleteBucketRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(deleteBucketRequest, null);
+                return null;
+            }
+        });
+    }
+
+    public Future<AccessControlList> getBucketAclAsync(final GetBucketAclRequest getBucketAclRequest) {
+        return executorService.submit(new Callable<AccessControlList>() {
+            public AccessControlList call() throws Exception {
+                return getBucketAcl(getBucketAclRequest);
+            }
+        });
+    }
+
+    public Future<AccessControlList> getBucketAclAsync(final GetBucketAclRequest getBucketAclRequest,
+            final AsyncHandler<GetBucketAclRequest, AccessControlList> asyncHandler) {
+        return executorService.submit(new Callable<AccessControlList>() {
+            public AccessControlList call() throws Exception {
+                AccessControlList result;
+                try {
+                    result = getBucketAcl(getBucketAclRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(getBucketAclRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<Void> setBucketAclAsync(final SetBucketAclRequest setBucketAclRequest) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                setBucketAcl(setBucketAclRequest);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> setBucketAclAsync(final SetBucketAclRequest setBucketAclRequest,
+            final AsyncHandler<SetBucketAclRequest, Void> asyncHandler) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                try {
+                    setBucketAcl(setBucketAclRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(setBucketAclRequest, null);
+                return null;
+            }
+        });
+    }
+
+    public Future<ObjectListing> listObjectsAsync(final ListObjectsRequest listObjectsRequest) {
+        return executorService.submit(new Callable<ObjectListing>() {
+            public ObjectListing call() throws Exception {
+                return listObjects(listObjectsRequest);
+            }
+        });
+    }
+
+    public Future<ObjectListing> listObjectsAsync(final ListObjectsRequest listObjectsRequest,
+            final AsyncHandler<ListObjectsRequest, ObjectListing> asyncHandler) {
+        return executorService.submit(new Callable<ObjectListing>() {
+            public ObjectListing call() throws Exception {
+                ObjectListing result;
+                try {
+                    result = listObjects(listObjectsRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(listObjectsRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<ObjectMetadata> getObjectMetadataAsync(final GetObjectMetadataRequest request) {
+        return executorService.submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                return getObjectMetadata(request);
+            }
+        });
+    }
+
+    public Future<ObjectMetadata> getObjectMetadataAsync(final GetObjectMetadataRequest request,
+            final AsyncHandler<GetObjectMetadataRequest, ObjectMetadata> asyncHandler) {
+        return executorService.submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                ObjectMetadata result;
+                try {
+                    result = getObjectMetadata(request);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(request, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<ObjectInfo> getObjectInfoAsync(final GetObjectMetadataRequest request) {
+        return executorService.submit(new Callable<ObjectInfo>() {
+            public ObjectInfo call() throws Exception {
+                return getObjectInfo(request.getBucketName(), request.getKey());
+            }
+        });
+    }
+
+    public Future<ObjectInfo> getObjectInfoAsync(final GetObjectMetadataRequest request,
+            final AsyncHandler<GetObjectMetadataRequest, ObjectInfo> asyncHandler) {
+        return executorService.submit(new Callable<ObjectInfo>() {
+            public ObjectInfo call() throws Exception {
+                ObjectInfo result;
+                try {
+                    result = getObjectInfo(request.getBucketName(), request.getKey());
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(request, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<Void> setObjectMetadataAsync(final SetObjectMetadataRequest request) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                setObjectMetadata(request.getBucketName(), request.getKey(), request.getObjectMetadata());
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> setObjectMetadataAsync(final SetObjectMetadataRequest request,
+            final AsyncHandler<SetObjectMetadataRequest, Void> asyncHandler) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                try {
+                    setObjectMetadata(request.getBucketName(), request.getKey(), request.getObjectMetadata());
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(request, null);
+                return null;
+            }
+        });
+    }
+
+    public Future<S3Object> getObjectAsync(final GetObjectRequest getObjectRequest) {
+        return executorService.submit(new Callable<S3Object>() {
+            public S3Object call() throws Exception {
+                return getObject(getObjectRequest);
+            }
+        });
+    }
+
+    public Future<S3Object> getObjectAsync(final GetObjectRequest getObjectRequest,
+            final AsyncHandler<GetObjectRequest, S3Object> asyncHandler) {
+        return executorService.submit(new Callable<S3Object>() {
+            public S3Object call() throws Exception {
+                S3Object result;
+                try {
+                    result = getObject(getObjectRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(getObjectRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<ObjectMetadata> getObjectAsync(final GetObjectRequest getObjectRequest, final File destinationFile) {
+        return executorService.submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                return getObject(getObjectRequest, destinationFile);
+            }
+        });
+    }
+
+    public Future<ObjectMetadata> getObjectAsync(final GetObjectRequest getObjectRequest, final File destinationFile,
+            final AsyncHandler<GetObjectRequest, ObjectMetadata> asyncHandler) {
+        return executorService.submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                ObjectMetadata result;
+                try {
+                    result = getObject(getObjectRequest, destinationFile);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(getObjectRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<PutObjectResult> putObjectAsync(final PutObjectRequest putObjectRequest) {
+        return executorService.submit(new Callable<PutObjectResult>() {
+            public PutObjectResult call() throws Exception {
+                return putObject(putObjectRequest);
+            }
+        });
+    }
+
+    public Future<PutObjectResult> putObjectAsync(final PutObjectRequest putObjectRequest,
+            final AsyncHandler<PutObjectRequest, PutObjectResult> asyncHandler) {
+        return executorService.submit(new Callable<PutObjectResult>() {
+            public PutObjectResult call() throws Exception {
+                PutObjectResult result;
+                try {
+                    result = putObject(putObjectRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(putObjectRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<Void> copyObjectAsync(final CopyObjectRequest copyObjectRequest) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                copyObject(copyObjectRequest);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> copyObjectAsync(final CopyObjectRequest copyObjectRequest,
+            final AsyncHandler<CopyObjectRequest, Void> asyncHandler) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                try {
+                    copyObject(copyObjectRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(copyObjectRequest, null);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> deleteObjectAsync(final DeleteObjectRequest deleteObjectRequest) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                deleteObject(deleteObjectRequest);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> deleteObjectAsync(final DeleteObjectRequest deleteObjectRequest,
+            final AsyncHandler<DeleteObjectRequest, Void> asyncHandler) {
+        return executorService.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                try {
+                    deleteObject(deleteObjectRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(deleteObjectRequest, null);
+                return null;
+            }
+        });
+    }
+
+    public Future<DeleteObjectsResult> deleteObjectsAsync(final DeleteObjectsRequest deleteObjectsRequest) {
+        return executorService.submit(new Callable<DeleteObjectsResult>() {
+            public DeleteObjectsResult call() throws Exception {
+                return deleteObjects(deleteObjectsRequest);
+            }
+        });
+    }
+
+    public Future<DeleteObjectsResult> deleteObjectsAsync(final DeleteObjectsRequest deleteObjectsRequest,
+            final AsyncHandler<DeleteObjectsRequest, DeleteObjectsResult> asyncHandler) {
+        return executorService.submit(new Callable<DeleteObjectsResult>() {
+            public DeleteObjectsResult call() throws Exception {
+                DeleteObjectsResult result;
+                try {
+                    result = deleteObjects(deleteObjectsRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(deleteObjectsRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<InitiateMultipartUploadResult> initiateMultipartUploadAsync(final InitiateMultipartUploadRequest request) {
+        return executorService.submit(new Callable<InitiateMultipartUploadResult>() {
+            public InitiateMultipartUploadResult call() throws Exception {
+                return initiateMultipartUpload(request);
+            }
+        });
+    }
+
+    public Future<InitiateMultipartUploadResult> initiateMultipartUploadAsync(final InitiateMultipartUploadRequest request,
+            final AsyncHandler<InitiateMultipartUploadRequest, InitiateMultipartUploadResult> asyncHandler) {
+        return executorService.submit(new Callable<InitiateMultipartUploadResult>() {
+            public InitiateMultipartUploadResult call() throws Exception {
+                InitiateMultipartUploadResult result;
+                try {
+                    result = initiateMultipartUpload(request);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(request, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<UploadPartResult> uploadPartAsync(final UploadPartRequest uploadPartRequest) {
+        return executorService.submit(new Callable<UploadPartResult>() {
+            public UploadPartResult call() throws Exception {
+                return uploadPart(uploadPartRequest);
+            }
+        });
+    }
+
+    public Future<UploadPartResult> uploadPartAsync(final UploadPartRequest uploadPartRequest,
+            final AsyncHandler<UploadPartRequest, UploadPartResult> asyncHandler) {
+        return executorService.submit(new Callable<UploadPartResult>() {
+            public UploadPartResult call() throws Exception {
+                UploadPartResult result;
+                try {
+                    result = uploadPart(uploadPartRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(uploadPartRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<PartListing> listPartsAsync(final ListPartsRequest listPartsRequest) {
+        return executorService.submit(new Callable<PartListing>() {
+            public PartListing call() throws Exception {
+                return listParts(listPartsRequest);
+            }
+        });
+    }
+
+    public Future<PartListing> listPartsAsync(final ListPartsRequest listPartsRequest,
+            final AsyncHandler<ListPartsRequest, PartListing> asyncHandler) {
+        return executorService.submit(new Callable<PartListing>() {
+            public PartListing call() throws Exception {
+                PartListing result;
+                try {
+                    result = listParts(listPartsRequest);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(listPartsRequest, result);
+                return result;
+            }
+        });
+    }
+
+    public Future<ObjectMetadata> completeMultipartUploadAsync(final CompleteMultipartUploadRequest request) {
+        return executorService.submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                return completeMultipartUpload(request);
+            }
+        });
+    }
+
+    public Future<ObjectMetadata> completeMultipartUploadAsync(final CompleteMultipartUploadRequest request,
+            final AsyncHandler<CompleteMultipartUploadRequest, ObjectMetadata> asyncHandler) {
+        return executorService.submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                ObjectMetadata result;
+                try {
+                    result = completeMultipartUpload(request);
+                } catch (Exception ex) {
+                    asyncHandler.onError(ex);
+                    throw ex;
+                }
+                asyncHandler.onSuccess(request, result);
+                return result;
+            }
+        });
+    }
+}
@@ -47,6 +47,7 @@ import com.sina.cloudstorage.SCSWebServiceResponse;
 import com.sina.cloudstorage.auth.AWSCredentials;
 import com.sina.cloudstorage.auth.AWSCredentialsProvider;
 import com.sina.cloudstorage.auth.AWSCredentialsProviderChain;
+import com.sina.cloudstorage.auth.CachingCredentialsProvider;
 import com.sina.cloudstorage.auth.ClasspathPropertiesFileCredentialsProvider;
 import com.sina.cloudstorage.auth.DefaultAWSCredentialsProviderChain;
 import com.sina.cloudstorage.auth.Signer;
@@ -58,12 +59,19 @@ import com.sina.cloudstorage.event.ProgressReportingInputStream;
 import com.sina.cloudstorage.http.ExecutionContext;
 import com.sina.cloudstorage.http.HttpMethodName;
 import com.sina.cloudstorage.http.HttpResponseHandler;
+import com.sina.cloudstorage.metrics.RequestMetrics;
+import com.sina.cloudstorage.metrics.RequestMetrics.Field;
+import com.sina.cloudstorage.retry.RetryPolicy;
 import com.sina.cloudstorage.internal.StaticCredentialsProvider;
+import com.sina.cloudstorage.services.scs.S3ClientOptions.FileMd5Mode;
+import com.sina.cloudstorage.services.scs.internal.BatchObjectDeleter;
 import com.sina.cloudstorage.services.scs.internal.Constants;
-import com.sina.cloudstorage.services.scs.internal.InputSubstream;
+import com.sina.cloudstorage.services.scs.iterable.S3Objects;
+import com.sina.cloudstorage.services.scs.internal.FileRegionInputStream;
 import com.sina.cloudstorage.services.scs.internal.MD5DigestCalculatingInputStream;
 import com.sina.cloudstorage.services.scs.internal.Mimetypes;
 import com.sina.cloudstorage.services.scs.internal.RepeatableFileInputStream;
+import com.sina.cloudstorage.services.scs.internal.ResumableDownloader;
 import com.sina.cloudstorage.services.scs.internal.ResponseHeaderHandlerChain;
 import com.sina.cloudstorage.services.scs.internal.S3ErrorResponseHandler;
 import com.sina.cloudstorage.services.scs.internal.S3JsonResponseHandler;
@@ -83,6 +91,8 @@ import com.sina.cloudstorage.services.scs.model.CopyObjectRequest;
 import com.sina.cloudstorage.services.scs.model.CreateBucketRequest;
 import com.sina.cloudstorage.services.scs.model.DeleteBucketRequest;
 import com.sina.cloudstorage.services.scs.model.DeleteObjectRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsResult;
 import com.sina.cloudstorage.services.scs.model.DigestValidationInputStream;
 import com.sina.cloudstorage.services.scs.model.GeneratePresignedUrlRequest;
 import com.sina.cloudstorage.services.scs.model.GenericBucketRequest;
@@ -106,6 +116,7 @@ import com.sina.cloudstorage.services.scs.model.RepeatableInputStream;
 import com.sina.cloudstorage.services.scs.model.ResponseHeaderOverrides;
 import com.sina.cloudstorage.services.scs.model.S3Object;
 import com.sina.cloudstorage.services.scs.model.S3ObjectInputStream;
+import com.sina.cloudstorage.services.scs.model.S3ObjectSummary;
 import com.sina.cloudstorage.services.scs.model.SCSS3Exception;
 import com.sina.cloudstorage.services.scs.model.SetBucketAclRequest;
 import com.sina.cloudstorage.services.scs.model.UploadPartRequest;
@@ -116,7 +127,6 @@ import com.sina.cloudstorage.services.scs.model.transform.Unmarshallers;
 import com.sina.cloudstorage.transform.Unmarshaller;
 import com.sina.cloudstorage.util.BinaryUtils;
 import com.sina.cloudstorage.util.ContentLengthValidationInputStream;
-import com.sina.cloudstorage.util.DateUtils;
 import com.sina.cloudstorage.util.HttpUtils;
 import com.sina.cloudstorage.util.Md5Utils;
 
@@ -141,6 +151,9 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
     /** Provider for AWS credentials. */
     private AWSCredentialsProvider awsCredentialsProvider;
 
+    /** Cache of object metadata and info, or null if they aren't cached */
+    private volatile ObjectMetadataCache objectMetadataCache;
+
     /**
      * Constructs a new client to invoke service methods on Amazon S3. A
      * credentials provider chain will be used that searches for credentials in
@@ -151,6 +164,8 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
      * <li>Instance Profile Credentials - delivered through the Amazon EC2
      * metadata service</li>
      * </ul>
+     * The credentials found are cached by a {@link CachingCredentialsProvider},
+     * and reloaded in the background when the credentials file changes.
      *
      * <p>
      * If no credentials are found in the chain, this client will attempt to
@@ -180,9 +195,19 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
      * @see SCSClient#SCSClient(AWSCredentials, ClientConfiguration)
      */
     public SCSClient() {
-        this(new AWSCredentialsProviderChain(
-                new SystemPropertiesCredentialsProvider(),
-                new ClasspathPropertiesFileCredentialsProvider()) {
+        this(createDefaultCredentialsProvider());
+    }
+
+    /**
+     * Returns the credentials provider chain of the default constructor,
+     * cached so that the credentials file isn't read again for every request,
+     * and reloaded in the background when the file changes.
+     */
+    private static AWSCredentialsProvider createDefaultCredentialsProvider() {
+        ClasspathPropertiesFileCredentialsProvider fileProvider =
+                new ClasspathPropertiesFileCredentialsProvider();
+        AWSCredentialsProvider chain = new AWSCredentialsProviderChain(
+                new SystemPropertiesCredentialsProvider(), fileProvider) {
 
             public AWSCredentials getCredentials() {
                 try {
@@ -192,7 +217,10 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 log.debug("No credentials available; falling back to anonymous access");
                 return null;
             }
-        });
+        };
+        return new CachingCredentialsProvider(chain,
+                CachingCredentialsProvider.DEFAULT_REFRESH_INTERVAL_MILLIS,
+                fileProvider.getCredentialsFile());
     }
 
     /**
@@ -261,7 +289,7 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
     }
 
     protected final ExecutionContext createExecutionContext(SCSWebServiceRequest req) {
-        return new ExecutionContext();
+        return new ExecutionContext(isRequestMetricsEnabled());
     }
 
     /**
@@ -308,7 +336,10 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
      * @see SCSClient#SCSClient(AWSCredentials, ClientConfiguration)
      */
     public SCSClient(ClientConfiguration clientConfiguration) {
-        this(new DefaultAWSCredentialsProviderChain(), clientConfiguration);
+        this(new CachingCredentialsProvider(new DefaultAWSCredentialsProviderChain(),
+                CachingCredentialsProvider.DEFAULT_REFRESH_INTERVAL_MILLIS,
+                new ClasspathPropertiesFileCredentialsProvider().getCredentialsFile()),
+                clientConfiguration);
     }
 
     private void init() {
@@ -332,6 +363,28 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
       this.clientOptions = new S3ClientOptions(clientOptions);
     }
 
+    /**
+     * Sets the cache of the metadata and the info of objects, returned by
+     * {@link #getObjectMetadata(String, String)} and
+     * {@link #getObjectInfo(String, String)}. The entries of an object are
+     * invalidated when it is written through this client.
+     *
+     * @param objectMetadataCache
+     *            The cache to use, or null to always get the metadata and the
+     *            info of objects from the service.
+     */
+    public void setObjectMetadataCache(ObjectMetadataCache objectMetadataCache) {
+        this.objectMetadataCache = objectMetadataCache;
+    }
+
+    /**
+     * Returns the cache of the metadata and the info of objects, or null if
+     * they aren't cached.
+     */
+    public ObjectMetadataCache getObjectMetadataCache() {
+        return objectMetadataCache;
+    }
+
     /* (non-Javadoc)
      * @see com.amazonaws.services.s3.AmazonS3#listObjects(java.lang.String)
      */
@@ -397,6 +450,23 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 Integer.valueOf(previousObjectListing.getMaxKeys() ) ));
     }
 
+    /* (non-Javadoc)
+     * @see com.sina.cloudstorage.services.scs.SCS#iterateObjects(com.sina.cloudstorage.services.scs.model.ListObjectsRequest, boolean)
+     */
+    public Iterable<S3ObjectSummary> iterateObjects(ListObjectsRequest listObjectsRequest,
+            boolean prefetchNextBatch) {
+        assertParameterNotNull(listObjectsRequest.getBucketName(), "The bucket name parameter must be specified when listing objects in a bucket");
+
+        return S3Objects.withRequest(this, listObjectsRequest).withPrefetch(prefetchNextBatch);
+    }
+
+    /* (non-Javadoc)
+     * @see com.sina.cloudstorage.services.scs.SCS#iterateObjects(java.lang.String, java.lang.String)
+     */
+    public Iterable<S3ObjectSummary> iterateObjects(String bucketName, String prefix) {
+        return iterateObjects(new ListObjectsRequest(bucketName, prefix, null, null, null), true);
+    }
+
 
 //    /* (non-Javadoc)
 //     * @see com.amazonaws.services.s3.AmazonS3#getS3AccountOwner()
@@ -514,11 +584,22 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
 	 * (non-Javadoc)
 	 * @see com.sina.scs.SCS#getObjectInfo(java.lang.String, java.lang.String)
 	 */
-	public ObjectInfo getObjectInfo(String bucketName, String key)
+	public ObjectInfo getObjectInfo(final String bucketName, final String key)
 			throws SCSClientException, SCSServiceException{
     	assertParameterNotNull(bucketName, "The bucket name parameter must be specified when requesting an Object's info");
     	assertParameterNotNull(key, "The bucket name parameter must be specified when requesting an Object's info");
 
+        ObjectMetadataCache cache = objectMetadataCache;
+        if (cache == null) return loadObjectInfo(bucketName, key);
+
+        return cache.getObjectInfo(bucketName, key, new ObjectMetadataCache.Loader<ObjectInfo>() {
+            public ObjectInfo load(ObjectInfo cached) {
+                return loadObjectInfo(bucketName, key);
+            }
+        });
+    }
+
+    private ObjectInfo loadObjectInfo(String bucketName, String key) {
     	GenericBucketRequest originalRequest = new GenericBucketRequest(bucketName);
         Request<GenericBucketRequest> request = createRequest(bucketName, key, originalRequest, HttpMethodName.GET);
         request.addParameter("meta", null);
@@ -597,6 +678,8 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
      */
     public void setObjectMetadata(String bucketName, String key, ObjectMetadata objectMetadata)
     		throws SCSClientException, SCSServiceException{
+    	assertParameterNotNull(bucketName, "The bucket name parameter must be specified when setting an object's metadata");
+    	assertParameterNotNull(key, "The key parameter must be specified when setting an object's metadata");
     	
     	SCSWebServiceRequest originalRequest = new GenericBucketRequest(bucketName);
     	Request<SCSWebServiceRequest> request = createRequest(bucketName, key, originalRequest, HttpMethodName.PUT);
@@ -611,14 +694,17 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         	request.addHeader(metaKey, metaValue);
         }
 
-        invoke(request, voidResponseHandler, bucketName, key);
-    	
+        try {
+            invoke(request, voidResponseHandler, bucketName, key);
+        } finally {
+            invalidateObjectMetadata(bucketName, key);
+        }
     }
 
     /* (non-Javadoc)
      * @see com.amazonaws.services.s3.AmazonS3#getObjectMetadata(com.amazonaws.services.s3.model.GetObjectMetadataRequest)
      */
-    public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest getObjectMetadataRequest)
+    public ObjectMetadata getObjectMetadata(final GetObjectMetadataRequest getObjectMetadataRequest)
             throws SCSClientException, SCSServiceException {
         assertParameterNotNull(getObjectMetadataRequest, "The GetObjectMetadataRequest parameter must be specified when requesting an object's metadata");
 
@@ -629,10 +715,44 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         assertParameterNotNull(bucketName, "The bucket name parameter must be specified when requesting an object's metadata");
         assertParameterNotNull(key, "The key parameter must be specified when requesting an object's metadata");
 
+        ObjectMetadataCache cache = objectMetadataCache;
+        if (cache == null || versionId != null) return loadObjectMetadata(getObjectMetadataRequest, null);
+
+        return cache.getObjectMetadata(bucketName, key, new ObjectMetadataCache.Loader<ObjectMetadata>() {
+            public ObjectMetadata load(ObjectMetadata cached) {
+                return loadObjectMetadata(getObjectMetadataRequest, cached == null ? null : cached.getETag());
+            }
+        });
+    }
+
+    /**
+     * Gets the metadata of an object; only if its ETag no longer matches the
+     * one given, if any, returning null otherwise.
+     */
+    private ObjectMetadata loadObjectMetadata(GetObjectMetadataRequest getObjectMetadataRequest, String nonmatchingETag) {
+        String bucketName = getObjectMetadataRequest.getBucketName();
+        String key = getObjectMetadataRequest.getKey();
+        String versionId = getObjectMetadataRequest.getVersionId();
+
         Request<GetObjectMetadataRequest> request = createRequest(bucketName, key, getObjectMetadataRequest, HttpMethodName.HEAD);
         if (versionId != null) request.addParameter("versionId", versionId);
+        if (nonmatchingETag != null) request.addHeader(Headers.GET_OBJECT_IF_NONE_MATCH, nonmatchingETag);
+
+        try {
+            return invoke(request, new S3MetadataResponseHandler(), bucketName, key);
+        } catch (SCSServiceException ase) {
+            if (nonmatchingETag != null && ase.getStatusCode() == 304) return null;
+            throw ase;
+        }
+    }
 
-        return invoke(request, new S3MetadataResponseHandler(), bucketName, key);
+    /**
+     * Removes the cached metadata and info of an object written through this
+     * client, if they are cached.
+     */
+    private void invalidateObjectMetadata(String bucketName, String key) {
+        ObjectMetadataCache cache = objectMetadataCache;
+        if (cache != null) cache.invalidate(bucketName, key);
     }
 
     /* (non-Javadoc)
@@ -794,6 +914,15 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         assertParameterNotNull(destinationFile,
                 "The destination file parameter must be specified when downloading an object directly to a file");
 
+        if (getObjectRequest.isResumableDownload() && getObjectRequest.getRange() == null) {
+            S3Object s3Object = new ResumableDownloader(this, getObjectRequest, destinationFile,
+                    clientConfiguration.getDownloadBufferSize(), true).download();
+            // getObject can return null if constraints were specified but not met
+            if (s3Object == null) return null;
+
+            return s3Object.getObjectMetadata();
+        }
+
         S3Object s3Object = ServiceUtils.retryableDownloadS3ObjectToFile(destinationFile, new ServiceUtils.RetryableS3DownloadTask() {
 
             @Override
@@ -806,7 +935,7 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 return getObjectRequest.getRange()== null;
             }
 
-        });
+        }, clientConfiguration.getDownloadBufferSize());
         // getObject can return null if constraints were specified but not met
         if (s3Object == null) return null;
 
@@ -925,6 +1054,8 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             returnedMetadata = invoke(request, new S3MetadataResponseHandler(), bucketName, key);
         } catch (SCSClientException ace) {
             throw ace;
+        } finally {
+            invalidateObjectMetadata(bucketName, key);
         }
 
         PutObjectResult result = new PutObjectResult();
@@ -977,16 +1108,26 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 metadata.setContentType(Mimetypes.getInstance().getMimetype(file));
             }
 
-            FileInputStream fileInputStream = null;
-            try {
-                fileInputStream = new FileInputStream(file);
-                byte[] md5Hash = Md5Utils.computeMD5Hash(fileInputStream);
-                metadata.setContentMD5(BinaryUtils.toBase64(md5Hash));
-            } catch (Exception e) {
-                throw new SCSClientException(
-                        "Unable to calculate MD5 hash: " + e.getMessage(), e);
-            } finally {
-                try {fileInputStream.close();} catch (Exception e) {}
+            // In single pass mode the hash is calculated as the file is sent
+            // and checked against the returned ETag below
+            FileMd5Mode fileMd5Mode = clientOptions.getFileMd5Mode();
+            if (fileMd5Mode != FileMd5Mode.SINGLE_PASS) {
+                FileInputStream fileInputStream = null;
+                try {
+                    byte[] md5Hash;
+                    if (fileMd5Mode == FileMd5Mode.MEMORY_MAPPED) {
+                        md5Hash = Md5Utils.computeMD5HashMapped(file);
+                    } else {
+                        fileInputStream = new FileInputStream(file);
+                        md5Hash = Md5Utils.computeMD5Hash(fileInputStream);
+                    }
+                    metadata.setContentMD5(BinaryUtils.toBase64(md5Hash));
+                } catch (Exception e) {
+                    throw new SCSClientException(
+                            "Unable to calculate MD5 hash: " + e.getMessage(), e);
+                } finally {
+                    try {fileInputStream.close();} catch (Exception e) {}
+                }
             }
 
             try {
@@ -1084,6 +1225,7 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.FAILED_EVENT_CODE);
             throw ace;
         } finally {
+            invalidateObjectMetadata(bucketName, key);
             try {input.close();} catch (Exception e) {
                 log.warn("Unable to cleanly close input stream: " + e.getMessage(), e);
             }
@@ -1190,8 +1332,11 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
          */
         request.getHeaders().remove(Headers.CONTENT_LENGTH);
 
-        invoke(request, voidResponseHandler, destinationBucketName, destinationKey);
-        
+        try {
+            invoke(request, voidResponseHandler, destinationBucketName, destinationKey);
+        } finally {
+            invalidateObjectMetadata(destinationBucketName, destinationKey);
+        }
     }
 
     /* (non-Javadoc)
@@ -1214,7 +1359,54 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         assertParameterNotNull(deleteObjectRequest.getKey(), "The key must be specified when deleting an object");
 
         Request<DeleteObjectRequest> request = createRequest(deleteObjectRequest.getBucketName(), deleteObjectRequest.getKey(), deleteObjectRequest, HttpMethodName.DELETE);
-        invoke(request, voidResponseHandler, deleteObjectRequest.getBucketName(), deleteObjectRequest.getKey());
+        try {
+            invoke(request, voidResponseHandler, deleteObjectRequest.getBucketName(), deleteObjectRequest.getKey());
+        } finally {
+            invalidateObjectMetadata(deleteObjectRequest.getBucketName(), deleteObjectRequest.getKey());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.sina.cloudstorage.services.scs.SCS#deleteObjects(java.lang.String, java.lang.Iterable)
+     */
+    public DeleteObjectsResult deleteObjects(String bucketName, Iterable<String> keys)
+            throws SCSClientException {
+        assertParameterNotNull(keys, "The keys must be specified when deleting objects");
+        return deleteObjects(new DeleteObjectsRequest(bucketName).withKeys(keys));
+    }
+
+    /* (non-Javadoc)
+     * @see com.sina.cloudstorage.services.scs.SCS#deleteObjectsByPrefix(java.lang.String, java.lang.String)
+     */
+    public DeleteObjectsResult deleteObjectsByPrefix(String bucketName, String prefix)
+            throws SCSClientException, SCSServiceException {
+        assertParameterNotNull(prefix, "The prefix must be specified when deleting objects by prefix");
+        return deleteObjects(new DeleteObjectsRequest(bucketName).withPrefix(prefix));
+    }
+
+    /* (non-Javadoc)
+     * @see com.sina.cloudstorage.services.scs.SCS#deleteObjects(com.sina.cloudstorage.services.scs.model.DeleteObjectsRequest)
+     */
+    public DeleteObjectsResult deleteObjects(DeleteObjectsRequest deleteObjectsRequest)
+            throws SCSClientException, SCSServiceException {
+        assertParameterNotNull(deleteObjectsRequest,
+            "The delete objects request must be specified when deleting objects");
+        assertParameterNotNull(deleteObjectsRequest.getBucketName(), "The bucket name must be specified when deleting objects");
+
+        return new BatchObjectDeleter(this, deleteObjectsRequest, getMaxErrorRetry()).delete();
+    }
+
+    /**
+     * Returns how many times this client retries a failed request, as decided
+     * by its configuration and retry policy.
+     */
+    private int getMaxErrorRetry() {
+        RetryPolicy retryPolicy = clientConfiguration.getRetryPolicy();
+        int maxErrorRetry = clientConfiguration.getMaxErrorRetry();
+        if (maxErrorRetry < 0 || !retryPolicy.isMaxErrorRetryInClientConfigHonored()) {
+            maxErrorRetry = retryPolicy.getMaxErrorRetry();
+        }
+        return maxErrorRetry;
     }
 
     /* (non-Javadoc)
@@ -1284,6 +1476,29 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         return ServiceUtils.convertRequestToUrl(request, true);
     }
 
+    /* (non-Javadoc)
+     * @see com.sina.cloudstorage.services.scs.SCS#createPresignedUrlGenerator(java.lang.String, com.sina.cloudstorage.HttpMethod, boolean)
+     */
+    public PresignedUrlGenerator createPresignedUrlGenerator(String bucketName, HttpMethod method,
+            boolean bucketNameAsDomain) {
+        assertParameterNotNull(bucketName,
+            "The bucket name parameter must be specified when generating pre-signed URLs");
+        assertParameterNotNull(method,
+            "The HTTP method request parameter must be specified when generating pre-signed URLs");
+
+        // Addressed the way generatePresignedUrl addresses each of its
+        // requests: the bucket ends up in the resource path only when
+        // addressed by path.
+        GeneratePresignedUrlRequest generatePresignedUrlRequest =
+                new GeneratePresignedUrlRequest(bucketName, null, method);
+        generatePresignedUrlRequest.setBucketNameAsDomain(bucketNameAsDomain);
+        Request<GeneratePresignedUrlRequest> request = createRequest(bucketName, null,
+                generatePresignedUrlRequest, HttpMethodName.valueOf(method.toString()));
+
+        return new PresignedUrlGenerator(bucketName, method, request.getEndpoint().toString(),
+                request.getResourcePath() != null, bucketNameAsDomain, awsCredentialsProvider);
+    }
+
     /* (non-Javadoc)
      * @see com.amazonaws.services.s3.AmazonS3#completeMultipartUpload(com.amazonaws.services.s3.model.CompleteMultipartUploadRequest)
      */
@@ -1314,10 +1529,11 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
 
         request.setContent(new ByteArrayInputStream(json));
 
-        
-        ObjectMetadata returnedMetadata = invoke(request, new S3MetadataResponseHandler(), bucketName, key);
-        return returnedMetadata;
-        
+        try {
+            return invoke(request, new S3MetadataResponseHandler(), bucketName, key);
+        } finally {
+            invalidateObjectMetadata(bucketName, key);
+        }
     }
 
     /*
@@ -1435,8 +1651,8 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             inputStream = uploadPartRequest.getInputStream();
         } else if (uploadPartRequest.getFile() != null) {
             try {
-                inputStream = new InputSubstream(new RepeatableFileInputStream(uploadPartRequest.getFile()),
-                        uploadPartRequest.getFileOffset(), partSize, true);
+                inputStream = new FileRegionInputStream(uploadPartRequest.getFile(),
+                        uploadPartRequest.getFileOffset(), partSize);
             } catch (FileNotFoundException e) {
                 throw new IllegalArgumentException("The specified file doesn't exist", e);
             }
@@ -1761,7 +1977,7 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
 
         Date httpExpiresDate = metadata.getHttpExpiresDate();
         if (httpExpiresDate != null) {
-            request.addHeader(Headers.EXPIRES, new DateUtils().formatRfc822Date(httpExpiresDate));
+            request.addHeader(Headers.EXPIRES, ServiceUtils.formatRfc822Date(httpExpiresDate));
         }
 
         Map<String, String> userMetadata = metadata.getUserMetadata();
@@ -2122,16 +2338,17 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             String bucket, String key) {
         SCSWebServiceRequest originalRequest = request.getOriginalRequest();
         ExecutionContext executionContext = createExecutionContext(originalRequest);
-//        AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
-//        // Binds the request metrics to the current request.
-//        request.setAWSRequestMetrics(awsRequestMetrics);
+        RequestMetrics requestMetrics = executionContext.getRequestMetrics();
+        if (requestMetrics.isEnabled()) {
+            requestMetrics.addProperty(Field.OperationName, operationNameOf(request, key));
+        }
         // Having the ClientExecuteTime defined here is not ideal (for the
         // timing measurement should start as close to the top of the call
         // stack of the service client method as possible)
         // but definitely a safe compromise for S3 at least for now.
         // We can incrementally make it more elaborate should the need arise
         // for individual method.
-//        awsRequestMetrics.startEvent(Field.ClientExecuteTime);
+        requestMetrics.startEvent(Field.ClientExecuteTime);
         Response<X> response = null;
         try {
             for (Entry<String, String> entry : request.getOriginalRequest()
@@ -2162,8 +2379,42 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             response = client.execute(request, responseHandler,
                     errorResponseHandler, executionContext);
             return response.getAwsResponse();
-         } finally {
-//            endClientExecution(awsRequestMetrics, request, response);
+        } catch (RuntimeException e) {
+            requestMetrics.addProperty(Field.Exception, e);
+            throw e;
+        } catch (Error e) {
+            requestMetrics.addProperty(Field.Exception, e);
+            throw e;
+        } finally {
+            endClientExecution(requestMetrics);
         }
    }
+
+    /**
+     * Returns the name the metrics of the given request are recorded under:
+     * the name of its request class without the "Request" suffix, such as
+     * <code>PutObject</code>, or for requests without a dedicated class the
+     * HTTP method, the kind of resource and the sub-resource, such as
+     * <code>GetObjectAcl</code> or <code>PutBucketMeta</code>.
+     */
+    private static String operationNameOf(Request<?> request, String key) {
+        SCSWebServiceRequest originalRequest = request.getOriginalRequest();
+        if (originalRequest != null && !(originalRequest instanceof GenericBucketRequest)) {
+            String name = originalRequest.getClass().getSimpleName();
+            if (name.endsWith("Request")) name = name.substring(0, name.length() - "Request".length());
+            if (name.length() > 0) return name;
+        }
+
+        String method = request.getHttpMethod().name();
+        StringBuilder sb = new StringBuilder();
+        sb.append(method.charAt(0)).append(method.substring(1).toLowerCase());
+        sb.append(key != null ? "Object" : "Bucket");
+        for (String subResource : new String[] {"acl", "meta"}) {
+            if (request.getParameters().containsKey(subResource)) {
+                sb.append(Character.toUpperCase(subResource.charAt(0))).append(subResource.substring(1));
+                break;
+            }
+        }
+        return sb.toString();
+    }
 }
\ No newline at end of file
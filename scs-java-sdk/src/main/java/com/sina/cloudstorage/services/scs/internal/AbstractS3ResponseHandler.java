@@ -32,7 +32,6 @@ import com.sina.cloudstorage.SCSWebServiceResponse;
 import com.sina.cloudstorage.http.HttpResponse;
 import com.sina.cloudstorage.http.HttpResponseHandler;
 import com.sina.cloudstorage.services.scs.model.ObjectMetadata;
-import com.sina.cloudstorage.util.DateUtils;
 
 
 /**
@@ -129,7 +128,7 @@ public abstract class AbstractS3ResponseHandler<T>
                 metadata.setHeader(key, ServiceUtils.removeQuotes(header.getValue()));
             } else if (key.equals(Headers.EXPIRES)) {
                 try {
-                    metadata.setHttpExpiresDate(new DateUtils().parseRfc822Date(header.getValue()));
+                    metadata.setHttpExpiresDate(ServiceUtils.parseRfc822Date(header.getValue()));
                 } catch (ParseException pe) {
                     log.warn("Unable to parse http expiration date: " + header.getValue(), pe);
                 }
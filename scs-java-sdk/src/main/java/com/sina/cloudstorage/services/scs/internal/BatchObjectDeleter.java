@@ -0,0 +1,295 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.cloudstorage.SCSClientException;
+import com.sina.cloudstorage.SCSServiceException;
+import com.sina.cloudstorage.retry.RetryUtils;
+import com.sina.cloudstorage.services.scs.SCS;
+import com.sina.cloudstorage.services.scs.iterable.S3Objects;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsListener;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsResult;
+import com.sina.cloudstorage.services.scs.model.DeleteObjectsResult.DeleteError;
+import com.sina.cloudstorage.services.scs.model.S3ObjectSummary;
+
+/**
+ * Deletes the objects of a {@link DeleteObjectsRequest}, one request per
+ * object, with several requests in flight.
+ * <p>
+ * The calling thread iterates over the keys, or over the listing of the
+ * prefix, prefetched a page ahead, and hands each key to a worker once fewer
+ * deletes than the current concurrency are in flight. The concurrency starts
+ * at the maximum of the request. It is halved when the service throttles a
+ * delete, at most once a second, and grows by one after each run of as many
+ * successful deletes as it allows; throttled deletes are retried after an
+ * exponential, jittered backoff, until eight requests, the retries of the
+ * client included, were made for them.
+ */
+public class BatchObjectDeleter {
+
+    private static final Log log = LogFactory.getLog(BatchObjectDeleter.class);
+
+    /**
+     * The most requests made for a throttled delete, counting the retries of
+     * the client, before it is reported failed
+     */
+    private static final int MAX_THROTTLED_ATTEMPTS = 8;
+
+    private static final long BASE_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 20 * 1000;
+
+    /** How long after a decrease the concurrency is kept from decreasing again */
+    private static final long DECREASE_INTERVAL_MILLIS = 1000;
+
+    private final SCS s3;
+    private final String bucketName;
+    private final Iterable<String> keys;
+    private final DeleteObjectsListener listener;
+    private final int maxConcurrency;
+    private final int clientMaxErrorRetry;
+    private final Random random = new Random();
+
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final List<DeleteError> errors = Collections.synchronizedList(new ArrayList<DeleteError>());
+
+    /*
+     * Adaptive concurrency, guarded by this
+     */
+    private int concurrency;
+    private int inFlight;
+    private int successesSinceIncrease;
+    private long lastDecreaseMillis;
+
+    public BatchObjectDeleter(SCS s3, DeleteObjectsRequest request) {
+        this(s3, request, 0);
+    }
+
+    /**
+     * @param s3
+     *            The client to delete the objects with.
+     * @param request
+     *            The objects to delete.
+     * @param clientMaxErrorRetry
+     *            How many times the client itself retries a failed request,
+     *            counted towards the attempts of a throttled delete.
+     */
+    public BatchObjectDeleter(SCS s3, DeleteObjectsRequest request, int clientMaxErrorRetry) {
+        if (request.getMaxConcurrency() < 1)
+            throw new IllegalArgumentException("The maximum concurrency must be at least 1");
+        if (request.getKeys() == null && request.getPrefix() == null)
+            throw new IllegalArgumentException("Either the keys or the prefix of the objects to delete must be specified");
+
+        this.s3 = s3;
+        this.bucketName = request.getBucketName();
+        this.keys = (request.getKeys() != null) ? request.getKeys()
+                : keysOf(S3Objects.withPrefix(s3, bucketName, request.getPrefix()).withPrefetch(true));
+        this.listener = request.getListener();
+        this.maxConcurrency = request.getMaxConcurrency();
+        this.clientMaxErrorRetry = Math.max(0, clientMaxErrorRetry);
+        this.concurrency = maxConcurrency;
+    }
+
+    /**
+     * Deletes all the objects and returns once every delete has completed.
+     * Only a failure to list the objects, or an interruption, is thrown;
+     * failed deletes are reported in the result.
+     */
+    public DeleteObjectsResult delete() {
+        ExecutorService executor = createExecutor(maxConcurrency);
+        try {
+            for (String key : keys) {
+                acquire();
+                try {
+                    executor.execute(new DeleteTask(key));
+                } catch (RejectedExecutionException e) {
+                    release();
+                    throw new SCSClientException("Unable to delete " + key, e);
+                }
+            }
+            awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SCSClientException("Interrupted while deleting objects of " + bucketName, e);
+        } finally {
+            executor.shutdown();
+        }
+
+        synchronized (errors) {
+            return new DeleteObjectsResult(deletedCount.get(), new ArrayList<DeleteError>(errors));
+        }
+    }
+
+    private synchronized void acquire() throws InterruptedException {
+        while (inFlight >= concurrency) wait();
+        inFlight++;
+    }
+
+    private synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private synchronized void awaitCompletion() throws InterruptedException {
+        while (inFlight > 0) wait();
+    }
+
+    private synchronized void deleteSucceeded() {
+        if (++successesSinceIncrease >= concurrency && concurrency < maxConcurrency) {
+            concurrency++;
+            successesSinceIncrease = 0;
+            notifyAll();
+        }
+    }
+
+    private synchronized void deleteThrottled() {
+        long now = System.currentTimeMillis();
+        if (now - lastDecreaseMillis < DECREASE_INTERVAL_MILLIS) return;
+        lastDecreaseMillis = now;
+        successesSinceIncrease = 0;
+        if (concurrency > 1) {
+            concurrency = Math.max(1, concurrency / 2);
+            log.debug("Deletes throttled, lowering concurrency to " + concurrency);
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+        synchronized (random) {
+            return backoff / 2 + (long)(random.nextDouble() * (backoff / 2));
+        }
+    }
+
+    private static boolean isThrottled(SCSServiceException e) {
+        return RetryUtils.isThrottlingException(e)
+                || "SlowDown".equals(e.getErrorCode())
+                || e.getStatusCode() == 503
+                || e.getStatusCode() == 429;
+    }
+
+    /**
+     * Deletes one object, retrying while it is throttled, and reports the
+     * outcome. Holds its place in flight until it is done.
+     */
+    private class DeleteTask implements Runnable {
+        private final String key;
+
+        DeleteTask(String key) {
+            this.key = key;
+        }
+
+        public void run() {
+            try {
+                int requests = 0;
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        s3.deleteObject(new DeleteObjectRequest(bucketName, key));
+                        deleted();
+                        return;
+                    } catch (SCSServiceException e) {
+                        if (e.getStatusCode() == 404) {
+                            deleted();
+                            return;
+                        }
+                        requests += 1 + clientMaxErrorRetry;
+                        if (!isThrottled(e) || requests >= MAX_THROTTLED_ATTEMPTS) {
+                            failed(e);
+                            return;
+                        }
+                        deleteThrottled();
+                        Thread.sleep(backoffMillis(attempt));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed(e);
+            } catch (Exception e) {
+                failed(e);
+            } finally {
+                release();
+            }
+        }
+
+        private void deleted() {
+            deletedCount.incrementAndGet();
+            deleteSucceeded();
+            if (listener == null) return;
+            try {
+                listener.objectDeleted(key);
+            } catch (RuntimeException e) {
+                log.warn("Delete listener failed for " + key, e);
+            }
+        }
+
+        private void failed(Exception exception) {
+            errors.add(new DeleteError(key, exception));
+            if (listener == null) return;
+            try {
+                listener.objectDeleteFailed(key, exception);
+            } catch (RuntimeException e) {
+                log.warn("Delete listener failed for " + key, e);
+            }
+        }
+    }
+
+    private static Iterable<String> keysOf(final Iterable<S3ObjectSummary> summaries) {
+        return new Iterable<String>() {
+            public Iterator<String> iterator() {
+                final Iterator<S3ObjectSummary> iterator = summaries.iterator();
+                return new Iterator<String>() {
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    public String next() {
+                        return iterator.next().getKey();
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    private static ExecutorService createExecutor(int threadCount) {
+        final AtomicInteger threadNumber = new AtomicInteger(0);
+        return Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("scs-batch-delete-" + threadNumber.incrementAndGet());
+                return thread;
+            }
+        });
+    }
+}
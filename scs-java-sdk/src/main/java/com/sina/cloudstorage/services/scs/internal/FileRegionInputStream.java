@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.internal;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An input stream over a region of a file, read with positional reads from a
+ * file channel. The stream keeps its own position, so any number of streams
+ * can read different regions of the same channel concurrently, such as the
+ * parts of a multipart upload, without opening the file for each of them.
+ * <p>
+ * Reads go through a direct buffer of the stream, so the file is read in
+ * large chunks however small the reads of the caller, and each chunk is
+ * copied only once, from the buffer to the caller.
+ * <p>
+ * Marking and resetting only move the position: a request retried after a
+ * failure reads the region again without reopening the file or skipping to
+ * the offset of the region.
+ */
+public class FileRegionInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long offset;
+    private final long length;
+    private final boolean closeChannel;
+    /** Position in the region of the next byte returned */
+    private long position = 0;
+    private long markedPosition = 0;
+    /** Bytes of the region read ahead of the position, allocated on first read */
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a stream over a region of the given file, with a channel of its
+     * own, closed when the stream is closed.
+     *
+     * @throws FileNotFoundException
+     *             If the specified file doesn't exist, or can't be opened.
+     */
+    public FileRegionInputStream(File file, long offset, long length) throws FileNotFoundException {
+        this(new RandomAccessFile(file, "r").getChannel(), offset, length, true);
+    }
+
+    /**
+     * Creates a stream over a region of the file of the given channel.
+     *
+     * @param channel
+     *            The channel to read from. Its position isn't used, nor
+     *            changed.
+     * @param offset
+     *            The offset, in bytes, of the region in the file.
+     * @param length
+     *            The length, in bytes, of the region.
+     * @param closeChannel
+     *            True if the channel should be closed when this stream is
+     *            closed.
+     */
+    public FileRegionInputStream(FileChannel channel, long offset, long length, boolean closeChannel) {
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+        this.closeChannel = closeChannel;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int bytesRead = read(b, 0, 1);
+
+        if (bytesRead == -1) return bytesRead;
+        return b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long bytesRemaining = length - position;
+        if (bytesRemaining <= 0) return -1;
+        if (len == 0) return 0;
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect((int)Math.min(BUFFER_SIZE, length));
+            buffer.limit(0);
+        }
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), bytesRemaining));
+            int bytesRead = channel.read(buffer, offset + position);
+            buffer.flip();
+            // The file got shorter than the region
+            if (bytesRead <= 0) return -1;
+        }
+
+        len = Math.min(len, buffer.remaining());
+        buffer.get(b, off, len);
+        position += len;
+        return len;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) return 0;
+        long skipped = Math.min(n, length - position);
+        position += skipped;
+        discardBuffer();
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int)Math.min(length - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        markedPosition = position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        position = markedPosition;
+        discardBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        if (closeChannel) channel.close();
+    }
+
+    private void discardBuffer() {
+        if (buffer != null) buffer.limit(0);
+    }
+}
@@ -18,10 +18,10 @@
 package com.sina.cloudstorage.services.scs.internal;
 
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -38,7 +38,7 @@ public class RestUtils {
      * The set of request parameters which must be included in the canonical
      * string to sign.
      */
-    private static final List<String> SIGNED_PARAMETERS = Arrays.asList(new String[] {
+    private static final Set<String> SIGNED_PARAMETERS = new HashSet<String>(Arrays.asList(new String[] {
             "acl", "torrent", "logging", "location", "policy", "requestPayment", "versioning",
             "versions", "versionId", "notification", "uploadId", "uploads", "partNumber", "website",
             "delete", "lifecycle", "tagging", "cors", "restore", "relax", "meta", "multipart", "part", "copy",
@@ -48,7 +48,10 @@ public class RestUtils {
             ResponseHeaderOverrides.RESPONSE_HEADER_CONTENT_LANGUAGE,
             ResponseHeaderOverrides.RESPONSE_HEADER_CONTENT_TYPE,
             ResponseHeaderOverrides.RESPONSE_HEADER_EXPIRES,
-    });
+    }));
+
+    /** The initial capacity of the canonical string, enough for most requests */
+    private static final int CANONICAL_STRING_CAPACITY = 256;
 
     /**
      * Calculate the canonical string for a REST/HTTP request to S3.
@@ -57,22 +60,20 @@ public class RestUtils {
      */
     public static <T> String makeS3CanonicalString(String method, String resource, Request<T> request, String expires)
     {
-        StringBuilder buf = new StringBuilder();
-        buf.append(method + "\n");
+        StringBuilder buf = new StringBuilder(CANONICAL_STRING_CAPACITY);
+        buf.append(method).append('\n');
 
         // Add all interesting headers to a list, then sort them.  "Interesting"
         // is defined as Content-MD5, Content-Type, Date, and x-amz-
         Map<String, String> headersMap = request.getHeaders();
         SortedMap<String, String> interestingHeaders = new TreeMap<String, String>();
         if (headersMap != null && headersMap.size() > 0) {
-            Iterator<Map.Entry<String, String>> headerIter = headersMap.entrySet().iterator();
-            while (headerIter.hasNext()) {
-                Map.Entry<String, String> entry = (Map.Entry<String, String>) headerIter.next();
+            for (Map.Entry<String, String> entry : headersMap.entrySet()) {
                 String key = entry.getKey();
                 String value = entry.getValue();
 
                 if (key == null) continue;
-                String lk = key.toString().toLowerCase(Locale.getDefault());
+                String lk = key.toLowerCase(Locale.getDefault());
 
                 // Ignore any headers that are not particularly interesting.
                 if (lk.equals("content-type") || lk.equals("date") || lk.equals("s-sina-sha1") || lk.equals("content-md5") ||
@@ -105,55 +106,58 @@ public class RestUtils {
         //添加sha1/content-md5
         String s_sina_sha1 = "";
         if (interestingHeaders.containsKey("s-sina-sha1")) {
-        	s_sina_sha1 = interestingHeaders.get("s-sina-sha1");
-        	interestingHeaders.remove("s-sina-sha1");
+        	s_sina_sha1 = interestingHeaders.remove("s-sina-sha1");
         }else if (interestingHeaders.containsKey("content-md5")) {
-        	s_sina_sha1 = interestingHeaders.get("content-md5");
-        	interestingHeaders.remove("content-md5");
+        	s_sina_sha1 = interestingHeaders.remove("content-md5");
         }
         
-        buf.append(s_sina_sha1+"\n");
+        buf.append(s_sina_sha1).append('\n');
 
 //        if (! interestingHeaders.containsKey("content-md5")) {
 //        	interestingHeaders.put("content-md5", "");
 //        }
         // Any parameters that are prefixed with "x-amz-" need to be included
         // in the headers section of the canonical string to sign
-        for (Map.Entry<String, String> parameter: request.getParameters().entrySet()) {
+        Map<String, String> parameters = request.getParameters();
+        for (Map.Entry<String, String> parameter: parameters.entrySet()) {
             if (parameter.getKey().startsWith("x-amz-")|| parameter.getKey().startsWith(Headers.SINA_PREFIX)) {
                 interestingHeaders.put(parameter.getKey(), parameter.getValue());
             }
         }
 
         // Add all the interesting headers (i.e.: all that startwith x-amz- ;-))
-        for (Iterator<Map.Entry<String, String>> i = interestingHeaders.entrySet().iterator(); i.hasNext(); ) {
-            Map.Entry<String, String> entry = (Map.Entry<String, String>) i.next();
-            String key = (String) entry.getKey();
-            Object value = entry.getValue();
+        for (Map.Entry<String, String> entry : interestingHeaders.entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue();
 
             if (key.startsWith(Headers.AMAZON_PREFIX) || key.startsWith(Headers.SINA_PREFIX)) {
                 buf.append(key).append(':').append(value);
             } else {
                 buf.append(value);
             }
-            buf.append("\n");
+            buf.append('\n');
         }
 
         // Add all the interesting parameters
         buf.append(resource);
-        String[] parameterNames = request.getParameters().keySet().toArray(
-                new String[request.getParameters().size()]);
-        Arrays.sort(parameterNames);
+        if (parameters.isEmpty()) return buf.toString();
+
+        // Only the signed parameters are sorted, usually none or one of them
+        String[] parameterNames = new String[parameters.size()];
+        int signedParameters = 0;
+        for (String parameterName : parameters.keySet()) {
+            if (SIGNED_PARAMETERS.contains(parameterName)) {
+                parameterNames[signedParameters++] = parameterName;
+            }
+        }
+        Arrays.sort(parameterNames, 0, signedParameters);
         char separator = '?';
-        for (String parameterName : parameterNames) {
-            // Skip any parameters that aren't part of the canonical signed string
-            if (SIGNED_PARAMETERS.contains(parameterName) == false) continue;
-
+        for (int i = 0; i < signedParameters; i++) {
             buf.append(separator);
-            buf.append(parameterName);
-            String parameterValue = request.getParameters().get(parameterName);
+            buf.append(parameterNames[i]);
+            String parameterValue = parameters.get(parameterNames[i]);
             if (parameterValue != null) {
-                buf.append("=").append(parameterValue);
+                buf.append('=').append(parameterValue);
             }
 
             separator = '&';
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.cloudstorage.SCSClientException;
+import com.sina.cloudstorage.event.ProgressEvent;
+import com.sina.cloudstorage.event.ProgressListenerCallbackExecutor;
+import com.sina.cloudstorage.services.scs.Headers;
+import com.sina.cloudstorage.services.scs.SCS;
+import com.sina.cloudstorage.services.scs.model.GetObjectRequest;
+import com.sina.cloudstorage.services.scs.model.ObjectMetadata;
+import com.sina.cloudstorage.services.scs.model.S3Object;
+import com.sina.cloudstorage.util.BinaryUtils;
+import com.sina.cloudstorage.util.Md5Utils;
+
+/**
+ * Downloads an object to a file so that an interrupted download continues
+ * where it stopped, within the same call or in a later one.
+ * <p>
+ * Data goes to a partial file next to the destination, and a sidecar state
+ * file keeps the ETag and length of the object and the number of bytes
+ * safely on disk. A download that finds both continues with a ranged request
+ * for the rest of the object, constrained with <code>If-Match</code> to the
+ * recorded ETag, so bytes of different versions of an object are never
+ * mixed; if the object has changed, the download starts over. Once complete,
+ * the file is checked against the ETag when that is an MD5 hash, and renamed
+ * to the destination.
+ *
+ * @see GetObjectRequest#setResumableDownload(boolean)
+ */
+public class ResumableDownloader {
+
+    private static final Log log = LogFactory.getLog(ResumableDownloader.class);
+
+    /** Suffix of the file receiving the data until the download completes */
+    public static final String PARTIAL_FILE_SUFFIX = ".part";
+
+    /** Suffix, after the partial file name, of the state file */
+    public static final String STATE_FILE_SUFFIX = ".state";
+
+    /** Bytes written between two updates of the state file */
+    private static final long STATE_SAVE_INTERVAL = 8L * 1024 * 1024;
+
+    /** Attempts in a row allowed to fail without writing anything */
+    private static final int MAX_ATTEMPTS_WITHOUT_PROGRESS = 3;
+
+    private final SCS s3;
+    private final GetObjectRequest getObjectRequest;
+    private final File destinationFile;
+    private final File partialFile;
+    private final File stateFile;
+    private final int bufferSize;
+    private final boolean performIntegrityCheck;
+    private final ProgressListenerCallbackExecutor progressListenerCallbackExecutor;
+
+    /*
+     * State of the download, as recorded in the state file
+     */
+    private String eTag;
+    private long contentLength = -1;
+    private long bytesWritten;
+
+    public ResumableDownloader(SCS s3, GetObjectRequest getObjectRequest, File destinationFile,
+            int bufferSize, boolean performIntegrityCheck) {
+        this.s3 = s3;
+        this.getObjectRequest = getObjectRequest;
+        this.destinationFile = destinationFile;
+        this.partialFile = new File(destinationFile.getPath() + PARTIAL_FILE_SUFFIX);
+        this.stateFile = new File(partialFile.getPath() + STATE_FILE_SUFFIX);
+        this.bufferSize = bufferSize;
+        this.performIntegrityCheck = performIntegrityCheck;
+        this.progressListenerCallbackExecutor = ProgressListenerCallbackExecutor
+                .wrapListener(getObjectRequest.getGeneralProgressListener());
+    }
+
+    /**
+     * Gets the object, or the rest of it, as asked for by the given request.
+     * Override to keep track of the object being downloaded, for instance to
+     * be able to abort it.
+     */
+    protected S3Object getObject(GetObjectRequest request) {
+        return s3.getObject(request);
+    }
+
+    /**
+     * Downloads the object to the destination file, continuing an earlier
+     * download of it if one was interrupted.
+     *
+     * @return An S3Object describing the whole object, without content, or
+     *         <code>null</code> if the constraints of the request weren't
+     *         met.
+     */
+    public S3Object download() {
+        File parentDirectory = destinationFile.getParentFile();
+        if ( parentDirectory != null && !parentDirectory.exists() ) {
+            parentDirectory.mkdirs();
+        }
+
+        loadState();
+        if (bytesWritten > 0) {
+            log.debug("Resuming download of " + getObjectRequest.getKey() + " from byte " + bytesWritten);
+            // Bytes downloaded before count as transferred
+            fireProgressEvent(bytesWritten);
+        }
+
+        S3Object result = null;
+        int attemptsWithoutProgress = 0;
+        while (contentLength < 0 || bytesWritten < contentLength) {
+            boolean resuming = (eTag != null);
+            S3Object s3Object = getObject(newRequest());
+            if (s3Object == null) {
+                if (!resuming) return null;
+                // The object changed since the partial file was started
+                log.info("Object " + getObjectRequest.getKey() + " has changed, restarting its download");
+                fireProgressEvent(-bytesWritten);
+                discard();
+                continue;
+            }
+            result = s3Object;
+
+            long bytesBefore = bytesWritten;
+            try {
+                if (!resuming) {
+                    eTag = s3Object.getObjectMetadata().getETag();
+                    contentLength = s3Object.getObjectMetadata().getContentLength();
+                    bytesWritten = 0;
+                    saveState();
+                }
+                copy(s3Object);
+                if (bytesWritten < contentLength) {
+                    throw new IOException("Connection closed after " + bytesWritten + " of "
+                            + contentLength + " bytes");
+                }
+            } catch (IOException e) {
+                saveStateQuietly();
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new SCSClientException("Download of " + getObjectRequest.getKey() + " was interrupted", e);
+                }
+                attemptsWithoutProgress = (bytesWritten > bytesBefore) ? 0 : attemptsWithoutProgress + 1;
+                if (attemptsWithoutProgress >= MAX_ATTEMPTS_WITHOUT_PROGRESS) {
+                    throw new SCSClientException("Unable to download " + getObjectRequest.getKey()
+                            + ", it can be resumed from byte " + bytesWritten + ": " + e.getMessage(), e);
+                }
+                log.info("Resuming download of " + getObjectRequest.getKey() + " from byte " + bytesWritten, e);
+            } finally {
+                try { s3Object.getObjectContent().abort(); } catch (IOException e) {}
+            }
+        }
+
+        verifyIntegrity();
+        complete();
+
+        if (result == null) {
+            // Already downloaded completely by an earlier call
+            result = new S3Object();
+            result.setBucketName(getObjectRequest.getBucketName());
+            result.setKey(getObjectRequest.getKey());
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setHeader(Headers.ETAG, eTag);
+            result.setObjectMetadata(metadata);
+        }
+        // The last response may only have been for the rest of the object
+        result.getObjectMetadata().setContentLength(contentLength);
+        return result;
+    }
+
+    /**
+     * Creates the request for the rest of the object, carrying over the
+     * constraints, response header overrides and progress listener of the
+     * original request.
+     */
+    private GetObjectRequest newRequest() {
+        GetObjectRequest request = new GetObjectRequest(getObjectRequest.getBucketName(),
+                getObjectRequest.getKey(), getObjectRequest.getVersionId());
+        request.setResponseHeaders(getObjectRequest.getResponseHeaders());
+        request.setModifiedSinceConstraint(getObjectRequest.getModifiedSinceConstraint());
+        request.setUnmodifiedSinceConstraint(getObjectRequest.getUnmodifiedSinceConstraint());
+        request.setNonmatchingETagConstraints(getObjectRequest.getNonmatchingETagConstraints());
+        if (eTag != null) {
+            request.withMatchingETagConstraint(eTag);
+            if (bytesWritten > 0) request.setRange(bytesWritten, contentLength - 1);
+        } else {
+            request.setMatchingETagConstraints(getObjectRequest.getMatchingETagConstraints());
+        }
+        request.setGeneralProgressListener(getObjectRequest.getGeneralProgressListener());
+        return request;
+    }
+
+    /**
+     * Appends the content of the given object to the partial file. Whatever
+     * was received before a connection failure is written before the failure
+     * is thrown, so the download can continue right after it. Failures to
+     * write to disk aren't retried.
+     */
+    private void copy(S3Object s3Object) throws IOException {
+        RandomAccessFile randomAccessFile;
+        try {
+            randomAccessFile = new RandomAccessFile(partialFile, "rw");
+            randomAccessFile.setLength(bytesWritten);
+        } catch (IOException e) {
+            throw new SCSClientException("Unable to store object contents to disk: " + e.getMessage(), e);
+        }
+
+        ByteBuffer buffer = ServiceUtils.takeDownloadBuffer(bufferSize);
+        try {
+            FileChannel out = randomAccessFile.getChannel();
+            ReadableByteChannel in = Channels.newChannel(s3Object.getObjectContent());
+            long lastSaved = bytesWritten;
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                IOException readFailure = null;
+                buffer.clear();
+                try {
+                    while (buffer.hasRemaining()) {
+                        if (in.read(buffer) < 0) {
+                            endOfStream = true;
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    readFailure = e;
+                }
+
+                buffer.flip();
+                try {
+                    while (buffer.hasRemaining()) {
+                        bytesWritten += out.write(buffer, bytesWritten);
+                    }
+                    if (bytesWritten - lastSaved >= STATE_SAVE_INTERVAL || readFailure != null) {
+                        out.force(false);
+                        saveState();
+                        lastSaved = bytesWritten;
+                    }
+                } catch (IOException e) {
+                    throw new SCSClientException("Unable to store object contents to disk: " + e.getMessage(), e);
+                }
+                if (readFailure != null) throw readFailure;
+            }
+            try {
+                out.force(false);
+            } catch (IOException e) {
+                throw new SCSClientException("Unable to store object contents to disk: " + e.getMessage(), e);
+            }
+        } finally {
+            ServiceUtils.returnDownloadBuffer(buffer);
+            try { randomAccessFile.close(); } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Checks the downloaded file against the ETag of the object, unless the
+     * ETag isn't an MD5 hash because the object was uploaded in parts. A
+     * corrupt download is discarded.
+     */
+    private void verifyIntegrity() {
+        if (!performIntegrityCheck || eTag == null || ServiceUtils.isMultipartUploadETag(eTag)) return;
+
+        byte[] clientSideHash = null;
+        byte[] serverSideHash = null;
+        try {
+            clientSideHash = Md5Utils.computeMD5HashMapped(partialFile);
+            serverSideHash = BinaryUtils.fromHex(ServiceUtils.removeQuotes(eTag));
+        } catch (Exception e) {
+            log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+        }
+
+        if (clientSideHash != null && serverSideHash != null && !Arrays.equals(clientSideHash, serverSideHash)) {
+            discard();
+            throw new SCSClientException("Unable to verify integrity of data download.  " +
+                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                    "The partial download of '" + destinationFile.getAbsolutePath() + "' has been discarded.");
+        }
+    }
+
+    /**
+     * Moves the complete partial file to the destination.
+     */
+    private void complete() {
+        if (destinationFile.exists() && !destinationFile.delete()) {
+            throw new SCSClientException("Unable to replace " + destinationFile.getAbsolutePath());
+        }
+        if (!partialFile.renameTo(destinationFile)) {
+            throw new SCSClientException("Unable to rename " + partialFile.getAbsolutePath()
+                    + " to " + destinationFile.getAbsolutePath());
+        }
+        stateFile.delete();
+    }
+
+    /**
+     * Reads the state of an earlier download of the same object to the same
+     * file, if there is one, and trims the partial file to the bytes known to
+     * be on disk. Anything else found is discarded.
+     */
+    private void loadState() {
+        eTag = null;
+        contentLength = -1;
+        bytesWritten = 0;
+        if (!stateFile.isFile() || !partialFile.isFile()) {
+            discard();
+            return;
+        }
+
+        Properties state = new Properties();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(stateFile);
+            state.load(in);
+            boolean sameObject = getObjectRequest.getBucketName().equals(state.getProperty("bucket"))
+                    && getObjectRequest.getKey().equals(state.getProperty("key"))
+                    && String.valueOf(getObjectRequest.getVersionId()).equals(state.getProperty("versionId"));
+            String recordedETag = state.getProperty("etag");
+            if (sameObject && recordedETag != null) {
+                long length = Long.parseLong(state.getProperty("length"));
+                long written = Math.min(Long.parseLong(state.getProperty("bytes")), partialFile.length());
+                if (length >= 0 && written >= 0 && written <= length) {
+                    eTag = recordedETag;
+                    contentLength = length;
+                    bytesWritten = written;
+                }
+            }
+        } catch (Exception e) {
+            log.info("Ignoring unreadable download state " + stateFile + ": " + e.getMessage());
+        } finally {
+            if (in != null) {
+                try { in.close(); } catch (IOException e) {}
+            }
+        }
+        if (eTag == null) discard();
+    }
+
+    private void saveState() throws IOException {
+        Properties state = new Properties();
+        state.setProperty("bucket", getObjectRequest.getBucketName());
+        state.setProperty("key", getObjectRequest.getKey());
+        state.setProperty("versionId", String.valueOf(getObjectRequest.getVersionId()));
+        state.setProperty("etag", eTag);
+        state.setProperty("length", Long.toString(contentLength));
+        state.setProperty("bytes", Long.toString(bytesWritten));
+
+        FileOutputStream out = new FileOutputStream(stateFile);
+        try {
+            state.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void saveStateQuietly() {
+        if (eTag == null) return;
+        try {
+            saveState();
+        } catch (IOException e) {
+            log.warn("Unable to save download state " + stateFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets any partial download, to start over.
+     */
+    private void discard() {
+        eTag = null;
+        contentLength = -1;
+        bytesWritten = 0;
+        stateFile.delete();
+        partialFile.delete();
+    }
+
+    private void fireProgressEvent(long bytes) {
+        if (progressListenerCallbackExecutor == null || bytes == 0) return;
+        progressListenerCallbackExecutor.progressChanged(new ProgressEvent(bytes));
+    }
+}
@@ -107,7 +107,9 @@ public class S3Signer extends AbstractAWSSigner {
         request.addHeader(Headers.DATE, ServiceUtils.formatRfc822Date(date));//"Mon, 05 May 2014 07:29:43 GMT");//
         String canonicalString = RestUtils.makeS3CanonicalString(
                 httpVerb, encodedResourcePath, request, null);
-        log.debug("Calculated string to sign:\n" + canonicalString);
+        if (log.isDebugEnabled()) {
+            log.debug("Calculated string to sign:\n" + canonicalString);
+        }
 //        System.out.println("Calculated string to sign:\n" + canonicalString);
 
         String signature = super.signAndBase64Encode(canonicalString, sanitizedCredentials.getAWSSecretKey(), SigningAlgorithm.HmacSHA1);
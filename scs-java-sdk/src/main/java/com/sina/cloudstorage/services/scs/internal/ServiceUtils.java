@@ -17,33 +17,39 @@
  */
 package com.sina.cloudstorage.services.scs.internal;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.net.ssl.SSLProtocolException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.sina.cloudstorage.ClientConfiguration;
 import com.sina.cloudstorage.Request;
 import com.sina.cloudstorage.SCSClientException;
 import com.sina.cloudstorage.services.scs.model.S3Object;
 import com.sina.cloudstorage.util.BinaryUtils;
 import com.sina.cloudstorage.util.DateUtils;
 import com.sina.cloudstorage.util.HttpUtils;
-import com.sina.cloudstorage.util.Md5Utils;
 
 
 /**
@@ -54,6 +60,13 @@ public class ServiceUtils {
 
     protected static final DateUtils dateUtils = new DateUtils();
 
+    /** The most idle download buffers kept for reuse */
+    private static final int MAX_POOLED_DOWNLOAD_BUFFERS = 8;
+
+    /** Idle direct buffers for downloads, returned after each copy */
+    private static final BlockingQueue<ByteBuffer> downloadBuffers =
+            new ArrayBlockingQueue<ByteBuffer>(MAX_POOLED_DOWNLOAD_BUFFERS);
+
     public static Date parseIso8601Date(String dateString) throws ParseException {
         return dateUtils.parseIso8601Date(dateString);
     }
@@ -171,29 +184,29 @@ public class ServiceUtils {
         // we treat consecutive "/"s in AmazonS3Client#presignRequest(...)
         String urlPath = "/" + resourcePath;
         urlPath = urlPath.replaceAll("(?<=/)/", "%2F");
-        String urlString =  request.getEndpoint() + urlPath;
+        StringBuilder urlString = new StringBuilder();
+        urlString.append(request.getEndpoint()).append(urlPath);
 
         boolean firstParam = true;
-        for (String param : request.getParameters().keySet()) {
+        for (Map.Entry<String, String> param : request.getParameters().entrySet()) {
             if (firstParam) {
-                urlString += "?";
+                urlString.append('?');
                 firstParam = false;
             } else {
-                urlString += "&";
+                urlString.append('&');
             }
 
-            String value = request.getParameters().get(param);
+            String value = param.getValue();
+            urlString.append(param.getKey());
             if (value != null)
-	            if (!"ssig".equalsIgnoreCase(param))
-	        		urlString += param + "=" + HttpUtils.urlEncode(value, false);
+	            if (!"ssig".equalsIgnoreCase(param.getKey()))
+	        		urlString.append('=').append(HttpUtils.urlEncode(value, false));
 	        	else
-	        		urlString += param + "=" + value;
-            else
-            	urlString += param;
+	        		urlString.append('=').append(value);
         }
 
         try {
-            return new URL(urlString);
+            return new URL(urlString.toString());
         } catch (MalformedURLException e) {
             throw new SCSClientException(
                     "Unable to convert request to well formed URL: " + e.getMessage(), e);
@@ -239,6 +252,29 @@ public class ServiceUtils {
      *
      */
     public static void downloadObjectToFile(S3Object s3Object, File destinationFile, boolean performIntegrityCheck) {
+        downloadObjectToFile(s3Object, destinationFile, performIntegrityCheck, ClientConfiguration.DEFAULT_DOWNLOAD_BUFFER_SIZE);
+    }
+
+    /**
+     * Downloads an S3Object, as returned from
+     * {@link SCSClient#getObject(com.sina.cloudstorage.services.scs.model.GetObjectRequest)},
+     * to the specified file, copying the content through a direct buffer of
+     * the given size into the file's channel. The MD5 hash used for the
+     * integrity check is computed as the data goes by, rather than by reading
+     * the file back.
+     *
+     * @param s3Object
+     *            The S3Object containing a reference to an InputStream
+     *            containing the object's data.
+     * @param destinationFile
+     *            The file to store the object's data in.
+     * @param performIntegrityCheck
+     *            Boolean valuable to indicate whether do the integrity check or not
+     * @param bufferSize
+     *            The size of the buffer the data is copied through.
+     */
+    public static void downloadObjectToFile(S3Object s3Object, File destinationFile, boolean performIntegrityCheck,
+            int bufferSize) {
 
         // attempt to create the parent if it doesn't exist
         File parentDirectory = destinationFile.getParentFile();
@@ -246,13 +282,43 @@ public class ServiceUtils {
             parentDirectory.mkdirs();
         }
 
-        OutputStream outputStream = null;
+        // Multipart Uploads don't have an MD5 calculated on the service side
+        String eTag = s3Object.getObjectMetadata().getETag();
+        MessageDigest digest = null;
+        if (performIntegrityCheck && eTag != null && ServiceUtils.isMultipartUploadETag(eTag) == false) {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+            }
+        }
+
+        FileOutputStream outputStream = null;
+        ByteBuffer buffer = null;
         try {
-            outputStream = new BufferedOutputStream(new FileOutputStream(destinationFile));
-            byte[] buffer = new byte[1024*10];
-            int bytesRead;
-            while ((bytesRead = s3Object.getObjectContent().read(buffer)) > -1) {
-                outputStream.write(buffer, 0, bytesRead);
+            outputStream = new FileOutputStream(destinationFile);
+            FileChannel out = outputStream.getChannel();
+            ReadableByteChannel in = Channels.newChannel(s3Object.getObjectContent());
+            buffer = takeDownloadBuffer(bufferSize);
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                // Fill the buffer before writing, so each write moves a full buffer
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer) < 0) {
+                        endOfStream = true;
+                        break;
+                    }
+                }
+                buffer.flip();
+                if (digest != null) {
+                    buffer.mark();
+                    digest.update(buffer);
+                    buffer.reset();
+                }
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
             }
         } catch (IOException e) {
             try {
@@ -263,27 +329,55 @@ public class ServiceUtils {
             throw new SCSClientException(
                     "Unable to store object contents to disk: " + e.getMessage(), e);
         } finally {
+            returnDownloadBuffer(buffer);
             try {outputStream.close();} catch (Exception e) {}
             try {s3Object.getObjectContent().close();} catch (Exception e) {}
         }
 
-        byte[] clientSideHash = null;
-        byte[] serverSideHash = null;
-        try {
-            // Multipart Uploads don't have an MD5 calculated on the service side
-            if (ServiceUtils.isMultipartUploadETag(s3Object.getObjectMetadata().getETag()) == false) {
-                clientSideHash = Md5Utils.computeMD5Hash(new FileInputStream(destinationFile));
-                serverSideHash = BinaryUtils.fromHex(s3Object.getObjectMetadata().getETag());
+        if (digest != null) {
+            byte[] clientSideHash = digest.digest();
+            byte[] serverSideHash = null;
+            try {
+                serverSideHash = BinaryUtils.fromHex(eTag);
+            } catch (Exception e) {
+                log.warn("Unable to decode MD5 hash to validate download: " + e.getMessage(), e);
+            }
+
+            if (serverSideHash != null && !Arrays.equals(clientSideHash, serverSideHash)) {
+                throw new SCSClientException("Unable to verify integrity of data download.  " +
+                        "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                        "The data stored in '" + destinationFile.getAbsolutePath() + "' may be corrupt.");
             }
-        } catch (Exception e) {
-            log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
         }
+    }
 
-        if (performIntegrityCheck && clientSideHash != null && serverSideHash != null && !Arrays.equals(clientSideHash, serverSideHash)) {
-            throw new SCSClientException("Unable to verify integrity of data download.  " +
-                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
-                    "The data stored in '" + destinationFile.getAbsolutePath() + "' may be corrupt.");
+    /**
+     * Takes an idle direct buffer of the given size for a download, cleared,
+     * allocating a new one if none is idle. Direct buffers are costly to
+     * allocate and slow to be reclaimed, so a few are kept for reuse; the
+     * buffer must be handed back with {@link #returnDownloadBuffer(ByteBuffer)}
+     * once the copy is over.
+     */
+    static ByteBuffer takeDownloadBuffer(int bufferSize) {
+        ByteBuffer buffer;
+        while ((buffer = downloadBuffers.poll()) != null) {
+            // Buffers of another size are left to the garbage collector
+            if (buffer.capacity() == bufferSize) {
+                buffer.clear();
+                return buffer;
+            }
         }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Hands back a buffer taken with {@link #takeDownloadBuffer(int)}. It is
+     * kept for the next download unless enough buffers are idle already.
+     * Does nothing if the buffer is null.
+     */
+    static void returnDownloadBuffer(ByteBuffer buffer) {
+        if (buffer != null)
+            downloadBuffers.offer(buffer);
     }
 
     /**
@@ -323,6 +417,23 @@ public class ServiceUtils {
      * 			get access to all the visible variables at the calling site of this method.
      */
     public static S3Object retryableDownloadS3ObjectToFile (File file, RetryableS3DownloadTask retryableS3DownloadTask) {
+        return retryableDownloadS3ObjectToFile(file, retryableS3DownloadTask, ClientConfiguration.DEFAULT_DOWNLOAD_BUFFER_SIZE);
+    }
+
+    /**
+     * Same as {@link #retryableDownloadS3ObjectToFile(File, RetryableS3DownloadTask)},
+     * copying the data through a buffer of the given size.
+     *
+     * @param file
+     * 			The file to store the object's data in.
+     * @param retryableS3DownloadTask
+     * 			The implementation of SafeS3DownloadTask interface which allows user to
+     * 			get access to all the visible variables at the calling site of this method.
+     * @param bufferSize
+     * 			The size of the buffer the data is copied through.
+     */
+    public static S3Object retryableDownloadS3ObjectToFile (File file, RetryableS3DownloadTask retryableS3DownloadTask,
+            int bufferSize) {
         boolean hasRetried = false;
         boolean needRetry;
         S3Object s3Object;
@@ -333,7 +444,7 @@ public class ServiceUtils {
                 return null;
 
             try {
-                ServiceUtils.downloadObjectToFile(s3Object, file, retryableS3DownloadTask.needIntegrityCheck());
+                ServiceUtils.downloadObjectToFile(s3Object, file, retryableS3DownloadTask.needIntegrityCheck(), bufferSize);
             } catch (SCSClientException ace) {
                 // Determine whether an immediate retry is needed according to the captured AmazonClientException.
                 // (There are three cases when downloadObjectToFile() throws AmazonClientException:
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.iterable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.cloudstorage.SCSClientException;
+import com.sina.cloudstorage.services.scs.SCS;
+import com.sina.cloudstorage.services.scs.model.ListObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.ObjectListing;
+import com.sina.cloudstorage.services.scs.model.S3ObjectSummary;
+
+/**
+ * Lists a bucket with several requests in flight at once.
+ * <p>
+ * When the listing uses a delimiter, every common prefix returned is listed
+ * as a separate task on the worker pool, so the virtual directories of a
+ * bucket are walked in parallel rather than one <code>listObjects</code> call
+ * at a time. Pages within one prefix still follow each other through their
+ * markers. Additionally, the key range can be split at caller
+ * supplied markers, each range being listed independently. The request's
+ * marker and the split markers hold inside the common prefixes as well: a
+ * prefix that spans a marker is listed by the ranges on either side of it,
+ * each up to or from that marker.
+ * <p>
+ * Every page is handed to a {@link ListingHandler} as soon as it arrives.
+ * Handlers are called from the worker threads, concurrently, and must be
+ * thread safe. {@link #listObjects(ListObjectsRequest, ListingHandler)}
+ * blocks until every task has finished; the first failure stops the
+ * remaining tasks and is rethrown to the caller.
+ * <pre>
+ * ParallelObjectLister lister = new ParallelObjectLister(scs, 16);
+ * try {
+ *     lister.listObjects(new ListObjectsRequest().withBucketName("my-bucket").withDelimiter("/"),
+ *             new ParallelObjectLister.ListingHandler() {
+ *                 public void objectListingReceived(ObjectListing listing) {
+ *                     ...
+ *                 }
+ *             });
+ * } finally {
+ *     lister.shutdown();
+ * }
+ * </pre>
+ */
+public class ParallelObjectLister {
+
+    private static final Log log = LogFactory.getLog(ParallelObjectLister.class);
+
+    /**
+     * Receives the pages of a parallel listing.
+     */
+    public interface ListingHandler {
+
+        /**
+         * Called once for every page listed. The listing's prefix is the
+         * prefix the page was listed under, which, for recursive listings,
+         * is one of the common prefixes returned earlier.
+         *
+         * @param listing
+         *            One page of results.
+         */
+        public void objectListingReceived(ObjectListing listing);
+    }
+
+    private final SCS s3;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    /** Held by each list request in flight, or null if only the executor bounds them */
+    private final Semaphore requestPermits;
+
+    /** Whether common prefixes are listed in turn */
+    private boolean recursive = true;
+
+    /**
+     * Constructs a lister that runs its requests on the given executor. The
+     * executor isn't shut down by {@link #shutdown()}.
+     *
+     * @param s3
+     *            The SCS client.
+     * @param executor
+     *            The executor to run list requests on.
+     */
+    public ParallelObjectLister(SCS s3, ExecutorService executor) {
+        this(s3, executor, null);
+    }
+
+    /**
+     * Constructs a lister that runs its requests on the given executor, each
+     * holding a permit of the given semaphore while it is in flight. The
+     * semaphore bounds the requests in flight when the executor doesn't, as
+     * with a pool of virtual threads, and can be shared with other work. The
+     * executor isn't shut down by {@link #shutdown()}.
+     *
+     * @param s3
+     *            The SCS client.
+     * @param executor
+     *            The executor to run list requests on.
+     * @param requestPermits
+     *            The permits of the requests in flight, or null for no
+     *            limit besides the executor.
+     */
+    public ParallelObjectLister(SCS s3, ExecutorService executor, Semaphore requestPermits) {
+        this.s3 = s3;
+        this.executor = executor;
+        this.ownsExecutor = false;
+        this.requestPermits = requestPermits;
+    }
+
+    /**
+     * Constructs a lister with its own pool of the given number of daemon
+     * threads.
+     *
+     * @param s3
+     *            The SCS client.
+     * @param threadCount
+     *            The maximum number of list requests in flight.
+     */
+    public ParallelObjectLister(SCS s3, int threadCount) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        this.s3 = s3;
+        this.executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            final AtomicInteger threadNumber = new AtomicInteger(0);
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("scs-parallel-lister-" + threadNumber.incrementAndGet());
+                return thread;
+            }
+        });
+        this.ownsExecutor = true;
+        this.requestPermits = null;
+    }
+
+    /**
+     * Sets whether the common prefixes returned by a delimited listing are
+     * listed as well. Defaults to true. Has no effect without a delimiter.
+     *
+     * @param recursive
+     *            True to descend into common prefixes.
+     * @return This object for method chaining.
+     */
+    public ParallelObjectLister withRecursive(boolean recursive) {
+        this.recursive = recursive;
+        return this;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Lists the objects selected by the given request, fanning out over
+     * common prefixes when the request has a delimiter, and blocks until the
+     * listing is complete.
+     *
+     * @param listObjectsRequest
+     *            The bucket, prefix, marker, delimiter and page size to list
+     *            with.
+     * @param handler
+     *            Receives each page as it arrives.
+     *
+     * @throws SCSClientException
+     *             If any request fails, or the calling thread is interrupted.
+     */
+    public void listObjects(ListObjectsRequest listObjectsRequest, ListingHandler handler) {
+        listObjects(listObjectsRequest, Collections.<String>emptyList(), handler);
+    }
+
+    /**
+     * Lists the objects selected by the given request like
+     * {@link #listObjects(ListObjectsRequest, ListingHandler)}, additionally
+     * splitting the key range of the request's prefix at the given markers.
+     * Each range after one marker and up to and including the next is listed
+     * as a separate chain of pages, so a key equal to a split marker is
+     * listed once, by the range it ends. Markers should be sorted and lie
+     * under the request's prefix; a good choice is a sample of keys from an
+     * earlier listing. Markers ending with the delimiter are ignored, since
+     * as a marker such a common prefix stands past all of its keys.
+     *
+     * @param listObjectsRequest
+     *            The bucket, prefix, marker, delimiter and page size to list
+     *            with.
+     * @param splitMarkers
+     *            Sorted keys to split the key range at.
+     * @param handler
+     *            Receives each page as it arrives.
+     *
+     * @throws SCSClientException
+     *             If any request fails, or the calling thread is interrupted.
+     */
+    public void listObjects(ListObjectsRequest listObjectsRequest, List<String> splitMarkers,
+            ListingHandler handler) {
+        if (listObjectsRequest.getBucketName() == null)
+            throw new IllegalArgumentException("The bucket name parameter must be specified when listing objects in a bucket");
+
+        ListingTracker tracker = new ListingTracker(listObjectsRequest, handler);
+
+        List<String> bounds = new ArrayList<String>();
+        bounds.add(listObjectsRequest.getMarker());
+        String delimiter = listObjectsRequest.getDelimiter();
+        for (String marker : splitMarkers) {
+            if (delimiter != null && marker.endsWith(delimiter))
+                continue;
+            String last = bounds.get(bounds.size() - 1);
+            if (last == null || marker.compareTo(last) > 0)
+                bounds.add(marker);
+        }
+        bounds.add(null);
+
+        String prefix = listObjectsRequest.getPrefix();
+        for (int i = 0; i < bounds.size() - 1; i++)
+            tracker.submit(new ListTask(tracker, prefix, bounds.get(i), bounds.get(i + 1)));
+
+        tracker.await();
+    }
+
+    /**
+     * Shuts down the pool created by this lister, if it created one.
+     */
+    public void shutdown() {
+        if (ownsExecutor)
+            executor.shutdownNow();
+    }
+
+    /**
+     * Keeps count of the outstanding tasks of one listing and records its
+     * first failure.
+     */
+    private final class ListingTracker {
+        private final ListObjectsRequest template;
+        private final ListingHandler handler;
+        private final AtomicInteger outstanding = new AtomicInteger(0);
+        private final CountDownLatch done = new CountDownLatch(1);
+        /**
+         * Common prefixes already queued with their bounds; a page can repeat
+         * a prefix, and split ranges can report the same one
+         */
+        private final ConcurrentMap<List<String>, Boolean> listedPrefixes =
+                new ConcurrentHashMap<List<String>, Boolean>();
+        private volatile Throwable failure;
+
+        ListingTracker(ListObjectsRequest template, ListingHandler handler) {
+            this.template = template;
+            this.handler = handler;
+            // Held by the submitting thread until all top level tasks are queued
+            outstanding.incrementAndGet();
+        }
+
+        void submit(ListTask task) {
+            outstanding.incrementAndGet();
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                fail(e);
+                finished();
+            }
+        }
+
+        void submitPrefix(String prefix, String startMarker, String endKey) {
+            if (listedPrefixes.putIfAbsent(Arrays.asList(prefix, startMarker, endKey), Boolean.TRUE) == null)
+                submit(new ListTask(this, prefix, startMarker, endKey));
+        }
+
+        void fail(Throwable t) {
+            if (failure == null)
+                failure = t;
+        }
+
+        boolean isFailed() {
+            return failure != null;
+        }
+
+        void finished() {
+            if (outstanding.decrementAndGet() == 0)
+                done.countDown();
+        }
+
+        void await() {
+            finished();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                fail(e);
+                Thread.currentThread().interrupt();
+                throw new SCSClientException("Interrupted while listing objects", e);
+            }
+
+            Throwable t = failure;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            if (t != null)
+                throw new SCSClientException("Unable to list objects: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Lists one prefix, page by page, after a start marker and up to an
+     * optional inclusive end key, queueing a new task for each common prefix
+     * found.
+     */
+    private final class ListTask implements Runnable {
+        private final ListingTracker tracker;
+        private final String prefix;
+        private final String startMarker;
+        private final String endKey;
+
+        ListTask(ListingTracker tracker, String prefix, String startMarker, String endKey) {
+            this.tracker = tracker;
+            this.prefix = prefix;
+            this.startMarker = startMarker;
+            this.endKey = endKey;
+        }
+
+        public void run() {
+            try {
+                String marker = startMarker;
+                while (!tracker.isFailed()) {
+                    ListObjectsRequest template = tracker.template;
+                    ObjectListing listing = listPage(new ListObjectsRequest(
+                            template.getBucketName(), prefix, marker,
+                            template.getDelimiter(), template.getMaxKeys()));
+                    if (listing.getPrefix() == null)
+                        listing.setPrefix(prefix);
+
+                    boolean reachedEnd = endKey != null && trimAtEndKey(listing);
+
+                    if (recursive && template.getDelimiter() != null) {
+                        for (Map<String, String> commonPrefix : listing.getCommonPrefixes()) {
+                            String childPrefix = commonPrefix.get("Prefix");
+                            // A marker equal to a common prefix is past all of its keys
+                            if (childPrefix != null && !childPrefix.equals(prefix)
+                                    && !childPrefix.equals(startMarker))
+                                tracker.submitPrefix(childPrefix,
+                                        boundUnder(childPrefix, startMarker),
+                                        boundUnder(childPrefix, endKey));
+                        }
+                    }
+
+                    tracker.handler.objectListingReceived(listing);
+
+                    if (reachedEnd || !S3Objects.hasMorePages(listing))
+                        break;
+                    marker = S3Objects.nextMarkerOf(listing);
+                }
+            } catch (Throwable t) {
+                log.debug("Listing under prefix " + prefix + " failed", t);
+                tracker.fail(t);
+            } finally {
+                tracker.finished();
+            }
+        }
+
+        private ObjectListing listPage(ListObjectsRequest request) throws InterruptedException {
+            if (requestPermits == null)
+                return s3.listObjects(request);
+            requestPermits.acquire();
+            try {
+                return s3.listObjects(request);
+            } finally {
+                requestPermits.release();
+            }
+        }
+
+        /**
+         * Returns the bound of this task that applies under the given common
+         * prefix. A bound outside the prefix lies before or after all of its
+         * keys, so the prefix is listed in full on that side.
+         */
+        private String boundUnder(String childPrefix, String bound) {
+            return bound != null && bound.startsWith(childPrefix) ? bound : null;
+        }
+
+        /**
+         * Drops the keys and common prefixes after the end key. Returns true
+         * if anything was dropped, meaning this range is complete.
+         */
+        private boolean trimAtEndKey(ObjectListing listing) {
+            boolean trimmed = false;
+            for (Iterator<S3ObjectSummary> it = listing.getObjectSummaries().iterator(); it.hasNext();) {
+                if (it.next().getKey().compareTo(endKey) > 0) {
+                    it.remove();
+                    trimmed = true;
+                }
+            }
+            for (Iterator<Map<String, String>> it = listing.getCommonPrefixes().iterator(); it.hasNext();) {
+                String commonPrefix = it.next().get("Prefix");
+                if (commonPrefix != null && commonPrefix.compareTo(endKey) > 0) {
+                    it.remove();
+                    trimmed = true;
+                }
+            }
+            if (trimmed)
+                listing.setTruncated(false);
+            return trimmed;
+        }
+    }
+}
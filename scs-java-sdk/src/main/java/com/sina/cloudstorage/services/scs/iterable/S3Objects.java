@@ -0,0 +1,311 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.iterable;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sina.cloudstorage.SCSClientException;
+import com.sina.cloudstorage.services.scs.SCS;
+import com.sina.cloudstorage.services.scs.model.ListObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.ObjectListing;
+import com.sina.cloudstorage.services.scs.model.S3ObjectSummary;
+
+/**
+ * Provides an iterable over the {@link S3ObjectSummary} objects in a bucket.
+ * Pages of results are requested lazily, as the iteration reaches the end of
+ * the page already fetched, so at most one page (two with prefetching) is
+ * held in memory regardless of the size of the bucket.
+ * <p>
+ * With {@link #withPrefetch(boolean) prefetching} enabled, the request for
+ * the next page is issued on a background thread as soon as the current page
+ * arrives, hiding the round trip behind the caller's work on the current
+ * page.
+ * <p>
+ * Each call to {@link #iterator()} starts a new listing from the beginning.
+ * The iterators are not thread safe.
+ * <pre>
+ * for (S3ObjectSummary summary : S3Objects.withPrefix(scs, "my-bucket", "logs/")) {
+ *     System.out.println(summary.getKey());
+ * }
+ * </pre>
+ *
+ * @see SCS#listObjects(ListObjectsRequest)
+ */
+public class S3Objects implements Iterable<S3ObjectSummary> {
+
+    /** Shared pool for page prefetches; idle threads exit after a minute. */
+    private static volatile ExecutorService prefetchExecutor;
+
+    private final SCS s3;
+    private final String bucketName;
+    private String prefix;
+    private String delimiter;
+    private String marker;
+    private Integer batchSize;
+    private boolean prefetch;
+
+    private S3Objects(SCS s3, String bucketName) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in a bucket.
+     *
+     * @param s3
+     *            The SCS client.
+     * @param bucketName
+     *            The bucket name.
+     * @return An iterator for object summaries.
+     */
+    public static S3Objects inBucket(SCS s3, String bucketName) {
+        return new S3Objects(s3, bucketName);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in a bucket that have
+     * keys starting with the given prefix.
+     *
+     * @param s3
+     *            The SCS client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefix
+     *            The prefix.
+     * @return An iterator for object summaries.
+     */
+    public static S3Objects withPrefix(SCS s3, String bucketName, String prefix) {
+        S3Objects objects = new S3Objects(s3, bucketName);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Constructs an iterable that covers the objects selected by the
+     * bucket name, prefix, delimiter and max keys of the given request. The
+     * marker of the request, if any, is where the iteration starts.
+     *
+     * @param s3
+     *            The SCS client.
+     * @param listObjectsRequest
+     *            The request describing the objects to iterate over.
+     * @return An iterator for object summaries.
+     */
+    public static S3Objects withRequest(SCS s3, ListObjectsRequest listObjectsRequest) {
+        S3Objects objects = new S3Objects(s3, listObjectsRequest.getBucketName());
+        objects.prefix = listObjectsRequest.getPrefix();
+        objects.delimiter = listObjectsRequest.getDelimiter();
+        objects.batchSize = listObjectsRequest.getMaxKeys();
+        objects.marker = listObjectsRequest.getMarker();
+        return objects;
+    }
+
+    /**
+     * Sets the delimiter used for the listing. Keys rolled up into common
+     * prefixes by the delimiter are not returned by the iteration.
+     *
+     * @param delimiter
+     *            The delimiter.
+     * @return This object for method chaining.
+     */
+    public S3Objects withDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Sets the number of keys requested per page.
+     *
+     * @param batchSize
+     *            The number of keys per request, or <code>null</code> for the
+     *            service default.
+     * @return This object for method chaining.
+     */
+    public S3Objects withBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets whether the next page is requested in the background while the
+     * current one is being consumed.
+     *
+     * @param prefetch
+     *            True to prefetch the next page.
+     * @return This object for method chaining.
+     */
+    public S3Objects withPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    public SCS getS3() {
+        return s3;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    public Iterator<S3ObjectSummary> iterator() {
+        return new S3ObjectIterator();
+    }
+
+    /**
+     * Returns the marker to continue a truncated listing after. Falls back to
+     * the greatest key or common prefix of the page when the service didn't
+     * supply a next marker.
+     */
+    static String nextMarkerOf(ObjectListing listing) {
+        if (listing.getNextMarker() != null)
+            return listing.getNextMarker();
+
+        String last = null;
+        List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+        if (!summaries.isEmpty())
+            last = summaries.get(summaries.size() - 1).getKey();
+        List<Map<String, String>> commonPrefixes = listing.getCommonPrefixes();
+        if (commonPrefixes != null && !commonPrefixes.isEmpty()) {
+            String lastPrefix = commonPrefixes.get(commonPrefixes.size() - 1).get("Prefix");
+            if (last == null || (lastPrefix != null && lastPrefix.compareTo(last) > 0))
+                last = lastPrefix;
+        }
+        return last;
+    }
+
+    /**
+     * Returns true if the listing is truncated and there is a marker to
+     * continue it from.
+     */
+    static boolean hasMorePages(ObjectListing listing) {
+        return listing.isTruncated() && nextMarkerOf(listing) != null;
+    }
+
+    private static ExecutorService getPrefetchExecutor() {
+        ExecutorService executor = prefetchExecutor;
+        if (executor == null) {
+            synchronized (S3Objects.class) {
+                executor = prefetchExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                        final AtomicInteger threadCount = new AtomicInteger(0);
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r);
+                            thread.setDaemon(true);
+                            thread.setName("scs-list-prefetch-" + threadCount.incrementAndGet());
+                            return thread;
+                        }
+                    });
+                    prefetchExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private class S3ObjectIterator implements Iterator<S3ObjectSummary> {
+
+        private ObjectListing currentListing;
+        private Iterator<S3ObjectSummary> currentIterator;
+        private Future<ObjectListing> nextListing;
+
+        public boolean hasNext() {
+            while (currentIterator == null || !currentIterator.hasNext()) {
+                if (currentListing != null && !hasMorePages(currentListing))
+                    return false;
+                advance();
+            }
+            return true;
+        }
+
+        public S3ObjectSummary next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return currentIterator.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void advance() {
+            if (currentListing == null) {
+                currentListing = s3.listObjects(new ListObjectsRequest(
+                        bucketName, prefix, marker, delimiter, batchSize));
+            } else if (nextListing != null) {
+                currentListing = await(nextListing);
+                nextListing = null;
+            } else {
+                currentListing = fetchAfter(currentListing);
+            }
+            currentIterator = currentListing.getObjectSummaries().iterator();
+
+            if (prefetch && hasMorePages(currentListing)) {
+                final ObjectListing previous = currentListing;
+                nextListing = getPrefetchExecutor().submit(new Callable<ObjectListing>() {
+                    public ObjectListing call() throws Exception {
+                        return fetchAfter(previous);
+                    }
+                });
+            }
+        }
+
+        private ObjectListing fetchAfter(ObjectListing previous) {
+            return s3.listObjects(new ListObjectsRequest(
+                    bucketName, prefix, nextMarkerOf(previous), delimiter, batchSize));
+        }
+
+        private ObjectListing await(Future<ObjectListing> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new SCSClientException("Interrupted while waiting for the next object listing", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                throw new SCSClientException("Unable to fetch the next object listing", cause);
+            }
+        }
+    }
+}
@@ -21,7 +21,7 @@ import java.text.ParseException;
 import java.util.Date;
 import java.util.Map;
 
-import com.sina.cloudstorage.util.DateUtils;
+import com.sina.cloudstorage.services.scs.internal.ServiceUtils;
 
 /**
  * <p>
@@ -104,9 +104,8 @@ public class Bucket {
 		//创建时间
 		String creationDateStr = (String) bucketJsonMap.get("CreationDate");
 		if(creationDateStr!=null && !"".equals(creationDateStr)){
-			DateUtils du = new DateUtils();
 			try {
-				this.setCreationDate(du.parseRfc822Date(creationDateStr));
+				this.setCreationDate(ServiceUtils.parseRfc822Date(creationDateStr));
 			} catch (ParseException e) {
 				e.printStackTrace();
 			}
@@ -4,7 +4,7 @@ import java.text.ParseException;
 import java.util.Date;
 import java.util.Map;
 
-import com.sina.cloudstorage.util.DateUtils;
+import com.sina.cloudstorage.services.scs.internal.ServiceUtils;
 
 /**
  * http://open.sinastorage.cn/?c=doc&a=api#get_bucket_meta Bucket Meta Object
@@ -68,9 +68,8 @@ public class BucketInfo {
 			//时间
 			String lastModifiedStr = (String) jsonMap.get("Last-Modified");
 			if(lastModifiedStr!=null && !"".equals(lastModifiedStr)){
-				DateUtils du = new DateUtils();
 				try {
-					this.lastModified = du.parseRfc822Date(lastModifiedStr);
+					this.lastModified = ServiceUtils.parseRfc822Date(lastModifiedStr);
 				} catch (ParseException e) {
 					e.printStackTrace();
 				}
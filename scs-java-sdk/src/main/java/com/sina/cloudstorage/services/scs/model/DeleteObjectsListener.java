@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.model;
+
+/**
+ * Receives the outcome of each object of a batch delete, as soon as it is
+ * known.
+ * <p>
+ * Objects are deleted concurrently, so the methods are called from several
+ * threads at once, in no particular order, and must be thread safe. They
+ * should also be quick, since they hold up the deletes that follow.
+ *
+ * @see DeleteObjectsRequest#setListener(DeleteObjectsListener)
+ */
+public interface DeleteObjectsListener {
+
+    /**
+     * Called once an object has been deleted, or was found to be gone
+     * already.
+     *
+     * @param key
+     *            The key of the deleted object.
+     */
+    public void objectDeleted(String key);
+
+    /**
+     * Called once an object couldn't be deleted.
+     *
+     * @param key
+     *            The key of the object.
+     * @param exception
+     *            The reason the object couldn't be deleted.
+     */
+    public void objectDeleteFailed(String key, Exception exception);
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.model;
+
+import com.sina.cloudstorage.SCSWebServiceRequest;
+
+/**
+ * Provides options for deleting many objects of a bucket: either the objects
+ * with the given keys, or all the objects whose keys start with a prefix.
+ * <p>
+ * The objects are deleted with one request each, several of them in flight
+ * at once, up to the maximum concurrency. When the service throttles the
+ * requests, fewer are kept in flight, and the throttled ones are retried
+ * after a pause; the concurrency then grows back as deletes succeed. Objects
+ * of a prefix are listed while the previous ones are being deleted.
+ * <p>
+ * As with single deletes, objects that don't exist count as deleted.
+ *
+ * @see com.sina.cloudstorage.services.scs.SCS#deleteObjects(DeleteObjectsRequest)
+ */
+public class DeleteObjectsRequest extends SCSWebServiceRequest {
+
+    /** The default maximum number of delete requests in flight */
+    public static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    /** The name of the bucket containing the objects to delete */
+    private String bucketName;
+
+    /** The keys of the objects to delete, or null to delete by prefix */
+    private Iterable<String> keys;
+
+    /** The prefix of the keys of the objects to delete, if no keys are given */
+    private String prefix;
+
+    /** The most delete requests in flight at once */
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    /** Notified of the outcome of each object, or null */
+    private DeleteObjectsListener listener;
+
+    /**
+     * Constructs a new request to delete objects of the given bucket. Either
+     * the keys of the objects or a prefix must be set before it is executed.
+     *
+     * @param bucketName
+     *            The name of the bucket containing the objects to delete.
+     */
+    public DeleteObjectsRequest(String bucketName) {
+        setBucketName(bucketName);
+    }
+
+    /**
+     * Gets the name of the bucket containing the objects to delete.
+     */
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    /**
+     * Sets the name of the bucket containing the objects to delete.
+     */
+    public void setBucketName(String bucketName) {
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Sets the name of the bucket containing the objects to delete and
+     * returns this object, enabling additional method calls to be chained
+     * together.
+     */
+    public DeleteObjectsRequest withBucketName(String bucketName) {
+        setBucketName(bucketName);
+        return this;
+    }
+
+    /**
+     * Gets the keys of the objects to delete, or null if the objects are
+     * selected by prefix.
+     */
+    public Iterable<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Sets the keys of the objects to delete. The keys are iterated over
+     * only once, as the deletes are issued, so they can be produced lazily,
+     * for example read from a file.
+     */
+    public void setKeys(Iterable<String> keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Sets the keys of the objects to delete and returns this object,
+     * enabling additional method calls to be chained together.
+     */
+    public DeleteObjectsRequest withKeys(Iterable<String> keys) {
+        setKeys(keys);
+        return this;
+    }
+
+    /**
+     * Gets the prefix of the keys of the objects to delete, used if no keys
+     * are set.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Sets the prefix of the keys of the objects to delete, used if no keys
+     * are set. An empty prefix deletes all the objects of the bucket.
+     */
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Sets the prefix of the keys of the objects to delete and returns this
+     * object, enabling additional method calls to be chained together.
+     */
+    public DeleteObjectsRequest withPrefix(String prefix) {
+        setPrefix(prefix);
+        return this;
+    }
+
+    /**
+     * Gets the largest number of delete requests kept in flight at once.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Sets the largest number of delete requests kept in flight at once.
+     * Fewer are kept in flight while the service throttles the requests.
+     * Defaults to {@link #DEFAULT_MAX_CONCURRENCY}.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Sets the largest number of delete requests kept in flight at once and
+     * returns this object, enabling additional method calls to be chained
+     * together.
+     */
+    public DeleteObjectsRequest withMaxConcurrency(int maxConcurrency) {
+        setMaxConcurrency(maxConcurrency);
+        return this;
+    }
+
+    /**
+     * Gets the listener notified of the outcome of each object, if any.
+     */
+    public DeleteObjectsListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener notified of the outcome of each object as soon as it
+     * is known, which, unlike the result returned once all the objects are
+     * done, reports progress on large deletes.
+     */
+    public void setListener(DeleteObjectsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the listener notified of the outcome of each object and returns
+     * this object, enabling additional method calls to be chained together.
+     */
+    public DeleteObjectsRequest withListener(DeleteObjectsListener listener) {
+        setListener(listener);
+        return this;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.model;
+
+import java.util.List;
+
+/**
+ * The outcome of a batch delete: how many objects were deleted, and which
+ * ones couldn't be, and why.
+ *
+ * @see DeleteObjectsRequest
+ */
+public class DeleteObjectsResult {
+
+    /**
+     * An object that couldn't be deleted.
+     */
+    public static class DeleteError {
+        private final String key;
+        private final Exception exception;
+
+        public DeleteError(String key, Exception exception) {
+            this.key = key;
+            this.exception = exception;
+        }
+
+        /**
+         * Returns the key of the object that couldn't be deleted.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the reason the object couldn't be deleted.
+         */
+        public Exception getException() {
+            return exception;
+        }
+
+        @Override
+        public String toString() {
+            return key + ": " + exception;
+        }
+    }
+
+    private final long deletedCount;
+    private final List<DeleteError> errors;
+
+    public DeleteObjectsResult(long deletedCount, List<DeleteError> errors) {
+        this.deletedCount = deletedCount;
+        this.errors = errors;
+    }
+
+    /**
+     * Returns the number of objects deleted, including those that were gone
+     * already.
+     */
+    public long getDeletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Returns the objects that couldn't be deleted, in the order their
+     * deletes failed.
+     */
+    public List<DeleteError> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "DeleteObjectsResult [deleted=" + deletedCount + ", errors=" + errors.size() + "]";
+    }
+}
@@ -98,6 +98,12 @@ public class GetObjectRequest extends SCSWebServiceRequest {
      */
     private ProgressListener generalProgressListener;
 
+    /**
+     * Whether a download of this object to a file can be resumed after it is
+     * interrupted.
+     */
+    private boolean resumableDownload;
+
 
     /**
      * Constructs a new {@link GetObjectRequest} with all the required parameters.
@@ -766,4 +772,59 @@ public class GetObjectRequest extends SCSWebServiceRequest {
         setGeneralProgressListener(progressListener);
         return this;
     }
+
+    /**
+     * Returns whether a download of this object to a file can be resumed
+     * after it is interrupted.
+     *
+     * @return True if the download to a file is resumable.
+     *
+     * @see GetObjectRequest#setResumableDownload(boolean)
+     */
+    public boolean isResumableDownload() {
+        return resumableDownload;
+    }
+
+    /**
+     * Sets whether a download of this object to a file, through
+     * <code>SCS.getObject(GetObjectRequest, File)</code> or
+     * <code>TransferManager.download</code>, can be resumed after it is
+     * interrupted.
+     * <p>
+     * A resumable download writes to <code>&lt;file&gt;.part</code>, and keeps
+     * the ETag of the object and the number of bytes written in
+     * <code>&lt;file&gt;.part.state</code>. Connection failures are retried
+     * from the last byte written, and a later download of the same object to
+     * the same file, even by another process, continues from there as well.
+     * Continuations are ranged requests constrained to the recorded ETag, so
+     * if the object has changed the download starts over. The partial file is
+     * renamed to the destination once complete.
+     * <p>
+     * Requests for a range of the object aren't resumable and ignore this
+     * setting. Resumable downloads by <code>TransferManager</code> are done as
+     * a single stream, never in parallel parts.
+     *
+     * @param resumableDownload
+     *            True to make the download to a file resumable.
+     */
+    public void setResumableDownload(boolean resumableDownload) {
+        this.resumableDownload = resumableDownload;
+    }
+
+    /**
+     * Sets whether a download of this object to a file can be resumed after
+     * it is interrupted, and returns this updated object so that additional
+     * method calls can be chained together.
+     *
+     * @param resumableDownload
+     *            True to make the download to a file resumable.
+     *
+     * @return This updated GetObjectRequest object.
+     *
+     * @see GetObjectRequest#setResumableDownload(boolean)
+     */
+    public GetObjectRequest withResumableDownload(boolean resumableDownload) {
+        setResumableDownload(resumableDownload);
+        return this;
+    }
 }
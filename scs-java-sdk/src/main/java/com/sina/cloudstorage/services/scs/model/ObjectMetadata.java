@@ -722,4 +722,30 @@ public class ObjectMetadata implements ServerSideEncryptionResult, ObjectExpirat
         return httpExpiresDate;
     }
 
+    /**
+     * Returns a copy of this metadata, which can be changed without changing
+     * this metadata.
+     */
+    @Override
+    public ObjectMetadata clone() {
+        ObjectMetadata copy = new ObjectMetadata();
+        copy.userMetadata = userMetadata == null ? null : new HashMap<String, String>(userMetadata);
+        copy.userHeader = userHeader == null ? null : new HashMap<String, String>(userHeader);
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Date) value = copyOf((Date)value);
+            copy.metadata.put(entry.getKey(), value);
+        }
+        copy.httpExpiresDate = copyOf(httpExpiresDate);
+        copy.expirationTime = copyOf(expirationTime);
+        copy.expirationTimeRuleId = expirationTimeRuleId;
+        copy.ongoingRestore = ongoingRestore;
+        copy.restoreExpirationTime = copyOf(restoreExpirationTime);
+        return copy;
+    }
+
+    private static Date copyOf(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
 }
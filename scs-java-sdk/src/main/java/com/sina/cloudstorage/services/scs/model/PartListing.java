@@ -88,6 +88,14 @@ public class PartListing {
 			if(userId!=null)
 				this.initiator = new Owner(userId,"");
 			
+			uploadId = (String)jsonMap.get("UploadId");
+			Object truncated = jsonMap.get("IsTruncated");
+			if(truncated instanceof Boolean)
+				isTruncated = ((Boolean)truncated).booleanValue();
+			Object nextMarker = jsonMap.get("NextPartNumberMarker");
+			if(nextMarker instanceof Number)
+				nextPartNumberMarker = ((Number)nextMarker).intValue();
+			
 			@SuppressWarnings("unchecked")
 			List<Map<String,Object>> partList = (List<Map<String, Object>>) jsonMap.get("Parts");
 			if(partList != null){
@@ -17,7 +17,7 @@ package com.sina.cloudstorage.services.scs.model;
 import java.util.Date;
 import java.util.Map;
 
-import com.sina.cloudstorage.util.DateUtils;
+import com.sina.cloudstorage.services.scs.internal.ServiceUtils;
 
 /**
  * Contains the summary of an object stored in an Amazon S3 bucket. This object
@@ -28,6 +28,10 @@ import com.sina.cloudstorage.util.DateUtils;
  */
 public class S3ObjectSummary {
 
+	public S3ObjectSummary(){
+		super();
+	}
+
 	/**
 	 * Create S3ObjectSummary from json map
 	 * 
@@ -48,17 +52,16 @@ public class S3ObjectSummary {
 		if(jsonMap != null){
 			this.sha1 = (String) jsonMap.get("SHA1");
 			this.key = (String) jsonMap.get("Name");
-			DateUtils du = new DateUtils();
 			if(jsonMap.get("Expiration-Time") != null){
 				try {
-					this.expiration = du.parseRfc822Date((String) jsonMap.get("Expiration-Time"));
+					this.expiration = ServiceUtils.parseRfc822Date((String) jsonMap.get("Expiration-Time"));
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
 			}
 			if(jsonMap.get("Last-Modified") != null){
 				try {
-					this.lastModified = du.parseRfc822Date((String) jsonMap.get("Last-Modified"));
+					this.lastModified = ServiceUtils.parseRfc822Date((String) jsonMap.get("Last-Modified"));
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.model;
+
+import com.sina.cloudstorage.SCSWebServiceRequest;
+
+/**
+ * Provides options for replacing the metadata of an existing object, as done
+ * by {@link com.sina.cloudstorage.services.scs.SCS#setObjectMetadata(String, String, ObjectMetadata)}.
+ *
+ * @see com.sina.cloudstorage.services.scs.SCSAsync#setObjectMetadataAsync(SetObjectMetadataRequest)
+ */
+public class SetObjectMetadataRequest extends SCSWebServiceRequest {
+
+    /** The name of the bucket containing the object */
+    private String bucketName;
+
+    /** The key of the object whose metadata is set */
+    private String key;
+
+    /** The new metadata of the object */
+    private ObjectMetadata objectMetadata;
+
+    /**
+     * Constructs a new request to set the metadata of the given object.
+     *
+     * @param bucketName
+     *            The name of the bucket containing the object.
+     * @param key
+     *            The key of the object whose metadata is set.
+     * @param objectMetadata
+     *            The new metadata of the object.
+     */
+    public SetObjectMetadataRequest(String bucketName, String key, ObjectMetadata objectMetadata) {
+        setBucketName(bucketName);
+        setKey(key);
+        setObjectMetadata(objectMetadata);
+    }
+
+    /**
+     * Gets the name of the bucket containing the object.
+     */
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    /**
+     * Sets the name of the bucket containing the object.
+     */
+    public void setBucketName(String bucketName) {
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Sets the name of the bucket containing the object and returns this
+     * object, enabling additional method calls to be chained together.
+     */
+    public SetObjectMetadataRequest withBucketName(String bucketName) {
+        setBucketName(bucketName);
+        return this;
+    }
+
+    /**
+     * Gets the key of the object whose metadata is set.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Sets the key of the object whose metadata is set.
+     */
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Sets the key of the object whose metadata is set and returns this
+     * object, enabling additional method calls to be chained together.
+     */
+    public SetObjectMetadataRequest withKey(String key) {
+        setKey(key);
+        return this;
+    }
+
+    /**
+     * Gets the new metadata of the object.
+     */
+    public ObjectMetadata getObjectMetadata() {
+        return objectMetadata;
+    }
+
+    /**
+     * Sets the new metadata of the object.
+     */
+    public void setObjectMetadata(ObjectMetadata objectMetadata) {
+        this.objectMetadata = objectMetadata;
+    }
+
+    /**
+     * Sets the new metadata of the object and returns this object, enabling
+     * additional method calls to be chained together.
+     */
+    public SetObjectMetadataRequest withObjectMetadata(ObjectMetadata objectMetadata) {
+        setObjectMetadata(objectMetadata);
+        return this;
+    }
+}
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,6 +13,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.sina.cloudstorage.SCSClientException;
 import com.sina.cloudstorage.services.scs.internal.Constants;
 import com.sina.cloudstorage.services.scs.model.AccessControlList;
@@ -22,6 +25,8 @@ import com.sina.cloudstorage.services.scs.model.ObjectInfo;
 import com.sina.cloudstorage.services.scs.model.ObjectListing;
 import com.sina.cloudstorage.services.scs.model.Owner;
 import com.sina.cloudstorage.services.scs.model.PartListing;
+import com.sina.cloudstorage.services.scs.model.S3ObjectSummary;
+import com.sina.cloudstorage.util.DateUtils;
 
 public class JsonResponsesParser {
     private static final Log log = LogFactory.getLog(JsonResponsesParser.class);
@@ -62,14 +67,10 @@ public class JsonResponsesParser {
     public ObjectListing parseListBucketObjectsResponse(InputStream inputStream)
             throws SCSClientException {
     	try {
-            BufferedReader breader = new BufferedReader(new InputStreamReader(inputStream,
-                Constants.DEFAULT_ENCODING));
-            
-            Gson gson = new Gson();
-            @SuppressWarnings("unchecked")
-			Map<String,Object> modelObject = gson.fromJson(breader, Map.class);//mapper.readValue(breader,Map.class);
+            JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(inputStream,
+                Constants.DEFAULT_ENCODING)));
             
-            return new ObjectListing(modelObject);
+            return readObjectListing(reader);
             
         } catch (Throwable t) {
             try {
@@ -380,4 +381,141 @@ public class JsonResponsesParser {
     	return null;
     }
     
+    /**
+     * Reads a ListBucket json document token by token, filling the
+     * {@link ObjectListing} and its {@link S3ObjectSummary} entries directly
+     * instead of materializing the whole document as nested maps first.
+     * Unknown fields are skipped.
+     */
+    private ObjectListing readObjectListing(JsonReader reader) throws IOException {
+        ObjectListing objectListing = new ObjectListing();
+        DateUtils dateUtils = new DateUtils();
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("Contents".equals(name)) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                List<S3ObjectSummary> objectSummaries = objectListing.getObjectSummaries();
+                reader.beginArray();
+                while (reader.hasNext())
+                    objectSummaries.add(readObjectSummary(reader, dateUtils));
+                reader.endArray();
+            } else if ("CommonPrefixes".equals(name)) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                List<Map<String, String>> commonPrefixes = objectListing.getCommonPrefixes();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Map<String, String> commonPrefix = new HashMap<String, String>(2);
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String field = reader.nextName();
+                        commonPrefix.put(field, nextStringOrNull(reader));
+                    }
+                    reader.endObject();
+                    commonPrefixes.add(commonPrefix);
+                }
+                reader.endArray();
+            } else if ("Delimiter".equals(name)) {
+                objectListing.setDelimiter(nextStringOrNull(reader));
+            } else if ("Prefix".equals(name)) {
+                objectListing.setPrefix(nextStringOrNull(reader));
+            } else if ("Marker".equals(name)) {
+                objectListing.setMarker(nextStringOrNull(reader));
+            } else if ("NextMarker".equals(name)) {
+                objectListing.setNextMarker(nextStringOrNull(reader));
+            } else if ("IsTruncated".equals(name)) {
+                objectListing.setTruncated(nextBooleanOrFalse(reader));
+            } else if ("ContentsQuantity".equals(name)) {
+                objectListing.setContentsQuantity((int) nextLongOrZero(reader));
+            } else if ("CommonPrefixesQuantity".equals(name)) {
+                objectListing.setCommonPrefixesQuantity((int) nextLongOrZero(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        return objectListing;
+    }
+
+    /**
+     * Reads one element of the "Contents" array of a ListBucket json document.
+     */
+    private S3ObjectSummary readObjectSummary(JsonReader reader, DateUtils dateUtils)
+            throws IOException {
+        S3ObjectSummary objectSummary = new S3ObjectSummary();
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("Name".equals(name)) {
+                objectSummary.setKey(nextStringOrNull(reader));
+            } else if ("Size".equals(name)) {
+                objectSummary.setSize(nextLongOrZero(reader));
+            } else if ("MD5".equals(name)) {
+                objectSummary.setETag(nextStringOrNull(reader));
+            } else if ("SHA1".equals(name)) {
+                objectSummary.setSha1(nextStringOrNull(reader));
+            } else if ("Content-Type".equals(name)) {
+                objectSummary.setContentType(nextStringOrNull(reader));
+            } else if ("Owner".equals(name)) {
+                objectSummary.setOwner(new Owner(nextStringOrNull(reader), ""));
+            } else if ("Last-Modified".equals(name)) {
+                String lastModified = nextStringOrNull(reader);
+                if (lastModified != null) {
+                    try {
+                        objectSummary.setLastModified(dateUtils.parseRfc822Date(lastModified));
+                    } catch (Exception e) {
+                        log.warn("Unable to parse Last-Modified date: " + lastModified, e);
+                    }
+                }
+            } else if ("Expiration-Time".equals(name)) {
+                String expiration = nextStringOrNull(reader);
+                if (expiration != null) {
+                    try {
+                        objectSummary.setExpiration(dateUtils.parseRfc822Date(expiration));
+                    } catch (Exception e) {
+                        log.warn("Unable to parse Expiration-Time date: " + expiration, e);
+                    }
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        return objectSummary;
+    }
+    
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+    
+    private static long nextLongOrZero(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        return reader.nextLong();
+    }
+    
+    private static boolean nextBooleanOrFalse(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return reader.nextBoolean();
+    }
+    
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.transfer;
+
+/**
+ * Describes the progress of one part of a multipart transfer.
+ *
+ * @see TransferProgress#getPartProgress()
+ */
+public abstract class PartProgress {
+    protected final int partNumber;
+    protected final long offset;
+    protected final long partSize;
+    protected volatile long bytesTransferred = 0;
+
+    protected PartProgress(int partNumber, long offset, long partSize) {
+        this.partNumber = partNumber;
+        this.offset = offset;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Returns the number of this part, starting at 1.
+     */
+    public int getPartNumber() {
+        return partNumber;
+    }
+
+    /**
+     * Returns the position of the first byte of this part in the object.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the size of this part in bytes.
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the number of bytes of this part transferred so far.
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Returns a percentage of the number of bytes of this part transferred.
+     */
+    public double getPercentTransferred() {
+        if (partSize <= 0) return 100;
+        return ((double)getBytesTransferred() / (double)partSize) * (double)100;
+    }
+
+    @Override
+    public String toString() {
+        return "Part " + partNumber + ": " + getBytesTransferred() + "/" + partSize + " bytes";
+    }
+}
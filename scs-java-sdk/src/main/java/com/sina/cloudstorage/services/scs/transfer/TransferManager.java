@@ -17,18 +17,16 @@ package com.sina.cloudstorage.services.scs.transfer;
 import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -46,6 +44,8 @@ import com.sina.cloudstorage.event.ProgressListenerChain.ProgressEventFilter;
 import com.sina.cloudstorage.services.scs.SCS;
 import com.sina.cloudstorage.services.scs.SCSClient;
 import com.sina.cloudstorage.services.scs.internal.Mimetypes;
+import com.sina.cloudstorage.services.scs.iterable.ParallelObjectLister;
+import com.sina.cloudstorage.services.scs.internal.ResumableDownloader;
 import com.sina.cloudstorage.services.scs.internal.ServiceUtils;
 import com.sina.cloudstorage.services.scs.model.GetObjectRequest;
 import com.sina.cloudstorage.services.scs.model.ListObjectsRequest;
@@ -57,6 +57,7 @@ import com.sina.cloudstorage.services.scs.model.S3ObjectSummary;
 import com.sina.cloudstorage.services.scs.transfer.Transfer.TransferState;
 import com.sina.cloudstorage.services.scs.transfer.internal.DownloadImpl;
 import com.sina.cloudstorage.services.scs.transfer.internal.DownloadMonitor;
+import com.sina.cloudstorage.services.scs.transfer.internal.MultipartDownloadCallable;
 import com.sina.cloudstorage.services.scs.transfer.internal.MultipleFileDownloadImpl;
 import com.sina.cloudstorage.services.scs.transfer.internal.MultipleFileTransfer;
 import com.sina.cloudstorage.services.scs.transfer.internal.MultipleFileTransferMonitor;
@@ -87,6 +88,19 @@ import com.sina.cloudstorage.util.VersionInfoUtils;
  * <code>TransferManager</code> whenever possible. <code>TransferManager</code>,
  * like all the client classes in the AWS SDK for Java, is thread safe.
  * <p>
+ * On Java 21 and later, transfers can run on virtual threads, which makes
+ * hundreds of parts in flight affordable on high latency links. The number
+ * of requests in flight is then bounded by the configuration rather than by
+ * the number of threads:
+ *
+ * <pre>
+ * TransferManager tx = new TransferManager(s3,
+ *         TransferManagerUtils.createVirtualThreadExecutorService());
+ * TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+ * configuration.setMaximumConcurrentRequests(200);
+ * tx.setConfiguration(configuration);
+ * </pre>
+ * <p>
  * Using <code>TransferManager</code> to upload options to Amazon S3 is easy:
  *
  * <pre>
@@ -124,9 +138,11 @@ public class TransferManager {
     private TransferManagerConfiguration configuration;
     /** The thread pool in which transfers are uploaded or downloaded. */
     private ThreadPoolExecutor threadPool;
-
-    /** Thread used for periodicially checking transfers and updating thier state. */
-    private ScheduledExecutorService timedThreadPool = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
+    /**
+     * Bounds the requests in flight of all the transfers, or null if only the
+     * thread pool does.
+     */
+    private Semaphore requestPermits;
 
     private static final Log log = LogFactory.getLog(TransferManager.class);
 
@@ -208,7 +224,7 @@ public class TransferManager {
     public TransferManager(SCS s3, ThreadPoolExecutor threadPool) {
         this.s3 = s3;
         this.threadPool = threadPool;
-        this.configuration = new TransferManagerConfiguration();
+        setConfiguration(new TransferManagerConfiguration());
     }
 
 
@@ -222,6 +238,8 @@ public class TransferManager {
      *            processes requests.
      */
     public void setConfiguration(TransferManagerConfiguration configuration) {
+        int maximumConcurrentRequests = configuration.getMaximumConcurrentRequests();
+        this.requestPermits = (maximumConcurrentRequests > 0) ? new Semaphore(maximumConcurrentRequests) : null;
         this.configuration = configuration;
     }
 
@@ -257,10 +275,15 @@ public class TransferManager {
      * options in the stream through the content length field in the
      * <code>ObjectMetadata</code> parameter.
      * If no content length is specified for the input
-     * stream, then TransferManager will attempt to buffer all the stream
-     * contents in memory and upload the options as a traditional, single part
-     * upload. Because the entire stream contents must be buffered in memory,
-     * this can be very expensive, and should be avoided whenever possible.
+     * stream, then TransferManager reads the stream one part at a time, into
+     * a bounded number of buffers of the
+     * {@link TransferManagerConfiguration#getStreamingUploadPartSize()
+     * streaming upload part size}, and uploads each part while reading the
+     * next. A stream that fits in a single part is uploaded with a single
+     * request. Streams of known length over the multipart upload threshold
+     * are uploaded one part at a time, unless
+     * {@link TransferManagerConfiguration#setParallelStreamUpload(boolean)
+     * parallel stream uploads} are enabled.
      * </p>
      * <p>
      * Use the returned <code>Upload</code> object to query the progress of the
@@ -370,7 +393,57 @@ public class TransferManager {
      */
     public Upload upload(final PutObjectRequest putObjectRequest)
         throws SCSServiceException, SCSClientException {
-        return upload(putObjectRequest, null);
+        return upload(putObjectRequest, (TransferStateChangeListener)null);
+    }
+
+    /**
+     * <p>
+     * Schedules a new resumable transfer to upload a file to Amazon S3. This
+     * method is non-blocking and returns immediately (i.e. before the upload
+     * has finished).
+     * </p>
+     * <p>
+     * A multipart upload records its upload id, part size and each completed
+     * part in the given checkpoint file as it goes. If the upload is
+     * interrupted, even by the process dying, calling this method again with
+     * the same request and checkpoint file continues the same multipart
+     * upload: the parts the service already has are checked against the
+     * checkpoint, and only the missing parts are uploaded. The checkpoint file
+     * is deleted once the upload completes. A checkpoint left by an upload of
+     * a different file, or of a file modified since, is ignored and replaced.
+     * </p>
+     * <p>
+     * Resumable uploads always use the part size they were started with, so
+     * they aren't adaptive. Files below the multipart upload threshold are
+     * uploaded in a single request and don't use the checkpoint file.
+     * </p>
+     *
+     * @param putObjectRequest
+     *            The request containing all the parameters for the upload. It
+     *            must upload a file.
+     * @param checkpointFile
+     *            The file recording the progress of the upload.
+     *
+     * @return A new <code>Upload</code> object to use to check
+     * 		   the state of the upload, listen for progress notifications,
+     * 		   and otherwise manage the upload.
+     *
+     * @throws SCSClientException
+     *             If any errors are encountered in the client while making the
+     *             request or handling the response.
+     * @throws SCSServiceException
+     *             If any errors occurred in Amazon S3 while processing the
+     *             request.
+     */
+    public Upload upload(final PutObjectRequest putObjectRequest, final File checkpointFile)
+        throws SCSServiceException, SCSClientException {
+        if ( checkpointFile == null ) {
+            throw new IllegalArgumentException("The checkpoint file must be specified");
+        }
+        if ( TransferManagerUtils.getRequestFile(putObjectRequest) == null ) {
+            throw new IllegalArgumentException("Only uploads of a file can be resumed");
+        }
+        return upload(putObjectRequest, null, checkpointFile);
     }
 
     /**
@@ -380,6 +453,16 @@ public class TransferManager {
      */
     private Upload upload(final PutObjectRequest putObjectRequest, final TransferStateChangeListener stateListener)
             throws SCSServiceException, SCSClientException {
+        return upload(putObjectRequest, stateListener, null);
+    }
+
+    /**
+     * Same as {@link #upload(PutObjectRequest, TransferStateChangeListener)},
+     * recording the progress of the upload in the given checkpoint file, if
+     * any.
+     */
+    private Upload upload(final PutObjectRequest putObjectRequest, final TransferStateChangeListener stateListener,
+            final File checkpointFile) throws SCSServiceException, SCSClientException {
 
             appendUserAgent(putObjectRequest, USER_AGENT);
 
@@ -409,9 +492,9 @@ public class TransferManager {
 
             UploadImpl upload = new UploadImpl(description, transferProgress, listenerChain, stateListener);
 
-            UploadCallable uploadCallable = new UploadCallable(this, threadPool, upload, putObjectRequest, listenerChain);
+            UploadCallable uploadCallable = new UploadCallable(this, threadPool, upload, putObjectRequest, listenerChain,
+                    checkpointFile, requestPermits);
             UploadMonitor watcher = new UploadMonitor(this, upload, threadPool, uploadCallable, putObjectRequest, listenerChain);
-            watcher.setTimedThreadPool(timedThreadPool);
             upload.setMonitor(watcher);
 
             return upload;
@@ -455,6 +538,11 @@ public class TransferManager {
      * <p>
      * Use the returned Download object to query the progress of the transfer,
      * add listeners for progress events, and wait for the download to complete.
+     * <p>
+     * Whole objects larger than the configured
+     * {@link TransferManagerConfiguration#getMultipartDownloadThreshold()
+     * multipart download threshold} are fetched as several ranged requests in
+     * parallel, each written directly to its place in the file.
      *
      * @param getObjectRequest
      *            The request containing all the parameters for the download.
@@ -490,7 +578,7 @@ public class TransferManager {
 
         String description = "Downloading from " + getObjectRequest.getBucketName() + "/" + getObjectRequest.getKey();
 
-        TransferProgressImpl transferProgress = new TransferProgressImpl();
+        final TransferProgressImpl transferProgress = new TransferProgressImpl();
         ProgressListenerChain listenerChain = new ProgressListenerChain(
                 new TransferProgressUpdatingListener(transferProgress),   // The listener for updating transfer progress
                 getObjectRequest.getGeneralProgressListener());           // Listeners included in the original request
@@ -527,6 +615,10 @@ public class TransferManager {
 
         transferProgress.setTotalBytesToTransfer(contentLength);
 
+        final boolean multipartDownload = TransferManagerUtils.shouldUseMultipartDownload(
+                getObjectRequest, objectMetadata, configuration);
+
+        final Semaphore requestPermits = this.requestPermits;
         Future<?> future = threadPool.submit(new Callable<Object>() {
             @Override
             public Object call() throws Exception {
@@ -541,26 +633,43 @@ public class TransferManager {
                          }
                      }
                     download.setState(TransferState.InProgress);
-                    S3Object s3Object = ServiceUtils.retryableDownloadS3ObjectToFile(file, new ServiceUtils.RetryableS3DownloadTask() {
-
-                        @Override
-                        public S3Object getS3ObjectStream() {
-                            S3Object s3Object = s3.getObject(getObjectRequest);
-                            download.setS3Object(s3Object);
-                            return s3Object;
-                        }
-
-                        @Override
-                        public boolean needIntegrityCheck() {
-                            // Don't perform the integrity check if the stream data is wrapped
-                            // in a decryption stream, or if we're only looking at a range of
-                            // the data, since otherwise the checksum won't match up.
-                            boolean performIntegrityCheck = true;
-                            if (getObjectRequest.getRange() != null) performIntegrityCheck = false;
+                    S3Object s3Object;
+                    if (multipartDownload) {
+                        s3Object = new MultipartDownloadCallable(s3, threadPool, getObjectRequest,
+                                objectMetadata, file, transferProgress, configuration, requestPermits).call();
+                        download.setS3Object(s3Object);
+                    } else if (getObjectRequest.isResumableDownload() && getObjectRequest.getRange() == null) {
+                        s3Object = new ResumableDownloader(s3, getObjectRequest, file,
+                                configuration.getDownloadBufferSize(), true) {
+                            @Override
+                            protected S3Object getObject(GetObjectRequest request) {
+                                S3Object s3Object = super.getObject(request);
+                                download.setS3Object(s3Object);
+                                return s3Object;
+                            }
+                        }.download();
+                    } else {
+                        s3Object = ServiceUtils.retryableDownloadS3ObjectToFile(file, new ServiceUtils.RetryableS3DownloadTask() {
+
+                            @Override
+                            public S3Object getS3ObjectStream() {
+                                S3Object s3Object = s3.getObject(getObjectRequest);
+                                download.setS3Object(s3Object);
+                                return s3Object;
+                            }
+
+                            @Override
+                            public boolean needIntegrityCheck() {
+                                // Don't perform the integrity check if the stream data is wrapped
+                                // in a decryption stream, or if we're only looking at a range of
+                                // the data, since otherwise the checksum won't match up.
+                                boolean performIntegrityCheck = true;
+                                if (getObjectRequest.getRange() != null) performIntegrityCheck = false;
 //                            if (s3 instanceof AmazonS3EncryptionClient) performIntegrityCheck = false;
-                            return performIntegrityCheck;
-                        }
-                    });
+                                return performIntegrityCheck;
+                            }
+                        }, configuration.getDownloadBufferSize());
+                    }
 
 
                     if (s3Object == null) {
@@ -608,50 +717,38 @@ public class TransferManager {
         if ( keyPrefix == null )
             keyPrefix = "";
 
-        List<S3ObjectSummary> objectSummaries = new LinkedList<S3ObjectSummary>();
-        Stack<String> commonPrefixes = new Stack<String>();
-        commonPrefixes.add(keyPrefix);
-        long totalSize = 0;
-
-        // Recurse all virtual subdirectories to get a list of object summaries.
-        // This is a depth-first search.
-        do {
-            String prefix = commonPrefixes.pop();
-            ObjectListing listObjectsResponse = null;
-
-            do {
-                if ( listObjectsResponse == null ) {
-                    ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucketName)
-                            .withDelimiter(DEFAULT_DELIMITER).withPrefix(prefix);
-                    listObjectsResponse = s3.listObjects(listObjectsRequest);
-                } else {
-                    listObjectsResponse = s3.listNextBatchOfObjects(listObjectsResponse);
-                }
-
-                for ( S3ObjectSummary s : listObjectsResponse.getObjectSummaries() ) {
-                    // Skip any files that are also virtual directories, since
-                    // we can't save both a directory and a file of the same
-                    // name.
-                    if ( !s.getKey().equals(prefix)
-                            && !listObjectsResponse.getCommonPrefixes().contains(s.getKey() + DEFAULT_DELIMITER) ) {
-                        objectSummaries.add(s);
-                        totalSize += s.getSize();
-                    } else {
-                        log.debug("Skipping download for object " + s.getKey()
-                                + " since it is also a virtual directory");
+        final List<S3ObjectSummary> objectSummaries = Collections.synchronizedList(new ArrayList<S3ObjectSummary>());
+        final AtomicLong totalSize = new AtomicLong(0);
+
+        // Walk all virtual subdirectories on the transfer thread pool, one
+        // list task per common prefix, collecting the object summaries.
+        ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucketName)
+                .withDelimiter(DEFAULT_DELIMITER).withPrefix(keyPrefix);
+        new ParallelObjectLister(s3, threadPool, requestPermits).listObjects(listObjectsRequest,
+                new ParallelObjectLister.ListingHandler() {
+                    public void objectListingReceived(ObjectListing listObjectsResponse) {
+                        String prefix = listObjectsResponse.getPrefix();
+                        for ( S3ObjectSummary s : listObjectsResponse.getObjectSummaries() ) {
+                            // Skip any files that are also virtual directories, since
+                            // we can't save both a directory and a file of the same
+                            // name.
+                            if ( !s.getKey().equals(prefix)
+                                    && !containsCommonPrefix(listObjectsResponse, s.getKey() + DEFAULT_DELIMITER) ) {
+                                objectSummaries.add(s);
+                                totalSize.addAndGet(s.getSize());
+                            } else {
+                                log.debug("Skipping download for object " + s.getKey()
+                                        + " since it is also a virtual directory");
+                            }
+                        }
                     }
-                }
-
-                for(Map<String,String> cp : listObjectsResponse.getCommonPrefixes())
-                	commonPrefixes.add(cp.get("Prefix"));
-            } while ( listObjectsResponse.isTruncated() );
-        } while ( !commonPrefixes.isEmpty() );
+                });
 
         /* This is the hook for adding additional progress listeners */
         ProgressListenerChain additionalProgressListenerChain = new ProgressListenerChain();
 
         TransferProgressImpl transferProgress = new TransferProgressImpl();
-        transferProgress.setTotalBytesToTransfer(totalSize);
+        transferProgress.setTotalBytesToTransfer(totalSize.get());
         /*
          * Bind additional progress listeners to this
          * MultipleFileTransferProgressUpdatingListener to receive
@@ -682,13 +779,15 @@ public class TransferManager {
             // All the single-file downloads share the same
             // MultipleFileTransferProgressUpdatingListener and
             // MultipleFileTransferStateChangeListener
-            downloads.add((DownloadImpl) download(
-                            new GetObjectRequest(summary.getBucketName(),
+            DownloadImpl fileDownload = (DownloadImpl) download(
+                            new GetObjectRequest(bucketName,
                                     summary.getKey())
                                     .withGeneralProgressListener(
                                             multipleFileTransferProgressListener),
                             f,
-                            multipleFileTransferStateChangeListener));
+                            multipleFileTransferStateChangeListener);
+            transferProgress.addFileProgress(summary.getKey(), fileDownload.getProgress());
+            downloads.add(fileDownload);
         }
 
         if ( downloads.isEmpty() ) {
@@ -706,6 +805,17 @@ public class TransferManager {
         return multipleFileDownload;
     }
 
+    /**
+     * Returns true if the listing rolled up the given common prefix.
+     */
+    private static boolean containsCommonPrefix(ObjectListing listing, String commonPrefix) {
+        for ( Map<String, String> cp : listing.getCommonPrefixes() ) {
+            if ( commonPrefix.equals(cp.get("Prefix")) )
+                return true;
+        }
+        return false;
+    }
+
     private static final class AllDownloadsQueuedLock {
         private volatile boolean allQueued = false;
     }
@@ -958,13 +1068,15 @@ public class TransferManager {
                 // All the single-file uploads share the same
                 // MultipleFileTransferProgressUpdatingListener and
                 // MultipleFileTransferStateChangeListener
-                uploads.add((UploadImpl) upload(
+                UploadImpl fileUpload = (UploadImpl) upload(
                         new PutObjectRequest(bucketName,
                                 virtualDirectoryKeyPrefix + key, f)
                                 .withMetadata(metadata)
                                 .withGeneralProgressListener(
                                         multipleFileTransferProgressListener),
-                        multipleFileTransferStateChangeListener));
+                        multipleFileTransferStateChangeListener);
+                transferProgress.addFileProgress(virtualDirectoryKeyPrefix + key, fileUpload.getProgress());
+                uploads.add(fileUpload);
             }
         }
 
@@ -1053,7 +1165,6 @@ public class TransferManager {
      */
     public void shutdownNow() {
         threadPool.shutdownNow();
-        timedThreadPool.shutdownNow();
 
         if (s3 instanceof SCSClient) {
             ((SCSClient)s3).shutdown();
@@ -1068,19 +1179,4 @@ public class TransferManager {
     private static final String USER_AGENT = TransferManager.class.getName() + "/" + VersionInfoUtils.getVersion();
 
     private static final String DEFAULT_DELIMITER = "/";
-
-    /**
-     * There is no need for threads from timedThreadPool if there is no more running threads in current process,
-     * so we need a daemon thread factory for it.
-     */
-    private static final ThreadFactory daemonThreadFactory = new ThreadFactory() {
-        final AtomicInteger threadCount = new AtomicInteger( 0 );
-        public Thread newThread(Runnable r) {
-            int threadNumber = threadCount.incrementAndGet();
-            Thread thread = new Thread(r);
-            thread.setDaemon(true);
-            thread.setName("S3TransferManagerTimedThread-" + threadNumber);
-            return thread;
-        }
-    };
 }
@@ -33,6 +33,33 @@ public class TransferManagerConfiguration {
     /** Default size threshold for when to use multipart uploads.  */
     private static final int DEFAULT_MULTIPART_UPLOAD_THRESHOLD = 64 * MB;//16 * MB;
 
+    /** Default part size for ranged download parts. */
+    private static final int DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE = 16 * MB;
+
+    /** Default size threshold for when to use ranged multipart downloads. */
+    private static final int DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD = 64 * MB;
+
+    /** Default number of times a failed download part is retried. */
+    private static final int DEFAULT_MAXIMUM_DOWNLOAD_PART_RETRIES = 3;
+
+    /** Default lower bound on the part size chosen by adaptive uploads. */
+    private static final int DEFAULT_MINIMUM_ADAPTIVE_PART_SIZE = 5 * MB;
+
+    /** Default upper bound on the part size chosen by adaptive uploads. */
+    private static final long DEFAULT_MAXIMUM_ADAPTIVE_PART_SIZE = 512 * MB;
+
+    /** Default upper bound on the number of parts adaptive uploads keep in flight. */
+    private static final int DEFAULT_MAXIMUM_PARTS_IN_FLIGHT = 10;
+
+    /** Default size of the buffer downloads are copied through. */
+    private static final int DEFAULT_DOWNLOAD_BUFFER_SIZE = 256 * KB;
+
+    /** Default part size of uploads of streams of unknown length. */
+    private static final int DEFAULT_STREAMING_UPLOAD_PART_SIZE = 16 * MB;
+
+    /** Default number of part buffers a multipart upload of a stream may use. */
+    private static final int DEFAULT_STREAMING_UPLOAD_BUFFERS = 4;
+
     
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
@@ -57,6 +84,73 @@ public class TransferManagerConfiguration {
      */
     private int multipartUploadThreshold = DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
 
+    /**
+     * The size of each ranged request of a multipart download. The last part
+     * of an object may be smaller.
+     */
+    private long minimumDownloadPartSize = DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The size threshold, in bytes, for when to use multipart downloads.
+     * Downloads of whole objects over this size are split into ranged
+     * requests that run concurrently on the transfer manager's thread pool,
+     * each writing its part directly at its offset in the destination file.
+     */
+    private long multipartDownloadThreshold = DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD;
+
+    /**
+     * The number of times a download part that failed with a client side
+     * error, such as a dropped connection, is retried. Retries resume from
+     * the last byte written.
+     */
+    private int maximumDownloadPartRetries = DEFAULT_MAXIMUM_DOWNLOAD_PART_RETRIES;
+
+    /**
+     * Whether multipart uploads of files measure the throughput of their parts
+     * and tune the part size and the number of parts in flight as they go.
+     */
+    private boolean adaptiveUpload = false;
+
+    /** The smallest part size an adaptive upload may choose. */
+    private long minimumAdaptivePartSize = DEFAULT_MINIMUM_ADAPTIVE_PART_SIZE;
+
+    /** The largest part size an adaptive upload may choose. */
+    private long maximumAdaptivePartSize = DEFAULT_MAXIMUM_ADAPTIVE_PART_SIZE;
+
+    /** The most parts an adaptive upload keeps in flight at once. */
+    private int maximumPartsInFlight = DEFAULT_MAXIMUM_PARTS_IN_FLIGHT;
+
+    /**
+     * The size, in bytes, of the buffer each download, or download part, is
+     * copied through on its way to the file.
+     */
+    private int downloadBufferSize = DEFAULT_DOWNLOAD_BUFFER_SIZE;
+
+    /**
+     * The size of the parts, and of the part buffers, of uploads of streams
+     * whose length isn't known in advance.
+     */
+    private int streamingUploadPartSize = DEFAULT_STREAMING_UPLOAD_PART_SIZE;
+
+    /**
+     * The most part buffers a multipart upload of a stream may hold at once,
+     * which bounds its memory use.
+     */
+    private int streamingUploadBuffers = DEFAULT_STREAMING_UPLOAD_BUFFERS;
+
+    /**
+     * Whether multipart uploads of streams of known length read parts ahead
+     * into buffers and upload several of them in parallel, rather than
+     * uploading one part at a time straight from the stream.
+     */
+    private boolean parallelStreamUpload = false;
+
+    /**
+     * The most part and list requests all the transfers of a transfer
+     * manager may have in flight at once, or 0 for as many as its threads.
+     */
+    private int maximumConcurrentRequests = 0;
+
     
     /**
      * Returns the minimum part size for upload parts. 
@@ -124,4 +218,299 @@ public class TransferManagerConfiguration {
     public void setMultipartUploadThreshold(int multipartUploadThreshold) {
         this.multipartUploadThreshold = multipartUploadThreshold;
     }
+
+    /**
+     * Returns the part size, in bytes, of the ranged requests of a multipart
+     * download.
+     *
+     * @return The part size for download parts.
+     */
+    public long getMinimumDownloadPartSize() {
+        return minimumDownloadPartSize;
+    }
+
+    /**
+     * Sets the part size, in bytes, of the ranged requests of a multipart
+     * download. Smaller parts spread a download over more connections at the
+     * cost of a request per part.
+     *
+     * @param minimumDownloadPartSize
+     *            The part size for download parts.
+     */
+    public void setMinimumDownloadPartSize(long minimumDownloadPartSize) {
+        this.minimumDownloadPartSize = minimumDownloadPartSize;
+    }
+
+    /**
+     * Returns the size threshold in bytes for when to use multipart
+     * downloads. Downloads of whole objects over this size are split into
+     * ranged requests which run in parallel, while smaller objects and
+     * requests for a range of an object use a single connection.
+     *
+     * @return The size threshold in bytes for when to use multipart downloads.
+     */
+    public long getMultipartDownloadThreshold() {
+        return multipartDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to use multipart downloads.
+     * Downloads of whole objects over this size are split into ranged
+     * requests which run in parallel, while smaller objects and requests for
+     * a range of an object use a single connection. Use
+     * {@link Long#MAX_VALUE} to always download over a single connection.
+     *
+     * @param multipartDownloadThreshold
+     *            The size threshold in bytes for when to use multipart
+     *            downloads.
+     */
+    public void setMultipartDownloadThreshold(long multipartDownloadThreshold) {
+        this.multipartDownloadThreshold = multipartDownloadThreshold;
+    }
+
+    /**
+     * Returns the number of times a download part is retried after a client
+     * side error.
+     *
+     * @return The maximum number of retries per download part.
+     */
+    public int getMaximumDownloadPartRetries() {
+        return maximumDownloadPartRetries;
+    }
+
+    /**
+     * Sets the number of times a download part is retried after a client side
+     * error, such as a dropped connection. Each retry requests only the bytes
+     * of the part not yet written. Errors returned by the service are not
+     * retried.
+     *
+     * @param maximumDownloadPartRetries
+     *            The maximum number of retries per download part.
+     */
+    public void setMaximumDownloadPartRetries(int maximumDownloadPartRetries) {
+        this.maximumDownloadPartRetries = maximumDownloadPartRetries;
+    }
+
+    /**
+     * Returns the size in bytes of the buffer downloads are copied through on
+     * their way to the file.
+     *
+     * @return The size of the download buffer.
+     */
+    public int getDownloadBufferSize() {
+        return downloadBufferSize;
+    }
+
+    /**
+     * Sets the size in bytes of the buffer downloads are copied through on
+     * their way to the file. Each concurrent download, and each part of a
+     * multipart download, uses a buffer of this size. A size matching the
+     * socket receive buffer lets every write to the file take a full socket
+     * buffer of data.
+     *
+     * @param downloadBufferSize
+     *            The size of the download buffer.
+     */
+    public void setDownloadBufferSize(int downloadBufferSize) {
+        this.downloadBufferSize = downloadBufferSize;
+    }
+
+    /**
+     * Returns whether multipart uploads of files adapt their part size and
+     * the number of parts in flight to the measured throughput.
+     *
+     * @return True if adaptive uploads are enabled.
+     */
+    public boolean isAdaptiveUpload() {
+        return adaptiveUpload;
+    }
+
+    /**
+     * Sets whether multipart uploads of files adapt their part size and the
+     * number of parts in flight to the measured throughput. An adaptive upload
+     * starts with the usual part size and two parts in flight. As parts
+     * complete, it sizes the following parts to take a few seconds each at
+     * the throughput observed per connection, and adds parts in flight while
+     * doing so raises the overall throughput, backing off when it doesn't.
+     * Part sizes stay between the minimum and maximum adaptive part sizes,
+     * and the number of parts in flight between one and the maximum parts in
+     * flight. The current choices are reported by the upload's
+     * {@link TransferProgress}.
+     *
+     * @param adaptiveUpload
+     *            True to enable adaptive uploads.
+     */
+    public void setAdaptiveUpload(boolean adaptiveUpload) {
+        this.adaptiveUpload = adaptiveUpload;
+    }
+
+    /**
+     * Returns the smallest part size, in bytes, an adaptive upload may choose.
+     *
+     * @return The minimum adaptive part size.
+     */
+    public long getMinimumAdaptivePartSize() {
+        return minimumAdaptivePartSize;
+    }
+
+    /**
+     * Sets the smallest part size, in bytes, an adaptive upload may choose.
+     *
+     * @param minimumAdaptivePartSize
+     *            The minimum adaptive part size.
+     */
+    public void setMinimumAdaptivePartSize(long minimumAdaptivePartSize) {
+        this.minimumAdaptivePartSize = minimumAdaptivePartSize;
+    }
+
+    /**
+     * Returns the largest part size, in bytes, an adaptive upload may choose.
+     *
+     * @return The maximum adaptive part size.
+     */
+    public long getMaximumAdaptivePartSize() {
+        return maximumAdaptivePartSize;
+    }
+
+    /**
+     * Sets the largest part size, in bytes, an adaptive upload may choose.
+     * Parts may still be larger when the object couldn't otherwise fit in the
+     * maximum number of parts.
+     *
+     * @param maximumAdaptivePartSize
+     *            The maximum adaptive part size.
+     */
+    public void setMaximumAdaptivePartSize(long maximumAdaptivePartSize) {
+        this.maximumAdaptivePartSize = maximumAdaptivePartSize;
+    }
+
+    /**
+     * Returns the largest number of parts an adaptive upload keeps in flight.
+     *
+     * @return The maximum number of parts in flight.
+     */
+    public int getMaximumPartsInFlight() {
+        return maximumPartsInFlight;
+    }
+
+    /**
+     * Sets the largest number of parts an adaptive upload keeps in flight.
+     * Parts in flight also need a thread of the transfer manager's pool each,
+     * so values above the size of the pool have no effect.
+     *
+     * @param maximumPartsInFlight
+     *            The maximum number of parts in flight.
+     */
+    public void setMaximumPartsInFlight(int maximumPartsInFlight) {
+        this.maximumPartsInFlight = maximumPartsInFlight;
+    }
+
+    /**
+     * Returns the part size, in bytes, of uploads of streams whose length
+     * isn't known in advance.
+     *
+     * @return The streaming upload part size.
+     */
+    public int getStreamingUploadPartSize() {
+        return streamingUploadPartSize;
+    }
+
+    /**
+     * Sets the part size, in bytes, of uploads of streams whose length isn't
+     * known in advance. Such a stream is read one part at a time into a
+     * buffer of this size, and each full buffer is uploaded as a part while
+     * the following ones are read. Since a multipart upload has at most
+     * 10,000 parts, this also bounds the size of the objects such uploads
+     * can create.
+     *
+     * @param streamingUploadPartSize
+     *            The streaming upload part size.
+     */
+    public void setStreamingUploadPartSize(int streamingUploadPartSize) {
+        this.streamingUploadPartSize = streamingUploadPartSize;
+    }
+
+    /**
+     * Returns the largest number of part buffers a multipart upload of a
+     * stream holds at once.
+     *
+     * @return The number of streaming upload buffers.
+     */
+    public int getStreamingUploadBuffers() {
+        return streamingUploadBuffers;
+    }
+
+    /**
+     * Sets the largest number of part buffers a multipart upload of a stream
+     * holds at once: one being filled from the stream, one
+     * read ahead, and the others being uploaded. Reading from the stream
+     * waits while all of them are in use, so an upload never holds more than
+     * this many times its part size in memory. At least two buffers are
+     * used.
+     *
+     * @param streamingUploadBuffers
+     *            The number of streaming upload buffers.
+     */
+    public void setStreamingUploadBuffers(int streamingUploadBuffers) {
+        this.streamingUploadBuffers = streamingUploadBuffers;
+    }
+
+    /**
+     * Returns whether multipart uploads of streams of known length upload
+     * several parts in parallel.
+     *
+     * @return True if parallel stream uploads are enabled.
+     */
+    public boolean isParallelStreamUpload() {
+        return parallelStreamUpload;
+    }
+
+    /**
+     * Sets whether multipart uploads of streams of known length upload
+     * several parts in parallel. By default such a stream is uploaded one
+     * part at a time, each part sent straight from the stream. When enabled,
+     * the stream is read ahead into as many as
+     * {@link #getStreamingUploadBuffers()} buffers of the usual part size,
+     * derived from the minimum upload part size, while the parts already read
+     * are uploaded in parallel on the thread pool. This holds that many
+     * parts in memory, so the minimum upload part size should be lowered to
+     * match the heap available.
+     *
+     * @param parallelStreamUpload
+     *            True to upload parts of streams in parallel.
+     */
+    public void setParallelStreamUpload(boolean parallelStreamUpload) {
+        this.parallelStreamUpload = parallelStreamUpload;
+    }
+
+    /**
+     * Returns the largest number of requests the transfers of a transfer
+     * manager may have in flight at once, or 0 if only its thread pool limits
+     * them.
+     *
+     * @return The maximum number of concurrent requests.
+     */
+    public int getMaximumConcurrentRequests() {
+        return maximumConcurrentRequests;
+    }
+
+    /**
+     * Sets the largest number of requests the transfers of a transfer
+     * manager may have in flight at once: part uploads, ranged part
+     * downloads and the list requests of directory downloads, taken together.
+     * Tasks past the limit wait for a permit rather than for a thread, which
+     * is what bounds concurrency with a pool of virtual threads, created by
+     * {@link com.sina.cloudstorage.services.scs.transfer.internal.TransferManagerUtils#createVirtualThreadExecutorService()},
+     * since such a pool has no fixed size. Defaults to 0, leaving the number
+     * of requests limited by the size of the thread pool only.
+     * <p>
+     * The limit is read when the configuration is set on the transfer
+     * manager.
+     *
+     * @param maximumConcurrentRequests
+     *            The maximum number of concurrent requests, or 0 for no limit.
+     */
+    public void setMaximumConcurrentRequests(int maximumConcurrentRequests) {
+        this.maximumConcurrentRequests = maximumConcurrentRequests;
+    }
 }
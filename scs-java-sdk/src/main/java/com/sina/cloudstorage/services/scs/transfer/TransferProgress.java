@@ -14,12 +14,58 @@
  */
 package com.sina.cloudstorage.services.scs.transfer;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import com.sina.cloudstorage.util.StripedLongCounter;
+
 /**
  * Describes the progress of a transfer.
+ * <p>
+ * Progress is updated without locks, and every method here is cheap enough
+ * to be polled frequently, for instance from a user interface thread several
+ * times a second.
  */
 public abstract class TransferProgress {
+
+    /** The period over which {@link #getBytesPerSecond()} is measured */
+    public static final long THROUGHPUT_WINDOW_MILLIS = 5000;
+
+    /** The minimum time between two samples of the bytes transferred */
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /** Enough samples to span the throughput window */
+    private static final int SAMPLES = (int)(TimeUnit.MILLISECONDS.toNanos(THROUGHPUT_WINDOW_MILLIS)
+            / SAMPLE_INTERVAL_NANOS) + 1;
+
     protected volatile long bytesTransferred = 0;
     protected volatile long totalBytesToTransfer = -1;
+    protected volatile long partSize = -1;
+    protected volatile int partsInFlight = -1;
+
+    /** The progress of each part of a multipart transfer, by part number */
+    protected final ConcurrentSkipListMap<Integer, PartProgress> parts =
+            new ConcurrentSkipListMap<Integer, PartProgress>();
+
+    /** The progress of each file of a multiple file transfer, by key */
+    protected final ConcurrentSkipListMap<String, TransferProgress> files =
+            new ConcurrentSkipListMap<String, TransferProgress>();
+
+    /** Bytes added by concurrent updates, on top of bytesTransferred */
+    private final StripedLongCounter bytesAdded = new StripedLongCounter();
+
+    /** Ring of (time, bytes transferred) samples, guarded by sampleNanos */
+    private final long[] sampleNanos = new long[SAMPLES];
+    private final long[] sampleBytes = new long[SAMPLES];
+    private int newestSample = 0;
+    private int sampleCount = 1;
+
+    protected TransferProgress() {
+        sampleNanos[0] = System.nanoTime();
+    }
 
     /**
      * @deprecated Replaced by {@link #getBytesTransferred()}
@@ -34,7 +80,18 @@ public abstract class TransferProgress {
      * @return The number of bytes completed in the associated transfer.
      */
     public long getBytesTransferred() {
-        return bytesTransferred;
+        return bytesTransferred + bytesAdded.sum();
+    }
+
+    /**
+     * Adds to the bytes transferred without locking, so that the streams of
+     * concurrent parts and files can all report to the same progress.
+     *
+     * @param bytes
+     *            The number of bytes to add.
+     */
+    protected void addBytesTransferred(long bytes) {
+        bytesAdded.add(bytes);
     }
 
     /**
@@ -49,11 +106,36 @@ public abstract class TransferProgress {
         return totalBytesToTransfer;
     }
 
+    /**
+     * Returns the size in bytes of the parts of the associated multipart
+     * transfer, or -1 if the transfer isn't done in parts. For adaptive
+     * uploads this is the size chosen for the parts being sent now, and may
+     * change as the transfer progresses.
+     *
+     * @return The current part size, or -1 if the transfer isn't done in
+     *         parts.
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the number of parts of the associated multipart transfer that
+     * are allowed to be in flight at once, or -1 if the transfer isn't done in
+     * parts. For adaptive uploads this may change as the transfer progresses.
+     *
+     * @return The current number of parts in flight, or -1 if the transfer
+     *         isn't done in parts.
+     */
+    public int getPartsInFlight() {
+        return partsInFlight;
+    }
+
     /**
      * @deprecated Replaced by {@link #getPercentTransferred()}
      */
     @Deprecated
-    public synchronized double getPercentTransfered() {
+    public double getPercentTransfered() {
         return getPercentTransferred();
     }
 
@@ -64,9 +146,91 @@ public abstract class TransferProgress {
      * @return A percentage of the number of bytes transferred out of the total
      *         number of bytes to transfer.
      */
-    public synchronized double getPercentTransferred() {
+    public double getPercentTransferred() {
         if (getBytesTransferred() < 0) return 0;
 
         return ((double)getBytesTransferred() / (double)getTotalBytesToTransfer()) * (double)100;
     }
+
+    /**
+     * Returns the rate of the associated transfer in bytes per second,
+     * measured over the last {@link #THROUGHPUT_WINDOW_MILLIS} milliseconds,
+     * or since the transfer was created if that is more recent. The rate is
+     * sampled when it is read, so a rate read after a long pause covers the
+     * time since the previous read.
+     *
+     * @return The recent rate of the transfer in bytes per second.
+     */
+    public double getBytesPerSecond() {
+        long now = System.nanoTime();
+        long bytes = getBytesTransferred();
+        long baselineNanos;
+        long baselineBytes;
+
+        synchronized (sampleNanos) {
+            // The oldest sample inside the window, or else the newest one
+            int baseline = newestSample;
+            long windowStart = now - TimeUnit.MILLISECONDS.toNanos(THROUGHPUT_WINDOW_MILLIS);
+            for (int i = sampleCount - 1; i >= 0; i--) {
+                int sample = (newestSample - i + SAMPLES) % SAMPLES;
+                if (sampleNanos[sample] - windowStart >= 0) {
+                    baseline = sample;
+                    break;
+                }
+            }
+            baselineNanos = sampleNanos[baseline];
+            baselineBytes = sampleBytes[baseline];
+
+            if (now - sampleNanos[newestSample] >= SAMPLE_INTERVAL_NANOS) {
+                newestSample = (newestSample + 1) % SAMPLES;
+                sampleNanos[newestSample] = now;
+                sampleBytes[newestSample] = bytes;
+                if (sampleCount < SAMPLES) sampleCount++;
+            }
+        }
+
+        long elapsed = now - baselineNanos;
+        if (elapsed <= 0 || bytes <= baselineBytes) return 0;
+        return (bytes - baselineBytes) * 1e9 / elapsed;
+    }
+
+    /**
+     * Returns an estimate of the time left until the associated transfer
+     * completes, based on {@link #getBytesPerSecond()}.
+     *
+     * @return The estimated time left in milliseconds, 0 if all the bytes
+     *         have been transferred, or -1 if the total size isn't known or
+     *         nothing has been transferred recently.
+     */
+    public long getEstimatedMillisRemaining() {
+        long total = getTotalBytesToTransfer();
+        if (total < 0) return -1;
+        long remaining = total - getBytesTransferred();
+        if (remaining <= 0) return 0;
+        double bytesPerSecond = getBytesPerSecond();
+        if (bytesPerSecond <= 0) return -1;
+        return (long)(remaining * 1000 / bytesPerSecond);
+    }
+
+    /**
+     * Returns the progress of each part of the associated multipart transfer
+     * started so far, in part number order, or an empty collection if the
+     * transfer isn't done in parts. The collection is a live, read-only view.
+     *
+     * @return The progress of each part started so far.
+     */
+    public Collection<PartProgress> getPartProgress() {
+        return Collections.unmodifiableCollection(parts.values());
+    }
+
+    /**
+     * Returns the progress of each file of the associated multiple file
+     * transfer, by key, or an empty map if this isn't a multiple file
+     * transfer. The map is a live, read-only view.
+     *
+     * @return The progress of each file, by key.
+     */
+    public SortedMap<String, TransferProgress> getFileProgress() {
+        return Collections.unmodifiableSortedMap(files);
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import static com.sina.cloudstorage.services.scs.internal.Constants.*;
+
+import com.sina.cloudstorage.services.scs.transfer.TransferManagerConfiguration;
+
+/**
+ * Chooses the part size and the number of parts in flight for an adaptive
+ * multipart upload from the throughput of the parts completed so far.
+ * <p>
+ * The part size follows the throughput of a single connection, smoothed over
+ * recent parts, so that each part takes about {@link #TARGET_PART_MILLIS}:
+ * slow links get small parts that are cheap to retry, fast links get large
+ * parts that spend little time on per request overhead.
+ * <p>
+ * The number of parts in flight is tuned by hill climbing on the overall
+ * throughput. Throughput is measured over rounds of as many parts as are in
+ * flight; while a step in one direction raises it, the next step goes the same
+ * way, when it drops the direction is reversed, and when it stays flat the
+ * number is held.
+ */
+class AdaptiveUploadTuner {
+
+    /** How long each part should take at the measured throughput */
+    static final long TARGET_PART_MILLIS = 5000;
+
+    /** Weight of the latest part in the smoothed per connection throughput */
+    private static final double SMOOTHING = 0.3;
+
+    /** Relative change in throughput below which a round counts as flat */
+    private static final double TOLERANCE = 0.05;
+
+    private final long minimumPartSize;
+    private final long maximumPartSize;
+    private final int maximumPartsInFlight;
+    private final TransferProgressImpl transferProgress;
+
+    private long partSize;
+    private int partsInFlight;
+
+    /** Smoothed bytes per millisecond of a single part, or 0 before the first */
+    private double partThroughput;
+
+    private int direction = 1;
+    private int roundParts;
+    private long roundBytes;
+    private long roundStartNanos;
+    private double lastRoundThroughput;
+
+    AdaptiveUploadTuner(TransferManagerConfiguration configuration, long initialPartSize,
+            int maximumPartsInFlight, TransferProgressImpl transferProgress) {
+        this(configuration, initialPartSize, maximumPartsInFlight, transferProgress, System.nanoTime());
+    }
+
+    /**
+     * Creates a tuner whose first round starts at the given
+     * {@link System#nanoTime()}.
+     */
+    AdaptiveUploadTuner(TransferManagerConfiguration configuration, long initialPartSize,
+            int maximumPartsInFlight, TransferProgressImpl transferProgress, long startNanos) {
+        this.minimumPartSize = Math.max(1, configuration.getMinimumAdaptivePartSize());
+        this.maximumPartSize = Math.max(minimumPartSize, configuration.getMaximumAdaptivePartSize());
+        this.maximumPartsInFlight = Math.max(1, maximumPartsInFlight);
+        this.transferProgress = transferProgress;
+
+        this.partSize = clamp(initialPartSize);
+        this.partsInFlight = Math.min(2, this.maximumPartsInFlight);
+        this.roundStartNanos = startNanos;
+        publish();
+    }
+
+    /**
+     * Returns the size for the next part, which is never too small for the
+     * remaining bytes to fit in the remaining part numbers.
+     */
+    synchronized long getPartSize(long remainingBytes, int nextPartNumber) {
+        int remainingParts = Math.max(1, MAXIMUM_UPLOAD_PARTS - nextPartNumber + 1);
+        long smallestFitting = (remainingBytes + remainingParts - 1) / remainingParts;
+        return Math.max(partSize, smallestFitting);
+    }
+
+    synchronized int getPartsInFlight() {
+        return partsInFlight;
+    }
+
+    /**
+     * Records a successfully uploaded part of the given size that took the
+     * given time, and updates the part size and number of parts in flight.
+     */
+    synchronized void partCompleted(long bytes, long elapsedNanos) {
+        partCompleted(bytes, elapsedNanos, System.nanoTime());
+    }
+
+    /**
+     * Records a part completed at the given {@link System#nanoTime()}.
+     */
+    synchronized void partCompleted(long bytes, long elapsedNanos, long nowNanos) {
+        double millis = Math.max(1.0, elapsedNanos / 1000000.0);
+        double throughput = bytes / millis;
+        partThroughput = (partThroughput == 0) ? throughput
+                : SMOOTHING * throughput + (1 - SMOOTHING) * partThroughput;
+        partSize = clamp(roundUpToMB((long)(partThroughput * TARGET_PART_MILLIS)));
+
+        roundParts++;
+        roundBytes += bytes;
+        if (roundParts >= partsInFlight) {
+            double roundThroughput = roundBytes / Math.max(1.0, (nowNanos - roundStartNanos) / 1000000.0);
+            int step = direction;
+            if (lastRoundThroughput > 0) {
+                if (roundThroughput < lastRoundThroughput * (1 - TOLERANCE)) {
+                    direction = -direction;
+                    step = direction;
+                } else if (roundThroughput <= lastRoundThroughput * (1 + TOLERANCE)) {
+                    // No gain from the last step: hold where we are
+                    direction = 1;
+                    step = 0;
+                }
+            }
+            partsInFlight = Math.max(1, Math.min(maximumPartsInFlight, partsInFlight + step));
+            lastRoundThroughput = roundThroughput;
+            roundParts = 0;
+            roundBytes = 0;
+            roundStartNanos = nowNanos;
+        }
+        publish();
+    }
+
+    private void publish() {
+        transferProgress.setPartSize(partSize);
+        transferProgress.setPartsInFlight(partsInFlight);
+    }
+
+    private long clamp(long size) {
+        return Math.max(minimumPartSize, Math.min(maximumPartSize, size));
+    }
+
+    private static long roundUpToMB(long size) {
+        return ((size + MB - 1) / MB) * MB;
+    }
+}
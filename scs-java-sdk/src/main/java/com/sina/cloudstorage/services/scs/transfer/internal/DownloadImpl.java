@@ -79,7 +79,8 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         
         this.monitor.getFuture().cancel(true);
         
-        if ( s3Object != null ) {
+        // Objects downloaded in parts have no content of their own
+        if ( s3Object != null && s3Object.getObjectContent() != null ) {
               s3Object.getObjectContent().abort();
         }
         setState(TransferState.Canceled);
@@ -94,7 +95,8 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         
         this.monitor.getFuture().cancel(true);
         
-        if ( s3Object != null ) {
+        // Objects downloaded in parts have no content of their own
+        if ( s3Object != null && s3Object.getObjectContent() != null ) {
               s3Object.getObjectContent().abort();
         }
         
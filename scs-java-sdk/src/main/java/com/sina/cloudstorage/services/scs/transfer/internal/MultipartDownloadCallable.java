@@ -0,0 +1,397 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.cloudstorage.SCSClientException;
+import com.sina.cloudstorage.SCSServiceException;
+import com.sina.cloudstorage.services.scs.SCS;
+import com.sina.cloudstorage.services.scs.internal.ServiceUtils;
+import com.sina.cloudstorage.services.scs.model.GetObjectRequest;
+import com.sina.cloudstorage.services.scs.model.ObjectMetadata;
+import com.sina.cloudstorage.services.scs.model.S3Object;
+import com.sina.cloudstorage.services.scs.model.S3ObjectInputStream;
+import com.sina.cloudstorage.services.scs.transfer.TransferManagerConfiguration;
+import com.sina.cloudstorage.util.BinaryUtils;
+import com.sina.cloudstorage.util.Md5Utils;
+
+/**
+ * Downloads an object into a file as a number of concurrent ranged requests.
+ * <p>
+ * The file is preallocated to the size of the object and each part is
+ * written at its own offset through positional {@link FileChannel} writes,
+ * so parts can complete in any order. The thread calling {@link #call()}
+ * downloads parts itself alongside the helpers it queues on the thread pool;
+ * since it never just waits on work that hasn't started, a busy or saturated
+ * pool slows the download down but can't deadlock it.
+ * <p>
+ * Every part request carries an <code>If-Match</code> constraint on the ETag
+ * the object had when the download started, so parts of different versions of
+ * an object are never stitched together. When the ETag is the MD5 of the
+ * object, the finished file is checked against it.
+ * <p>
+ * Each part holds a permit of the request semaphore of the transfer manager,
+ * if it has one, only while it is downloaded, so waiting for a permit never
+ * blocks a thread holding another.
+ * <p>
+ * Interrupting the thread calling {@link #call()}, as canceling the future of
+ * the download does, cancels the helpers and aborts the parts in flight.
+ */
+public class MultipartDownloadCallable implements Callable<S3Object> {
+
+    private static final Log log = LogFactory.getLog(MultipartDownloadCallable.class);
+
+    private final SCS s3;
+    private final ThreadPoolExecutor threadPool;
+    private final Semaphore requestPermits;
+    private final int maximumConcurrentRequests;
+    private final GetObjectRequest getObjectRequest;
+    private final ObjectMetadata objectMetadata;
+    private final File file;
+    private final TransferProgressImpl transferProgress;
+
+    private final long contentLength;
+    private final long partSize;
+    private final int partCount;
+    private final int maxPartRetries;
+    private final int bufferSize;
+
+    private final AtomicInteger nextPart = new AtomicInteger(0);
+    private final CountDownLatch partsDone;
+    private final List<Future<?>> helperFutures = new ArrayList<Future<?>>();
+    private final List<PartDownloader> downloaders = new ArrayList<PartDownloader>();
+
+    private FileChannel channel;
+    private volatile Throwable failure;
+    private volatile boolean constraintNotMet;
+
+    public MultipartDownloadCallable(SCS s3, ThreadPoolExecutor threadPool,
+            GetObjectRequest getObjectRequest, ObjectMetadata objectMetadata, File file,
+            TransferProgressImpl transferProgress, TransferManagerConfiguration configuration,
+            Semaphore requestPermits) {
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.requestPermits = requestPermits;
+        this.maximumConcurrentRequests = configuration.getMaximumConcurrentRequests();
+        this.getObjectRequest = getObjectRequest;
+        this.objectMetadata = objectMetadata;
+        this.file = file;
+        this.transferProgress = transferProgress;
+
+        this.contentLength = objectMetadata.getContentLength();
+        this.partSize = Math.max(1, configuration.getMinimumDownloadPartSize());
+        this.partCount = (int)((contentLength + partSize - 1) / partSize);
+        this.maxPartRetries = Math.max(0, configuration.getMaximumDownloadPartRetries());
+        this.bufferSize = configuration.getDownloadBufferSize();
+        this.partsDone = new CountDownLatch(partCount);
+    }
+
+    /**
+     * Downloads the object and returns an S3Object describing it, without
+     * content. Returns <code>null</code> if the constraints of the original
+     * request weren't met.
+     */
+    public S3Object call() throws Exception {
+        File parentDirectory = file.getParentFile();
+        if ( parentDirectory != null && !parentDirectory.exists() ) {
+            parentDirectory.mkdirs();
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(contentLength);
+            channel = randomAccessFile.getChannel();
+
+            int helpers = Math.min(partCount - 1, threadPool.getMaximumPoolSize());
+            // This thread counts as one of the requests in flight
+            if (requestPermits != null && maximumConcurrentRequests > 0) {
+                helpers = Math.min(helpers, maximumConcurrentRequests - 1);
+            }
+            for (int i = 0; i < helpers; i++) {
+                PartDownloader downloader = new PartDownloader();
+                try {
+                    helperFutures.add(threadPool.submit(downloader));
+                    downloaders.add(downloader);
+                } catch (RejectedExecutionException e) {
+                    // The remaining parts are downloaded on this thread
+                    break;
+                }
+            }
+            PartDownloader downloader = new PartDownloader();
+            downloaders.add(downloader);
+            downloader.run();
+
+            try {
+                partsDone.await();
+            } catch (InterruptedException e) {
+                fail(e);
+                cancelHelpers();
+                Thread.currentThread().interrupt();
+                throw new SCSClientException("Download of " + getObjectRequest.getKey() + " was interrupted", e);
+            }
+        } finally {
+            try { randomAccessFile.close(); } catch (IOException e) {}
+        }
+
+        Throwable t = failure;
+        if (t instanceof Exception) throw (Exception)t;
+        if (t instanceof Error) throw (Error)t;
+
+        if (constraintNotMet) {
+            if (hasConstraints(getObjectRequest)) return null;
+            throw new SCSClientException("Object " + getObjectRequest.getKey()
+                    + " was modified while it was being downloaded");
+        }
+
+        verifyIntegrity();
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(getObjectRequest.getBucketName());
+        s3Object.setKey(getObjectRequest.getKey());
+        s3Object.setObjectMetadata(objectMetadata);
+        return s3Object;
+    }
+
+    private void fail(Throwable t) {
+        if (failure == null) failure = t;
+    }
+
+    private boolean isStopped() {
+        return failure != null || constraintNotMet;
+    }
+
+    /**
+     * Cancels the helpers that haven't started and interrupts the others,
+     * aborting the parts they are reading so they don't fetch any further.
+     */
+    private void cancelHelpers() {
+        for (Future<?> helper : helperFutures) {
+            helper.cancel(true);
+        }
+        for (PartDownloader downloader : downloaders) {
+            downloader.abortPart();
+        }
+    }
+
+    /**
+     * Checks the downloaded file against the ETag of the object, unless the
+     * ETag isn't an MD5 hash because the object was uploaded in parts.
+     */
+    private void verifyIntegrity() {
+        String eTag = objectMetadata.getETag();
+        if (eTag == null || ServiceUtils.isMultipartUploadETag(eTag)) return;
+
+        byte[] clientSideHash = null;
+        byte[] serverSideHash = null;
+        try {
+            clientSideHash = Md5Utils.computeMD5HashMapped(file);
+            serverSideHash = BinaryUtils.fromHex(ServiceUtils.removeQuotes(eTag));
+        } catch (Exception e) {
+            log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+        }
+
+        if (clientSideHash != null && serverSideHash != null && !Arrays.equals(clientSideHash, serverSideHash)) {
+            throw new SCSClientException("Unable to verify integrity of data download.  " +
+                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                    "The data stored in '" + file.getAbsolutePath() + "' may be corrupt.");
+        }
+    }
+
+    private static boolean hasConstraints(GetObjectRequest request) {
+        return !isEmpty(request.getMatchingETagConstraints())
+                || !isEmpty(request.getNonmatchingETagConstraints())
+                || request.getModifiedSinceConstraint() != null
+                || request.getUnmodifiedSinceConstraint() != null;
+    }
+
+    private static boolean isEmpty(List<String> list) {
+        return list == null || list.isEmpty();
+    }
+
+    /**
+     * Creates the request for the bytes from <code>start</code> to
+     * <code>end</code>, inclusive, carrying over the constraints, response
+     * header overrides and progress listener of the original request. The
+     * progress is also added to the progress of the part, if it is tracked.
+     */
+    private GetObjectRequest newPartRequest(long start, long end, PartProgressImpl partProgress) {
+        GetObjectRequest request = new GetObjectRequest(getObjectRequest.getBucketName(),
+                getObjectRequest.getKey(), getObjectRequest.getVersionId());
+        request.setRange(start, end);
+        request.setResponseHeaders(getObjectRequest.getResponseHeaders());
+        request.setModifiedSinceConstraint(getObjectRequest.getModifiedSinceConstraint());
+        request.setUnmodifiedSinceConstraint(getObjectRequest.getUnmodifiedSinceConstraint());
+        request.setNonmatchingETagConstraints(getObjectRequest.getNonmatchingETagConstraints());
+        if (!isEmpty(getObjectRequest.getMatchingETagConstraints())) {
+            request.setMatchingETagConstraints(getObjectRequest.getMatchingETagConstraints());
+        } else if (objectMetadata.getETag() != null) {
+            request.withMatchingETagConstraint(objectMetadata.getETag());
+        }
+        if (partProgress != null) {
+            request.setGeneralProgressListener(new PartProgressUpdatingListener(partProgress,
+                    getObjectRequest.getGeneralProgressListener()));
+        } else {
+            request.setGeneralProgressListener(getObjectRequest.getGeneralProgressListener());
+        }
+        return request;
+    }
+
+    /**
+     * Takes parts off the shared counter and downloads them until none are
+     * left. Parts taken after the download has failed are only counted off.
+     */
+    private class PartDownloader implements Runnable {
+
+        private ByteBuffer buffer;
+        private volatile S3ObjectInputStream content;
+
+        public void run() {
+            int part;
+            while ((part = nextPart.getAndIncrement()) < partCount) {
+                try {
+                    if (!isStopped()) downloadPartWithPermit(part);
+                } catch (Throwable t) {
+                    fail(t);
+                } finally {
+                    partsDone.countDown();
+                }
+            }
+        }
+
+        private void downloadPartWithPermit(int part) throws IOException, InterruptedException {
+            if (requestPermits == null) {
+                downloadPart(part);
+                return;
+            }
+            try {
+                requestPermits.acquire();
+            } catch (InterruptedException e) {
+                // Keep the interrupt for the thread calling call() to see
+                Thread.currentThread().interrupt();
+                throw e;
+            }
+            try {
+                downloadPart(part);
+            } finally {
+                requestPermits.release();
+            }
+        }
+
+        private void downloadPart(int part) throws IOException {
+            long position = part * partSize;
+            long end = Math.min(position + partSize, contentLength) - 1;
+            if (buffer == null) buffer = ByteBuffer.allocateDirect(bufferSize);
+            PartProgressImpl partProgress = (transferProgress == null) ? null
+                    : transferProgress.addPart(part + 1, position, end - position + 1);
+            int retries = 0;
+
+            while (position <= end) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Download of part " + (part + 1) + " was interrupted");
+                }
+                S3Object s3Object;
+                try {
+                    s3Object = s3.getObject(newPartRequest(position, end, partProgress));
+                } catch (SCSServiceException e) {
+                    throw e;
+                } catch (SCSClientException e) {
+                    if (retries++ >= maxPartRetries || isStopped()) throw e;
+                    log.info("Retrying part " + (part + 1) + " of " + getObjectRequest.getKey(), e);
+                    continue;
+                }
+                if (s3Object == null) {
+                    constraintNotMet = true;
+                    return;
+                }
+
+                S3ObjectInputStream input = s3Object.getObjectContent();
+                content = input;
+                boolean complete = false;
+                try {
+                    ReadableByteChannel in = Channels.newChannel(input);
+                    boolean endOfStream = false;
+                    while (position <= end && !endOfStream) {
+                        buffer.clear();
+                        buffer.limit((int)Math.min(buffer.capacity(), end - position + 1));
+                        while (buffer.hasRemaining()) {
+                            if (in.read(buffer) < 0) {
+                                endOfStream = true;
+                                break;
+                            }
+                        }
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            position += channel.write(buffer, position);
+                        }
+                        if (isStopped()) return;
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedIOException("Download of part " + (part + 1) + " was interrupted");
+                        }
+                    }
+                    if (position <= end) {
+                        throw new IOException("Connection closed after " + (position - part * partSize)
+                                + " bytes of part " + (part + 1));
+                    }
+                    complete = true;
+                } catch (IOException e) {
+                    // A closed channel means the download has been abandoned
+                    if (!channel.isOpen() || Thread.currentThread().isInterrupted()
+                            || retries++ >= maxPartRetries || isStopped()) throw e;
+                    log.info("Retrying part " + (part + 1) + " of " + getObjectRequest.getKey()
+                            + " from byte " + position, e);
+                } finally {
+                    content = null;
+                    // Keep the connection for reuse unless the part was cut short
+                    if (complete) {
+                        try { input.close(); } catch (IOException e) {}
+                    } else {
+                        try { input.abort(); } catch (IOException e) {}
+                    }
+                }
+            }
+        }
+
+        /**
+         * Aborts the part being read, if any, from another thread.
+         */
+        void abortPart() {
+            S3ObjectInputStream input = content;
+            if (input != null) {
+                try { input.abort(); } catch (IOException e) {}
+            }
+        }
+    }
+}
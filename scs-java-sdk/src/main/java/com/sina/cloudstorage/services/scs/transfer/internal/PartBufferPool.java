@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A bounded pool of reusable part buffers. Buffers are only allocated when
+ * none is free, up to the capacity of the pool; past that, polling for a
+ * buffer returns null, and taking one waits for one to be released, which
+ * holds back whoever fills them until the parts already filled have been
+ * uploaded.
+ */
+public class PartBufferPool {
+    private final int bufferSize;
+    private final int capacity;
+    private final BlockingQueue<byte[]> freeBuffers = new LinkedBlockingQueue<byte[]>();
+    private int allocated;
+
+    public PartBufferPool(int capacity, int bufferSize) {
+        if (capacity < 1) throw new IllegalArgumentException("A buffer pool needs at least one buffer");
+        this.capacity = capacity;
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns a free buffer, allocating it if the pool isn't at capacity yet,
+     * or null if all the buffers are in use.
+     */
+    public byte[] poll() {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer != null) return buffer;
+
+        synchronized (this) {
+            if (allocated < capacity) {
+                allocated++;
+                return new byte[bufferSize];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a free buffer, allocating it if the pool isn't at capacity yet,
+     * or else waiting for one to be released.
+     */
+    public byte[] take() throws InterruptedException {
+        byte[] buffer = poll();
+        return (buffer != null) ? buffer : freeBuffers.take();
+    }
+
+    /**
+     * Returns a buffer to the pool once its contents are no longer needed.
+     */
+    public void release(byte[] buffer) {
+        freeBuffers.offer(buffer);
+    }
+}
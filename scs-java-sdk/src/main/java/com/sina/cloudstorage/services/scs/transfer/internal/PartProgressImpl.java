@@ -0,0 +1,33 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import com.sina.cloudstorage.services.scs.transfer.PartProgress;
+
+/**
+ * The progress of one part. Each part is sent or received by a single
+ * stream, whose progress events are reported one at a time, so updates need
+ * no synchronization.
+ */
+public class PartProgressImpl extends PartProgress {
+
+    public PartProgressImpl(int partNumber, long offset, long partSize) {
+        super(partNumber, offset, partSize);
+    }
+
+    public void updateProgress(long bytes) {
+        this.bytesTransferred += bytes;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import com.sina.cloudstorage.event.DirectProgressListener;
+import com.sina.cloudstorage.event.ProgressEvent;
+import com.sina.cloudstorage.event.ProgressListener;
+import com.sina.cloudstorage.event.ProgressListenerCallbackExecutor;
+
+/**
+ * Set on the request of a single part: updates the progress of the part on
+ * the thread transferring it, then passes the event on to the listener of the
+ * whole transfer, through a callback executor of its own.
+ */
+public class PartProgressUpdatingListener implements DirectProgressListener {
+    private final PartProgressImpl partProgress;
+    private final ProgressListenerCallbackExecutor transferListener;
+
+    public PartProgressUpdatingListener(PartProgressImpl partProgress, ProgressListener transferListener) {
+        this.partProgress = partProgress;
+        this.transferListener = ProgressListenerCallbackExecutor.wrapListener(transferListener);
+    }
+
+    public void progressChanged(ProgressEvent progressEvent) {
+        partProgress.updateProgress(progressEvent.getBytesTransferred());
+        if (transferListener != null) transferListener.progressChanged(progressEvent);
+    }
+}
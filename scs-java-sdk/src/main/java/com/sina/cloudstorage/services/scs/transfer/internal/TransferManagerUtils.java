@@ -18,17 +18,24 @@ import static com.sina.cloudstorage.services.scs.internal.Constants.*;
 
 import java.io.File;
 import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import com.sina.cloudstorage.services.scs.model.GetObjectRequest;
+import com.sina.cloudstorage.services.scs.model.ObjectMetadata;
 import com.sina.cloudstorage.services.scs.model.PutObjectRequest;
 import com.sina.cloudstorage.services.scs.transfer.TransferManagerConfiguration;
 
 /**
- * Internal utilities for multipart uploads with TransferManager.
+ * Internal utilities for multipart uploads and downloads with TransferManager.
  */
 public class TransferManagerUtils {
 
+    /** Creates virtual threads, or null if the runtime has none */
+    private static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+
     /**
      * Returns a new thread pool configured with the default settings.
      *
@@ -47,6 +54,50 @@ public class TransferManagerUtils {
         return (ThreadPoolExecutor)Executors.newFixedThreadPool(10, threadFactory);
     }
 
+    /**
+     * Returns true if the runtime has virtual threads, as from Java 21, so
+     * that {@link #createVirtualThreadExecutorService()} can be used.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Returns a new thread pool running each task on a new virtual thread,
+     * with no limit on the number of threads. Such threads are cheap enough
+     * to have one per part in flight, even hundreds of them, so the number
+     * of requests in flight should be bounded with
+     * {@link TransferManagerConfiguration#setMaximumConcurrentRequests(int)}
+     * rather than by the size of the pool.
+     *
+     * @return A new thread pool of virtual threads.
+     * @throws UnsupportedOperationException
+     *             If the runtime has no virtual threads.
+     */
+    public static ThreadPoolExecutor createVirtualThreadExecutorService() {
+        if (virtualThreadFactory == null)
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), virtualThreadFactory);
+    }
+
+    /**
+     * Looks up the virtual thread builder of Java 21 reflectively, so that
+     * the SDK still builds and runs on older runtimes.
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "s3-transfer-manager-virtual-", 1L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            // No virtual threads, or only as a preview feature that isn't enabled
+            return null;
+        }
+    }
+
 	/**
 	 * Returns true if the specified upload request can use parallel part
 	 * uploads for increased performance.
@@ -68,6 +119,21 @@ public class TransferManagerUtils {
         return (getRequestFile(putObjectRequest) != null);
     }
 
+    /**
+     * Returns true if the specified request uploads a stream whose length
+     * isn't known in advance, which TransferManager reads and uploads one
+     * part at a time.
+     *
+     * @param putObjectRequest
+     *            The request to check.
+     *
+     * @return True if the request uploads a stream of unknown length.
+     */
+    public static boolean isStreamingUpload(PutObjectRequest putObjectRequest) {
+        return putObjectRequest.getInputStream() != null
+                && getContentLength(putObjectRequest) < 0;
+    }
+
     /**
      * Returns the size of the data in this request, otherwise -1 if the content
      * length is unknown.
@@ -129,6 +195,34 @@ public class TransferManagerUtils {
         return (contentLength > configuration.getMultipartUploadThreshold());
     }
 
+    /**
+     * Returns true if the the specified request should be processed as a
+     * multipart download of concurrent ranged requests (instead of a single
+     * request for the whole object).
+     *
+     * @param getObjectRequest
+     *            The request containing all the details of the download.
+     * @param objectMetadata
+     *            The metadata of the object to download.
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     *
+     * @return True if the the specified request should be processed as a
+     *         multipart download.
+     */
+    public static boolean shouldUseMultipartDownload(GetObjectRequest getObjectRequest,
+            ObjectMetadata objectMetadata, TransferManagerConfiguration configuration) {
+        // A request for a range of the object is downloaded as it is
+        if (getObjectRequest.getRange() != null) return false;
+        // A resumable download continues a single stream
+        if (getObjectRequest.isResumableDownload()) return false;
+
+        long contentLength = objectMetadata.getContentLength();
+        return (contentLength > configuration.getMultipartDownloadThreshold()
+                && contentLength > configuration.getMinimumDownloadPartSize());
+    }
+
     /**
      * Convenience method for getting the file specified in a request.
      */
@@ -17,9 +17,13 @@ package com.sina.cloudstorage.services.scs.transfer.internal;
 import com.sina.cloudstorage.services.scs.transfer.TransferProgress;
 
 public class TransferProgressImpl extends TransferProgress {
-    
-    public synchronized void updateProgress(long bytes) {
-        this.bytesTransferred += bytes;
+
+    /**
+     * Adds to the bytes transferred. Lock free, so the streams of concurrent
+     * parts and files can all report to the same progress.
+     */
+    public void updateProgress(long bytes) {
+        addBytesTransferred(bytes);
     }
 
     /**
@@ -31,10 +35,35 @@ public class TransferProgressImpl extends TransferProgress {
     }
 
     public void setBytesTransferred(long bytesTransferred) {
-        this.bytesTransferred = bytesTransferred;
+        addBytesTransferred(bytesTransferred - getBytesTransferred());
     }
 
     public void setTotalBytesToTransfer(long totalBytesToTransfer) {
         this.totalBytesToTransfer = totalBytesToTransfer;
     }
+
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    public void setPartsInFlight(int partsInFlight) {
+        this.partsInFlight = partsInFlight;
+    }
+
+    /**
+     * Starts tracking the progress of a part, and returns it to be updated
+     * by the listener of the part.
+     */
+    public PartProgressImpl addPart(int partNumber, long offset, long partSize) {
+        PartProgressImpl part = new PartProgressImpl(partNumber, offset, partSize);
+        parts.put(partNumber, part);
+        return part;
+    }
+
+    /**
+     * Adds the progress of one file of a multiple file transfer.
+     */
+    public void addFileProgress(String key, TransferProgress fileProgress) {
+        files.put(key, fileProgress);
+    }
 }
@@ -14,10 +14,14 @@
  */
 package com.sina.cloudstorage.services.scs.transfer.internal;
 
-import com.sina.cloudstorage.event.ProgressListener;
+import com.sina.cloudstorage.event.DirectProgressListener;
 import com.sina.cloudstorage.event.ProgressEvent;
 
-public class TransferProgressUpdatingListener implements ProgressListener {
+/**
+ * Adds the bytes of every event to the progress of a transfer. Called on the
+ * transferring threads, since the progress takes concurrent updates.
+ */
+public class TransferProgressUpdatingListener implements DirectProgressListener {
     private final TransferProgressImpl transferProgress;
 
     public TransferProgressUpdatingListener(TransferProgressImpl transferProgress) {
@@ -14,24 +14,49 @@
  */
 package com.sina.cloudstorage.services.scs.transfer.internal;
 
+import static com.sina.cloudstorage.services.scs.internal.Constants.MAXIMUM_UPLOAD_PARTS;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.sina.cloudstorage.SCSClientException;
+import com.sina.cloudstorage.SCSServiceException;
 import com.sina.cloudstorage.event.ProgressEvent;
 import com.sina.cloudstorage.event.ProgressListenerCallbackExecutor;
 import com.sina.cloudstorage.event.ProgressListenerChain;
 import com.sina.cloudstorage.services.scs.SCS;
+import com.sina.cloudstorage.services.scs.internal.InputSubstream;
+import com.sina.cloudstorage.services.scs.internal.ServiceUtils;
 import com.sina.cloudstorage.services.scs.model.CompleteMultipartUploadRequest;
 import com.sina.cloudstorage.services.scs.model.InitiateMultipartUploadRequest;
+import com.sina.cloudstorage.services.scs.model.ListPartsRequest;
 import com.sina.cloudstorage.services.scs.model.PartETag;
+import com.sina.cloudstorage.services.scs.model.PartListing;
+import com.sina.cloudstorage.services.scs.model.PartSummary;
 import com.sina.cloudstorage.services.scs.model.PutObjectRequest;
 import com.sina.cloudstorage.services.scs.model.PutObjectResult;
 import com.sina.cloudstorage.services.scs.model.StorageClass;
@@ -40,10 +65,14 @@ import com.sina.cloudstorage.services.scs.transfer.Transfer.TransferState;
 import com.sina.cloudstorage.services.scs.transfer.TransferManager;
 import com.sina.cloudstorage.services.scs.transfer.TransferManagerConfiguration;
 import com.sina.cloudstorage.services.scs.transfer.model.UploadResult;
+import com.sina.cloudstorage.util.BinaryUtils;
+import com.sina.cloudstorage.util.Md5Utils;
 
 public class UploadCallable implements Callable<UploadResult> {
     private final SCS s3;
     private final ExecutorService threadPool;
+    /** Held by each part while it is uploaded, or null if only the pool bounds parts in flight */
+    private final Semaphore requestPermits;
     private final PutObjectRequest putObjectRequest;
     private String multipartUploadId;
     private final UploadImpl upload;
@@ -51,17 +80,66 @@ public class UploadCallable implements Callable<UploadResult> {
     private static final Log log = LogFactory.getLog(UploadCallable.class);
     private final TransferManagerConfiguration configuration;
     private final ProgressListenerCallbackExecutor progressListenerChainCallbackExecutor;
-    private final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+    private final List<Future<PartETag>> futures = Collections.synchronizedList(new ArrayList<Future<PartETag>>());
+
+    /*
+     * State of a resumable upload
+     */
+    private final File checkpointFile;
+    private UploadCheckpoint checkpoint;
+    private final List<PartETag> resumedParts = new ArrayList<PartETag>();
+
+    /**
+     * Parts submitted but not yet finished, plus one held while parts are
+     * still being submitted.
+     */
+    private final AtomicInteger pendingParts = new AtomicInteger(1);
+    private boolean allPartsDone = false;
+    private Runnable onAllPartsDone;
+    private volatile boolean partFailed;
+
+    /** Whether a stream of unknown length turned out to need a multipart upload */
+    private volatile boolean streamedInParts;
+
+    /** Creates the part requests, and is closed once all the parts are done */
+    private UploadPartRequestFactory requestFactory;
+
+    /*
+     * State of an adaptive upload, guarded by the request factory
+     */
+    private volatile AdaptiveUploadTuner tuner;
+    private int partsInFlight;
+    private boolean allPartsSubmitted;
 
     public UploadCallable(TransferManager transferManager, ExecutorService threadPool, UploadImpl upload, PutObjectRequest putObjectRequest, ProgressListenerChain progressListenerChain) {
+        this(transferManager, threadPool, upload, putObjectRequest, progressListenerChain, null);
+    }
+
+    /**
+     * Creates the callable for a resumable upload, which records its progress
+     * in the given checkpoint file and picks up where an earlier attempt
+     * recorded in it left off.
+     */
+    public UploadCallable(TransferManager transferManager, ExecutorService threadPool, UploadImpl upload, PutObjectRequest putObjectRequest, ProgressListenerChain progressListenerChain, File checkpointFile) {
+        this(transferManager, threadPool, upload, putObjectRequest, progressListenerChain, checkpointFile, null);
+    }
+
+    /**
+     * Creates the callable for an upload whose parts each hold a permit of
+     * the given semaphore, shared with the other transfers of the transfer
+     * manager, while they are uploaded.
+     */
+    public UploadCallable(TransferManager transferManager, ExecutorService threadPool, UploadImpl upload, PutObjectRequest putObjectRequest, ProgressListenerChain progressListenerChain, File checkpointFile, Semaphore requestPermits) {
         this.s3 = transferManager.getAmazonS3Client();
         this.configuration = transferManager.getConfiguration();
 
         this.threadPool = threadPool;
+        this.requestPermits = requestPermits;
         this.putObjectRequest = putObjectRequest;
         this.progressListenerChainCallbackExecutor = ProgressListenerCallbackExecutor
                 .wrapListener(progressListenerChain);
         this.upload = upload;
+        this.checkpointFile = checkpointFile;
     }
 
     /**
@@ -73,24 +151,87 @@ public class UploadCallable implements Callable<UploadResult> {
     }
 
     List<Future<PartETag>> getFutures() {
-        return futures;
+        synchronized (futures) {
+            return new ArrayList<Future<PartETag>>(futures);
+        }
     }
 
     String getMultipartUploadId() {
         return multipartUploadId;
     }
 
+    /**
+     * Returns the parts of a resumed upload that an earlier attempt had
+     * already uploaded.
+     */
+    List<PartETag> getResumedParts() {
+        return resumedParts;
+    }
+
+    /**
+     * Called once the multipart upload has been completed, to drop its
+     * checkpoint.
+     */
+    void multipartUploadCompleted() {
+        if (checkpoint != null) checkpoint.delete();
+    }
+
+    /**
+     * Sorts part ETags by part number, the order in which parts are listed
+     * when completing an upload.
+     */
+    static void sortByPartNumber(List<PartETag> partETags) {
+        Collections.sort(partETags, new Comparator<PartETag>() {
+            public int compare(PartETag a, PartETag b) {
+                return a.getPartNumber() < b.getPartNumber() ? -1
+                        : (a.getPartNumber() == b.getPartNumber() ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * Runs the given task once every part of a parallel upload has finished,
+     * successfully or not: immediately if they already have, otherwise on the
+     * thread that finishes the last part.
+     */
+    void whenAllPartsDone(Runnable task) {
+        synchronized (this) {
+            if (!allPartsDone) {
+                onAllPartsDone = task;
+                return;
+            }
+        }
+        task.run();
+    }
+
+    private void partFinished() {
+        if (pendingParts.decrementAndGet() > 0) return;
+
+        if (requestFactory != null) requestFactory.close();
+        Runnable task;
+        synchronized (this) {
+            allPartsDone = true;
+            task = onAllPartsDone;
+        }
+        if (task != null) task.run();
+    }
+
     /**
      * Returns true if this UploadCallable is processing a multipart upload.
      * @return True if this UploadCallable is processing a multipart upload.
      */
     public boolean isMultipartUpload() {
-    	return TransferManagerUtils.shouldUseMultipartUpload(putObjectRequest, configuration);
+    	return streamedInParts || TransferManagerUtils.shouldUseMultipartUpload(putObjectRequest, configuration);
     }
 
     public UploadResult call() throws Exception {
         upload.setState(TransferState.InProgress);
-        if ( isMultipartUpload() ) {
+        if ( TransferManagerUtils.isStreamingUpload(putObjectRequest) ) {
+            return uploadStream(-1);
+        } else if ( isMultipartUpload() ) {
+            if ( putObjectRequest.getInputStream() != null && configuration.isParallelStreamUpload() ) {
+                return uploadStream(TransferManagerUtils.getContentLength(putObjectRequest));
+            }
             fireProgressEvent(ProgressEvent.STARTED_EVENT_CODE);
             return uploadInParts();
         } else {
@@ -124,22 +265,35 @@ public class UploadCallable implements Callable<UploadResult> {
         boolean isUsingEncryption = false;//s3 instanceof AmazonS3EncryptionClient;
         long optimalPartSize = getOptimalPartSize(isUsingEncryption);
 
-        multipartUploadId = initiateMultipartUpload(putObjectRequest);
+        if (checkpointFile != null) {
+            optimalPartSize = startOrResumeMultipartUpload(optimalPartSize);
+        } else {
+            multipartUploadId = initiateMultipartUpload(putObjectRequest);
+        }
 
         try {
-            UploadPartRequestFactory requestFactory = new UploadPartRequestFactory(putObjectRequest, multipartUploadId, optimalPartSize);
+            requestFactory = new UploadPartRequestFactory(putObjectRequest, multipartUploadId, optimalPartSize,
+                    (TransferProgressImpl)upload.getProgress());
+            if (!resumedParts.isEmpty()) {
+                Map<Integer, PartETag> completed = new HashMap<Integer, PartETag>();
+                for (PartETag partETag : resumedParts) completed.put(partETag.getPartNumber(), partETag);
+                requestFactory.setCompletedParts(completed.keySet());
+            }
 
             if (TransferManagerUtils.isUploadParallelizable(putObjectRequest, isUsingEncryption)) {
-                uploadPartsInParallel(requestFactory);
+                uploadPartsInParallel(requestFactory, optimalPartSize);
                 return null;
             } else {
                 UploadResult uploadResult = uploadPartsInSeries(requestFactory);
+                requestFactory.close();
                 uploadResult.setBucketName(bucketName);
                 uploadResult.setKey(key);
                 return uploadResult;
             }
         } catch (Exception e) {
             fireProgressEvent(ProgressEvent.FAILED_EVENT_CODE);
+            // Parts still running fail too, the upload having failed
+            if (requestFactory != null) requestFactory.close();
 
 //            try {
 //                s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, multipartUploadId));
@@ -156,6 +310,173 @@ public class UploadCallable implements Callable<UploadResult> {
         }
     }
 
+    /**
+     * Uploads a stream in parts, pipelined: this thread reads the stream one
+     * part at a time into buffers from a bounded pool, one part ahead so the
+     * last part is known, while the thread pool uploads the parts already
+     * read; each part gives its buffer back when it finishes. A slow network
+     * holds back the reading, see {@link #takeBuffer}.
+     * <p>
+     * The content length is -1 for a stream of unknown length, which is
+     * uploaded in one chunk if it fits in a single part.
+     * <p>
+     * Like parallel uploads of files, returns null once every part has been
+     * submitted, leaving the completion to the last part to finish.
+     */
+    private UploadResult uploadStream(long contentLength) throws Exception {
+        InputStream input = putObjectRequest.getInputStream();
+        TransferProgressImpl transferProgress = (TransferProgressImpl)upload.getProgress();
+        int partSize = getStreamingPartSize(contentLength);
+        int buffers = Math.max(2, configuration.getStreamingUploadBuffers());
+        PartBufferPool bufferPool = new PartBufferPool(buffers, partSize);
+        Queue<PartTask> parts = new LinkedList<PartTask>();
+        long remainingBytes = (contentLength < 0) ? Long.MAX_VALUE : contentLength;
+
+        try {
+            byte[] buffer = takeBuffer(bufferPool, parts);
+            int length = readPart(input, buffer, remainingBytes, contentLength >= 0);
+            remainingBytes -= length;
+            byte[] nextBuffer = null;
+            int nextLength = 0;
+            if (length == partSize && remainingBytes > 0) {
+                nextBuffer = takeBuffer(bufferPool, parts);
+                nextLength = readPart(input, nextBuffer, remainingBytes, contentLength >= 0);
+                remainingBytes -= nextLength;
+            }
+
+            if (nextLength == 0 && contentLength < 0) {
+                transferProgress.setTotalBytesToTransfer(length);
+                putObjectRequest.getMetadata().setContentLength(length);
+                putObjectRequest.setInputStream(new ByteArrayInputStream(buffer, 0, length));
+                return uploadInOneChunk();
+            }
+
+            streamedInParts = true;
+            fireProgressEvent(ProgressEvent.STARTED_EVENT_CODE);
+            multipartUploadId = initiateMultipartUpload(putObjectRequest);
+            transferProgress.setPartSize(partSize);
+            transferProgress.setPartsInFlight(Math.min(buffers, maximumConcurrency()));
+
+            int partNumber = 1;
+            long offset = 0;
+            while (!partFailed) {
+                if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
+                if (partNumber > MAXIMUM_UPLOAD_PARTS) {
+                    throw new SCSClientException("The stream is longer than " + MAXIMUM_UPLOAD_PARTS
+                            + " parts of " + partSize + " bytes, use a larger streaming upload part size");
+                }
+
+                boolean isLastPart = (nextLength == 0);
+                UploadPartRequest request = newStreamPartRequest(partNumber++, offset, buffer, length, isLastPart);
+                PartTask part = new PartTask(request, bufferPool, buffer);
+                while (!parts.isEmpty() && parts.peek().isDone()) parts.poll();
+                parts.add(part);
+                submitPart(part);
+                offset += length;
+                if (isLastPart) {
+                    transferProgress.setTotalBytesToTransfer(offset);
+                    break;
+                }
+
+                buffer = nextBuffer;
+                length = nextLength;
+                nextLength = 0;
+                if (length == partSize && remainingBytes > 0) {
+                    nextBuffer = takeBuffer(bufferPool, parts);
+                    nextLength = readPart(input, nextBuffer, remainingBytes, contentLength >= 0);
+                    remainingBytes -= nextLength;
+                }
+            }
+            // A failed part fails the whole upload when it completes
+            partFinished();
+            return null;
+        } catch (Exception e) {
+            if (isMultipartUpload()) fireProgressEvent(ProgressEvent.FAILED_EVENT_CODE);
+            throw e;
+        } finally {
+            try { input.close(); } catch (Exception e) {
+                log.warn("Unable to cleanly close input stream: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns a buffer for the next part of a stream. When every buffer is in
+     * use, this thread runs the parts holding them that haven't started yet,
+     * oldest first, instead of waiting for the pool to get to them: it is
+     * itself a worker of the pool, and with every worker reading a stream and
+     * waiting for a buffer, no part would ever run to release one. It only
+     * waits once all those parts are running elsewhere or done.
+     *
+     * @param parts
+     *            The parts submitted so far that may still hold a buffer.
+     */
+    private byte[] takeBuffer(PartBufferPool bufferPool, Queue<PartTask> parts) throws InterruptedException {
+        byte[] buffer = bufferPool.poll();
+        while (buffer == null && !parts.isEmpty()) {
+            // Does nothing if the part has started on another thread
+            parts.poll().run();
+            buffer = bufferPool.poll();
+        }
+        return (buffer != null) ? buffer : bufferPool.take();
+    }
+
+    /**
+     * Returns the part size of a pipelined upload of a stream: the streaming
+     * upload part size for a stream of unknown length, or else the part size
+     * of any other multipart upload of the same length.
+     */
+    private int getStreamingPartSize(long contentLength) {
+        long partSize = (contentLength < 0) ? configuration.getStreamingUploadPartSize()
+                : TransferManagerUtils.calculateOptimalPartSize(putObjectRequest, configuration);
+        if (partSize > Integer.MAX_VALUE) {
+            throw new SCSClientException("The stream is too long to be uploaded from memory buffers");
+        }
+        log.debug("Streaming upload part size: " + partSize);
+        return (int)partSize;
+    }
+
+    /**
+     * Reads from the stream until the buffer is full, the given number of
+     * bytes remaining in the stream have been read, or the stream ends, and
+     * returns the number of bytes read. A stream of known length that ends
+     * early is an error.
+     */
+    private static int readPart(InputStream input, byte[] buffer, long remainingBytes, boolean lengthKnown)
+            throws IOException {
+        int partLength = (int)Math.min(buffer.length, remainingBytes);
+        int length = 0;
+        while (length < partLength) {
+            int read = input.read(buffer, length, partLength - length);
+            if (read < 0) {
+                if (lengthKnown) {
+                    throw new SCSClientException("The stream ended " + (remainingBytes - length)
+                            + " bytes before its specified content length");
+                }
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private UploadPartRequest newStreamPartRequest(int partNumber, long offset, byte[] buffer, int length,
+            boolean isLastPart) {
+        UploadPartRequest request = new UploadPartRequest()
+            .withBucketName(putObjectRequest.getBucketName())
+            .withKey(putObjectRequest.getKey())
+            .withUploadId(multipartUploadId)
+            .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+            .withPartNumber(partNumber)
+            .withPartSize(length);
+        request.setLastPart(isLastPart);
+
+        PartProgressImpl partProgress = ((TransferProgressImpl)upload.getProgress()).addPart(partNumber, offset, length);
+        request.setGeneralProgressListener(new PartProgressUpdatingListener(partProgress,
+                putObjectRequest.getGeneralProgressListener()));
+        return request;
+    }
+
     /**
      * Computes and returns the optimal part size for the upload.
      */
@@ -189,8 +510,12 @@ public class UploadCallable implements Callable<UploadResult> {
                     inputStream.mark((int)uploadPartRequest.getPartSize());
                 }
             }
-            partETags.add(s3.uploadPart(uploadPartRequest).getPartETag());
+            PartETag partETag = s3.uploadPart(uploadPartRequest).getPartETag();
+            partETags.add(partETag);
+            recordCompletedPart(partETag);
         }
+        partETags.addAll(resumedParts);
+        sortByPartNumber(partETags);
 
 //        CompleteMultipartUploadResult completeMultipartUploadResult = s3
 //                .completeMultipartUpload(new CompleteMultipartUploadRequest(putObjectRequest.getBucketName(),
@@ -205,6 +530,7 @@ public class UploadCallable implements Callable<UploadResult> {
         
         s3.completeMultipartUpload(new CompleteMultipartUploadRequest(putObjectRequest.getBucketName(),
         		putObjectRequest.getKey(), multipartUploadId, partETags));
+        multipartUploadCompleted();
 
         UploadResult uploadResult = new UploadResult();
 //        uploadResult.setBucketName(completeMultipartUploadResult.getBucketName());
@@ -216,12 +542,275 @@ public class UploadCallable implements Callable<UploadResult> {
 
     /**
      * Submits a callable for each part to upload to our thread pool and records its corresponding Future.
+     * Each part counts itself off when it finishes, so the last one can trigger completion.
+     * <p>
+     * Adaptive uploads only submit as many parts as the tuner allows in
+     * flight; each finished part then submits the following ones, sized from
+     * the throughput measured so far.
      */
-    private void uploadPartsInParallel(UploadPartRequestFactory requestFactory) {
+    private void uploadPartsInParallel(UploadPartRequestFactory requestFactory, long optimalPartSize) {
+        TransferProgressImpl transferProgress = (TransferProgressImpl)upload.getProgress();
+        // The parts of a resumable upload must keep the size its checkpoint records
+        if (configuration.isAdaptiveUpload() && checkpoint == null) {
+            int maximumPartsInFlight = Math.min(configuration.getMaximumPartsInFlight(), maximumConcurrency());
+            tuner = new AdaptiveUploadTuner(configuration, optimalPartSize, maximumPartsInFlight, transferProgress);
+            submitMoreParts();
+            return;
+        }
+
+        transferProgress.setPartSize(optimalPartSize);
+        transferProgress.setPartsInFlight(maximumConcurrency());
         while (requestFactory.hasMoreRequests()) {
             if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
-            UploadPartRequest request = requestFactory.getNextUploadPartRequest();
-            futures.add(threadPool.submit(new UploadPartCallable(s3, request)));
+            submitPart(requestFactory.getNextUploadPartRequest());
+        }
+        partFinished();
+    }
+
+    /**
+     * Tops the parts in flight of an adaptive upload up to the number the
+     * tuner currently allows. Once every part has been submitted, releases
+     * the count held for submission.
+     */
+    private void submitMoreParts() {
+        synchronized (requestFactory) {
+            if (allPartsSubmitted) return;
+            while (!partFailed && partsInFlight < tuner.getPartsInFlight() && requestFactory.hasMoreRequests()) {
+                long partSize = tuner.getPartSize(requestFactory.getRemainingBytes(), requestFactory.getNextPartNumber());
+                partsInFlight++;
+                submitPart(requestFactory.getNextUploadPartRequest(partSize));
+            }
+            // A rejected part finishes, and may get here, from within submitPart
+            if (allPartsSubmitted || (!partFailed && requestFactory.hasMoreRequests())) return;
+            allPartsSubmitted = true;
+        }
+        partFinished();
+    }
+
+    private void submitPart(UploadPartRequest request) {
+        submitPart(new PartTask(request, null, null));
+    }
+
+    private void submitPart(PartTask part) {
+        pendingParts.incrementAndGet();
+        futures.add(part);
+        try {
+            threadPool.execute(part);
+        } catch (RejectedExecutionException e) {
+            // Counts the part off and makes the upload fail as canceled
+            part.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the most parts that can be uploaded at once, as bounded by the
+     * size of the pool and by the limit on concurrent requests.
+     */
+    private int maximumConcurrency() {
+        int concurrency = (threadPool instanceof ThreadPoolExecutor)
+                ? ((ThreadPoolExecutor)threadPool).getMaximumPoolSize()
+                : configuration.getMaximumPartsInFlight();
+        if (requestPermits != null && configuration.getMaximumConcurrentRequests() > 0) {
+            concurrency = Math.min(concurrency, configuration.getMaximumConcurrentRequests());
+        }
+        return concurrency;
+    }
+
+    /**
+     * The task uploading one part of a parallel upload. Reports its outcome
+     * to the tuner of an adaptive upload when it finishes, and gives the
+     * buffer holding a part read from a stream back to its pool.
+     */
+    private class PartTask extends FutureTask<PartETag> {
+        private final long partSize;
+        private final PartBufferPool bufferPool;
+        private final byte[] buffer;
+        private volatile long startNanos;
+
+        PartTask(UploadPartRequest request, PartBufferPool bufferPool, byte[] buffer) {
+            super(new UploadPartCallable(s3, request));
+            this.partSize = request.getPartSize();
+            this.bufferPool = bufferPool;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void run() {
+            // Streamed parts may be run by the thread reading the stream too
+            if (isDone()) return;
+            if (requestPermits != null) {
+                try {
+                    requestPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    setException(e);
+                    return;
+                }
+            }
+            try {
+                startNanos = System.nanoTime();
+                super.run();
+            } finally {
+                if (requestPermits != null) requestPermits.release();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (buffer != null) bufferPool.release(buffer);
+
+            PartETag partETag = null;
+            try {
+                partETag = get();
+            } catch (Exception e) {
+                // Reported by the monitor when it completes the upload
+            }
+            boolean succeeded = (partETag != null);
+            if (succeeded) recordCompletedPart(partETag);
+            else partFailed = true;
+
+            if (tuner != null) {
+                synchronized (requestFactory) {
+                    partsInFlight--;
+                }
+                if (succeeded) tuner.partCompleted(partSize, System.nanoTime() - startNanos);
+                submitMoreParts();
+            }
+            partFinished();
+        }
+    }
+
+    /**
+     * Records a completed part in the checkpoint of a resumable upload. A part
+     * that couldn't be recorded is found again by listing the parts of the
+     * upload when it is resumed, so failures are only logged.
+     */
+    private void recordCompletedPart(PartETag partETag) {
+        if (checkpoint == null) return;
+        try {
+            checkpoint.partCompleted(partETag);
+        } catch (IOException e) {
+            log.warn("Unable to record part " + partETag.getPartNumber() + " in upload checkpoint "
+                    + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Resumes the upload recorded in the checkpoint file if there is one for
+     * this file, or else initiates a new upload and starts a new checkpoint.
+     * Returns the part size to use, which for a resumed upload is the one it
+     * was started with.
+     * <p>
+     * The parts recorded in the checkpoint are reconciled with the parts the
+     * service has for the upload: a part is only skipped if the service has it
+     * with the expected size, and with the recorded ETag or, for parts that
+     * completed after the last record, an ETag matching the MD5 of the part
+     * of the file.
+     */
+    private long startOrResumeMultipartUpload(long optimalPartSize) throws IOException {
+        String bucketName = putObjectRequest.getBucketName();
+        String key = putObjectRequest.getKey();
+        File file = TransferManagerUtils.getRequestFile(putObjectRequest);
+
+        UploadCheckpoint previous = UploadCheckpoint.load(checkpointFile);
+        if (previous != null && !previous.isFor(bucketName, key, file)) {
+            log.info("Upload checkpoint " + checkpointFile + " is for a different upload, starting a new one");
+            previous = null;
+        }
+
+        if (previous != null) {
+            Map<Integer, PartSummary> storedParts = listStoredParts(previous.getUploadId());
+            if (storedParts != null) {
+                checkpoint = previous;
+                multipartUploadId = previous.getUploadId();
+                reconcileParts(file, previous, storedParts);
+                log.debug("Resuming multipart upload " + multipartUploadId + " with "
+                        + resumedParts.size() + " parts already uploaded");
+                return previous.getPartSize();
+            }
+            log.info("Multipart upload " + previous.getUploadId() + " no longer exists, starting a new one");
+        }
+
+        multipartUploadId = initiateMultipartUpload(putObjectRequest);
+        checkpoint = UploadCheckpoint.create(checkpointFile, bucketName, key, multipartUploadId, file, optimalPartSize);
+        return optimalPartSize;
+    }
+
+    /**
+     * Returns all the parts the service has for the given upload, by part
+     * number, or null if the upload no longer exists.
+     */
+    private Map<Integer, PartSummary> listStoredParts(String uploadId) {
+        Map<Integer, PartSummary> storedParts = new HashMap<Integer, PartSummary>();
+        ListPartsRequest request = new ListPartsRequest(putObjectRequest.getBucketName(),
+                putObjectRequest.getKey(), uploadId);
+        while (true) {
+            PartListing listing;
+            try {
+                listing = s3.listParts(request);
+            } catch (SCSServiceException e) {
+                if (e.getStatusCode() == 404) return null;
+                throw e;
+            }
+            if (listing == null || listing.getParts() == null || listing.getParts().isEmpty()) break;
+
+            int lastPartNumber = 0;
+            for (PartSummary part : listing.getParts()) {
+                lastPartNumber = (int)part.getPartNumber();
+                storedParts.put(lastPartNumber, part);
+            }
+            if (!listing.isTruncated()) break;
+            Integer nextMarker = listing.getNextPartNumberMarker();
+            request.setPartNumberMarker(nextMarker != null ? nextMarker.intValue() : lastPartNumber);
+        }
+        return storedParts;
+    }
+
+    /**
+     * Collects the parts that don't need to be uploaded again into
+     * resumedParts, and counts them as transferred.
+     */
+    private void reconcileParts(File file, UploadCheckpoint checkpoint, Map<Integer, PartSummary> storedParts)
+            throws IOException {
+        TransferProgressImpl transferProgress = (TransferProgressImpl)upload.getProgress();
+        Map<Integer, PartETag> recordedParts = checkpoint.getCompletedParts();
+        long partSize = checkpoint.getPartSize();
+        long fileLength = file.length();
+
+        for (PartSummary stored : storedParts.values()) {
+            int partNumber = (int)stored.getPartNumber();
+            long offset = (partNumber - 1) * partSize;
+            long expectedSize = Math.min(partSize, fileLength - offset);
+            if (partNumber < 1 || expectedSize <= 0 || stored.getSize() != expectedSize) continue;
+
+            PartETag recorded = recordedParts.get(partNumber);
+            boolean matches;
+            if (recorded != null) {
+                matches = sameETag(recorded.getETag(), stored.getETag());
+            } else {
+                matches = sameETag(md5Hex(file, offset, expectedSize), stored.getETag());
+            }
+            if (!matches) continue;
+
+            PartETag partETag = new PartETag(partNumber, stored.getETag());
+            resumedParts.add(partETag);
+            if (recorded == null) recordCompletedPart(partETag);
+            transferProgress.addPart(partNumber, offset, expectedSize).updateProgress(expectedSize);
+            transferProgress.updateProgress(expectedSize);
+        }
+    }
+
+    private static boolean sameETag(String a, String b) {
+        if (a == null || b == null) return false;
+        return ServiceUtils.removeQuotes(a).equalsIgnoreCase(ServiceUtils.removeQuotes(b));
+    }
+
+    private static String md5Hex(File file, long offset, long length) throws IOException {
+        try {
+            return BinaryUtils.toHex(Md5Utils.computeMD5Hash(
+                    new InputSubstream(new FileInputStream(file), offset, length, true)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
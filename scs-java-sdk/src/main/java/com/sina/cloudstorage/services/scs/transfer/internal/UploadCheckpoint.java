@@ -0,0 +1,229 @@
+/*
+ * Copyright 2010-2013 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.cloudstorage.services.scs.internal.Constants;
+import com.sina.cloudstorage.services.scs.model.PartETag;
+
+/**
+ * The journal of a resumable multipart upload of a file.
+ * <p>
+ * The journal starts with a header describing the upload: the bucket, key,
+ * upload id and part size, and the length and modification time of the file,
+ * so that a journal left by an upload of a different or modified file is
+ * never applied. Each part is appended as it completes, and forced to disk,
+ * so a process dying at any point loses at most the parts that were in
+ * flight:
+ * <pre>
+ * scs-upload-checkpoint 2
+ * bucket my-bucket
+ * key backups%2Fdb.tar
+ * upload-id 5c1e...
+ * file-length 53687091200
+ * file-last-modified 1380000000000
+ * part-size 16777216
+ * part 1 "9b2cf535f27731c974343645a3985328"
+ * part 3 "..."
+ * </pre>
+ * Strings are URL encoded, and the ETag of a part is quoted after encoding.
+ * A line cut short by a crash is ignored: only lines ending with a line
+ * feed are read, and only part lines ending with the closing quote of their
+ * ETag are taken as completed.
+ */
+public class UploadCheckpoint {
+
+    private static final Log log = LogFactory.getLog(UploadCheckpoint.class);
+
+    private static final String HEADER = "scs-upload-checkpoint 2";
+
+    private final File journal;
+    private final String bucketName;
+    private final String key;
+    private final String uploadId;
+    private final long fileLength;
+    private final long fileLastModified;
+    private final long partSize;
+
+    /** The completed parts, by part number */
+    private final Map<Integer, PartETag> parts = new TreeMap<Integer, PartETag>();
+
+    private UploadCheckpoint(File journal, String bucketName, String key, String uploadId,
+            long fileLength, long fileLastModified, long partSize) {
+        this.journal = journal;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.uploadId = uploadId;
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Starts a new journal for the given upload, replacing any existing one.
+     */
+    public static UploadCheckpoint create(File journal, String bucketName, String key,
+            String uploadId, File file, long partSize) throws IOException {
+        UploadCheckpoint checkpoint = new UploadCheckpoint(journal, bucketName, key, uploadId,
+                file.length(), file.lastModified(), partSize);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(HEADER).append('\n');
+        sb.append("bucket ").append(encode(bucketName)).append('\n');
+        sb.append("key ").append(encode(key)).append('\n');
+        sb.append("upload-id ").append(encode(uploadId)).append('\n');
+        sb.append("file-length ").append(checkpoint.fileLength).append('\n');
+        sb.append("file-last-modified ").append(checkpoint.fileLastModified).append('\n');
+        sb.append("part-size ").append(partSize).append('\n');
+        checkpoint.write(sb.toString(), false);
+        return checkpoint;
+    }
+
+    /**
+     * Reads the journal in the given file.
+     *
+     * @return The checkpoint, or <code>null</code> if the file doesn't exist
+     *         or isn't a complete upload checkpoint.
+     */
+    public static UploadCheckpoint load(File journal) {
+        if (!journal.isFile()) return null;
+
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(journal), Constants.DEFAULT_ENCODING);
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[4096];
+            int count;
+            while ((count = reader.read(buffer)) >= 0) {
+                text.append(buffer, 0, count);
+            }
+
+            // The last element is empty, or a line cut short
+            String[] lines = text.toString().split("\n", -1);
+            if (!HEADER.equals(lines[0])) return null;
+
+            Map<String, String> header = new TreeMap<String, String>();
+            Map<Integer, PartETag> parts = new TreeMap<Integer, PartETag>();
+            for (int i = 1; i < lines.length - 1; i++) {
+                String[] fields = lines[i].split(" ");
+                if (fields.length == 3 && fields[0].equals("part")) {
+                    String quotedETag = fields[2];
+                    if (quotedETag.length() < 2 || !quotedETag.startsWith("\"")
+                            || !quotedETag.endsWith("\"")) {
+                        continue;
+                    }
+                    int partNumber = Integer.parseInt(fields[1]);
+                    parts.put(partNumber, new PartETag(partNumber,
+                            decode(quotedETag.substring(1, quotedETag.length() - 1))));
+                } else if (fields.length == 2) {
+                    header.put(fields[0], decode(fields[1]));
+                }
+            }
+
+            UploadCheckpoint checkpoint = new UploadCheckpoint(journal,
+                    header.get("bucket"), header.get("key"), header.get("upload-id"),
+                    Long.parseLong(header.get("file-length")),
+                    Long.parseLong(header.get("file-last-modified")),
+                    Long.parseLong(header.get("part-size")));
+            if (checkpoint.bucketName == null || checkpoint.key == null
+                    || checkpoint.uploadId == null || checkpoint.partSize <= 0) {
+                return null;
+            }
+            checkpoint.parts.putAll(parts);
+            return checkpoint;
+        } catch (Exception e) {
+            log.info("Ignoring unreadable upload checkpoint " + journal + ": " + e.getMessage());
+            return null;
+        } finally {
+            if (reader != null) {
+                try { reader.close(); } catch (IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Returns true if this checkpoint was written for an upload of the given
+     * file, unchanged since, to the given bucket and key.
+     */
+    public boolean isFor(String bucketName, String key, File file) {
+        return this.bucketName.equals(bucketName) && this.key.equals(key)
+                && fileLength == file.length() && fileLastModified == file.lastModified();
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the ETags of the parts recorded as completed, by part number.
+     */
+    public synchronized Map<Integer, PartETag> getCompletedParts() {
+        return Collections.unmodifiableMap(new TreeMap<Integer, PartETag>(parts));
+    }
+
+    /**
+     * Records a completed part, and forces it to disk.
+     */
+    public synchronized void partCompleted(PartETag partETag) throws IOException {
+        write("part " + partETag.getPartNumber() + " \"" + encode(partETag.getETag()) + "\"\n", true);
+        parts.put(partETag.getPartNumber(), partETag);
+    }
+
+    /**
+     * Deletes the journal, once the upload has completed.
+     */
+    public void delete() {
+        if (journal.exists() && !journal.delete()) {
+            log.warn("Unable to delete upload checkpoint " + journal);
+        }
+    }
+
+    private void write(String text, boolean append) throws IOException {
+        FileOutputStream out = new FileOutputStream(journal, append);
+        try {
+            out.write(text.getBytes(Constants.DEFAULT_ENCODING));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, Constants.DEFAULT_ENCODING);
+    }
+
+    private static String decode(String value) throws UnsupportedEncodingException {
+        return URLDecoder.decode(value, Constants.DEFAULT_ENCODING);
+    }
+}
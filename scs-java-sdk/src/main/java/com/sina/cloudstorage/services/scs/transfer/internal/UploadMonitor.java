@@ -20,8 +20,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -40,10 +39,11 @@ import com.sina.cloudstorage.services.scs.transfer.TransferManagerConfiguration;
 import com.sina.cloudstorage.services.scs.transfer.model.UploadResult;
 
 /**
- * Manages an upload by periodically checking to see if the upload is done, and
- * returning a result if so. Otherwise, schedules a copy of itself to be run in
- * the future and returns null. When waiting on the result of this class via a
- * Future object, clients must call {@link UploadMonitor#isDone()} and
+ * Manages an upload by starting it and, for a parallel multipart upload,
+ * completing it as soon as the last part has finished. The first run returns
+ * null when parts are still in flight, after replacing the future with one for
+ * the completion step. When waiting on the result of this class via a Future
+ * object, clients must call {@link UploadMonitor#isDone()} and
  * {@link UploadMonitor#getFuture()}
  */
 public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
@@ -52,7 +52,6 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
     private final SCS s3;
     private final ExecutorService threadPool;
     private final PutObjectRequest putObjectRequest;
-    private ScheduledExecutorService timedThreadPool;
 
     private static final Log log = LogFactory.getLog(UploadMonitor.class);
     private final TransferManagerConfiguration configuration;
@@ -88,10 +87,6 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         isUploadDone = true;
     }
 
-    // TODO: this could be configured in the configuration object (which we're
-    // not using right now)
-    private int pollInterval = 5000;
-
     /**
      * Constructs a new upload watcher, which immediately submits itself to the
      * thread pool.
@@ -138,17 +133,13 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         this(manager, transfer, threadPool, multipartUploadCallable, putObjectRequest, progressListenerChain.transformToGeneralProgressListenerChain());
     }
 
-    public void setTimedThreadPool(ScheduledExecutorService timedThreadPool) {
-        this.timedThreadPool = timedThreadPool;
-    }
-
     @Override
     public UploadResult call() throws Exception {
         try {
             if ( uploadId == null ) {
                 return upload();
             } else {
-                return poll();
+                return complete();
             }
         } catch ( CancellationException e ) {
             transfer.setState(TransferState.Canceled);
@@ -162,17 +153,12 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
     }
 
     /**
-     * Polls for a result from a multipart upload and either returns it if
-     * complete, or reschedules to poll again later if not.
+     * Completes a multipart upload once all its parts have finished.
      */
-    private UploadResult poll() throws InterruptedException {
-        for ( Future<PartETag> f : futures ) {
-            if ( !f.isDone() ) {
-                reschedule();
-                return null;
-            }
-        }
-
+    private UploadResult complete() {
+        // Adaptive uploads submit parts as earlier ones finish, so the full
+        // list of parts is only known now
+        futures.addAll(multipartUploadCallable.getFutures());
         for ( Future<PartETag> f : futures ) {
             if ( f.isCancelled() ) {
                 throw new CancellationException();
@@ -184,7 +170,8 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
 
     /**
      * Initiates the upload and checks on the result. If it has completed,
-     * returns the result; otherwise, reschedules to check back later.
+     * returns the result; otherwise, arranges for the upload to be completed
+     * by whichever thread finishes the last part.
      */
     private UploadResult upload() throws Exception, InterruptedException {
 
@@ -194,8 +181,9 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
             uploadComplete();
         } else {
             uploadId = multipartUploadCallable.getMultipartUploadId();
-            futures.addAll(multipartUploadCallable.getFutures());
-            reschedule();
+            FutureTask<UploadResult> completion = new FutureTask<UploadResult>(this);
+            setNextFuture(completion);
+            multipartUploadCallable.whenAllPartsDone(completion);
         }
 
         return result;
@@ -212,15 +200,6 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         }
     }
 
-    private void reschedule()  {
-        setNextFuture(timedThreadPool.schedule(new Callable<UploadResult>() {
-            public UploadResult call() throws Exception {
-                setNextFuture(threadPool.submit(UploadMonitor.this));
-                return null;
-            }
-        }, pollInterval, TimeUnit.MILLISECONDS));
-    }
-
     private void fireProgressEvent(final int eventType) {
         if (progressListenerChainCallbackExecutor == null) return;
         ProgressEvent event = new ProgressEvent(0);
@@ -249,6 +228,7 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         
         s3.completeMultipartUpload(new CompleteMultipartUploadRequest(putObjectRequest.getBucketName(),
                 putObjectRequest.getKey(), uploadId, collectPartETags()));
+        multipartUploadCallable.multipartUploadCompleted();
         uploadComplete();
         UploadResult uploadResult = new UploadResult();
         return uploadResult;
@@ -263,6 +243,9 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
                 throw new SCSClientException("Unable to upload part: " + e.getCause().getMessage(), e.getCause());
             }
         }
+        // Parts uploaded before a resumed upload was interrupted
+        partETags.addAll(multipartUploadCallable.getResumedParts());
+        UploadCallable.sortByPartNumber(partETags);
         return partETags;
     }
 }
@@ -15,7 +15,14 @@
 package com.sina.cloudstorage.services.scs.transfer.internal;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Set;
 
+import com.sina.cloudstorage.services.scs.internal.FileRegionInputStream;
 import com.sina.cloudstorage.services.scs.internal.InputSubstream;
 import com.sina.cloudstorage.services.scs.model.PutObjectRequest;
 import com.sina.cloudstorage.services.scs.model.UploadPartRequest;
@@ -28,6 +35,10 @@ import com.sina.cloudstorage.services.scs.model.UploadPartRequest;
  * it, instead of immediately creating thousands of UploadPartRequest objects
  * for each large upload, when we won't need most of those request objects for a
  * while.
+ * <p>
+ * The parts of a file are all read through one file channel, opened with the
+ * first part and shared by every part, which must be closed once the parts
+ * have been uploaded.
  */
 public class UploadPartRequestFactory {
     private final String bucketName;
@@ -36,12 +47,25 @@ public class UploadPartRequestFactory {
     private final long optimalPartSize;
     private final File file;
     private final PutObjectRequest putObjectRequest;
+    private final TransferProgressImpl transferProgress;
+    private FileChannel fileChannel;
+    private Set<Integer> completedParts = Collections.emptySet();
     private int partNumber = 1;
     private long offset = 0;
     private long remainingBytes;
 
     public UploadPartRequestFactory(PutObjectRequest putObjectRequest, String uploadId, long optimalPartSize) {
+        this(putObjectRequest, uploadId, optimalPartSize, null);
+    }
+
+    /**
+     * Creates a factory whose requests also track the progress of each part
+     * in the given transfer progress.
+     */
+    public UploadPartRequestFactory(PutObjectRequest putObjectRequest, String uploadId, long optimalPartSize,
+            TransferProgressImpl transferProgress) {
         this.putObjectRequest = putObjectRequest;
+        this.transferProgress = transferProgress;
         this.uploadId = uploadId;
         this.optimalPartSize = optimalPartSize;
         this.bucketName = putObjectRequest.getBucketName();
@@ -50,12 +74,50 @@ public class UploadPartRequestFactory {
         this.remainingBytes = TransferManagerUtils.getContentLength(putObjectRequest);
     }
 
+    /**
+     * Sets the parts that were already uploaded, by an earlier attempt of a
+     * resumed upload. No requests are created for them. Only supported for
+     * uploads of a file whose parts are all requested with the optimal part
+     * size.
+     */
+    public synchronized void setCompletedParts(Set<Integer> completedParts) {
+        this.completedParts = completedParts;
+    }
+
     public synchronized boolean hasMoreRequests() {
+        skipCompletedParts();
         return (remainingBytes > 0);
     }
 
+    public synchronized long getRemainingBytes() {
+        return remainingBytes;
+    }
+
+    public synchronized int getNextPartNumber() {
+        skipCompletedParts();
+        return partNumber;
+    }
+
+    private void skipCompletedParts() {
+        while (remainingBytes > 0 && completedParts.contains(partNumber)) {
+            long partSize = Math.min(optimalPartSize, remainingBytes);
+            partNumber++;
+            offset += partSize;
+            remainingBytes -= partSize;
+        }
+    }
+
     public synchronized UploadPartRequest getNextUploadPartRequest() {
-        long partSize = Math.min(optimalPartSize, remainingBytes);
+        return getNextUploadPartRequest(optimalPartSize);
+    }
+
+    /**
+     * Returns the request for the next part, with the given size rather than
+     * the optimal part size this factory was created with.
+     */
+    public synchronized UploadPartRequest getNextUploadPartRequest(long requestedPartSize) {
+        skipCompletedParts();
+        long partSize = Math.min(requestedPartSize, remainingBytes);
         boolean isLastPart = (remainingBytes - partSize <= 0);
 
         UploadPartRequest request = null;
@@ -72,18 +134,48 @@ public class UploadPartRequestFactory {
                 .withBucketName(bucketName)
                 .withKey(key)
                 .withUploadId(uploadId)
-                .withFile(file)
-                .withFileOffset(offset)
+                .withInputStream(new FileRegionInputStream(getFileChannel(), offset, partSize, false))
                 .withPartNumber(partNumber++)
                 .withPartSize(partSize);
         }
 
+        if (transferProgress != null) {
+            PartProgressImpl partProgress = transferProgress.addPart(request.getPartNumber(), offset, partSize);
+            request.setGeneralProgressListener(new PartProgressUpdatingListener(partProgress,
+                    putObjectRequest.getGeneralProgressListener()));
+        } else {
+            request.setGeneralProgressListener(putObjectRequest.getGeneralProgressListener());
+        }
+
         offset += partSize;
         remainingBytes -= partSize;
         
         request.setLastPart(isLastPart);
-        request.setGeneralProgressListener(putObjectRequest.getGeneralProgressListener());
 
         return request;
     }
+
+    /**
+     * Closes the file channel the parts of a file are read through.
+     */
+    public synchronized void close() {
+        if (fileChannel == null) return;
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            // Only read from, so nothing is lost
+        }
+        fileChannel = null;
+    }
+
+    private FileChannel getFileChannel() {
+        if (fileChannel == null) {
+            try {
+                fileChannel = new RandomAccessFile(file, "r").getChannel();
+            } catch (FileNotFoundException e) {
+                throw new IllegalArgumentException("The specified file doesn't exist", e);
+            }
+        }
+        return fileChannel;
+    }
 }
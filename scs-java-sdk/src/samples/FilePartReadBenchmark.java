@@ -0,0 +1,114 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sina.cloudstorage.services.scs.internal.FileRegionInputStream;
+import com.sina.cloudstorage.services.scs.internal.InputSubstream;
+import com.sina.cloudstorage.services.scs.internal.RepeatableFileInputStream;
+
+/**
+ * Compares the ways the parts of a file upload can be read, with many parts
+ * read concurrently.
+ * <p>
+ * Each part is read the way a request entity writes it out, in 4 KB chunks,
+ * and is read twice, as if its request were retried halfway through. Parts
+ * are read either through a {@link RepeatableFileInputStream} of their own
+ * wrapped in an {@link InputSubstream}, or through a
+ * {@link FileRegionInputStream} on a channel shared by all the parts. The
+ * file is read once before measuring so that both read from the page cache;
+ * the network is left out entirely.
+ * <pre>
+ * java FilePartReadBenchmark [file megabytes] [part megabytes]
+ * </pre>
+ */
+public class FilePartReadBenchmark {
+
+    private static final int BUFFER_SIZE = 4 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        long fileSize = (args.length > 0 ? Long.parseLong(args[0]) : 512) * 1024 * 1024;
+        long partSize = (args.length > 1 ? Long.parseLong(args[1]) : 8) * 1024 * 1024;
+
+        File file = File.createTempFile("part-read-benchmark", ".bin");
+        file.deleteOnExit();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(fileSize);
+        randomAccessFile.close();
+        readParts(file, partSize, 8, false);
+
+        System.out.println((fileSize >> 20) + " MB file, " + (partSize >> 20) + " MB parts");
+        for (int round = 0; round < 3; round++) {
+            for (int threads = 8; threads <= 32; threads *= 2) {
+                run("stream per part", file, partSize, threads, false);
+                run("shared channel ", file, partSize, threads, true);
+            }
+        }
+    }
+
+    private static void run(String name, File file, long partSize, int threads, boolean sharedChannel)
+            throws Exception {
+        long startNanos = System.nanoTime();
+        long bytes = readParts(file, partSize, threads, sharedChannel);
+        long nanos = System.nanoTime() - startNanos;
+        System.out.printf("%s, %2d parts in flight: %7.1f ms (%6.0f MB/s)%n",
+                name, threads, nanos / 1e6, (bytes >> 20) / (nanos / 1e9));
+    }
+
+    private static long readParts(final File file, long partSize, int threads, boolean sharedChannel)
+            throws Exception {
+        final FileChannel channel = sharedChannel ? new RandomAccessFile(file, "r").getChannel() : null;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (long offset = 0; offset < file.length(); offset += partSize) {
+                final long partOffset = offset;
+                final long length = Math.min(partSize, file.length() - offset);
+                futures.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws IOException {
+                        InputStream in = (channel != null)
+                                ? new FileRegionInputStream(channel, partOffset, length, false)
+                                : new InputSubstream(new RepeatableFileInputStream(file), partOffset, length, true);
+                        try {
+                            return readWithRetry(in, length);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }));
+            }
+
+            long bytes = 0;
+            for (Future<Long> future : futures) bytes += future.get();
+            return bytes;
+        } finally {
+            executor.shutdown();
+            if (channel != null) channel.close();
+        }
+    }
+
+    /**
+     * Reads half the part, resets the stream, then reads the whole part.
+     */
+    private static long readWithRetry(InputStream in, long length) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        in.mark(BUFFER_SIZE);
+        long bytes = 0;
+        int read;
+        while (bytes < length / 2 && (read = in.read(buffer, 0, buffer.length)) >= 0) {
+            bytes += read;
+        }
+        in.reset();
+        while ((read = in.read(buffer, 0, buffer.length)) >= 0) {
+            bytes += read;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.sina.cloudstorage.services.scs.model.ObjectListing;
+import com.sina.cloudstorage.services.scs.model.transform.JsonResponsesParser;
+
+/**
+ * Compares the two ways of parsing a large ListBucket response.
+ * <p>
+ * The tree parser is how listings used to be read: Gson builds the whole
+ * document as nested maps, lists and boxed doubles, which the map
+ * constructors of {@link ObjectListing} then copy. The streaming parser is
+ * {@link JsonResponsesParser#parseListBucketObjectsResponse}, which fills the
+ * listing straight from a JsonReader. Both parse the same in-memory document,
+ * so the time measured is the parsing alone; nothing is sent.
+ * <pre>
+ * java ListingParseBenchmark [entries] [rounds]
+ * </pre>
+ */
+public class ListingParseBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        byte[] document = createListing(entries);
+        System.out.println(entries + " entries, " + (document.length / 1024) + " KB, " + rounds + " rounds");
+        for (int round = 0; round < rounds; round++) {
+            run("tree (Gson Map)     ", false, document, entries);
+            run("streaming JsonReader", true, document, entries);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void run(String name, boolean streaming, byte[] document, int entries)
+            throws Exception {
+        System.gc();
+        long startNanos = System.nanoTime();
+        ObjectListing listing;
+        if (streaming) {
+            listing = new JsonResponsesParser().parseListBucketObjectsResponse(
+                    new ByteArrayInputStream(document));
+        } else {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(document), "UTF-8"));
+            listing = new ObjectListing(new Gson().fromJson(reader, Map.class));
+        }
+        long nanos = System.nanoTime() - startNanos;
+
+        if (listing.getObjectSummaries().size() != entries)
+            throw new IllegalStateException(name + " parsed " + listing.getObjectSummaries().size() + " entries");
+        System.out.printf("%s: %6.1f ms (%5.0f ns per entry)%n",
+                name, nanos / 1e6, (double)nanos / entries);
+    }
+
+    private static byte[] createListing(int entries) throws Exception {
+        StringBuilder json = new StringBuilder(entries * 300);
+        json.append("{\"Delimiter\":null,\"Prefix\":\"logs/\",\"CommonPrefixes\":[],\"Marker\":null,")
+            .append("\"ContentsQuantity\":").append(entries).append(",\"CommonPrefixesQuantity\":0,")
+            .append("\"NextMarker\":null,\"IsTruncated\":false,\"Contents\":[");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"SHA1\":\"8a3f5b2c9d4e1f60718293a4b5c6d7e8f9012345\",")
+                .append("\"Name\":\"logs/2014/05/21/access-").append(i).append(".log\",")
+                .append("\"Expiration-Time\":null,")
+                .append("\"Last-Modified\":\"Wed, 21 May 2014 08:").append(10 + i % 50)
+                .append(":").append(10 + i % 50).append(" UTC\",")
+                .append("\"Owner\":\"SINA0000000000000000\",")
+                .append("\"MD5\":\"d41d8cd98f00b204e9800998ecf8427e\",")
+                .append("\"Content-Type\":\"text/plain\",")
+                .append("\"Size\":").append(1024 + i).append('}');
+        }
+        json.append("]}");
+        return json.toString().getBytes("UTF-8");
+    }
+}
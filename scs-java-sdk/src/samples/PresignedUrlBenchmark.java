@@ -0,0 +1,56 @@
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.sina.cloudstorage.HttpMethod;
+import com.sina.cloudstorage.auth.BasicAWSCredentials;
+import com.sina.cloudstorage.services.scs.PresignedUrlGenerator;
+import com.sina.cloudstorage.services.scs.SCSClient;
+
+/**
+ * Compares generating pre-signed URLs one at a time with
+ * {@link SCSClient#generatePresignedUrl(String, String, Date, HttpMethod, boolean)}
+ * against generating them in batches with a {@link PresignedUrlGenerator}.
+ * Nothing is sent; the URLs are only signed.
+ * <pre>
+ * java PresignedUrlBenchmark [keys] [keys per batch]
+ * </pre>
+ */
+public class PresignedUrlBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        SCSClient client = new SCSClient(
+                new BasicAWSCredentials("SINA000000000000ACCESS", "0123456789abcdef0123456789abcdef01234567"));
+        PresignedUrlGenerator generator = client.createPresignedUrlGenerator("bucket", HttpMethod.GET, false);
+        List<String> keys = new ArrayList<String>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            keys.add("videos/2014/05/" + i + "/segment-" + i + ".ts");
+        }
+
+        System.out.println(keyCount + " keys, " + batchSize + " keys per batch");
+        for (int round = 0; round < 5; round++) {
+            Date expiration = new Date(System.currentTimeMillis() + 3600 * 1000);
+
+            long startNanos = System.nanoTime();
+            for (String key : keys) {
+                client.generatePresignedUrl("bucket", key, expiration, HttpMethod.GET, false).toString();
+            }
+            report("generatePresignedUrl ", keyCount, System.nanoTime() - startNanos);
+
+            startNanos = System.nanoTime();
+            for (int from = 0; from < keyCount; from += batchSize) {
+                generator.generatePresignedUrls(keys.subList(from, Math.min(keyCount, from + batchSize)), expiration);
+            }
+            report("PresignedUrlGenerator", keyCount, System.nanoTime() - startNanos);
+        }
+        client.shutdown();
+    }
+
+    private static void report(String name, int urls, long nanos) {
+        System.out.printf("%s: %8.0f URLs/s (%5.0f ns per URL)%n",
+                name, urls / (nanos / 1e9), (double)nanos / urls);
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sina.cloudstorage.event.DirectProgressListener;
+import com.sina.cloudstorage.event.ProgressEvent;
+import com.sina.cloudstorage.event.ProgressListener;
+import com.sina.cloudstorage.event.ProgressListenerCallbackExecutor;
+import com.sina.cloudstorage.event.ProgressReportingInputStream;
+
+/**
+ * Measures the cost of progress reporting with many concurrent streams.
+ * <p>
+ * Each thread reads an in-memory stream through a
+ * {@link ProgressReportingInputStream}, so the time measured is almost
+ * entirely the progress reporting itself. All streams report to one shared
+ * listener, as the streams of a multiple file transfer do. The benchmark is
+ * run with a listener on the progress callback thread, and with a
+ * {@link DirectProgressListener}.
+ * <pre>
+ * java ProgressDispatchBenchmark [streams] [megabytes per stream]
+ * </pre>
+ */
+public class ProgressDispatchBenchmark {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int streams = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        long bytesPerStream = (args.length > 1 ? Long.parseLong(args[1]) : 256) * 1024 * 1024;
+
+        System.out.println(streams + " streams of " + (bytesPerStream >> 20) + " MB, "
+                + ProgressListenerCallbackExecutor.getDispatchIntervalMillis() + " ms dispatch interval");
+        for (int round = 0; round < 3; round++) {
+            run("callback thread", new CountingListener(), streams, bytesPerStream);
+            run("direct         ", new DirectCountingListener(), streams, bytesPerStream);
+        }
+    }
+
+    private static void run(String name, final CountingListener listener, int streams,
+            final long bytesPerStream) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(streams);
+        for (int i = 0; i < streams; i++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        ProgressReportingInputStream in = new ProgressReportingInputStream(
+                                new ZeroInputStream(bytesPerStream),
+                                ProgressListenerCallbackExecutor.wrapListener(listener));
+                        in.setFireCompletedEvent(true);
+                        byte[] buffer = new byte[BUFFER_SIZE];
+                        while (in.read(buffer, 0, buffer.length) >= 0) {}
+                        in.close();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        done.await();
+        long readNanos = System.nanoTime() - startNanos;
+
+        // Wait for the callback thread to deliver everything
+        long total = streams * bytesPerStream;
+        while (listener.bytes.get() < total || listener.completed.get() < streams) {
+            Thread.sleep(1);
+        }
+        long deliveredNanos = System.nanoTime() - startNanos;
+
+        System.out.printf("%s: read in %6.1f ms (%7.0f MB/s), delivered in %6.1f ms, %8d events%n",
+                name, readNanos / 1e6, (total >> 20) / (readNanos / 1e9), deliveredNanos / 1e6,
+                listener.events.get());
+    }
+
+    private static class CountingListener implements ProgressListener {
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong events = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+
+        public void progressChanged(ProgressEvent progressEvent) {
+            events.incrementAndGet();
+            bytes.addAndGet(progressEvent.getBytesTransferred());
+            if (progressEvent.getEventCode() == ProgressEvent.COMPLETED_EVENT_CODE) {
+                completed.incrementAndGet();
+            }
+        }
+    }
+
+    private static class DirectCountingListener extends CountingListener implements DirectProgressListener {
+    }
+
+    /** A stream of zeros that costs next to nothing to read */
+    private static class ZeroInputStream extends InputStream {
+        private long remaining;
+
+        ZeroInputStream(long length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            remaining--;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = (int)Math.min(len, remaining);
+            remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+
+import com.sina.cloudstorage.DefaultRequest;
+import com.sina.cloudstorage.Request;
+import com.sina.cloudstorage.auth.AWSCredentials;
+import com.sina.cloudstorage.auth.BasicAWSCredentials;
+import com.sina.cloudstorage.services.scs.internal.S3QueryStringSigner;
+import com.sina.cloudstorage.services.scs.internal.S3Signer;
+
+/**
+ * Measures the cost of signing small object requests on many threads.
+ * <p>
+ * Each thread signs requests like those of small uploads with an
+ * {@link S3Signer}, and presigned downloads with an
+ * {@link S3QueryStringSigner}, all with the same credentials, so the time
+ * measured is the canonical string, the HMAC and the headers or parameters
+ * added to the request; nothing is sent.
+ * <pre>
+ * java SigningBenchmark [threads] [requests per thread]
+ * </pre>
+ */
+public class SigningBenchmark {
+
+    private static final AWSCredentials CREDENTIALS =
+            new BasicAWSCredentials("SINA000000000000ACCESS", "0123456789abcdef0123456789abcdef01234567");
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        System.out.println(threads + " threads, " + requests + " requests per thread");
+        for (int round = 0; round < 5; round++) {
+            run("S3Signer           ", false, threads, requests);
+            run("S3QueryStringSigner", true, threads, requests);
+        }
+    }
+
+    private static void run(String name, final boolean presign, int threads, final int requests)
+            throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            final int thread = i;
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        Date expiration = new Date(System.currentTimeMillis() + 3600 * 1000);
+                        for (int n = 0; n < requests; n++) {
+                            String key = "objects/" + thread + "/" + n;
+                            Request<?> request = newRequest(presign, key);
+                            if (presign) {
+                                new S3QueryStringSigner<Object>("GET", "/bucket/" + key, expiration)
+                                        .sign(request, CREDENTIALS);
+                            } else {
+                                new S3Signer("PUT", "/bucket/" + key).sign(request, CREDENTIALS);
+                            }
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        done.await();
+        long nanos = System.nanoTime() - startNanos;
+
+        long total = (long)threads * requests;
+        System.out.printf("%s: %8.0f requests/s (%5.0f ns per request)%n",
+                name, total / (nanos / 1e9), (double)nanos / total);
+    }
+
+    private static Request<?> newRequest(boolean presign, String key) {
+        Request<?> request = new DefaultRequest<Object>("scs");
+        request.setEndpoint(URI.create("http://bucket.sinacloud.net"));
+        request.setResourcePath(key);
+        if (presign) {
+            request.addParameter("response-content-type", "application/octet-stream");
+        } else {
+            request.addHeader("Content-Type", "application/octet-stream");
+            request.addHeader("Content-MD5", "1B2M2Y8AsgTpgAmY7PhCfg==");
+            request.addHeader("Content-Length", "1024");
+            request.addHeader("x-amz-meta-owner", "benchmark");
+            request.addHeader("x-sina-acl", "private");
+        }
+        return request;
+    }
+}
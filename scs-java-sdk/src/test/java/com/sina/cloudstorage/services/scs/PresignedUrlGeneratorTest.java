@@ -0,0 +1,114 @@
+package com.sina.cloudstorage.services.scs;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.sina.cloudstorage.HttpMethod;
+import com.sina.cloudstorage.auth.AWSCredentials;
+import com.sina.cloudstorage.auth.BasicAWSCredentials;
+import com.sina.cloudstorage.auth.BasicSessionCredentials;
+
+/**
+ * Checks that the URLs of {@link PresignedUrlGenerator} are the same, character
+ * for character, as those of {@link SCSClient#generatePresignedUrl}, for each
+ * way of addressing the bucket. No request is sent.
+ */
+public class PresignedUrlGeneratorTest extends TestCase {
+
+    private static final List<String> KEYS = Arrays.asList(
+            "photo.jpg",
+            "dir/sub/file.txt",
+            "/leading/slash",
+            "a//b///c",
+            "//",
+            "trailing/",
+            "中文/ñ é.txt",
+            "emoji 😀",
+            "sp ace+plus?q=1&r#frag%41",
+            "~tilde-dot._");
+
+    private static final Date EXPIRATION = new Date(1400000000000L);
+
+    private static final AWSCredentials CREDENTIALS =
+            new BasicAWSCredentials("accessKeyId", "secretKey/+=");
+
+    private static final AWSCredentials SESSION_CREDENTIALS =
+            new BasicSessionCredentials("accessKeyId", "secretKey/+=", "session/token+=&");
+
+    public void testVirtualHost() {
+        SCSClient client = new SCSClient(CREDENTIALS);
+        client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(false));
+        assertSameUrls(client, "my-bucket", HttpMethod.GET, false);
+        assertSameUrls(client, "my-bucket", HttpMethod.PUT, false);
+    }
+
+    public void testPathStyle() {
+        SCSClient client = new SCSClient(CREDENTIALS);
+        client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+        assertSameUrls(client, "my-bucket", HttpMethod.GET, false);
+        assertSameUrls(client, "my-bucket", HttpMethod.DELETE, false);
+
+        // Bucket names that aren't valid host names are addressed by path
+        client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(false));
+        assertSameUrls(client, "My_Bucket", HttpMethod.GET, false);
+    }
+
+    public void testBucketNameAsDomain() {
+        SCSClient client = new SCSClient(CREDENTIALS);
+        assertSameUrls(client, "cdn.example.com", HttpMethod.GET, true);
+        assertSameUrls(client, "cdn.example.com", HttpMethod.PUT, true);
+    }
+
+    public void testSessionCredentials() {
+        SCSClient client = new SCSClient(SESSION_CREDENTIALS);
+        client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(false));
+        assertSameUrls(client, "my-bucket", HttpMethod.GET, false);
+        assertSameUrls(client, "cdn.example.com", HttpMethod.GET, true);
+
+        client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+        assertSameUrls(client, "my-bucket", HttpMethod.PUT, false);
+    }
+
+    public void testHttpsEndpoint() {
+        SCSClient client = new SCSClient(CREDENTIALS);
+        client.setEndpoint("https://sinacloud.net");
+        // GET requests are sent over http even so
+        assertSameUrls(client, "my-bucket", HttpMethod.GET, false);
+        assertSameUrls(client, "my-bucket", HttpMethod.PUT, false);
+    }
+
+    public void testSingleUrl() {
+        SCSClient client = new SCSClient(SESSION_CREDENTIALS);
+        PresignedUrlGenerator generator =
+                client.createPresignedUrlGenerator("my-bucket", HttpMethod.GET, false);
+        for (String key : KEYS) {
+            assertEquals(key,
+                    client.generatePresignedUrl("my-bucket", key, EXPIRATION, HttpMethod.GET, false).toString(),
+                    generator.generatePresignedUrl(key, EXPIRATION));
+        }
+    }
+
+    public void testQueryOrder() {
+        SCSClient client = new SCSClient(SESSION_CREDENTIALS);
+        String url = client.createPresignedUrlGenerator("my-bucket", HttpMethod.GET, false)
+                .generatePresignedUrl("photo.jpg", EXPIRATION);
+        String query = url.substring(url.indexOf('?'), url.indexOf("&ssig=") + 6);
+        assertEquals("?x-amz-security-token=session%2Ftoken%2B%3D%26&KID=sina%2CaccessKeyId"
+                + "&Expires=1400000000&ssig=", query);
+    }
+
+    private void assertSameUrls(SCSClient client, String bucketName, HttpMethod method,
+            boolean bucketNameAsDomain) {
+        List<String> urls = client.createPresignedUrlGenerator(bucketName, method, bucketNameAsDomain)
+                .generatePresignedUrls(KEYS, EXPIRATION);
+        assertEquals(KEYS.size(), urls.size());
+        for (int i = 0; i < KEYS.size(); i++) {
+            String expected = client.generatePresignedUrl(bucketName, KEYS.get(i), EXPIRATION,
+                    method, bucketNameAsDomain).toString();
+            assertEquals(KEYS.get(i), expected, urls.get(i));
+        }
+    }
+}
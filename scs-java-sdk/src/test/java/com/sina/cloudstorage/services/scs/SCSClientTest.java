@@ -240,10 +240,51 @@ public class SCSClientTest extends TestCase {
 		objectListing = client.listNextBatchOfObjects(objectListing);
 		Assert.assertTrue("list objectes result is empty", objectListing.getObjectSummaries().size() > 0);
 		Assert.assertEquals("list result contentsQuantity is not 1", 1, objectListing.getContentsQuantity());
-		Assert.assertTrue("list result objectSummary key name is not a/object2.txt", 
+		Assert.assertTrue("list result objectSummary key name is not a/object2.txt",
 				objectListing.getObjectSummaries().get(0).getKey().startsWith("a/"));
 	}
 
+	/**
+	 * Test method for {@link com.sina.cloudstorage.services.scs.SCSClient#iterateObjects(com.sina.cloudstorage.services.scs.model.ListObjectsRequest, boolean)}.
+	 */
+	public void testIterateObjects() {
+		/*
+		 * 创建bucket
+		 */
+		try{
+			client.createBucket(bucketName);
+		}catch(SCSS3Exception err){
+			//bucket 已经存在
+			Assert.assertEquals("status code is not 409.Error is :"+err.getMessage(), 409, err.getStatusCode());
+		}
+
+		Assert.assertTrue("bucket:"+bucketName+" does not exist", client.doesBucketExist(bucketName));
+		/*
+		 * 上传并拷贝测试文件
+		 */
+		try {
+			client.putObject(bucketName, "a/object1.txt", new File(getClass().getResource(localFileName).toURI()));
+			client.copyObject(bucketName, "a/object1.txt", bucketName, "b/object1.txt");
+			client.copyObject(bucketName, "a/object1.txt", bucketName, "a/object3.txt");
+			client.copyObject(bucketName, "a/object1.txt", bucketName, "a/object2.txt");
+		} catch (Exception e) {
+			Assert.fail("put object failed.Error is :"+e.getMessage());
+		}
+
+		/*
+		 * 每页2个key,共需两页
+		 */
+		ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucketName).withMaxKeys(2).withPrefix("a");
+		for (boolean prefetch : new boolean[]{false, true}) {
+			int count = 0;
+			for (S3ObjectSummary summary : client.iterateObjects(listObjectsRequest, prefetch)) {
+				Assert.assertTrue("object key does not start with a/", summary.getKey().startsWith("a/"));
+				count++;
+			}
+			Assert.assertEquals("iterated object count is not 3", 3, count);
+		}
+	}
+
 	public void testListBucketsListBucketsRequest() {
 		/*
 		 * 创建bucket
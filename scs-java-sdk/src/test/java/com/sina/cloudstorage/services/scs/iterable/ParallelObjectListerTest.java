@@ -0,0 +1,186 @@
+package com.sina.cloudstorage.services.scs.iterable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import com.sina.cloudstorage.services.scs.SCS;
+import com.sina.cloudstorage.services.scs.model.ListObjectsRequest;
+import com.sina.cloudstorage.services.scs.model.ObjectListing;
+import com.sina.cloudstorage.services.scs.model.S3ObjectSummary;
+
+/**
+ * Lists a fake bucket with {@link ParallelObjectLister} and checks that every
+ * key is received exactly once, whatever the split markers, the request's
+ * marker and the delimiter.
+ */
+public class ParallelObjectListerTest extends TestCase {
+
+    private static final String BUCKET = "bucket";
+
+    private final SortedSet<String> keys = new TreeSet<String>(Arrays.asList(
+            "a", "a/0", "a/1", "a/2", "a/3", "a/4", "a/5/x", "a/5/y", "a/6", "a/7",
+            "b", "b/0", "b/1/0", "b/1/1", "b/1/2", "b/2",
+            "c", "c0", "c1", "d/0", "d/1", "e"));
+
+    private ParallelObjectLister lister;
+
+    protected void setUp() {
+        lister = new ParallelObjectLister(fakeClient(keys), 4);
+    }
+
+    protected void tearDown() {
+        lister.shutdown();
+    }
+
+    public void testWithoutSplitMarkers() {
+        assertListedOnce(keys, list(null, null, "/", true, Collections.<String>emptyList()));
+        assertListedOnce(keys, list(null, null, null, true, Collections.<String>emptyList()));
+    }
+
+    public void testSplitMarkersEqualToKeys() {
+        List<String> splitMarkers = Arrays.asList("a/3", "b", "c0", "e");
+        assertListedOnce(keys, list(null, null, null, false, splitMarkers));
+        assertListedOnce(keys, list(null, null, "/", true, splitMarkers));
+    }
+
+    public void testSplitMarkersInsideCommonPrefixes() {
+        List<String> splitMarkers = Arrays.asList("a/", "a/4", "a/5/", "a/5/x", "b/1/0", "b/1/1z", "d/");
+        assertListedOnce(keys, list(null, null, null, false, splitMarkers));
+        assertListedOnce(keys, list(null, null, "/", true, splitMarkers));
+    }
+
+    public void testSplitMarkersBetweenKeys() {
+        List<String> splitMarkers = Arrays.asList("0", "a/2z", "a/5", "b/10", "bz", "zz");
+        assertListedOnce(keys, list(null, null, null, false, splitMarkers));
+        assertListedOnce(keys, list(null, null, "/", true, splitMarkers));
+    }
+
+    public void testMarkerInsideCommonPrefix() {
+        SortedSet<String> expected = keys.tailSet("a/3\0");
+        assertListedOnce(expected, list(null, "a/3", null, false, Collections.<String>emptyList()));
+        assertListedOnce(expected, list(null, "a/3", "/", true, Collections.<String>emptyList()));
+        assertListedOnce(expected, list(null, "a/3", "/", true, Arrays.asList("a/5/x", "b/1/1")));
+
+        expected = keys.tailSet("b/1/0\0");
+        assertListedOnce(expected, list(null, "b/1/0", "/", true, Arrays.asList("b/1/1", "c")));
+    }
+
+    public void testPrefix() {
+        SortedSet<String> expected = keys.subSet("b/", "b/\uffff");
+        assertListedOnce(expected, list("b/", null, "/", true, Collections.<String>emptyList()));
+        assertListedOnce(expected, list("b/", null, "/", true, Arrays.asList("b/1/", "b/1/1")));
+
+        expected = keys.subSet("b/0\0", "b/\uffff");
+        assertListedOnce(expected, list("b/", "b/0", "/", true, Arrays.asList("b/1/1")));
+    }
+
+    public void testMarkerEqualToCommonPrefix() {
+        // As with the next marker of a page, nothing under the prefix is listed
+        SortedSet<String> expected = new TreeSet<String>(keys.tailSet("a/"));
+        expected.removeAll(keys.subSet("a/", "a/\uffff"));
+        assertListedOnce(expected, list(null, "a/", "/", true, Collections.<String>emptyList()));
+        assertListedOnce(expected, list(null, "a/", "/", true, Arrays.asList("a/5/", "b/1/")));
+    }
+
+    private void assertListedOnce(SortedSet<String> expected, List<String> listed) {
+        List<String> sorted = new ArrayList<String>(listed);
+        Collections.sort(sorted);
+        assertEquals(new ArrayList<String>(expected), sorted);
+    }
+
+    private List<String> list(String prefix, String marker, String delimiter, boolean recursive,
+            List<String> splitMarkers) {
+        final List<String> listed = Collections.synchronizedList(new ArrayList<String>());
+        lister.withRecursive(recursive).listObjects(
+                new ListObjectsRequest(BUCKET, prefix, marker, delimiter, 2), splitMarkers,
+                new ParallelObjectLister.ListingHandler() {
+                    public void objectListingReceived(ObjectListing listing) {
+                        for (S3ObjectSummary summary : listing.getObjectSummaries())
+                            listed.add(summary.getKey());
+                    }
+                });
+        return listed;
+    }
+
+    /**
+     * Returns a client that lists the given keys the way the service does:
+     * after an exclusive marker, rolling keys up into common prefixes at the
+     * delimiter, at most maxKeys entries to a page.
+     */
+    private static SCS fakeClient(final SortedSet<String> keys) {
+        return (SCS) Proxy.newProxyInstance(SCS.class.getClassLoader(), new Class[] { SCS.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("listObjects") && args.length == 1
+                                && args[0] instanceof ListObjectsRequest)
+                            return listObjects(keys, (ListObjectsRequest) args[0]);
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ObjectListing listObjects(SortedSet<String> keys, ListObjectsRequest request) {
+        String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+        String marker = request.getMarker();
+        String delimiter = request.getDelimiter();
+        int maxKeys = request.getMaxKeys() == null ? 1000 : request.getMaxKeys();
+
+        // Keys and common prefixes in listing order, null for keys
+        TreeMap<String, String> entries = new TreeMap<String, String>();
+        for (String key : keys) {
+            if (!key.startsWith(prefix) || (marker != null && key.compareTo(marker) <= 0))
+                continue;
+            int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+            if (index < 0) {
+                entries.put(key, null);
+                continue;
+            }
+            String commonPrefix = key.substring(0, index + delimiter.length());
+            if (!commonPrefix.equals(marker))
+                entries.put(commonPrefix, commonPrefix);
+        }
+
+        ObjectListing listing = new ObjectListing();
+        listing.setBucketName(request.getBucketName());
+        listing.setPrefix(request.getPrefix());
+        listing.setMarker(marker);
+        listing.setDelimiter(delimiter);
+        listing.setMaxKeys(maxKeys);
+        List<Map<String, String>> commonPrefixes = new ArrayList<Map<String, String>>();
+        String last = null;
+        int count = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (count++ == maxKeys) {
+                listing.setTruncated(true);
+                if (delimiter != null)
+                    listing.setNextMarker(last);
+                break;
+            }
+            if (entry.getValue() == null) {
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setBucketName(request.getBucketName());
+                summary.setKey(entry.getKey());
+                listing.getObjectSummaries().add(summary);
+            } else {
+                Map<String, String> commonPrefix = new HashMap<String, String>();
+                commonPrefix.put("Prefix", entry.getValue());
+                commonPrefixes.add(commonPrefix);
+            }
+            last = entry.getKey();
+        }
+        listing.setCommonPrefixes(commonPrefixes);
+        return listing;
+    }
+}
@@ -0,0 +1,171 @@
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import static com.sina.cloudstorage.services.scs.internal.Constants.*;
+
+import junit.framework.TestCase;
+
+import com.sina.cloudstorage.services.scs.transfer.TransferManagerConfiguration;
+
+/**
+ * Feeds {@link AdaptiveUploadTuner} synthetic part timings on a clock of its
+ * own and checks each part size and number of parts in flight it chooses.
+ */
+public class AdaptiveUploadTunerTest extends TestCase {
+
+    private static final long MILLIS = 1000000L;
+
+    private TransferManagerConfiguration configuration;
+    private TransferProgressImpl transferProgress;
+    private AdaptiveUploadTuner tuner;
+    private long nowNanos;
+
+    protected void setUp() {
+        configuration = new TransferManagerConfiguration();
+        configuration.setMinimumAdaptivePartSize(MB);
+        configuration.setMaximumAdaptivePartSize(64 * MB);
+        transferProgress = new TransferProgressImpl();
+        nowNanos = 1000 * MILLIS;
+        tuner = new AdaptiveUploadTuner(configuration, 5 * MB, 4, transferProgress, nowNanos);
+    }
+
+    public void testInitialState() {
+        assertEquals(5 * MB, tuner.getPartSize(0, 1));
+        assertEquals(2, tuner.getPartsInFlight());
+        assertEquals(5 * MB, transferProgress.getPartSize());
+        assertEquals(2, transferProgress.getPartsInFlight());
+
+        tuner = new AdaptiveUploadTuner(configuration, 100 * MB, 1, transferProgress, 0);
+        assertEquals(64 * MB, tuner.getPartSize(0, 1));
+        assertEquals(1, tuner.getPartsInFlight());
+        assertEquals(64 * MB, transferProgress.getPartSize());
+        assertEquals(1, transferProgress.getPartsInFlight());
+    }
+
+    public void testPartSizeFollowsSmoothedThroughput() {
+        // 1 MB a second takes 5 seconds for 5 MB
+        tuner.partCompleted(MB, 1000 * MILLIS, nowNanos);
+        assertEquals(5 * MB, tuner.getPartSize(0, 2));
+
+        // Smoothed to 0.3 * 2 MB + 0.7 * 1 MB a second, 6.5 MB rounded up
+        tuner.partCompleted(2 * MB, 1000 * MILLIS, nowNanos);
+        assertEquals(7 * MB, tuner.getPartSize(0, 3));
+        assertEquals(7 * MB, transferProgress.getPartSize());
+
+        // Down towards 256 KB a second, one part at a time
+        long[] expected = { 5 * MB, 4 * MB, 4 * MB, 3 * MB, 3 * MB, 2 * MB };
+        for (int i = 0; i < expected.length; i++) {
+            tuner.partCompleted(256 * KB, 1000 * MILLIS, nowNanos);
+            assertEquals("part " + (i + 3), expected[i], tuner.getPartSize(0, i + 4));
+        }
+    }
+
+    public void testPartSizeBounds() {
+        // 1 KB a second is clamped to the minimum
+        tuner.partCompleted(KB, 1000 * MILLIS, nowNanos);
+        assertEquals(MB, tuner.getPartSize(0, 2));
+        assertEquals(MB, transferProgress.getPartSize());
+
+        // 1 GB a second is clamped to the maximum
+        tuner = new AdaptiveUploadTuner(configuration, 5 * MB, 4, transferProgress, nowNanos);
+        tuner.partCompleted(1024L * MB, 1000 * MILLIS, nowNanos);
+        assertEquals(64 * MB, tuner.getPartSize(0, 2));
+        assertEquals(64 * MB, transferProgress.getPartSize());
+
+        // Parts completed in no time count as a millisecond
+        tuner = new AdaptiveUploadTuner(configuration, 5 * MB, 4, transferProgress, nowNanos);
+        tuner.partCompleted(KB, 0, nowNanos);
+        assertEquals(5 * MB, tuner.getPartSize(0, 2));
+    }
+
+    public void testInvalidBoundsAreCorrected() {
+        configuration.setMinimumAdaptivePartSize(0);
+        configuration.setMaximumAdaptivePartSize(-1);
+        tuner = new AdaptiveUploadTuner(configuration, 5 * MB, 0, transferProgress, nowNanos);
+        assertEquals(1, tuner.getPartSize(0, 1));
+        assertEquals(1, tuner.getPartsInFlight());
+
+        configuration.setMinimumAdaptivePartSize(8 * MB);
+        configuration.setMaximumAdaptivePartSize(2 * MB);
+        tuner = new AdaptiveUploadTuner(configuration, 5 * MB, 4, transferProgress, nowNanos);
+        assertEquals(8 * MB, tuner.getPartSize(0, 1));
+        tuner.partCompleted(1024L * MB, 1000 * MILLIS, nowNanos);
+        assertEquals(8 * MB, tuner.getPartSize(0, 2));
+    }
+
+    public void testPartSizeFitsRemainingPartNumbers() {
+        long remaining = MAXIMUM_UPLOAD_PARTS * 5L * MB;
+        assertEquals(5 * MB, tuner.getPartSize(remaining, 1));
+        assertEquals(5 * MB + 1, tuner.getPartSize(remaining + 1, 1));
+        assertEquals(5 * MB + 1, tuner.getPartSize(remaining - 5 * MB + 1, 2));
+
+        assertEquals(100 * MB, tuner.getPartSize(100 * MB, MAXIMUM_UPLOAD_PARTS));
+        assertEquals(50 * MB, tuner.getPartSize(100 * MB, MAXIMUM_UPLOAD_PARTS - 1));
+        assertEquals(100 * MB, tuner.getPartSize(100 * MB, MAXIMUM_UPLOAD_PARTS + 5));
+    }
+
+    public void testPartsInFlightHillClimbing() {
+        // No earlier round to compare with: one step up
+        round(2, 1000);
+        assertPartsInFlight(3);
+        // Faster: keep going up
+        round(3, 1000);
+        assertPartsInFlight(4);
+        // Faster, but already at the maximum
+        round(4, 1000);
+        assertPartsInFlight(4);
+        // Slower: turn around
+        round(4, 2000);
+        assertPartsInFlight(3);
+        // Flat: hold
+        round(3, 1500);
+        assertPartsInFlight(3);
+        // Faster: after holding, the next step is up again
+        round(3, 1000);
+        assertPartsInFlight(4);
+        // Slower: turn around
+        round(4, 4000);
+        assertPartsInFlight(3);
+        // Faster: keep going down
+        round(3, 1500);
+        assertPartsInFlight(2);
+        round(2, 500);
+        assertPartsInFlight(1);
+        // Faster, but already at the minimum
+        round(1, 200);
+        assertPartsInFlight(1);
+        // Slower: turn around
+        round(1, 1000);
+        assertPartsInFlight(2);
+    }
+
+    public void testRoundEndsAfterAsManyPartsAsInFlight() {
+        nowNanos += 1000 * MILLIS;
+        tuner.partCompleted(MB, 1000 * MILLIS, nowNanos);
+        assertPartsInFlight(2);
+        tuner.partCompleted(MB, 1000 * MILLIS, nowNanos);
+        assertPartsInFlight(3);
+
+        // A round within the tolerance of the last one holds
+        nowNanos += 1000 * MILLIS;
+        tuner.partCompleted(MB, 1000 * MILLIS, nowNanos);
+        tuner.partCompleted(MB, 1000 * MILLIS, nowNanos);
+        assertPartsInFlight(3);
+        tuner.partCompleted(MB / 20, 1000 * MILLIS, nowNanos);
+        assertPartsInFlight(3);
+    }
+
+    /**
+     * Completes a round of parts of 1 MB each, the given number of
+     * milliseconds after the last.
+     */
+    private void round(int parts, long millis) {
+        nowNanos += millis * MILLIS;
+        for (int i = 0; i < parts; i++)
+            tuner.partCompleted(MB, millis * MILLIS, nowNanos);
+    }
+
+    private void assertPartsInFlight(int expected) {
+        assertEquals(expected, tuner.getPartsInFlight());
+        assertEquals(expected, transferProgress.getPartsInFlight());
+    }
+}
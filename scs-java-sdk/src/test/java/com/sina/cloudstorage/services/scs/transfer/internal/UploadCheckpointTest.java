@@ -0,0 +1,153 @@
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.sina.cloudstorage.services.scs.model.PartETag;
+
+/**
+ * Writes upload checkpoints and reads them back, whole, cut short at every
+ * byte of their last line, and against changed files.
+ */
+public class UploadCheckpointTest extends TestCase {
+
+    private File file;
+    private File journal;
+
+    protected void setUp() throws IOException {
+        file = File.createTempFile("upload", ".dat");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[1000]);
+        } finally {
+            out.close();
+        }
+        journal = File.createTempFile("upload", ".checkpoint");
+    }
+
+    protected void tearDown() {
+        file.delete();
+        journal.delete();
+    }
+
+    public void testRoundTrip() throws IOException {
+        UploadCheckpoint checkpoint = UploadCheckpoint.create(journal, "my-bucket",
+                "dir/中文 key%+&.txt", "upload/id+=", file, 300);
+        checkpoint.partCompleted(new PartETag(1, "\"9b2cf535f27731c974343645a3985328\""));
+        checkpoint.partCompleted(new PartETag(3, "unquoted etag"));
+        checkpoint.partCompleted(new PartETag(2, "\"\""));
+
+        UploadCheckpoint loaded = UploadCheckpoint.load(journal);
+        assertNotNull(loaded);
+        assertEquals("upload/id+=", loaded.getUploadId());
+        assertEquals(300, loaded.getPartSize());
+        assertTrue(loaded.isFor("my-bucket", "dir/中文 key%+&.txt", file));
+
+        Map<Integer, PartETag> parts = loaded.getCompletedParts();
+        assertEquals(3, parts.size());
+        assertEquals("\"9b2cf535f27731c974343645a3985328\"", parts.get(1).getETag());
+        assertEquals("\"\"", parts.get(2).getETag());
+        assertEquals("unquoted etag", parts.get(3).getETag());
+        assertEquals(3, parts.get(3).getPartNumber());
+    }
+
+    public void testPartsAppendedAfterLoad() throws IOException {
+        UploadCheckpoint.create(journal, "my-bucket", "key", "id", file, 300)
+                .partCompleted(new PartETag(1, "\"a\""));
+        UploadCheckpoint.load(journal).partCompleted(new PartETag(2, "\"b\""));
+
+        Map<Integer, PartETag> parts = UploadCheckpoint.load(journal).getCompletedParts();
+        assertEquals(2, parts.size());
+        assertEquals("\"b\"", parts.get(2).getETag());
+    }
+
+    public void testTornPartLineIsIgnored() throws IOException {
+        UploadCheckpoint checkpoint = UploadCheckpoint.create(journal, "my-bucket", "key", "id", file, 300);
+        checkpoint.partCompleted(new PartETag(1, "\"9b2cf535f27731c974343645a3985328\""));
+        long lengthBefore = journal.length();
+        checkpoint.partCompleted(new PartETag(3, "\"0123456789abcdef0123456789abcdef\""));
+        long lengthAfter = journal.length();
+
+        // Every prefix of the last line, up to but excluding its line feed
+        for (long length = lengthBefore; length < lengthAfter; length++) {
+            truncate(journal, length);
+            UploadCheckpoint loaded = UploadCheckpoint.load(journal);
+            assertNotNull("length " + length, loaded);
+            Map<Integer, PartETag> parts = loaded.getCompletedParts();
+            assertEquals("length " + length, 1, parts.size());
+            assertTrue("length " + length, parts.containsKey(1));
+        }
+    }
+
+    public void testTornQuotedETagIsIgnored() throws IOException {
+        UploadCheckpoint.create(journal, "my-bucket", "key", "id", file, 300);
+        append(journal, "part 3 \"%229b2c\n");
+        append(journal, "part 4 %229b2c%22\"\n");
+        append(journal, "part 5 \"\n");
+        append(journal, "part 6 \"%22ok%22\"\n");
+
+        Map<Integer, PartETag> parts = UploadCheckpoint.load(journal).getCompletedParts();
+        assertEquals(1, parts.size());
+        assertEquals("\"ok\"", parts.get(6).getETag());
+    }
+
+    public void testTornHeaderIsIgnored() throws IOException {
+        UploadCheckpoint.create(journal, "my-bucket", "key", "id", file, 300);
+        long length = journal.length();
+        for (long cut = 0; cut < length; cut++) {
+            UploadCheckpoint.create(journal, "my-bucket", "key", "id", file, 300);
+            truncate(journal, cut);
+            assertNull("length " + cut, UploadCheckpoint.load(journal));
+        }
+    }
+
+    public void testMissingOrForeignJournal() throws IOException {
+        journal.delete();
+        assertNull(UploadCheckpoint.load(journal));
+
+        append(journal, "scs-upload-checkpoint 1\nbucket b\n");
+        assertNull(UploadCheckpoint.load(journal));
+    }
+
+    public void testIsForMismatches() throws IOException {
+        UploadCheckpoint.create(journal, "my-bucket", "key", "id", file, 300);
+        UploadCheckpoint checkpoint = UploadCheckpoint.load(journal);
+        assertTrue(checkpoint.isFor("my-bucket", "key", file));
+        assertFalse(checkpoint.isFor("other-bucket", "key", file));
+        assertFalse(checkpoint.isFor("my-bucket", "other-key", file));
+
+        assertTrue(file.setLastModified(file.lastModified() - 60000));
+        assertFalse(checkpoint.isFor("my-bucket", "key", file));
+
+        UploadCheckpoint.create(journal, "my-bucket", "key", "id", file, 300);
+        checkpoint = UploadCheckpoint.load(journal);
+        assertTrue(checkpoint.isFor("my-bucket", "key", file));
+        long lastModified = file.lastModified();
+        append(file, "more");
+        assertTrue(file.setLastModified(lastModified));
+        assertFalse(checkpoint.isFor("my-bucket", "key", file));
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void append(File file, String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
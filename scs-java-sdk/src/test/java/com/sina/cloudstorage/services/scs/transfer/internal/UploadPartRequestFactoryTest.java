@@ -0,0 +1,165 @@
+package com.sina.cloudstorage.services.scs.transfer.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.sina.cloudstorage.services.scs.model.ObjectMetadata;
+import com.sina.cloudstorage.services.scs.model.PutObjectRequest;
+import com.sina.cloudstorage.services.scs.model.UploadPartRequest;
+import com.sina.cloudstorage.services.scs.transfer.PartProgress;
+
+/**
+ * Splits a file and a stream into parts with {@link UploadPartRequestFactory}
+ * and checks the number, offset, size and content of each part.
+ */
+public class UploadPartRequestFactoryTest extends TestCase {
+
+    private static final int LENGTH = 1000;
+
+    private File file;
+    private UploadPartRequestFactory factory;
+
+    protected void setUp() throws IOException {
+        file = File.createTempFile("upload", ".dat");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content(0, LENGTH));
+        } finally {
+            out.close();
+        }
+    }
+
+    protected void tearDown() {
+        if (factory != null) factory.close();
+        file.delete();
+    }
+
+    public void testFixedPartSize() throws IOException {
+        factory = new UploadPartRequestFactory(fileRequest(), "id", 300);
+        assertNextPart(1, 0, 300, false, factory.getNextUploadPartRequest());
+        assertNextPart(2, 300, 300, false, factory.getNextUploadPartRequest());
+        assertEquals(400, factory.getRemainingBytes());
+        assertEquals(3, factory.getNextPartNumber());
+        assertNextPart(3, 600, 300, false, factory.getNextUploadPartRequest());
+        assertNextPart(4, 900, 100, true, factory.getNextUploadPartRequest());
+        assertFalse(factory.hasMoreRequests());
+        assertEquals(0, factory.getRemainingBytes());
+    }
+
+    public void testExactMultipleOfPartSize() throws IOException {
+        factory = new UploadPartRequestFactory(fileRequest(), "id", 500);
+        assertNextPart(1, 0, 500, false, factory.getNextUploadPartRequest());
+        assertNextPart(2, 500, 500, true, factory.getNextUploadPartRequest());
+        assertFalse(factory.hasMoreRequests());
+    }
+
+    public void testVariablePartSizes() throws IOException {
+        TransferProgressImpl transferProgress = new TransferProgressImpl();
+        factory = new UploadPartRequestFactory(fileRequest(), "id", 300, transferProgress);
+        assertNextPart(1, 0, 100, false, factory.getNextUploadPartRequest(100));
+        assertNextPart(2, 100, 250, false, factory.getNextUploadPartRequest(250));
+        assertNextPart(3, 350, 1, false, factory.getNextUploadPartRequest(1));
+        assertNextPart(4, 351, 300, false, factory.getNextUploadPartRequest());
+        assertNextPart(5, 651, 349, true, factory.getNextUploadPartRequest(5000));
+        assertFalse(factory.hasMoreRequests());
+
+        List<PartProgress> parts = new ArrayList<PartProgress>(transferProgress.getPartProgress());
+        assertEquals(5, parts.size());
+        long[] offsets = { 0, 100, 350, 351, 651 };
+        long[] sizes = { 100, 250, 1, 300, 349 };
+        for (int i = 0; i < parts.size(); i++) {
+            assertEquals(i + 1, parts.get(i).getPartNumber());
+            assertEquals(offsets[i], parts.get(i).getOffset());
+            assertEquals(sizes[i], parts.get(i).getPartSize());
+        }
+    }
+
+    public void testSkipCompletedParts() throws IOException {
+        factory = new UploadPartRequestFactory(fileRequest(), "id", 300);
+        factory.setCompletedParts(new HashSet<Integer>(Arrays.asList(1, 3)));
+        assertTrue(factory.hasMoreRequests());
+        assertEquals(2, factory.getNextPartNumber());
+        assertEquals(700, factory.getRemainingBytes());
+        assertNextPart(2, 300, 300, false, factory.getNextUploadPartRequest());
+        assertEquals(4, factory.getNextPartNumber());
+        assertEquals(100, factory.getRemainingBytes());
+        assertNextPart(4, 900, 100, true, factory.getNextUploadPartRequest());
+        assertFalse(factory.hasMoreRequests());
+    }
+
+    public void testSkipCompletedLastPart() throws IOException {
+        factory = new UploadPartRequestFactory(fileRequest(), "id", 300);
+        factory.setCompletedParts(new HashSet<Integer>(Arrays.asList(2, 4)));
+        assertNextPart(1, 0, 300, false, factory.getNextUploadPartRequest());
+        assertNextPart(3, 600, 300, false, factory.getNextUploadPartRequest());
+        assertFalse(factory.hasMoreRequests());
+        assertEquals(0, factory.getRemainingBytes());
+    }
+
+    public void testAllPartsCompleted() {
+        factory = new UploadPartRequestFactory(fileRequest(), "id", 300);
+        factory.setCompletedParts(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4)));
+        assertFalse(factory.hasMoreRequests());
+        assertEquals(5, factory.getNextPartNumber());
+    }
+
+    public void testStreamParts() throws IOException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(LENGTH);
+        PutObjectRequest request = new PutObjectRequest("bucket", "key",
+                new ByteArrayInputStream(content(0, LENGTH)), metadata);
+        factory = new UploadPartRequestFactory(request, "id", 400);
+        // Each part reads on from where the last one stopped
+        assertNextPart(1, 0, 400, false, factory.getNextUploadPartRequest());
+        assertNextPart(2, 400, 250, false, factory.getNextUploadPartRequest(250));
+        assertNextPart(3, 650, 350, true, factory.getNextUploadPartRequest());
+        assertFalse(factory.hasMoreRequests());
+    }
+
+    private PutObjectRequest fileRequest() {
+        return new PutObjectRequest("bucket", "key", file);
+    }
+
+    private static void assertNextPart(int partNumber, long offset, long partSize, boolean lastPart,
+            UploadPartRequest request) throws IOException {
+        assertEquals(partNumber, request.getPartNumber());
+        assertEquals(partSize, request.getPartSize());
+        assertEquals(lastPart, request.isLastPart());
+        assertEquals("bucket", request.getBucketName());
+        assertEquals("key", request.getKey());
+        assertEquals("id", request.getUploadId());
+        assertTrue("part " + partNumber,
+                Arrays.equals(content((int) offset, (int) partSize), read(request.getInputStream())));
+    }
+
+    /**
+     * Returns the given bytes of the test data, in which each byte depends on
+     * its offset.
+     */
+    private static byte[] content(int offset, int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++)
+            content[i] = (byte) ((offset + i) % 251);
+        return content;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        List<Byte> bytes = new ArrayList<Byte>();
+        int b;
+        while ((b = in.read()) != -1)
+            bytes.add((byte) b);
+        byte[] result = new byte[bytes.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = bytes.get(i);
+        return result;
+    }
+}